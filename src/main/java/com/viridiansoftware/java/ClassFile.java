@@ -26,29 +26,45 @@ import com.viridiansoftware.java.signature.antlr.SignatureParser;
 import com.viridiansoftware.java.utils.ClassUtils;
 import org.w3c.dom.Attr;
 
-import java.io.DataInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.IntFunction;
 
 /**
  * https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html
  */
 public class ClassFile implements TypeVariableResolver {
 
-    private final DataInputStream input;
+    private static final FieldInfo[] NO_FIELDS = new FieldInfo[0];
+    private static final MethodInfo[] NO_METHODS = new MethodInfo[0];
+
     private final int             minorVersion;
     private final int             majorVersion;
     private final ConstantPool constantPool;
     private final int             accessFlags;
-    private final List<ClassAccessFlag> classAccessFlags = new ArrayList<ClassAccessFlag>(2);
+    private volatile List<ClassAccessFlag> classAccessFlags;
     private final ConstantClass thisClass;
     private final ConstantClass   superClass;
     private final ConstantClass[] interfaces;
     private final FieldInfo[]     fields;
     private final MethodInfo[]    methods;
+    private final MemberTable     fieldTable;
+    private final MemberTable     methodTable;
+    private MemberIndex<MethodInfo> methodIndex;
+    private MemberIndex<FieldInfo> fieldIndex;
     private final Attributes attributes;
+    private final ParseOptions    parseOptions;
+    private final int             length;
+    private final ByteBuffer      classBytes;
     private String                thisSignature;
     private String                superSignature;
     private ClassSignature        classSignature;
@@ -68,81 +84,386 @@ public class ClassFile implements TypeVariableResolver {
      *             if this input stream reaches the end before reading the class file.
      */
     public ClassFile( InputStream stream ) throws IOException {
-        this.input = new DataInputStream( stream );
-        int magic = input.readInt();
-        if( magic != 0xCAFEBABE ) {
-            throw new IOException( "Invalid class magic: " + Integer.toHexString( magic ) );
-        }
-        minorVersion = input.readUnsignedShort();
-        majorVersion = input.readUnsignedShort();
+        this( stream, ParseOptions.DEFAULT );
+    }
+
+    /**
+     * Load a class file and create a model of the class.
+     *
+     * @param stream
+     *            The InputStream of the class file. Will be closed if finish.
+     * @param options
+     *            the options controlling how much of the class file is decoded
+     * @throws IOException
+     *             if this input stream reaches the end before reading the class file.
+     */
+    public ClassFile( InputStream stream, ParseOptions options ) throws IOException {
+        this( ByteBuffer.wrap( readFully( stream ) ), options );
+    }
 
-        constantPool = new ConstantPool(majorVersion, minorVersion, input );
-        accessFlags = input.readUnsignedShort();
+    /**
+     * Create a model of the class from a byte array. The array is shared, not copied, and must not be modified afterwards.
+     *
+     * @param data
+     *            the bytes of the class file
+     * @throws IOException
+     *             if the array ends before the end of the class file.
+     */
+    public ClassFile( byte[] data ) throws IOException {
+        this( data, 0, data.length );
+    }
 
-        for(ClassAccessFlag classAccessFlag : ClassAccessFlag.values()) {
-            if((classAccessFlag.getMask() & accessFlags) == classAccessFlag.getMask()) {
-                classAccessFlags.add(classAccessFlag);
+    /**
+     * Create a model of the class from a byte array. The array is shared, not copied, and must not be modified afterwards.
+     *
+     * @param data
+     *            the bytes of the class file
+     * @param options
+     *            the options controlling how much of the class file is decoded
+     * @throws IOException
+     *             if the array ends before the end of the class file.
+     */
+    public ClassFile( byte[] data, ParseOptions options ) throws IOException {
+        this( ByteBuffer.wrap( data ), options );
+    }
+
+    /**
+     * Create a model of the class from a region of a byte array. The array is shared, not copied, and must not be modified afterwards.
+     *
+     * @param data
+     *            the array containing the class file
+     * @param offset
+     *            the offset of the class file in the array
+     * @param length
+     *            the length of the class file
+     * @throws IOException
+     *             if the region ends before the end of the class file.
+     */
+    public ClassFile( byte[] data, int offset, int length ) throws IOException {
+        this( ByteBuffer.wrap( data, offset, length ) );
+    }
+
+    /**
+     * Create a model of the class from the remaining bytes of a heap or direct buffer.
+     * The buffer content is shared, not copied, and the position of the buffer is not modified.
+     *
+     * @param buffer
+     *            the class file bytes between position and limit
+     * @throws IOException
+     *             if the buffer ends before the end of the class file.
+     */
+    public ClassFile( ByteBuffer buffer ) throws IOException {
+        this( buffer, ParseOptions.DEFAULT );
+    }
+
+    /**
+     * Create a model of the class from the remaining bytes of a heap or direct buffer.
+     * The buffer content is shared, not copied, and the position of the buffer is not modified.
+     *
+     * @param buffer
+     *            the class file bytes between position and limit
+     * @param options
+     *            the options controlling how much of the class file is decoded
+     * @throws IOException
+     *             if the buffer ends before the end of the class file.
+     */
+    public ClassFile( ByteBuffer buffer, ParseOptions options ) throws IOException {
+        this( buffer, options, null );
+    }
+
+    /**
+     * Create a model of the class, taking the positions of the constant pool entries and, with compact members, of
+     * the members from a layout instead of walking them.
+     *
+     * @param layout
+     *            the layout taken from the same class bytes or null to read the whole class
+     */
+    ClassFile( ByteBuffer buffer, ParseOptions options, ClassFileLayout layout ) throws IOException {
+        this.parseOptions = options;
+        final ByteBuffer input = buffer.slice();
+        input.order( ByteOrder.BIG_ENDIAN );
+        classBytes = input.asReadOnlyBuffer();
+        try {
+            int magic = input.getInt();
+            if( magic != 0xCAFEBABE ) {
+                throw new IOException( "Invalid class magic: " + Integer.toHexString( magic ) );
             }
+            minorVersion = input.getShort() & 0xFFFF;
+            majorVersion = input.getShort() & 0xFFFF;
+
+            if( layout == null ) {
+                constantPool = new ConstantPool(majorVersion, minorVersion, input, options );
+            } else {
+                constantPool = layout.createConstantPool( majorVersion, minorVersion, input, options );
+                input.position( layout.getPoolEnd() );
+            }
+            accessFlags = input.getShort() & 0xFFFF;
+
+            thisClass = (ConstantClass)constantPool.get( input.getShort() & 0xFFFF );
+            superClass = (ConstantClass)constantPool.get( input.getShort() & 0xFFFF );
+            interfaces = new ConstantClass[input.getShort() & 0xFFFF];
+            for( int i = 0; i < interfaces.length; i++ ) {
+                interfaces[i] = (ConstantClass)constantPool.get( input.getShort() & 0xFFFF );
+            }
+            if( options.getLevel() == ParseOptions.Level.HEADER_ONLY ) {
+                fields = options.isCompactMembers() ? null : NO_FIELDS;
+                methods = options.isCompactMembers() ? null : NO_METHODS;
+                fieldTable = options.isCompactMembers() ? MemberTable.empty( constantPool ) : null;
+                methodTable = fieldTable;
+                attributes = new Attributes( constantPool );
+            } else {
+                if( options.isCompactMembers() ) {
+                    fields = null;
+                    methods = null;
+                    if( layout == null ) {
+                        fieldTable = MemberTable.read( input, constantPool );
+                        methodTable = MemberTable.read( input, constantPool );
+                    } else {
+                        fieldTable = layout.createFieldTable( input, constantPool );
+                        methodTable = layout.createMethodTable( input, constantPool );
+                        input.position( layout.getAttributesOffset() );
+                    }
+                } else {
+                    fields = readFields( input );
+                    methods = readMethods( input );
+                    fieldTable = null;
+                    methodTable = null;
+                }
+                attributes = new Attributes( input, constantPool, options );
+            }
+            length = input.position();
+
+            AttributeInfo info = attributes.get( AttributeName.SIGNATURE );
+            if( info != null ) {
+                int idx = info.getUnsignedShort( 0 );
+                String signature = (String)constantPool.get( idx );
+                int count = 0;
+                for( int i = 0; i < signature.length(); i++ ) {
+                    char ch = signature.charAt( i );
+                    switch( ch ) {
+                        case '<':
+                            count++;
+                            continue;
+                        case '>':
+                            count--;
+                            continue;
+                    }
+                    if( count == 0 ) {
+                        thisSignature = signature.substring( 0, i );
+                        superSignature = signature.substring( i );
+                        break;
+                    }
+                }
+                classSignature = new ClassSignature(signature);
+            }
+            AttributeInfo nestHostInfo = attributes.get(AttributeName.NEST_HOST);
+            if(nestHostInfo != null) {
+                nestHost = new NestHost(nestHostInfo.getDataInputStream(), constantPool);
+            }
+            AttributeInfo nestMembersInfo = attributes.get(AttributeName.NEST_MEMBERS);
+            if(nestMembersInfo != null) {
+                nestMembers = new NestMembers(nestMembersInfo.getDataInputStream(), constantPool);
+            }
+            AttributeInfo innerClassesInfo = attributes.get(AttributeName.INNER_CLASSES);
+            if(innerClassesInfo != null) {
+                innerClasses = new InnerClasses(innerClassesInfo.getDataInputStream(), constantPool);
+            }
+            AttributeInfo enclosingMethodInfo = attributes.get(AttributeName.ENCLOSING_METHOD);
+            if(enclosingMethodInfo != null) {
+                enclosingMethod = new EnclosingMethod(enclosingMethodInfo.getDataInputStream(), constantPool);
+            }
+            AttributeInfo bootstrapMethodsInfo = attributes.get(AttributeName.BOOTSTRAP_METHODS);
+            if(bootstrapMethodsInfo != null) {
+            	bootstrapMethods = new BootstrapMethods(bootstrapMethodsInfo.getDataInputStream(), constantPool);
+            }
+            AttributeInfo runtimeVisibleAnnotationsInfo = attributes.get(AttributeName.RUNTIME_VISIBLE_ANNOTATIONS);
+            if(runtimeVisibleAnnotationsInfo != null) {
+                runtimeVisibleAnnotations = new RuntimeVisibleAnnotations(constantPool, runtimeVisibleAnnotationsInfo.getDataInputStream());
+            }
+        } catch( BufferUnderflowException e ) {
+            throw new IOException( "Unexpected end of class file", e );
+        } catch( IndexOutOfBoundsException e ) {
+            throw new IOException( "Invalid index in class file", e );
+        } catch( UncheckedIOException e ) {
+            //a constant of the lazy pool could not be decoded
+            throw e.getCause();
+        } catch( ClassCastException e ) {
+            throw new IOException( "Constant pool entry of unexpected type", e );
         }
+    }
+
+    /**
+     * Create a model of the class from a memory-mapped region of a file.
+     *
+     * @param channel
+     *            the channel of the file containing the class file
+     * @param position
+     *            the position of the class file in the file
+     * @param size
+     *            the size of the class file
+     * @return the parsed class file
+     * @throws IOException
+     *             if the region can not be mapped or ends before the end of the class file.
+     */
+    public static ClassFile map( FileChannel channel, long position, long size ) throws IOException {
+        return map( channel, position, size, ParseOptions.DEFAULT );
+    }
+
+    /**
+     * Create a model of the class from a memory-mapped region of a file.
+     *
+     * @param channel
+     *            the channel of the file containing the class file
+     * @param position
+     *            the position of the class file in the file
+     * @param size
+     *            the size of the class file
+     * @param options
+     *            the options controlling how much of the class file is decoded
+     * @return the parsed class file
+     * @throws IOException
+     *             if the region can not be mapped or ends before the end of the class file.
+     */
+    public static ClassFile map( FileChannel channel, long position, long size, ParseOptions options ) throws IOException {
+        return new ClassFile( channel.map( FileChannel.MapMode.READ_ONLY, position, size ), options );
+    }
+
+    /**
+     * Stream the structures of a class file to a visitor in a single pass without building a model.
+     * The constant pool is decoded lazily.
+     *
+     * @param buffer
+     *            the class file bytes between position and limit, the position is not modified
+     * @param visitor
+     *            the visitor receiving the callbacks
+     * @throws IOException
+     *             if the buffer is not a valid class file or the visitor aborts
+     */
+    public static void accept( ByteBuffer buffer, ClassVisitor visitor ) throws IOException {
+        accept( buffer, visitor, ParseOptions.DEFAULT.withLazyConstantPool( true ) );
+    }
+
+    /**
+     * Stream the structures of a class file to a visitor in a single pass without building a model.
+     * Nothing is allocated for fields and methods whose attributes the visitor does not request, and attributes
+     * skipped by the options are passed over without being decoded.
+     *
+     * @param buffer
+     *            the class file bytes between position and limit, the position is not modified
+     * @param visitor
+     *            the visitor receiving the callbacks
+     * @param options
+     *            the options controlling the constant pool and which attributes are visited
+     * @throws IOException
+     *             if the buffer is not a valid class file or the visitor aborts
+     */
+    public static void accept( ByteBuffer buffer, ClassVisitor visitor, ParseOptions options ) throws IOException {
+        new ClassFileReader( options ).accept( buffer, visitor );
+    }
 
-        thisClass = (ConstantClass)constantPool.get( input.readUnsignedShort() );
-        superClass = (ConstantClass)constantPool.get( input.readUnsignedShort() );
-        interfaces = new ConstantClass[input.readUnsignedShort()];
-        for( int i = 0; i < interfaces.length; i++ ) {
-            interfaces[i] = (ConstantClass)constantPool.get( input.readUnsignedShort() );
-        }
-        fields = readFields();
-        methods = readMethods();
-        attributes = new Attributes( input, constantPool );
-
-        stream.close();
-
-        AttributeInfo info = attributes.get( "Signature" );
-        if( info != null ) {
-            int idx = info.getDataInputStream().readShort();
-            String signature = (String)constantPool.get( idx );
-            int count = 0;
-            for( int i = 0; i < signature.length(); i++ ) {
-                char ch = signature.charAt( i );
-                switch( ch ) {
-                    case '<':
-                        count++;
-                        continue;
-                    case '>':
-                        count--;
-                        continue;
+    /**
+     * Visit the remainder of a class file whose constant pool has already been read.
+     */
+    static void accept( ByteBuffer input, int minorVersion, int majorVersion, ConstantPool constantPool, ClassVisitor visitor, ParseOptions options ) throws IOException {
+        int accessFlags = input.getShort() & 0xFFFF;
+        int thisClassIndex = input.getShort() & 0xFFFF;
+        int superClassIndex = input.getShort() & 0xFFFF;
+        if( visitor.visitHeader( minorVersion, majorVersion, constantPool, accessFlags, thisClassIndex, superClassIndex ) ) {
+            int interfaceCount = input.getShort() & 0xFFFF;
+            for( int i = 0; i < interfaceCount; i++ ) {
+                visitor.visitInterface( input.getShort() & 0xFFFF );
+            }
+            if( options.getLevel() != ParseOptions.Level.HEADER_ONLY ) {
+                int fieldCount = input.getShort() & 0xFFFF;
+                for( int i = 0; i < fieldCount; i++ ) {
+                    if( visitor.visitField( input.getShort() & 0xFFFF, input.getShort() & 0xFFFF, input.getShort() & 0xFFFF ) ) {
+                        visitAttributes( input, constantPool, visitor, options );
+                        visitor.visitFieldEnd();
+                    } else {
+                        skipAttributes( input );
+                    }
                 }
-                if( count == 0 ) {
-                    thisSignature = signature.substring( 0, i );
-                    superSignature = signature.substring( i );
-                    break;
+                int methodCount = input.getShort() & 0xFFFF;
+                for( int i = 0; i < methodCount; i++ ) {
+                    if( visitor.visitMethod( input.getShort() & 0xFFFF, input.getShort() & 0xFFFF, input.getShort() & 0xFFFF ) ) {
+                        visitAttributes( input, constantPool, visitor, options );
+                        visitor.visitMethodEnd();
+                    } else {
+                        skipAttributes( input );
+                    }
                 }
+                visitAttributes( input, constantPool, visitor, options );
             }
-            classSignature = new ClassSignature(signature);
         }
-        AttributeInfo nestHostInfo = attributes.get("NestHost");
-        if(nestHostInfo != null) {
-            nestHost = new NestHost(nestHostInfo.getDataInputStream(), constantPool);
+        visitor.visitEnd();
+    }
+
+    private static void visitAttributes( ByteBuffer input, ConstantPool constantPool, ClassVisitor visitor, ParseOptions options ) throws IOException {
+        if( !options.retainsAttributes() ) {
+            skipAttributes( input );
+            return;
         }
-        AttributeInfo nestMembersInfo = attributes.get("NestMembers");
-        if(nestMembersInfo != null) {
-            nestMembers = new NestMembers(nestMembersInfo.getDataInputStream(), constantPool);
+        int count = input.getShort() & 0xFFFF;
+        for( int i = 0; i < count; i++ ) {
+            int nameIndex = input.getShort() & 0xFFFF;
+            AttributeName name = Attributes.getAttributeName( constantPool, nameIndex );
+            int length = input.getInt();
+            int offset = input.position();
+            if( length < 0 || length > input.remaining() ) {
+                throw new IOException( "Attribute has invalid length " + length );
+            }
+            if( options.isAttributeRetained( name ) ) {
+                if( name == AttributeName.CODE ) {
+                    visitCode( input, constantPool, visitor, options );
+                } else {
+                    visitor.visitAttribute( name != null ? name.getName() : (String)constantPool.get( nameIndex ), input, offset, length );
+                }
+            }
+            input.position( offset + length );
+        }
+    }
+
+    private static void visitCode( ByteBuffer input, ConstantPool constantPool, ClassVisitor visitor, ParseOptions options ) throws IOException {
+        int maxStack = input.getShort() & 0xFFFF;
+        int maxLocals = input.getShort() & 0xFFFF;
+        int codeLength = input.getInt();
+        int codeOffset = input.position();
+        if( codeLength < 0 || codeLength > input.remaining() ) {
+            throw new IOException( "Invalid code length: " + codeLength );
         }
-        AttributeInfo innerClassesInfo = attributes.get("InnerClasses");
-        if(innerClassesInfo != null) {
-            innerClasses = new InnerClasses(innerClassesInfo.getDataInputStream(), constantPool);
+        if( !visitor.visitCode( maxStack, maxLocals, input, codeOffset, codeLength ) ) {
+            return;
         }
-        AttributeInfo enclosingMethodInfo = attributes.get("EnclosingMethod");
-        if(enclosingMethodInfo != null) {
-            enclosingMethod = new EnclosingMethod(enclosingMethodInfo.getDataInputStream(), constantPool);
+        input.position( codeOffset + codeLength );
+        int exceptionCount = input.getShort() & 0xFFFF;
+        for( int i = 0; i < exceptionCount; i++ ) {
+            visitor.visitTryCatch( input.getShort() & 0xFFFF, input.getShort() & 0xFFFF, input.getShort() & 0xFFFF, input.getShort() & 0xFFFF );
         }
-        AttributeInfo bootstrapMethodsInfo = attributes.get("BootstrapMethods");
-        if(bootstrapMethodsInfo != null) {
-        	bootstrapMethods = new BootstrapMethods(bootstrapMethodsInfo.getDataInputStream(), constantPool);
+        visitAttributes( input, constantPool, visitor, options );
+    }
+
+    private static void skipAttributes( ByteBuffer input ) throws IOException {
+        int count = input.getShort() & 0xFFFF;
+        for( int i = 0; i < count; i++ ) {
+            int length = input.getInt( input.position() + 2 );
+            if( length < 0 || length > input.remaining() - 6 ) {
+                throw new IOException( "Attribute has invalid length " + length );
+            }
+            input.position( input.position() + 6 + length );
         }
-        AttributeInfo runtimeVisibleAnnotationsInfo = attributes.get("RuntimeVisibleAnnotations");
-        if(runtimeVisibleAnnotationsInfo != null) {
-            runtimeVisibleAnnotations = new RuntimeVisibleAnnotations(constantPool, runtimeVisibleAnnotationsInfo.getDataInputStream());
+    }
+
+    private static byte[] readFully( InputStream stream ) throws IOException {
+        try {
+            final ByteArrayOutputStream result = new ByteArrayOutputStream( Math.max( stream.available(), 4096 ) );
+            final byte[] buffer = new byte[8192];
+            int read;
+            while( (read = stream.read( buffer )) >= 0 ) {
+                result.write( buffer, 0, read );
+            }
+            return result.toByteArray();
+        } finally {
+            stream.close();
         }
     }
 
@@ -157,10 +478,47 @@ public class ClassFile implements TypeVariableResolver {
         return attributes.getSourceFile();
     }
 
+    /**
+     * The number of bytes of the class file that were read, which is the whole class file unless it was parsed
+     * with {@link ParseOptions.Level#HEADER_ONLY}.
+     *
+     * @return the length in bytes
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * The bytes the class was parsed from. They are shared, not copied, so they must not be changed while the
+     * class is in use.
+     *
+     * @return a read only buffer of the class file between position and limit
+     */
+    public ByteBuffer getClassBytes() {
+        return classBytes.duplicate();
+    }
+
+    public int getMinorVersion() {
+        return minorVersion;
+    }
+
+    public int getMajorVersion() {
+        return majorVersion;
+    }
+
     public ConstantPool getConstantPool() {
         return constantPool;
     }
 
+    /**
+     * The options the class file was parsed with. Attributes skipped by the options are reported as absent.
+     *
+     * @return the parse options
+     */
+    public ParseOptions getParseOptions() {
+        return parseOptions;
+    }
+
     public ConstantClass getThisClass() {
         return thisClass;
     }
@@ -173,94 +531,241 @@ public class ClassFile implements TypeVariableResolver {
         return interfaces;
     }
 
+    /**
+     * Get the methods of the class. For classes parsed with compact members a new array of new views is created
+     * on every call, so the same method is a different instance on each call and state cached by a view, such as
+     * its code and signature, is not shared with the next view.
+     *
+     * @return the methods
+     */
     public MethodInfo[] getMethods() {
-        return methods;
+        if( methods != null ) {
+            return methods;
+        }
+        final MethodInfo[] result = new MethodInfo[methodTable.size()];
+        for( int i = 0; i < result.length; i++ ) {
+            result[i] = getMethod( i );
+        }
+        return result;
     }
 
-	public BootstrapMethods getBootstrapMethods() {
-		return bootstrapMethods;
-	}
+    /**
+     * The compact storage of the methods.
+     *
+     * @return the method table or null if the class was not parsed with compact members
+     */
+    public MemberTable getMethodTable() {
+        return methodTable;
+    }
+
+    private int getMethodCount() {
+        return methods != null ? methods.length : methodTable.size();
+    }
 
-	public List<MethodInfo> getClassInitialisationMethods() {
-        final List<MethodInfo> results = new ArrayList<MethodInfo>(2);
-        for( MethodInfo method : methods ) {
-            if( method.getName().equals("<clinit>")) {
-                results.add(method);
+    /**
+     * The hash index over the methods, built on first use. Racing threads may each build an index, all of them
+     * are equal.
+     */
+    private MemberIndex<MethodInfo> getMethodIndex() {
+        MemberIndex<MethodInfo> index = methodIndex;
+        if( index == null ) {
+            final int count = getMethodCount();
+            final String[] names = new String[count];
+            final String[] descriptors = new String[count];
+            final int[] flags = new int[count];
+            for( int i = 0; i < count; i++ ) {
+                if( methods != null ) {
+                    names[i] = methods[i].getName();
+                    descriptors[i] = methods[i].getType();
+                    flags[i] = methods[i].getAccessFlags();
+                } else {
+                    names[i] = methodTable.getName( i );
+                    descriptors[i] = methodTable.getDescriptor( i );
+                    flags[i] = methodTable.getAccessFlags( i );
+                }
             }
+            index = new MemberIndex<MethodInfo>( names, descriptors, flags, true, new IntFunction<MethodInfo>() {
+                @Override
+                public MethodInfo apply( int i ) {
+                    return getMethod( i );
+                }
+            } );
+            methodIndex = index;
         }
-        return results;
+        return index;
     }
 
-    public List<MethodInfo> getConstructorMethods() {
-        final List<MethodInfo> results = new ArrayList<MethodInfo>(2);
-        for( MethodInfo method : methods ) {
-            if( method.getName().equals("<init>")) {
-                results.add(method);
+    /**
+     * The hash index over the fields, built on first use.
+     */
+    private MemberIndex<FieldInfo> getFieldIndex() {
+        MemberIndex<FieldInfo> index = fieldIndex;
+        if( index == null ) {
+            final int count = fields != null ? fields.length : fieldTable.size();
+            final String[] names = new String[count];
+            final String[] descriptors = new String[count];
+            final int[] flags = new int[count];
+            for( int i = 0; i < count; i++ ) {
+                if( fields != null ) {
+                    names[i] = fields[i].getName();
+                    descriptors[i] = fields[i].getType();
+                    flags[i] = fields[i].getAccessFlags();
+                } else {
+                    names[i] = fieldTable.getName( i );
+                    descriptors[i] = fieldTable.getDescriptor( i );
+                    flags[i] = fieldTable.getAccessFlags( i );
+                }
             }
+            index = new MemberIndex<FieldInfo>( names, descriptors, flags, false, new IntFunction<FieldInfo>() {
+                @Override
+                public FieldInfo apply( int i ) {
+                    return getField( i );
+                }
+            } );
+            fieldIndex = index;
         }
-        return results;
+        return index;
     }
 
-    public List<MethodInfo> getNonInitMethods()
-    {
-        final List<MethodInfo> results = new ArrayList<MethodInfo>(2);
-        for( MethodInfo method : methods ) {
-            if( method.getName().equals("<init>")) {
-                continue;
-            }
-            if( method.getName().equals("<clinit>")) {
-                continue;
-            }
-            results.add(method);
+    private MethodInfo getMethod( int index ) {
+        if( methods != null ) {
+            return methods[index];
+        }
+        try {
+            return new MethodInfo( methodTable.getInput( index ), constantPool, this, parseOptions );
+        } catch( IOException e ) {
+            //MemberTable.read checked the attribute lengths and all names, a view can not fail to read
+            throw new IllegalStateException( e );
         }
-        return results;
+    }
+
+	public BootstrapMethods getBootstrapMethods() {
+		return bootstrapMethods;
+	}
+
+    /*
+     * The method lookups below return unmodifiable views in declaration order that are cached by the class, for
+     * classes parsed with compact members every get() on a view creates a new MethodInfo view, so it returns a
+     * different instance on each call.
+     */
+
+    public List<MethodInfo> getClassInitialisationMethods() {
+        return getMethodIndex().get( MemberIndex.CLINIT );
+    }
+
+    public List<MethodInfo> getConstructorMethods() {
+        return getMethodIndex().get( MemberIndex.INIT );
+    }
+
+    public List<MethodInfo> getNonInitMethods() {
+        return getMethodIndex().get( MemberIndex.NON_INIT );
+    }
+
+    /**
+     * Get the bridge methods generated by the compiler for covariant returns and generics.
+     *
+     * @return the methods flagged ACC_BRIDGE
+     */
+    public List<MethodInfo> getBridgeMethods() {
+        return getMethodIndex().get( MemberIndex.BRIDGE );
+    }
+
+    /**
+     * Get the methods generated by the compiler, including bridge methods and lambda bodies.
+     *
+     * @return the methods flagged ACC_SYNTHETIC
+     */
+    public List<MethodInfo> getSyntheticMethods() {
+        return getMethodIndex().get( MemberIndex.SYNTHETIC );
     }
 
     public List<MethodInfo> getMethod(String name) {
-        final List<MethodInfo> results = new ArrayList<MethodInfo>(2);
-        for( MethodInfo method : methods ) {
-            if( name.equals( method.getName() ) ) {
-                results.add(method);
-            }
-        }
-        return results;
+        return getMethodIndex().get( name );
+    }
+
+    /**
+     * Find a method by name and descriptor.
+     *
+     * @param name the method name
+     * @param descriptor the method descriptor, e.g. (I)Ljava/lang/String;
+     * @return the method or null if the class does not declare it
+     */
+    public MethodInfo getMethod( String name, String descriptor ) {
+        final int index = getMethodIndex().find( name, descriptor );
+        return index < 0 ? null : getMethod( index );
     }
 
     public MethodInfo getMethod(ConstantNameAndType constantNameAndType) throws IOException {
-        for( MethodInfo method : methods ) {
-            if(method.matches(constantNameAndType)) {
-                return method;
+        final MethodInfo method = getMethod( constantNameAndType.getName(), constantNameAndType.getType() );
+        if( method != null ) {
+            return method;
+        }
+        for( MethodInfo candidate : getMethod( constantNameAndType.getName() ) ) {
+            if( candidate.matches( constantNameAndType ) ) {
+                return candidate;
             }
         }
         return null;
     }
 
     public int getMethodCount( String name ) {
-        int count = 0;
-        for( MethodInfo method : methods ) {
-            if( name.equals( method.getName() ) ) {
-                count++;
-            }
-        }
-        return count;
+        return getMethodIndex().count( name );
     }
 
     public FieldInfo getField( String name ) {
-        for( FieldInfo field : fields ) {
-            if( name.equals( field.getName() ) ) {
-                return field;
-            }
-        }
-        return null;
+        final int index = getFieldIndex().find( name );
+        return index < 0 ? null : getField( index );
     }
 
     /**
-     * Get the fields of the class.
+     * Find a field by name and descriptor. A class file may declare fields of the same name with different types.
+     *
+     * @param name the field name
+     * @param descriptor the field descriptor, e.g. Ljava/lang/String;
+     * @return the field or null if the class does not declare it
+     */
+    public FieldInfo getField( String name, String descriptor ) {
+        final int index = getFieldIndex().find( name, descriptor );
+        return index < 0 ? null : getField( index );
+    }
+
+    /**
+     * Get the fields of the class. For classes parsed with compact members a new array of new views is created
+     * on every call, so the same field is a different instance on each call and state cached by a view, such as
+     * its constant value and signature, is not shared with the next view.
      * 
      * @return the fields
      */
     public FieldInfo[] getFields() {
-        return fields;
+        if( fields != null ) {
+            return fields;
+        }
+        final FieldInfo[] result = new FieldInfo[fieldTable.size()];
+        for( int i = 0; i < result.length; i++ ) {
+            result[i] = getField( i );
+        }
+        return result;
+    }
+
+    /**
+     * The compact storage of the fields.
+     *
+     * @return the field table or null if the class was not parsed with compact members
+     */
+    public MemberTable getFieldTable() {
+        return fieldTable;
+    }
+
+    private FieldInfo getField( int index ) {
+        if( fields != null ) {
+            return fields[index];
+        }
+        try {
+            return new FieldInfo( fieldTable.getInput( index ), constantPool, parseOptions );
+        } catch( IOException e ) {
+            //MemberTable.read checked the attribute lengths and all names, a view can not fail to read
+            throw new IllegalStateException( e );
+        }
     }
 
     /**
@@ -275,24 +780,35 @@ public class ClassFile implements TypeVariableResolver {
 
     /**
      * Returns access flags as list of enums
-     * @return
+     * @return An unmodifiable list, shared by all callers
      */
     public List<ClassAccessFlag> getClassAccessFlags() {
-        return classAccessFlags;
+        List<ClassAccessFlag> flags = classAccessFlags;
+        if( flags == null ) {
+            final List<ClassAccessFlag> result = new ArrayList<ClassAccessFlag>(2);
+            for(ClassAccessFlag flag : ClassAccessFlag.values()) {
+                if((flag.getMask() & accessFlags) == flag.getMask()) {
+                    result.add(flag);
+                }
+            }
+            flags = Collections.unmodifiableList( result );
+            classAccessFlags = flags;
+        }
+        return flags;
     }
 
-    private FieldInfo[] readFields() throws IOException {
-        FieldInfo[] fields = new FieldInfo[input.readUnsignedShort()];
+    private FieldInfo[] readFields( ByteBuffer input ) throws IOException {
+        FieldInfo[] fields = new FieldInfo[input.getShort() & 0xFFFF];
         for( int i = 0; i < fields.length; i++ ) {
-            fields[i] = new FieldInfo( input, constantPool );
+            fields[i] = new FieldInfo( input, constantPool, parseOptions );
         }
         return fields;
     }
 
-    private MethodInfo[] readMethods() throws IOException {
-        MethodInfo[] methods = new MethodInfo[input.readUnsignedShort()];
+    private MethodInfo[] readMethods( ByteBuffer input ) throws IOException {
+        MethodInfo[] methods = new MethodInfo[input.getShort() & 0xFFFF];
         for( int i = 0; i < methods.length; i++ ) {
-            methods[i] = new MethodInfo( input, constantPool, this );
+            methods[i] = new MethodInfo( input, constantPool, this, parseOptions );
         }
         return methods;
     }
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java;
+
+import com.viridiansoftware.java.constants.ConstantPool;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * The positions of the structures of a class file: the tag and offset of every constant pool entry, the fields and
+ * methods as the arrays of a {@link MemberTable} and the offset of the class attributes.
+ *
+ * A layout is taken once from the bytes of a class and stored next to them, e.g. by
+ * {@link com.viridiansoftware.java.store.ClassFileDiskCache}. {@link #createClassFile(ByteBuffer, ParseOptions)} then
+ * creates the class again without walking its constant pool and, with compact members, without walking and checking
+ * its members. Only the header and the class attributes are read again.
+ */
+public final class ClassFileLayout {
+	private static final ParseOptions OPTIONS = ParseOptions.DEFAULT.withLazyConstantPool(true);
+
+	private final int poolEnd;
+	private final int attributesOffset;
+	private final byte[] tags;
+	private final int[] offsets;
+	private final Members fields;
+	private final Members methods;
+
+	private ClassFileLayout(int poolEnd, int attributesOffset, byte[] tags, int[] offsets, Members fields, Members methods) {
+		this.poolEnd = poolEnd;
+		this.attributesOffset = attributesOffset;
+		this.tags = tags;
+		this.offsets = offsets;
+		this.fields = fields;
+		this.methods = methods;
+	}
+
+	/**
+	 * Takes the layout of a class, checking its constant pool and members like a parse with compact members
+	 * @param classBytes The class file bytes between position and limit, the position is not changed
+	 * @return The layout
+	 * @throws IOException if the bytes are not a valid class file
+	 */
+	public static ClassFileLayout of(ByteBuffer classBytes) throws IOException {
+		final ByteBuffer input = classBytes.slice();
+		try {
+			final int magic = input.getInt();
+			if (magic != 0xCAFEBABE) {
+				throw new IOException("Invalid class magic: " + Integer.toHexString(magic));
+			}
+			final int minorVersion = input.getShort() & 0xFFFF;
+			final int majorVersion = input.getShort() & 0xFFFF;
+			final ConstantPool constantPool = new ConstantPool(majorVersion, minorVersion, input, OPTIONS);
+			final int poolEnd = input.position();
+			//access_flags, this_class and super_class
+			input.position(poolEnd + 6);
+			final int interfaces = input.getShort() & 0xFFFF;
+			input.position(input.position() + 2 * interfaces);
+			final MemberTable fieldTable = MemberTable.read(input, constantPool);
+			final MemberTable methodTable = MemberTable.read(input, constantPool);
+			final byte[] tags = new byte[constantPool.length()];
+			final int[] offsets = new int[tags.length];
+			for (int i = 1; i < tags.length; i++) {
+				tags[i] = (byte) constantPool.getTag(i);
+				offsets[i] = constantPool.getOffset(i);
+			}
+			return new ClassFileLayout(poolEnd, input.position(), tags, offsets, new Members(fieldTable), new Members(methodTable));
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new IOException("Unexpected end of class file", e);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Reads a layout written by {@link #write(ByteBuffer)}
+	 * @param input The buffer positioned at the layout, moved past it
+	 * @return The layout
+	 * @throws IOException if the layout is truncated or its counts are invalid
+	 */
+	public static ClassFileLayout read(ByteBuffer input) throws IOException {
+		try {
+			final int poolEnd = input.getInt();
+			final int attributesOffset = input.getInt();
+			final int count = input.getInt();
+			if (poolEnd < 0 || attributesOffset < poolEnd || count < 0 || count > input.remaining() / 5) {
+				throw new IOException("Invalid class file layout");
+			}
+			final byte[] tags = new byte[count];
+			input.get(tags);
+			final int[] offsets = readInts(input, count);
+			final Members fields = Members.read(input);
+			final Members methods = Members.read(input);
+			return new ClassFileLayout(poolEnd, attributesOffset, tags, offsets, fields, methods);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated class file layout", e);
+		}
+	}
+
+	/**
+	 * @return The number of bytes written by {@link #write(ByteBuffer)}
+	 */
+	public int getSize() {
+		return 12 + tags.length * 5 + fields.getSize() + methods.getSize();
+	}
+
+	/**
+	 * @param output The buffer the layout is written to at its position
+	 */
+	public void write(ByteBuffer output) {
+		output.putInt(poolEnd);
+		output.putInt(attributesOffset);
+		output.putInt(tags.length);
+		output.put(tags);
+		writeInts(output, offsets);
+		fields.write(output);
+		methods.write(output);
+	}
+
+	/**
+	 * Creates a model of the class the layout was taken from
+	 * @param classBytes The class file bytes between position and limit, which must be the bytes the layout was
+	 * taken from. The buffer content is shared, not copied, and the position of the buffer is not modified.
+	 * @param options The options controlling how much of the class file is decoded
+	 * @return The class
+	 * @throws IOException if the class file does not match the layout
+	 */
+	public ClassFile createClassFile(ByteBuffer classBytes, ParseOptions options) throws IOException {
+		if (attributesOffset > classBytes.remaining()) {
+			throw new IOException("The class file layout does not match the class file");
+		}
+		return new ClassFile(classBytes, options, this);
+	}
+
+	int getPoolEnd() {
+		return poolEnd;
+	}
+
+	int getAttributesOffset() {
+		return attributesOffset;
+	}
+
+	ConstantPool createConstantPool(int majorVersion, int minorVersion, ByteBuffer input, ParseOptions options) throws IOException {
+		return new ConstantPool(majorVersion, minorVersion, input, options, tags, offsets);
+	}
+
+	MemberTable createFieldTable(ByteBuffer input, ConstantPool constantPool) {
+		return fields.createTable(input, constantPool);
+	}
+
+	MemberTable createMethodTable(ByteBuffer input, ConstantPool constantPool) {
+		return methods.createTable(input, constantPool);
+	}
+
+	private static int[] readInts(ByteBuffer input, int count) {
+		final int[] values = new int[count];
+		input.asIntBuffer().get(values);
+		input.position(input.position() + count * 4);
+		return values;
+	}
+
+	private static void writeInts(ByteBuffer output, int[] values) {
+		output.asIntBuffer().put(values);
+		output.position(output.position() + values.length * 4);
+	}
+
+	/**
+	 * The arrays of a {@link MemberTable}
+	 */
+	private static final class Members {
+		private final short[] accessFlags;
+		private final int[] nameIndices;
+		private final int[] descriptorIndices;
+		private final int[] offsets;
+
+		Members(MemberTable table) {
+			final int count = table.size();
+			accessFlags = new short[count];
+			nameIndices = new int[count];
+			descriptorIndices = new int[count];
+			offsets = new int[count];
+			for (int i = 0; i < count; i++) {
+				accessFlags[i] = (short) table.getAccessFlags(i);
+				nameIndices[i] = table.getNameIndex(i);
+				descriptorIndices[i] = table.getDescriptorIndex(i);
+				offsets[i] = table.getOffset(i);
+			}
+		}
+
+		private Members(short[] accessFlags, int[] nameIndices, int[] descriptorIndices, int[] offsets) {
+			this.accessFlags = accessFlags;
+			this.nameIndices = nameIndices;
+			this.descriptorIndices = descriptorIndices;
+			this.offsets = offsets;
+		}
+
+		static Members read(ByteBuffer input) throws IOException {
+			final int count = input.getInt();
+			if (count < 0 || count > input.remaining() / 14) {
+				throw new IOException("Invalid class file layout");
+			}
+			final short[] accessFlags = new short[count];
+			input.asShortBuffer().get(accessFlags);
+			input.position(input.position() + count * 2);
+			return new Members(accessFlags, readInts(input, count), readInts(input, count), readInts(input, count));
+		}
+
+		int getSize() {
+			return 4 + accessFlags.length * 14;
+		}
+
+		void write(ByteBuffer output) {
+			output.putInt(accessFlags.length);
+			output.asShortBuffer().put(accessFlags);
+			output.position(output.position() + accessFlags.length * 2);
+			writeInts(output, nameIndices);
+			writeInts(output, descriptorIndices);
+			writeInts(output, offsets);
+		}
+
+		MemberTable createTable(ByteBuffer input, ConstantPool constantPool) {
+			return new MemberTable(input, constantPool, accessFlags, nameIndices, descriptorIndices, offsets);
+		}
+	}
+}
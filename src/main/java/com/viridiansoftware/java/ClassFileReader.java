@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java;
+
+import com.viridiansoftware.java.constants.ConstantPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Parses many class files in sequence while reusing its read buffer and constant pool arrays between them,
+ * so that a steady state parse loop allocates close to nothing per class.
+ *
+ * A reader is not thread safe and is meant to be owned by a single worker thread. {@link #accept} streams a class
+ * to a {@link ClassVisitor} using the shared state, which is only valid until the next class is read.
+ * {@link #read} returns an independent {@link ClassFile} that does not refer to the reader.
+ */
+public class ClassFileReader {
+	private static final int INITIAL_BUFFER_SIZE = 8192;
+
+	private final ParseOptions options;
+	private final ConstantPool.Scratch scratch = new ConstantPool.Scratch();
+	private byte[] data;
+	private ByteBuffer dataBuffer;
+
+	/**
+	 * Creates a reader with a lazily decoded constant pool
+	 */
+	public ClassFileReader() {
+		this(ParseOptions.DEFAULT.withLazyConstantPool(true));
+	}
+
+	/**
+	 * @param options The options used for every class read by this reader
+	 */
+	public ClassFileReader(ParseOptions options) {
+		this.options = options;
+	}
+
+	public ParseOptions getParseOptions() {
+		return options;
+	}
+
+	/**
+	 * Streams a class file to a visitor. The {@link ConstantPool} and buffers passed to the visitor are reused for
+	 * the next class read by this reader.
+	 * @param buffer The class file bytes between position and limit, the position is not modified
+	 * @param visitor The visitor receiving the callbacks
+	 * @throws IOException if the buffer is not a valid class file or the visitor aborts
+	 */
+	public void accept(ByteBuffer buffer, ClassVisitor visitor) throws IOException {
+		final ByteBuffer input = buffer.slice();
+		input.order(ByteOrder.BIG_ENDIAN);
+		accept0(input, visitor);
+	}
+
+	/**
+	 * Reads a class file into the reader's buffer and streams it to a visitor.
+	 * The {@link ConstantPool} and buffers passed to the visitor are reused for the next class read by this reader.
+	 * @param stream The InputStream of the class file. Will be closed if finish.
+	 * @param visitor The visitor receiving the callbacks
+	 * @throws IOException if the stream can not be read, is not a valid class file or the visitor aborts
+	 */
+	public void accept(InputStream stream, ClassVisitor visitor) throws IOException {
+		accept0(readFully(stream), visitor);
+	}
+
+	/**
+	 * Creates a model of a class file. The remaining bytes of the buffer are copied so the result stays valid
+	 * when the buffer is reused by the caller.
+	 * @param buffer The class file bytes between position and limit, the position is not modified
+	 * @return The class file
+	 * @throws IOException if the buffer is not a valid class file
+	 */
+	public ClassFile read(ByteBuffer buffer) throws IOException {
+		final byte[] copy = new byte[buffer.remaining()];
+		buffer.duplicate().get(copy);
+		return new ClassFile(copy, options);
+	}
+
+	/**
+	 * Creates a model of a class file. The class file is read into the reader's buffer and copied once at its exact size.
+	 * @param stream The InputStream of the class file. Will be closed if finish.
+	 * @return The class file
+	 * @throws IOException if the stream can not be read or is not a valid class file
+	 */
+	public ClassFile read(InputStream stream) throws IOException {
+		final ByteBuffer input = readFully(stream);
+		final byte[] copy = new byte[input.remaining()];
+		System.arraycopy(data, 0, copy, 0, copy.length);
+		return new ClassFile(copy, options);
+	}
+
+	private void accept0(ByteBuffer input, ClassVisitor visitor) throws IOException {
+		try {
+			final int magic = input.getInt();
+			if (magic != 0xCAFEBABE) {
+				throw new IOException("Invalid class magic: " + Integer.toHexString(magic));
+			}
+			final int minorVersion = input.getShort() & 0xFFFF;
+			final int majorVersion = input.getShort() & 0xFFFF;
+			final ConstantPool constantPool = new ConstantPool(majorVersion, minorVersion, input, options, scratch);
+			ClassFile.accept(input, minorVersion, majorVersion, constantPool, visitor, options);
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new IOException("Unexpected end of class file", e);
+		} catch (UncheckedIOException e) {
+			//a constant of the lazy pool could not be decoded
+			throw e.getCause();
+		} catch (ClassCastException e) {
+			throw new IOException("Constant pool entry of unexpected type", e);
+		}
+	}
+
+	/**
+	 * Reads a stream into the reusable buffer, growing it when required
+	 * @return The reusable buffer limited to the bytes read
+	 */
+	private ByteBuffer readFully(InputStream stream) throws IOException {
+		if (data == null) {
+			data = new byte[INITIAL_BUFFER_SIZE];
+			dataBuffer = ByteBuffer.wrap(data);
+		}
+		try {
+			int total = 0;
+			int read;
+			while ((read = stream.read(data, total, data.length - total)) >= 0) {
+				total += read;
+				if (total == data.length) {
+					final int next = stream.read();
+					if (next < 0) {
+						break;
+					}
+					final byte[] grown = new byte[data.length * 2];
+					System.arraycopy(data, 0, grown, 0, total);
+					grown[total++] = (byte) next;
+					data = grown;
+					dataBuffer = ByteBuffer.wrap(data);
+				}
+			}
+			dataBuffer.clear();
+			dataBuffer.limit(total);
+			return dataBuffer;
+		} finally {
+			stream.close();
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java;
+
+import com.viridiansoftware.java.constants.ConstantPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the structures of a class file in the order they appear in the class file without building a
+ * {@link ClassFile} model. Used with {@link ClassFile#accept(ByteBuffer, ClassVisitor, ParseOptions)}.
+ *
+ * All callbacks do nothing by default. Names, descriptors and classes are passed as constant pool indices that
+ * can be resolved through the {@link ConstantPool} given to {@link #visitHeader}. Buffers are shared with the
+ * parser and must only be read with absolute gets, they are valid only for the duration of the callback unless
+ * the class file bytes are retained by the caller.
+ */
+public abstract class ClassVisitor {
+
+	/**
+	 * Called once with the class header before any other callback
+	 * @param minorVersion The minor version of the class file
+	 * @param majorVersion The major version of the class file
+	 * @param constantPool The constant pool of the class
+	 * @param accessFlags The class access flags
+	 * @param thisClassIndex The constant pool index of this class
+	 * @param superClassIndex The constant pool index of the super class or 0 for java/lang/Object
+	 * @return False to stop visiting the class, {@link #visitEnd()} is still called
+	 * @throws IOException Thrown by the visitor to abort parsing
+	 */
+	public boolean visitHeader(int minorVersion, int majorVersion, ConstantPool constantPool, int accessFlags,
+	                           int thisClassIndex, int superClassIndex) throws IOException {
+		return true;
+	}
+
+	/**
+	 * Called for each implemented interface in declaration order
+	 * @param classIndex The constant pool index of the interface
+	 * @throws IOException Thrown by the visitor to abort parsing
+	 */
+	public void visitInterface(int classIndex) throws IOException {
+	}
+
+	/**
+	 * Called for each field
+	 * @param accessFlags The field access flags
+	 * @param nameIndex The constant pool index of the field name
+	 * @param descriptorIndex The constant pool index of the field descriptor
+	 * @return True to receive the attributes of the field followed by {@link #visitFieldEnd()}
+	 * @throws IOException Thrown by the visitor to abort parsing
+	 */
+	public boolean visitField(int accessFlags, int nameIndex, int descriptorIndex) throws IOException {
+		return false;
+	}
+
+	/**
+	 * Called after the attributes of a field if {@link #visitField(int, int, int)} returned true
+	 * @throws IOException Thrown by the visitor to abort parsing
+	 */
+	public void visitFieldEnd() throws IOException {
+	}
+
+	/**
+	 * Called for each method
+	 * @param accessFlags The method access flags
+	 * @param nameIndex The constant pool index of the method name
+	 * @param descriptorIndex The constant pool index of the method descriptor
+	 * @return True to receive the attributes and code of the method followed by {@link #visitMethodEnd()}
+	 * @throws IOException Thrown by the visitor to abort parsing
+	 */
+	public boolean visitMethod(int accessFlags, int nameIndex, int descriptorIndex) throws IOException {
+		return false;
+	}
+
+	/**
+	 * Called with the Code attribute of the current method instead of {@link #visitAttribute}
+	 * @param maxStack The maximum operand stack depth
+	 * @param maxLocals The number of local variable slots
+	 * @param buffer The class file buffer
+	 * @param codeOffset The absolute offset of the byte code in the buffer
+	 * @param codeLength The length of the byte code in bytes
+	 * @return True to receive the exception table and the attributes of the code
+	 * @throws IOException Thrown by the visitor to abort parsing
+	 */
+	public boolean visitCode(int maxStack, int maxLocals, ByteBuffer buffer, int codeOffset, int codeLength) throws IOException {
+		return false;
+	}
+
+	/**
+	 * Called for each exception table entry of the current code
+	 * @param startPc The start of the protected range, inclusive
+	 * @param endPc The end of the protected range, exclusive
+	 * @param handlerPc The start of the handler
+	 * @param catchTypeIndex The constant pool index of the caught class or 0 for finally blocks
+	 * @throws IOException Thrown by the visitor to abort parsing
+	 */
+	public void visitTryCatch(int startPc, int endPc, int handlerPc, int catchTypeIndex) throws IOException {
+	}
+
+	/**
+	 * Called after the attributes and code of a method if {@link #visitMethod(int, int, int)} returned true
+	 * @throws IOException Thrown by the visitor to abort parsing
+	 */
+	public void visitMethodEnd() throws IOException {
+	}
+
+	/**
+	 * Called for each retained attribute of the class, the current field, method or code
+	 * @param name The attribute name
+	 * @param buffer The class file buffer
+	 * @param offset The absolute offset of the attribute payload in the buffer
+	 * @param length The length of the attribute payload in bytes
+	 * @throws IOException Thrown by the visitor to abort parsing
+	 */
+	public void visitAttribute(String name, ByteBuffer buffer, int offset, int length) throws IOException {
+	}
+
+	/**
+	 * Called once after all other callbacks
+	 * @throws IOException Thrown by the visitor to abort parsing
+	 */
+	public void visitEnd() throws IOException {
+	}
+}
@@ -65,33 +65,28 @@ public class CodeInputStream extends DataInputStream {
      * @return the line number
      */
     public int getLineNumber() {
-        int lineNumber = -1;
         try {
             LineNumberTable lineNumberTable = code.getLineNumberTable();
             if( lineNumberTable != null ) {
-                int codePos = getCodePosition();
-                for( int i = 0; i < lineNumberTable.size(); i++ ) {
-                    int offset = lineNumberTable.getStartOffset( i );
-                    if( offset > codePos ) {
-                        break;
-                    }
-                    lineNumber = lineNumberTable.getLineNumber( i );
-                }
+                return lineNumberTable.getLineNumberAt( getCodePosition() );
             }
         } catch( IOException e ) {
             // ignore, line naumber are only needed for debug information
         }
-        return lineNumber;
+        return -1;
     }
 
     private static class ByteCodeArrayInputStream extends ByteArrayInputStream {
 
+        private final int start;
+
         ByteCodeArrayInputStream( byte[] buf, int offset, int length ) {
             super( buf, offset, length );
+            this.start = offset;
         }
 
         int getCodePosition() {
-            return pos;
+            return pos - start;
         }
     }
 
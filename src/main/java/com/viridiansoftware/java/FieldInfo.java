@@ -16,15 +16,17 @@
 package com.viridiansoftware.java;
 
 import com.viridiansoftware.java.attributes.AttributeInfo;
+import com.viridiansoftware.java.attributes.AttributeName;
 import com.viridiansoftware.java.attributes.Attributes;
 import com.viridiansoftware.java.attributes.RuntimeVisibleAnnotations;
 import com.viridiansoftware.java.constants.ConstantPool;
 import com.viridiansoftware.java.descriptor.FieldDescriptor;
 import com.viridiansoftware.java.signature.FieldSignature;
 
-import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -34,7 +36,7 @@ import java.util.List;
  */
 public class FieldInfo {
     private final int        accessFlags;
-    private final List<FieldAccessFlag> fieldAccessFlags = new ArrayList<FieldAccessFlag>(2);
+    private volatile List<FieldAccessFlag> fieldAccessFlags;
     private final String     name;
     private final String     description;
     private final ConstantPool constantPool;
@@ -52,21 +54,16 @@ public class FieldInfo {
      * http://docs.oracle.com/javase/specs/jvms/se8/html/ClassFile.doc.html#2877
      * @param input
      * @param constantPool
+     * @param options
      * @throws IOException
      */
-    FieldInfo(DataInputStream input, ConstantPool constantPool) throws IOException {
-        this.accessFlags = input.readUnsignedShort();
+    FieldInfo(ByteBuffer input, ConstantPool constantPool, ParseOptions options) throws IOException {
+        this.accessFlags = input.getShort() & 0xFFFF;
         this.constantPool = constantPool;
 
-        for(FieldAccessFlag fieldAccessFlag : FieldAccessFlag.values()) {
-            if((fieldAccessFlag.getMask() & accessFlags) == fieldAccessFlag.getMask()) {
-                fieldAccessFlags.add(fieldAccessFlag);
-            }
-        }
-
-        this.name = (String)constantPool.get( input.readUnsignedShort() );
-        this.description = (String)constantPool.get( input.readUnsignedShort() );
-        this.attributes = new Attributes( input, constantPool );
+        this.name = (String)constantPool.get( input.getShort() & 0xFFFF );
+        this.description = (String)constantPool.get( input.getShort() & 0xFFFF );
+        this.attributes = new Attributes( input, constantPool, options );
     }
 
     /**
@@ -81,7 +78,18 @@ public class FieldInfo {
     }
 
     public List<FieldAccessFlag> getFieldAccessFlags() {
-        return fieldAccessFlags;
+        List<FieldAccessFlag> flags = fieldAccessFlags;
+        if( flags == null ) {
+            final List<FieldAccessFlag> result = new ArrayList<FieldAccessFlag>(2);
+            for(FieldAccessFlag flag : FieldAccessFlag.values()) {
+                if((flag.getMask() & accessFlags) == flag.getMask()) {
+                    result.add(flag);
+                }
+            }
+            flags = Collections.unmodifiableList( result );
+            fieldAccessFlags = flags;
+        }
+        return flags;
     }
 
     /**
@@ -185,9 +193,9 @@ public class FieldInfo {
         if(signature != null) {
             return signature;
         }
-        AttributeInfo info = getAttributes().get( "Signature" );
+        AttributeInfo info = getAttributes().get( AttributeName.SIGNATURE );
         if( info != null ) {
-            int idx = info.getDataInputStream().readShort();
+            int idx = info.getUnsignedShort( 0 );
             signature = (String)constantPool.get( idx );
         }
         return signature;
@@ -204,9 +212,9 @@ public class FieldInfo {
         if(constantValue != null) {
             return constantValue;
         }
-        AttributeInfo info = getAttributes().get( "ConstantValue" );
+        AttributeInfo info = getAttributes().get( AttributeName.CONSTANT_VALUE );
         if( info != null ) {
-            int idx = info.getDataInputStream().readShort();
+            int idx = info.getUnsignedShort( 0 );
             constantValue = constantPool.get( idx );
         }
         return constantValue;
@@ -214,7 +222,7 @@ public class FieldInfo {
 
     public RuntimeVisibleAnnotations getRuntimeVisibleAnnotations() throws IOException {
         if(runtimeVisibleAnnotations == null) {
-            AttributeInfo info = getAttributes().get( "RuntimeVisibleAnnotations" );
+            AttributeInfo info = getAttributes().get( AttributeName.RUNTIME_VISIBLE_ANNOTATIONS );
             if(info != null) {
                 runtimeVisibleAnnotations = new RuntimeVisibleAnnotations(constantPool, info.getDataInputStream());
             }
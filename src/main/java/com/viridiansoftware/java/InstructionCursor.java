@@ -0,0 +1,385 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java;
+
+import com.viridiansoftware.java.constants.ConstantPool;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Walks the instructions of a method's byte code by index, without a stream and without allocating.
+ * http://docs.oracle.com/javase/specs/jvms/se8/html/jvms-6.html
+ *
+ * The cursor starts before the first instruction, {@link #next()} moves it to the following instruction and the
+ * getters decode the operands of the current instruction on demand. Constant pool operands are only resolved by
+ * {@link #getConstant()}. A wide instruction is reported as the instruction it modifies with {@link #isWide()}
+ * set. A cursor is not thread safe, but any number of cursors can walk the same code.
+ */
+public final class InstructionCursor {
+	private static final int ILOAD = 0x15;
+	private static final int ILOAD_0 = 0x1a;
+	private static final int ASTORE_3 = 0x4e;
+	private static final int ISTORE = 0x36;
+	private static final int ISTORE_0 = 0x3b;
+	private static final int BIPUSH = 0x10;
+	private static final int SIPUSH = 0x11;
+	private static final int LDC = 0x12;
+	private static final int IINC = 0x84;
+	private static final int IFEQ = 0x99;
+	private static final int JSR = 0xa8;
+	private static final int RET = 0xa9;
+	private static final int TABLESWITCH = 0xaa;
+	private static final int LOOKUPSWITCH = 0xab;
+	private static final int GETSTATIC = 0xb2;
+	private static final int INVOKEINTERFACE = 0xb9;
+	private static final int INVOKEDYNAMIC = 0xba;
+	private static final int NEW = 0xbb;
+	private static final int NEWARRAY = 0xbc;
+	private static final int ANEWARRAY = 0xbd;
+	private static final int CHECKCAST = 0xc0;
+	private static final int INSTANCEOF = 0xc1;
+	private static final int WIDE = 0xc4;
+	private static final int MULTIANEWARRAY = 0xc5;
+	private static final int IFNULL = 0xc6;
+	private static final int IFNONNULL = 0xc7;
+	private static final int GOTO_W = 0xc8;
+	private static final int JSR_W = 0xc9;
+
+	private static final int VARIABLE = 0;
+	private static final int INVALID = -1;
+
+	/**
+	 * The length of each instruction including its opcode, {@link #VARIABLE} for switches and wide instructions
+	 */
+	private static final byte[] LENGTHS = new byte[256];
+
+	static {
+		Arrays.fill(LENGTHS, (byte) INVALID);
+		fill(0x00, 0x0f, 1); //nop, aconst_null, xconst_n
+		LENGTHS[BIPUSH] = 2;
+		LENGTHS[SIPUSH] = 3;
+		LENGTHS[LDC] = 2;
+		fill(0x13, 0x14, 3); //ldc_w, ldc2_w
+		fill(ILOAD, 0x19, 2); //xload
+		fill(ILOAD_0, 0x35, 1); //xload_n, xaload
+		fill(ISTORE, 0x3a, 2); //xstore
+		fill(ISTORE_0, 0x83, 1); //xstore_n, xastore, stack and arithmetic
+		LENGTHS[IINC] = 3;
+		fill(0x85, 0x98, 1); //conversions and comparisons
+		fill(IFEQ, JSR, 3); //if<cond>, if_<x>cmp<cond>, goto, jsr
+		LENGTHS[RET] = 2;
+		LENGTHS[TABLESWITCH] = VARIABLE;
+		LENGTHS[LOOKUPSWITCH] = VARIABLE;
+		fill(0xac, 0xb1, 1); //returns
+		fill(GETSTATIC, 0xb8, 3); //field access and invokevirtual, invokespecial, invokestatic
+		LENGTHS[INVOKEINTERFACE] = 5;
+		LENGTHS[INVOKEDYNAMIC] = 5;
+		LENGTHS[NEW] = 3;
+		LENGTHS[NEWARRAY] = 2;
+		LENGTHS[ANEWARRAY] = 3;
+		fill(0xbe, 0xbf, 1); //arraylength, athrow
+		LENGTHS[CHECKCAST] = 3;
+		LENGTHS[INSTANCEOF] = 3;
+		fill(0xc2, 0xc3, 1); //monitorenter, monitorexit
+		LENGTHS[WIDE] = VARIABLE;
+		LENGTHS[MULTIANEWARRAY] = 4;
+		LENGTHS[IFNULL] = 3;
+		LENGTHS[IFNONNULL] = 3;
+		LENGTHS[GOTO_W] = 5;
+		LENGTHS[JSR_W] = 5;
+		LENGTHS[0xca] = 1; //breakpoint
+		fill(0xfe, 0xff, 1); //impdep1, impdep2
+	}
+
+	private final byte[] code;
+	private final int start;
+	private final int end;
+	private final ConstantPool constantPool;
+
+	private int position;
+	private int length;
+	private int opcode;
+	private boolean wide;
+
+	/**
+	 * @param code The array holding the byte code, e.g. the class file array or {@link
+	 *             com.viridiansoftware.java.attributes.Code#getCodeData()}
+	 * @param offset The offset of the first instruction in the array
+	 * @param length The length of the byte code
+	 * @param constantPool The constant pool constant operands refer to
+	 */
+	public InstructionCursor(byte[] code, int offset, int length, ConstantPool constantPool) {
+		this.code = code;
+		this.start = offset;
+		this.end = offset + length;
+		this.constantPool = constantPool;
+		reset();
+	}
+
+	/**
+	 * Moves the cursor before the first instruction
+	 */
+	public void reset() {
+		seek(0);
+	}
+
+	/**
+	 * Moves the cursor before the instruction at a code index, e.g. a branch target
+	 * @param position The index of an instruction in the byte code
+	 */
+	public void seek(int position) {
+		this.position = start + position;
+		this.length = 0;
+		this.opcode = -1;
+		this.wide = false;
+	}
+
+	/**
+	 * Moves the cursor to the next instruction
+	 * @return False if the end of the code has been reached
+	 * @throws IOException if the instruction is unknown or extends past the end of the code
+	 */
+	public boolean next() throws IOException {
+		position += length;
+		if (position >= end) {
+			length = 0;
+			opcode = -1;
+			return false;
+		}
+		opcode = code[position] & 0xFF;
+		length = LENGTHS[opcode];
+		if (length <= VARIABLE || position + length > end || wide) {
+			decodeSlow();
+		}
+		return true;
+	}
+
+	/**
+	 * Decodes the rare instructions the table of lengths does not cover and reports invalid code
+	 */
+	private void decodeSlow() throws IOException {
+		wide = false;
+		if (length == VARIABLE) {
+			length = variableLength();
+		} else if (length == INVALID) {
+			throw new IOException("Unknown opcode 0x" + Integer.toHexString(opcode) + " at " + getPosition());
+		}
+		if (position + length > end) {
+			throw new IOException("Instruction at " + getPosition() + " extends past the end of the code");
+		}
+	}
+
+	private int variableLength() throws IOException {
+		switch (opcode) {
+		case WIDE:
+			if (position + 1 >= end) {
+				break;
+			}
+			wide = true;
+			opcode = code[position + 1] & 0xFF;
+			if (opcode == IINC) {
+				return 6;
+			}
+			if ((opcode >= ILOAD && opcode <= 0x19) || (opcode >= ISTORE && opcode <= 0x3a) || opcode == RET) {
+				return 4;
+			}
+			throw new IOException("Invalid wide opcode 0x" + Integer.toHexString(opcode) + " at " + getPosition());
+		case TABLESWITCH: {
+			final int operands = getOperandStart();
+			if (operands + 12 > end) {
+				break;
+			}
+			final long cases = (long) readInt(operands + 8) - readInt(operands + 4) + 1;
+			if (cases < 0 || operands + 12 + cases * 4 > end) {
+				break;
+			}
+			return operands + 12 + (int) cases * 4 - position;
+		}
+		case LOOKUPSWITCH: {
+			final int operands = getOperandStart();
+			if (operands + 8 > end) {
+				break;
+			}
+			final long pairs = readInt(operands + 4);
+			if (pairs < 0 || operands + 8 + pairs * 8 > end) {
+				break;
+			}
+			return operands + 8 + (int) pairs * 8 - position;
+		}
+		}
+		throw new IOException("Instruction at " + getPosition() + " extends past the end of the code");
+	}
+
+	/**
+	 * @return The code index of the current instruction
+	 */
+	public int getPosition() {
+		return position - start;
+	}
+
+	/**
+	 * @return The opcode of the current instruction, the modified opcode for wide instructions
+	 */
+	public int getOpcode() {
+		return opcode;
+	}
+
+	/**
+	 * @return True if the current instruction is modified by a wide prefix
+	 */
+	public boolean isWide() {
+		return wide;
+	}
+
+	/**
+	 * @return The length of the current instruction in bytes including its operands
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return The local variable index of a load, store, iinc or ret instruction, including the implicit index
+	 * of xload_n and xstore_n
+	 */
+	public int getLocalIndex() {
+		if (opcode >= ILOAD_0 && opcode <= 0x2d) {
+			return (opcode - ILOAD_0) & 3;
+		}
+		if (opcode >= ISTORE_0 && opcode <= ASTORE_3) {
+			return (opcode - ISTORE_0) & 3;
+		}
+		return wide ? readUnsignedShort(position + 2) : code[position + 1] & 0xFF;
+	}
+
+	/**
+	 * @return The signed increment of an iinc instruction
+	 */
+	public int getIncrement() {
+		return wide ? readShort(position + 4) : code[position + 2];
+	}
+
+	/**
+	 * @return The value pushed by bipush or sipush, the array type of newarray or the dimensions of multianewarray
+	 */
+	public int getIntOperand() {
+		switch (opcode) {
+		case SIPUSH:
+			return readShort(position + 1);
+		case NEWARRAY:
+			return code[position + 1] & 0xFF;
+		case MULTIANEWARRAY:
+			return code[position + 3] & 0xFF;
+		default:
+			return code[position + 1];
+		}
+	}
+
+	/**
+	 * @return The constant pool index referenced by ldc, ldc_w, ldc2_w, a field or method instruction, new,
+	 * anewarray, checkcast, instanceof or multianewarray
+	 */
+	public int getConstantIndex() {
+		return opcode == LDC ? code[position + 1] & 0xFF : readUnsignedShort(position + 1);
+	}
+
+	/**
+	 * Resolves the constant pool operand of the current instruction, see {@link #getConstantIndex()}
+	 * @return The decoded constant
+	 */
+	public Object getConstant() {
+		return constantPool.get(getConstantIndex());
+	}
+
+	/**
+	 * @return The code index a branch instruction jumps to
+	 */
+	public int getBranchTarget() {
+		if (opcode == GOTO_W || opcode == JSR_W) {
+			return getPosition() + readInt(position + 1);
+		}
+		return getPosition() + readShort(position + 1);
+	}
+
+	/**
+	 * @return The code index a tableswitch or lookupswitch jumps to when no case matches
+	 */
+	public int getDefaultTarget() {
+		return getPosition() + readInt(getOperandStart());
+	}
+
+	/**
+	 * @return The number of cases of a tableswitch or lookupswitch
+	 */
+	public int getSwitchCaseCount() {
+		final int operands = getOperandStart();
+		if (opcode == TABLESWITCH) {
+			return readInt(operands + 8) - readInt(operands + 4) + 1;
+		}
+		return readInt(operands + 4);
+	}
+
+	/**
+	 * @param index The index of the case
+	 * @return The value matched by the case of a tableswitch or lookupswitch, in ascending order
+	 */
+	public int getSwitchKey(int index) {
+		final int operands = getOperandStart();
+		if (opcode == TABLESWITCH) {
+			return readInt(operands + 4) + index;
+		}
+		return readInt(operands + 8 + index * 8);
+	}
+
+	/**
+	 * @param index The index of the case
+	 * @return The code index the case of a tableswitch or lookupswitch jumps to
+	 */
+	public int getSwitchTarget(int index) {
+		final int operands = getOperandStart();
+		if (opcode == TABLESWITCH) {
+			return getPosition() + readInt(operands + 12 + index * 4);
+		}
+		return getPosition() + readInt(operands + 12 + index * 8);
+	}
+
+	/**
+	 * @return The offset of the operands of a switch, which are aligned to four bytes from the start of the code
+	 */
+	private int getOperandStart() {
+		return start + ((getPosition() + 4) & ~3);
+	}
+
+	private int readShort(int offset) {
+		return (short) ((code[offset] << 8) | (code[offset + 1] & 0xFF));
+	}
+
+	private int readUnsignedShort(int offset) {
+		return ((code[offset] & 0xFF) << 8) | (code[offset + 1] & 0xFF);
+	}
+
+	private int readInt(int offset) {
+		return (code[offset] << 24) | ((code[offset + 1] & 0xFF) << 16) | ((code[offset + 2] & 0xFF) << 8)
+				| (code[offset + 3] & 0xFF);
+	}
+
+	private static void fill(int from, int to, int length) {
+		for (int opcode = from; opcode <= to; opcode++) {
+			LENGTHS[opcode] = (byte) length;
+		}
+	}
+}
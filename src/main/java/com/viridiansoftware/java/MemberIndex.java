@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+/**
+ * Hash indexes over the fields or methods of a class, built on first lookup by {@link ClassFile}.
+ *
+ * Members are grouped by name in declaration order and two open addressing tables map a name to its group and a
+ * name and descriptor to its member. Constructors, class initialisers, bridge and synthetic methods are marked in
+ * bitsets. Lookups return unmodifiable list views over the member indexes that are cached, so repeated lookups do
+ * not allocate.
+ */
+final class MemberIndex<T> {
+	static final int INIT = 0;
+	static final int CLINIT = 1;
+	static final int NON_INIT = 2;
+	static final int BRIDGE = 3;
+	static final int SYNTHETIC = 4;
+	private static final int KINDS = 5;
+
+	private static final int BRIDGE_FLAG = 0x0040;
+	private static final int SYNTHETIC_FLAG = 0x1000;
+
+	private final String[] names;
+	private final String[] descriptors;
+	private final IntFunction<T> members;
+
+	/**
+	 * The member indexes grouped by name, the members of group g are byName[groupStarts[g]] up to
+	 * byName[groupStarts[g + 1]]
+	 */
+	private final int[] byName;
+	private final int[] groupStarts;
+	private final int[] nameSlots;
+	private final int[] memberSlots;
+	private final long[][] kinds;
+	private final int[][] kindMembers;
+	private final List<?>[] groupViews;
+	private final List<?>[] kindViews = new List<?>[KINDS];
+
+	/**
+	 * @param names The name of each member
+	 * @param descriptors The descriptor of each member
+	 * @param accessFlags The access flags of each member
+	 * @param methods True to classify the members as methods
+	 * @param members Returns the member of an index
+	 */
+	MemberIndex(String[] names, String[] descriptors, int[] accessFlags, boolean methods, IntFunction<T> members) {
+		this.names = names;
+		this.descriptors = descriptors;
+		this.members = members;
+		final int count = names.length;
+		final int capacity = Integer.highestOneBit(Math.max(1, count) * 2 - 1) << 1;
+
+		//Group members by name, chaining each member to the next one of its name
+		nameSlots = new int[capacity];
+		final int[] groupOfMember = new int[count];
+		final int[] groupFirst = new int[count];
+		final int[] groupSizes = new int[count];
+		int groups = 0;
+		for (int member = 0; member < count; member++) {
+			int slot = spread(names[member].hashCode()) & (capacity - 1);
+			while (nameSlots[slot] != 0 && !names[member].equals(names[groupFirst[nameSlots[slot] - 1]])) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+			if (nameSlots[slot] == 0) {
+				groupFirst[groups] = member;
+				nameSlots[slot] = ++groups;
+			}
+			groupOfMember[member] = nameSlots[slot] - 1;
+			groupSizes[groupOfMember[member]]++;
+		}
+		groupStarts = new int[groups + 1];
+		for (int group = 0; group < groups; group++) {
+			groupStarts[group + 1] = groupStarts[group] + groupSizes[group];
+		}
+		byName = new int[count];
+		final int[] fill = new int[groups];
+		for (int member = 0; member < count; member++) {
+			final int group = groupOfMember[member];
+			byName[groupStarts[group] + fill[group]++] = member;
+		}
+		groupViews = new List<?>[groups];
+
+		memberSlots = new int[capacity];
+		for (int member = 0; member < count; member++) {
+			int slot = spread(hash(names[member], descriptors[member])) & (capacity - 1);
+			while (memberSlots[slot] != 0 && !matches(memberSlots[slot] - 1, names[member], descriptors[member])) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+			if (memberSlots[slot] == 0) {
+				memberSlots[slot] = member + 1;
+			}
+		}
+
+		kinds = new long[KINDS][(count + 63) >>> 6];
+		final int[] kindCounts = new int[KINDS];
+		for (int member = 0; methods && member < count; member++) {
+			final boolean init = "<init>".equals(names[member]);
+			final boolean clinit = "<clinit>".equals(names[member]);
+			mark(kindCounts, INIT, member, init);
+			mark(kindCounts, CLINIT, member, clinit);
+			mark(kindCounts, NON_INIT, member, !init && !clinit);
+			mark(kindCounts, BRIDGE, member, (accessFlags[member] & BRIDGE_FLAG) != 0);
+			mark(kindCounts, SYNTHETIC, member, (accessFlags[member] & SYNTHETIC_FLAG) != 0);
+		}
+		kindMembers = new int[KINDS][];
+		for (int kind = 0; kind < KINDS; kind++) {
+			kindMembers[kind] = new int[kindCounts[kind]];
+			int index = 0;
+			for (int member = 0; member < count; member++) {
+				if (is(kind, member)) {
+					kindMembers[kind][index++] = member;
+				}
+			}
+		}
+	}
+
+	private void mark(int[] kindCounts, int kind, int member, boolean value) {
+		if (value) {
+			kinds[kind][member >>> 6] |= 1L << member;
+			kindCounts[kind]++;
+		}
+	}
+
+	/**
+	 * @return The index of the group of members of the name or -1
+	 */
+	int getGroup(String name) {
+		int slot = spread(name.hashCode()) & (nameSlots.length - 1);
+		while (nameSlots[slot] != 0) {
+			final int group = nameSlots[slot] - 1;
+			if (name.equals(names[byName[groupStarts[group]]])) {
+				return group;
+			}
+			slot = (slot + 1) & (nameSlots.length - 1);
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The number of members of the name
+	 */
+	int count(String name) {
+		final int group = getGroup(name);
+		return group < 0 ? 0 : groupStarts[group + 1] - groupStarts[group];
+	}
+
+	/**
+	 * @return The index of the first member of the name in declaration order or -1
+	 */
+	int find(String name) {
+		final int group = getGroup(name);
+		return group < 0 ? -1 : byName[groupStarts[group]];
+	}
+
+	/**
+	 * @return The index of the first member of the name and descriptor in declaration order or -1
+	 */
+	int find(String name, String descriptor) {
+		int slot = spread(hash(name, descriptor)) & (memberSlots.length - 1);
+		while (memberSlots[slot] != 0) {
+			if (matches(memberSlots[slot] - 1, name, descriptor)) {
+				return memberSlots[slot] - 1;
+			}
+			slot = (slot + 1) & (memberSlots.length - 1);
+		}
+		return -1;
+	}
+
+	/**
+	 * @return True if the member is of the kind, e.g. {@link #BRIDGE}
+	 */
+	boolean is(int kind, int member) {
+		return (kinds[kind][member >>> 6] & (1L << member)) != 0;
+	}
+
+	/**
+	 * @return The members of the name in declaration order
+	 */
+	@SuppressWarnings("unchecked")
+	List<T> get(String name) {
+		final int group = getGroup(name);
+		if (group < 0) {
+			return Collections.emptyList();
+		}
+		List<T> view = (List<T>) groupViews[group];
+		if (view == null) {
+			view = new MemberList<T>(byName, groupStarts[group], groupStarts[group + 1], members);
+			groupViews[group] = view;
+		}
+		return view;
+	}
+
+	/**
+	 * @return The members of a kind in declaration order
+	 */
+	@SuppressWarnings("unchecked")
+	List<T> get(int kind) {
+		List<T> view = (List<T>) kindViews[kind];
+		if (view == null) {
+			view = new MemberList<T>(kindMembers[kind], 0, kindMembers[kind].length, members);
+			kindViews[kind] = view;
+		}
+		return view;
+	}
+
+	private boolean matches(int member, String name, String descriptor) {
+		return name.equals(names[member]) && descriptor.equals(descriptors[member]);
+	}
+
+	private static int hash(String name, String descriptor) {
+		return 31 * name.hashCode() + descriptor.hashCode();
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * An unmodifiable view of a range of member indexes
+	 */
+	private static final class MemberList<T> extends AbstractList<T> implements RandomAccess {
+		private final int[] indexes;
+		private final int start;
+		private final int end;
+		private final IntFunction<T> members;
+
+		MemberList(int[] indexes, int start, int end, IntFunction<T> members) {
+			this.indexes = indexes;
+			this.start = start;
+			this.end = end;
+			this.members = members;
+		}
+
+		@Override
+		public T get(int index) {
+			if (index < 0 || index >= end - start) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			}
+			return members.apply(indexes[start + index]);
+		}
+
+		@Override
+		public int size() {
+			return end - start;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java;
+
+import com.viridiansoftware.java.constants.ConstantPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The fields or methods of a class stored as parallel primitive arrays of access flags, name and descriptor
+ * indices into the constant pool and offsets into the class file buffer.
+ *
+ * Used by {@link ClassFile} when parsing with {@link ParseOptions#withCompactMembers(boolean)}, in which case
+ * {@link FieldInfo} and {@link MethodInfo} instances are created on demand as views of a member's offset, so a class
+ * retains a few bytes per member instead of a graph of objects.
+ */
+public final class MemberTable {
+	private static final short[] NO_ACCESS_FLAGS = new short[0];
+	private static final int[] NO_INDICES = new int[0];
+
+	private final ByteBuffer buffer;
+	private final ConstantPool constantPool;
+	private final short[] accessFlags;
+	private final int[] nameIndices;
+	private final int[] descriptorIndices;
+	private final int[] offsets;
+
+	private MemberTable(ByteBuffer buffer, ConstantPool constantPool, int count) {
+		this.buffer = buffer;
+		this.constantPool = constantPool;
+		this.accessFlags = count == 0 ? NO_ACCESS_FLAGS : new short[count];
+		this.nameIndices = count == 0 ? NO_INDICES : new int[count];
+		this.descriptorIndices = count == 0 ? NO_INDICES : new int[count];
+		this.offsets = count == 0 ? NO_INDICES : new int[count];
+	}
+
+	/**
+	 * Creates a table over the arrays of an earlier read of the same class, see {@link ClassFileLayout}
+	 */
+	MemberTable(ByteBuffer buffer, ConstantPool constantPool, short[] accessFlags, int[] nameIndices, int[] descriptorIndices, int[] offsets) {
+		this.buffer = buffer;
+		this.constantPool = constantPool;
+		this.accessFlags = accessFlags;
+		this.nameIndices = nameIndices;
+		this.descriptorIndices = descriptorIndices;
+		this.offsets = offsets;
+	}
+
+	/**
+	 * Reads a fields or methods table, skipping over the attributes of each member after checking their lengths.
+	 * The names, descriptors and attribute names are checked to be CONSTANT_Utf8 entries, so the members can later
+	 * be read as views without failing.
+	 * @param input The class file buffer positioned at the fields_count or methods_count
+	 * @param constantPool The constant pool of the class
+	 * @return The table
+	 * @throws IOException if an attribute extends past the end of the buffer or an index is not a valid CONSTANT_Utf8
+	 */
+	static MemberTable read(ByteBuffer input, ConstantPool constantPool) throws IOException {
+		final MemberTable table = new MemberTable(input, constantPool, input.getShort() & 0xFFFF);
+		for (int i = 0; i < table.offsets.length; i++) {
+			table.offsets[i] = input.position();
+			table.accessFlags[i] = input.getShort();
+			table.nameIndices[i] = checkUtf8(constantPool, input.getShort() & 0xFFFF);
+			table.descriptorIndices[i] = checkUtf8(constantPool, input.getShort() & 0xFFFF);
+			final int attributes = input.getShort() & 0xFFFF;
+			for (int j = 0; j < attributes; j++) {
+				checkUtf8(constantPool, input.getShort() & 0xFFFF);
+				final int length = input.getInt();
+				if (length < 0 || length > input.remaining()) {
+					throw new IOException("Attribute has invalid length " + length);
+				}
+				input.position(input.position() + length);
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Decodes a CONSTANT_Utf8 entry, a lazy pool caches it for the views of the member
+	 * @return The index
+	 */
+	private static int checkUtf8(ConstantPool constantPool, int index) throws IOException {
+		if (index >= constantPool.length() || !(constantPool.get(index) instanceof String)) {
+			throw new IOException("Expected a CONSTANT_Utf8 at constant pool index " + index);
+		}
+		return index;
+	}
+
+	/**
+	 * Creates an empty table for classes parsed without members
+	 */
+	static MemberTable empty(ConstantPool constantPool) {
+		return new MemberTable(null, constantPool, 0);
+	}
+
+	/**
+	 * @return The number of members
+	 */
+	public int size() {
+		return offsets.length;
+	}
+
+	public int getAccessFlags(int member) {
+		return accessFlags[member] & 0xFFFF;
+	}
+
+	/**
+	 * @return The constant pool index of the member name
+	 */
+	public int getNameIndex(int member) {
+		return nameIndices[member];
+	}
+
+	/**
+	 * @return The constant pool index of the member descriptor
+	 */
+	public int getDescriptorIndex(int member) {
+		return descriptorIndices[member];
+	}
+
+	public String getName(int member) {
+		return (String) constantPool.get(nameIndices[member]);
+	}
+
+	public String getDescriptor(int member) {
+		return (String) constantPool.get(descriptorIndices[member]);
+	}
+
+	/**
+	 * @return The absolute offset of the member's field_info or method_info structure in the class file buffer
+	 */
+	public int getOffset(int member) {
+		return offsets[member];
+	}
+
+	/**
+	 * Returns a buffer positioned at the start of a member for reading it as a view
+	 */
+	ByteBuffer getInput(int member) {
+		final ByteBuffer input = buffer.duplicate();
+		input.position(offsets[member]);
+		return input;
+	}
+}
@@ -24,14 +24,14 @@ import com.viridiansoftware.java.signature.MethodSignature;
 import com.viridiansoftware.java.signature.antlr.SignatureParser;
 import com.viridiansoftware.java.utils.ClassUtils;
 
-import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 public class MethodInfo implements Member, TypeVariableResolver {
 
     private final int          accessFlags;
-    private final List<MethodAccessFlag> methodAccessFlags = new ArrayList<MethodAccessFlag>(4);
+    private volatile List<MethodAccessFlag> methodAccessFlags;
     private final String       name;
     private final String       description;
     private final Attributes attributes;
@@ -52,27 +52,23 @@ public class MethodInfo implements Member, TypeVariableResolver {
      * Read the method_info structure http://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.6
      *
      * @param input
-     *            the stream of the class file
+     *            the buffer of the class file, positioned at the method_info
      * @param constantPool
      *            the ConstantPool of the class
      * @param classFile
      *            the declaring class file
+     * @param options
+     *            the options deciding which attributes are retained
      * @throws IOException
      *             if an I/O error occurs
      */
-    MethodInfo( DataInputStream input, ConstantPool constantPool, ClassFile classFile ) throws IOException {
-        this.accessFlags = input.readUnsignedShort();
+    MethodInfo( ByteBuffer input, ConstantPool constantPool, ClassFile classFile, ParseOptions options ) throws IOException {
+        this.accessFlags = input.getShort() & 0xFFFF;
 
-        for(MethodAccessFlag methodAccessFlag : MethodAccessFlag.values()) {
-            if((methodAccessFlag.getMask() & accessFlags) == methodAccessFlag.getMask()) {
-                methodAccessFlags.add(methodAccessFlag);
-            }
-        }
-
-        this.name = (String)constantPool.get( input.readUnsignedShort() );
-        this.description = (String)constantPool.get( input.readUnsignedShort() );
+        this.name = (String)constantPool.get( input.getShort() & 0xFFFF );
+        this.description = (String)constantPool.get( input.getShort() & 0xFFFF );
         this.constantPool = constantPool;
-        this.attributes = new Attributes( input, constantPool );
+        this.attributes = new Attributes( input, constantPool, options );
         this.classFile = classFile;
     }
 
@@ -96,10 +92,21 @@ public class MethodInfo implements Member, TypeVariableResolver {
 
     /**
      * Returns the access flags as a list of enums
-     * @return
+     * @return An unmodifiable list, shared by all callers
      */
     public List<MethodAccessFlag> getMethodAccessFlags() {
-        return methodAccessFlags;
+        List<MethodAccessFlag> flags = methodAccessFlags;
+        if( flags == null ) {
+            final List<MethodAccessFlag> result = new ArrayList<MethodAccessFlag>(4);
+            for(MethodAccessFlag flag : MethodAccessFlag.values()) {
+                if((flag.getMask() & accessFlags) == flag.getMask()) {
+                    result.add(flag);
+                }
+            }
+            flags = Collections.unmodifiableList( result );
+            methodAccessFlags = flags;
+        }
+        return flags;
     }
 
     /**
@@ -235,7 +242,7 @@ public class MethodInfo implements Member, TypeVariableResolver {
 
     public AnnotationDefault getAnnotationDefault() throws IOException {
         if(annotationDefault == null) {
-            AttributeInfo info = getAttributes().get("AnnotationDefault");
+            AttributeInfo info = getAttributes().get(AttributeName.ANNOTATION_DEFAULT);
             if(info != null) {
                 annotationDefault = new AnnotationDefault(constantPool, info);
             }
@@ -245,7 +252,7 @@ public class MethodInfo implements Member, TypeVariableResolver {
 
     public RuntimeVisibleAnnotations getRuntimeVisibleAnnotations() throws IOException {
         if(runtimeVisibleAnnotations == null) {
-            AttributeInfo info = getAttributes().get( "RuntimeVisibleAnnotations" );
+            AttributeInfo info = getAttributes().get( AttributeName.RUNTIME_VISIBLE_ANNOTATIONS );
             if(info != null) {
                 runtimeVisibleAnnotations = new RuntimeVisibleAnnotations(constantPool, info.getDataInputStream());
             }
@@ -255,7 +262,7 @@ public class MethodInfo implements Member, TypeVariableResolver {
 
     public RuntimeVisibleParameterAnnotations getRuntimeVisibleParameterAnnotations() throws IOException {
         if(runtimeVisibleParameterAnnotations == null) {
-            AttributeInfo info = getAttributes().get( "RuntimeVisibleParameterAnnotations" );
+            AttributeInfo info = getAttributes().get( AttributeName.RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS );
             if(info != null) {
                 runtimeVisibleParameterAnnotations = new RuntimeVisibleParameterAnnotations(constantPool, info.getDataInputStream());
             }
@@ -267,9 +274,9 @@ public class MethodInfo implements Member, TypeVariableResolver {
         if( code != null ){
             return code;
         }
-        AttributeInfo data = attributes.get( "Code" );
+        AttributeInfo data = attributes.get( AttributeName.CODE );
         if( data != null ) {
-            code = new Code( data.getDataInputStream(), constantPool, classFile.getBootstrapMethods());
+            code = new Code( data, constantPool, classFile.getBootstrapMethods(), classFile.getParseOptions());
         }
         return code;
     }
@@ -293,9 +300,9 @@ public class MethodInfo implements Member, TypeVariableResolver {
         if(signature != null) {
             return signature;
         }
-        AttributeInfo info = getAttributes().get( "Signature" );
+        AttributeInfo info = getAttributes().get( AttributeName.SIGNATURE );
         if( info != null ) {
-            int idx = info.getDataInputStream().readShort();
+            int idx = info.getUnsignedShort( 0 );
             signature = (String)constantPool.get( idx );
         }
         return signature;
@@ -305,7 +312,7 @@ public class MethodInfo implements Member, TypeVariableResolver {
         if(methodParameters != null) {
             return methodParameters;
         }
-        AttributeInfo info = getAttributes().get( "MethodParameters" );
+        AttributeInfo info = getAttributes().get( AttributeName.METHOD_PARAMETERS );
         if( info != null ) {
             methodParameters = new MethodParameters(info.getDataInputStream(), constantPool);
         } else {
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java;
+
+import com.viridiansoftware.java.attributes.AttributeName;
+import com.viridiansoftware.java.constants.ConstantFactory;
+import com.viridiansoftware.java.constants.SymbolTable;
+
+/**
+ * Immutable options controlling how much of a class file is decoded by {@link ClassFile}
+ */
+public final class ParseOptions {
+	/**
+	 * Decodes the whole constant pool up front and retains every attribute
+	 */
+	public static final ParseOptions DEFAULT = new ParseOptions(Level.DEBUG, false, true, null, null, false);
+
+	private final Level level;
+	private final boolean lazyConstantPool;
+	private final boolean annotations;
+	private final SymbolTable symbolTable;
+	private final ConstantFactory constantFactory;
+	private final boolean compactMembers;
+	private final boolean[] retainedAttributes;
+
+	private ParseOptions(Level level, boolean lazyConstantPool, boolean annotations, SymbolTable symbolTable,
+	                     ConstantFactory constantFactory, boolean compactMembers) {
+		this.level = level;
+		this.lazyConstantPool = lazyConstantPool;
+		this.annotations = annotations;
+		this.symbolTable = symbolTable;
+		this.constantFactory = constantFactory;
+		this.compactMembers = compactMembers;
+		this.retainedAttributes = new boolean[AttributeName.values().length];
+		for (AttributeName name : AttributeName.values()) {
+			retainedAttributes[name.ordinal()] = isAttributeRetained(name.getName());
+		}
+	}
+
+	/**
+	 * Returns a copy of these options with a different parse level
+	 * @param level The amount of the class file to retain
+	 * @return The new options
+	 */
+	public ParseOptions withLevel(Level level) {
+		return new ParseOptions(level, lazyConstantPool, annotations, symbolTable, constantFactory, compactMembers);
+	}
+
+	/**
+	 * Returns a copy of these options with lazy constant pool decoding enabled or disabled.
+	 * A lazy constant pool only records the tag and offset of each entry and decodes entries on first access.
+	 * @param lazyConstantPool True to decode constant pool entries on first access
+	 * @return The new options
+	 */
+	public ParseOptions withLazyConstantPool(boolean lazyConstantPool) {
+		return new ParseOptions(level, lazyConstantPool, annotations, symbolTable, constantFactory, compactMembers);
+	}
+
+	/**
+	 * Returns a copy of these options with annotation attributes retained or skipped
+	 * @param annotations False to skip all annotation attributes regardless of the level
+	 * @return The new options
+	 */
+	public ParseOptions withAnnotations(boolean annotations) {
+		return new ParseOptions(level, lazyConstantPool, annotations, symbolTable, constantFactory, compactMembers);
+	}
+
+	/**
+	 * Returns a copy of these options that interns all CONSTANT_Utf8 entries into a shared symbol table
+	 * @param symbolTable The table shared by all classes parsed with the options or null to not intern symbols
+	 * @return The new options
+	 */
+	public ParseOptions withSymbolTable(SymbolTable symbolTable) {
+		return new ParseOptions(level, lazyConstantPool, annotations, symbolTable, constantFactory, compactMembers);
+	}
+
+	/**
+	 * Returns a copy of these options that creates class and name and type constants through a shared factory, so
+	 * equal constants of different classes are the same instance
+	 * @param constantFactory The factory shared by all classes parsed with the options or null to create new constants
+	 * @return The new options
+	 */
+	public ParseOptions withConstantFactory(ConstantFactory constantFactory) {
+		return new ParseOptions(level, lazyConstantPool, annotations, symbolTable, constantFactory, compactMembers);
+	}
+
+	/**
+	 * Returns a copy of these options with compact member storage enabled or disabled.
+	 * Compact classes store their fields and methods in a {@link MemberTable} and create {@link FieldInfo} and
+	 * {@link MethodInfo} views on demand, trading repeated view creation for a much smaller retained size. Every
+	 * access returns a new view, so members must not be compared by identity.
+	 * @param compactMembers True to store members compactly
+	 * @return The new options
+	 */
+	public ParseOptions withCompactMembers(boolean compactMembers) {
+		return new ParseOptions(level, lazyConstantPool, annotations, symbolTable, constantFactory, compactMembers);
+	}
+
+	public Level getLevel() {
+		return level;
+	}
+
+	public boolean isLazyConstantPool() {
+		return lazyConstantPool;
+	}
+
+	public boolean isAnnotations() {
+		return annotations;
+	}
+
+	/**
+	 * @return The shared symbol table or null if symbols are not interned
+	 */
+	public SymbolTable getSymbolTable() {
+		return symbolTable;
+	}
+
+	public boolean isCompactMembers() {
+		return compactMembers;
+	}
+
+	/**
+	 * @return The shared constant factory or null if constants are not canonicalized
+	 */
+	public ConstantFactory getConstantFactory() {
+		return constantFactory;
+	}
+
+	/**
+	 * Returns if any attributes of classes and members are retained at this level
+	 * @return False for {@link Level#HEADER_ONLY} and {@link Level#MEMBERS}
+	 */
+	public boolean retainsAttributes() {
+		return level.compareTo(Level.SIGNATURES) >= 0;
+	}
+
+	/**
+	 * Returns if an attribute is retained, reading a table computed with the options
+	 * @param name The predefined attribute, see {@link com.viridiansoftware.java.constants.ConstantPool#getAttributeName(int)},
+	 *             or null for an attribute that is not predefined
+	 * @return True if the attribute should be read
+	 */
+	public boolean isAttributeRetained(AttributeName name) {
+		if (name == null) {
+			return retainsAttributes();
+		}
+		return retainedAttributes[name.ordinal()];
+	}
+
+	/**
+	 * Returns if an attribute with the given name is retained. Attributes that are not retained are skipped
+	 * over without being allocated.
+	 * @param name The attribute name
+	 * @return True if the attribute should be read
+	 */
+	public boolean isAttributeRetained(String name) {
+		if(!retainsAttributes()) {
+			return false;
+		}
+		switch(name) {
+		case "Code":
+			return level.compareTo(Level.CODE) >= 0;
+		case "LineNumberTable":
+		case "LocalVariableTable":
+		case "LocalVariableTypeTable":
+		case "SourceDebugExtension":
+			return level == Level.DEBUG;
+		case "RuntimeVisibleAnnotations":
+		case "RuntimeInvisibleAnnotations":
+		case "RuntimeVisibleParameterAnnotations":
+		case "RuntimeInvisibleParameterAnnotations":
+		case "RuntimeVisibleTypeAnnotations":
+		case "RuntimeInvisibleTypeAnnotations":
+		case "AnnotationDefault":
+			return annotations;
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * The amount of a class file that is retained, each level includes everything from the previous levels
+	 */
+	public enum Level {
+		/**
+		 * Version, constant pool, access flags, this class, super class and interfaces only
+		 */
+		HEADER_ONLY,
+		/**
+		 * Adds the access flags, names and descriptors of fields and methods without any attributes
+		 */
+		MEMBERS,
+		/**
+		 * Adds all class and member attributes except Code and debug information
+		 */
+		SIGNATURES,
+		/**
+		 * Adds method Code attributes without their debug information
+		 */
+		CODE,
+		/**
+		 * Adds LineNumberTable, LocalVariableTable and other debug attributes
+		 */
+		DEBUG
+	}
+}
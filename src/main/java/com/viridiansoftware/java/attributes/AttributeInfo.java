@@ -1,31 +1,114 @@
 package com.viridiansoftware.java.attributes;
 
 import com.viridiansoftware.java.constants.ConstantPool;
+import com.viridiansoftware.java.utils.ByteBufferInputStream;
 import lombok.NonNull;
 
-import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class AttributeInfo {
 	private final String name;
-	private final byte[] info;
+	private final ByteBuffer buffer;
+	private final int offset;
+	private final int length;
+	private volatile byte[] info;
 
+	/**
+	 * Reads the attribute header at the current position of the buffer and skips over its payload.
+	 * The payload is not copied, only its offset in the shared buffer is recorded.
+	 *
+	 * @param input the class file buffer positioned at the attribute
+	 * @param constantPool the ConstantPool of the class
+	 * @throws IOException if the attribute extends past the end of the buffer
+	 */
+	public AttributeInfo(@NonNull ByteBuffer input, @NonNull ConstantPool constantPool ) throws IOException {
+		this.name = (String)constantPool.get( input.getShort() & 0xFFFF );
+		this.length = input.getInt();
+		this.offset = input.position();
+		if( length < 0 || length > input.remaining() ) {
+			throw new IOException( "Attribute " + name + " has invalid length " + length );
+		}
+		this.buffer = input;
+		input.position( offset + length );
+	}
+
+	/**
+	 * Reads an attribute from a stream, copying it into a buffer of its own.
+	 *
+	 * @param input the stream positioned at the attribute
+	 * @param constantPool the ConstantPool of the class
+	 * @throws IOException if the stream ends before the attribute
+	 * @deprecated use {@link #AttributeInfo(ByteBuffer, ConstantPool)}, which does not copy the payload
+	 */
+	@Deprecated
 	public AttributeInfo(@NonNull DataInputStream input, @NonNull ConstantPool constantPool ) throws IOException {
-		this.name = (String)constantPool.get( input.readUnsignedShort() );
-		this.info = new byte[input.readInt()];
-		input.readFully( this.info );
+		this( Attributes.copy( input, false ), constantPool );
+	}
+
+	/**
+	 * An attribute whose header was already read, e.g. from a stream
+	 */
+	AttributeInfo( String name, ByteBuffer buffer, int offset, int length ) {
+		this.name = name;
+		this.buffer = buffer;
+		this.offset = offset;
+		this.length = length;
 	}
 
 	public String getName() {
 		return name;
 	}
 
+	/**
+	 * Returns a copy of the attribute payload. Prefer {@link #getBuffer()} and {@link #getOffset()} to avoid the copy.
+	 * @return the payload bytes
+	 */
 	public byte[] getData() {
-		return info;
+		byte[] result = info;
+		if( result == null ) {
+			result = new byte[length];
+			final ByteBuffer input = buffer.duplicate();
+			input.position( offset );
+			input.get( result );
+			info = result;
+		}
+		return result;
+	}
+
+	/**
+	 * The buffer shared by all attributes of the class file. Only absolute reads should be performed on it.
+	 * @return the class file buffer
+	 */
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return the absolute offset of the attribute payload in {@link #getBuffer()}
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return the length of the attribute payload in bytes
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Reads an unsigned 2 byte value from the payload
+	 * @param index the index relative to the start of the payload
+	 * @return the unsigned value
+	 */
+	public int getUnsignedShort(int index) {
+		return buffer.getShort( offset + index ) & 0xFFFF;
 	}
 
 	public DataInputStream getDataInputStream(){
-		return new DataInputStream( new ByteArrayInputStream( info ) );
+		return new DataInputStream( new ByteBufferInputStream( buffer, offset, length ) );
 	}
 }
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.attributes;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The attributes predefined by the JVM specification. The constant pool recognizes these names once per
+ * CONSTANT_Utf8 entry so {@link Attributes#get(AttributeName)} is an array read.
+ * https://docs.oracle.com/javase/specs/jvms/se11/html/jvms-4.html#jvms-4.7
+ */
+public enum AttributeName {
+	CONSTANT_VALUE("ConstantValue"),
+	CODE("Code"),
+	STACK_MAP_TABLE("StackMapTable"),
+	EXCEPTIONS("Exceptions"),
+	INNER_CLASSES("InnerClasses"),
+	ENCLOSING_METHOD("EnclosingMethod"),
+	SYNTHETIC("Synthetic"),
+	SIGNATURE("Signature"),
+	SOURCE_FILE("SourceFile"),
+	SOURCE_DEBUG_EXTENSION("SourceDebugExtension"),
+	LINE_NUMBER_TABLE("LineNumberTable"),
+	LOCAL_VARIABLE_TABLE("LocalVariableTable"),
+	LOCAL_VARIABLE_TYPE_TABLE("LocalVariableTypeTable"),
+	DEPRECATED("Deprecated"),
+	RUNTIME_VISIBLE_ANNOTATIONS("RuntimeVisibleAnnotations"),
+	RUNTIME_INVISIBLE_ANNOTATIONS("RuntimeInvisibleAnnotations"),
+	RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS("RuntimeVisibleParameterAnnotations"),
+	RUNTIME_INVISIBLE_PARAMETER_ANNOTATIONS("RuntimeInvisibleParameterAnnotations"),
+	RUNTIME_VISIBLE_TYPE_ANNOTATIONS("RuntimeVisibleTypeAnnotations"),
+	RUNTIME_INVISIBLE_TYPE_ANNOTATIONS("RuntimeInvisibleTypeAnnotations"),
+	ANNOTATION_DEFAULT("AnnotationDefault"),
+	BOOTSTRAP_METHODS("BootstrapMethods"),
+	METHOD_PARAMETERS("MethodParameters"),
+	MODULE("Module"),
+	MODULE_PACKAGES("ModulePackages"),
+	MODULE_MAIN_CLASS("ModuleMainClass"),
+	NEST_HOST("NestHost"),
+	NEST_MEMBERS("NestMembers");
+
+	private static final AttributeName[] VALUES = values();
+	private static final Map<String, AttributeName> BY_NAME = new HashMap<String, AttributeName>();
+
+	static {
+		for (AttributeName value : VALUES) {
+			BY_NAME.put(value.name, value);
+		}
+	}
+
+	private final String name;
+
+	AttributeName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return The name of the attribute as stored in the class file
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @param name An attribute name
+	 * @return The predefined attribute of the name or null
+	 */
+	public static AttributeName of(String name) {
+		return BY_NAME.get(name);
+	}
+}
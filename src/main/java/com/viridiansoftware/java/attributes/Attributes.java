@@ -15,35 +15,160 @@
  ******************************************************************************/
 package com.viridiansoftware.java.attributes;
 
+import com.viridiansoftware.java.ParseOptions;
 import com.viridiansoftware.java.constants.ConstantPool;
 import lombok.NonNull;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public class Attributes {
 
+    private static final AttributeInfo[] EMPTY = new AttributeInfo[0];
+    private static final int NAME_COUNT = AttributeName.values().length;
+    private static final byte[] NO_POSITIONS = new byte[NAME_COUNT];
+    /**
+     * Marks a predefined attribute stored past the positions a byte can hold, it is found by scanning
+     */
+    private static final int FAR_POSITION = 0xFF;
+
     private final AttributeInfo[] attributes;
 
+    /**
+     * The position + 1 of the first attribute of each predefined name, indexed by {@link AttributeName#ordinal()}
+     */
+    private final byte[] positions;
+
     private final ConstantPool constantPool;
 
+    public Attributes(@NonNull ByteBuffer input, @NonNull ConstantPool constantPool ) throws IOException {
+        this( input, constantPool, ParseOptions.DEFAULT );
+    }
+
+    /**
+     * Read an attributes table from a stream, copying it into a buffer of its own.
+     *
+     * @param input the stream positioned at the attributes_count
+     * @param constantPool the ConstantPool of the class
+     * @throws IOException if the stream ends before the table
+     * @deprecated use {@link #Attributes(ByteBuffer, ConstantPool)}, which does not copy the payloads
+     */
+    @Deprecated
     public Attributes(@NonNull DataInputStream input, @NonNull ConstantPool constantPool ) throws IOException {
+        this( copy( input, true ), constantPool );
+    }
+
+    /**
+     * Read an attributes table, skipping over attributes that are not retained by the options without allocating them.
+     *
+     * @param input the buffer of the class positioned at the attributes_count
+     * @param constantPool the ConstantPool of the class
+     * @param options the options deciding which attributes are retained
+     * @throws IOException if an attribute extends past the end of the buffer
+     */
+    public Attributes(@NonNull ByteBuffer input, @NonNull ConstantPool constantPool, @NonNull ParseOptions options ) throws IOException {
+        this.constantPool = constantPool;
+        final int count = input.getShort() & 0xFFFF;
+        final boolean retainsAttributes = options.retainsAttributes();
+        AttributeInfo[] attrs = null;
+        byte[] positions = NO_POSITIONS;
+        int total = 0;
+        for( int i = 0; i < count; i++ ) {
+            final int start = input.position();
+            if( input.remaining() < 6 ) {
+                throw new IOException( "Attribute header extends past the end of the class" );
+            }
+            final AttributeName name = retainsAttributes ? getAttributeName( constantPool, input.getShort( start ) & 0xFFFF ) : null;
+            if( !retainsAttributes || !options.isAttributeRetained( name ) ) {
+                final int length = input.getInt( start + 2 );
+                if( length < 0 || length > input.remaining() - 6 ) {
+                    throw new IOException( "Attribute has invalid length " + length );
+                }
+                input.position( start + 6 + length );
+                continue;
+            }
+            if( attrs == null ) {
+                attrs = new AttributeInfo[count - i];
+            }
+            if( name != null && positions[name.ordinal()] == 0 ) {
+                if( positions == NO_POSITIONS ) {
+                    positions = new byte[NAME_COUNT];
+                }
+                positions[name.ordinal()] = (byte)Math.min( total + 1, FAR_POSITION );
+            }
+            attrs[total++] = new AttributeInfo( input, constantPool );
+        }
+        if( attrs == null ) {
+            this.attributes = EMPTY;
+        } else {
+            this.attributes = total == attrs.length ? attrs : Arrays.copyOf( attrs, total );
+        }
+        this.positions = positions;
+    }
+
+    /**
+     * Resolves an attribute_name_index to its predefined attribute, an array read after the first lookup of the index.
+     *
+     * @param constantPool the ConstantPool of the class
+     * @param index the attribute_name_index
+     * @return the predefined attribute or null if the name is not predefined
+     * @throws IOException if the index is not a CONSTANT_Utf8 entry
+     */
+    public static AttributeName getAttributeName( @NonNull ConstantPool constantPool, int index ) throws IOException {
+        if( index >= constantPool.length() ) {
+            throw new IOException( "Attribute name index " + index + " is out of range" );
+        }
+        final AttributeName name = constantPool.getAttributeName( index );
+        if( name == null && !( constantPool.get( index ) instanceof String ) ) {
+            throw new IOException( "Attribute name index " + index + " is not a CONSTANT_Utf8" );
+        }
+        return name;
+    }
+
+    /**
+     * Create an empty attributes table for structures whose attributes were not read.
+     *
+     * @param constantPool the ConstantPool of the class
+     */
+    public Attributes(@NonNull ConstantPool constantPool ) {
         this.constantPool = constantPool;
-        this.attributes = readAttributs( input );
+        this.attributes = EMPTY;
+        this.positions = NO_POSITIONS;
     }
 
-    private AttributeInfo[] readAttributs( @NonNull DataInputStream input ) throws IOException {
-        AttributeInfo[] attrs = new AttributeInfo[input.readUnsignedShort()];
-        for( int i = 0; i < attrs.length; i++ ) {
-            attrs[i] = new AttributeInfo( input, constantPool );
+    /**
+     * Get the first attribute with a predefined name without comparing any names.
+     *
+     * @param name the predefined attribute name
+     * @return the attribute or null if there is none
+     */
+    public AttributeInfo get( @NonNull AttributeName name ) {
+        final int position = positions[name.ordinal()] & 0xFF;
+        if( position == 0 ) {
+            return null;
+        }
+        if( position == FAR_POSITION ) {
+            return find( name.getName() );
         }
-        return attrs;
+        return attributes[position - 1];
     }
 
     public AttributeInfo get(String name) {
         if(name == null) {
             return null;
         }
+        final AttributeName predefined = AttributeName.of( name );
+        if( predefined != null ) {
+            return get( predefined );
+        }
+        return find( name );
+    }
+
+    private AttributeInfo find( String name ) {
         for( AttributeInfo attr : attributes ) {
             if( attr.getName().equals( name ) ) {
                 return attr;
@@ -52,6 +177,47 @@ public class Attributes {
         return null;
     }
 
+    /**
+     * Copies an attributes table or a single attribute from a stream into a new buffer.
+     *
+     * @param input the stream positioned at the attributes_count or the attribute
+     * @param table true to copy a table, false to copy a single attribute
+     * @return the buffer positioned at the start of the copy
+     * @throws IOException if the stream ends before the attributes
+     */
+    static ByteBuffer copy( DataInputStream input, boolean table ) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        copy( input, new DataOutputStream( bytes ), table );
+        return ByteBuffer.wrap( bytes.toByteArray() );
+    }
+
+    static void copy( DataInputStream input, DataOutputStream output, boolean table ) throws IOException {
+        int count = 1;
+        if( table ) {
+            count = input.readUnsignedShort();
+            output.writeShort( count );
+        }
+        for( int i = 0; i < count; i++ ) {
+            output.writeShort( input.readUnsignedShort() );
+            final int length = input.readInt();
+            if( length < 0 ) {
+                throw new IOException( "Attribute has invalid length " + length );
+            }
+            output.writeInt( length );
+            copy( input, output, length );
+        }
+    }
+
+    static void copy( DataInputStream input, DataOutputStream output, int length ) throws IOException {
+        final byte[] chunk = new byte[Math.min( length, 8192 )];
+        for( int remaining = length; remaining > 0; ) {
+            final int read = Math.min( remaining, chunk.length );
+            input.readFully( chunk, 0, read );
+            output.write( chunk, 0, read );
+            remaining -= read;
+        }
+    }
+
     public void printAttributeNames()
     {
         for( AttributeInfo attr : attributes ) {
@@ -65,10 +231,10 @@ public class Attributes {
      * @throws IOException if an I/O error occurs.
      */
     public String getSourceFile() throws IOException{
-        AttributeInfo data = get( "SourceFile" );
+        AttributeInfo data = get( AttributeName.SOURCE_FILE );
         if( data == null ) {
             return null;
         }
-        return (String)constantPool.get( data.getDataInputStream().readUnsignedShort() );
+        return (String)constantPool.get( data.getUnsignedShort( 0 ) );
     }
 }
@@ -16,13 +16,18 @@
 package com.viridiansoftware.java.attributes;
 
 import com.viridiansoftware.java.CodeInputStream;
+import com.viridiansoftware.java.InstructionCursor;
+import com.viridiansoftware.java.ParseOptions;
 import com.viridiansoftware.java.constants.ConstantClass;
 import com.viridiansoftware.java.constants.ConstantMethodRef;
 import com.viridiansoftware.java.constants.ConstantPool;
 import lombok.NonNull;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class Code {
 
@@ -30,7 +35,10 @@ public class Code {
     private final BootstrapMethods bootstrapMethods;
     private final int maxStack;
     private final int maxLocals;
-    private final byte[] codeData;
+    private final ByteBuffer buffer;
+    private final int codeOffset;
+    private final int codeLength;
+    private volatile byte[] codeData;
     private final TryCatchFinally[] exceptionTable;
     private final Attributes attributes;
     private LineNumberTable lineNumberTable;
@@ -41,23 +49,75 @@ public class Code {
      * http://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.7.3
      * http://docs.oracle.com/javase/specs/jvms/se8/html/ClassFile.doc.html#1546
      *
-     * @param input
+     * The byte code is not copied, only its offset in the shared class file buffer is recorded.
+     *
+     * @param attributeInfo the Code attribute
      * @param constantPool
      * @throws IOException
      */
-    public Code( DataInputStream input, @NonNull ConstantPool constantPool, BootstrapMethods bootstrapMethods) throws IOException {
+    public Code( AttributeInfo attributeInfo, @NonNull ConstantPool constantPool, BootstrapMethods bootstrapMethods) throws IOException {
+        this( attributeInfo, constantPool, bootstrapMethods, ParseOptions.DEFAULT );
+    }
+
+    /**
+     * The code of a method attribute.
+     * The byte code is not copied, only its offset in the shared class file buffer is recorded.
+     *
+     * @param attributeInfo the Code attribute
+     * @param constantPool
+     * @param options the options deciding if debug attributes of the code are retained
+     * @throws IOException
+     */
+    public Code( AttributeInfo attributeInfo, @NonNull ConstantPool constantPool, BootstrapMethods bootstrapMethods, @NonNull ParseOptions options) throws IOException {
         this.constantPool = constantPool;
         this.bootstrapMethods = bootstrapMethods;
-        maxStack = input.readUnsignedShort(); //max_stack
-        maxLocals = input.readUnsignedShort(); //max_locals;
-        codeData = new byte[input.readInt()];
-        input.readFully( codeData );
+        final ByteBuffer input = attributeInfo.getBuffer().duplicate();
+        input.position( attributeInfo.getOffset() );
+        buffer = attributeInfo.getBuffer();
+        maxStack = input.getShort() & 0xFFFF; //max_stack
+        maxLocals = input.getShort() & 0xFFFF; //max_locals;
+        codeLength = input.getInt();
+        codeOffset = input.position();
+        if( codeLength < 0 || codeLength > input.remaining() ) {
+            throw new IOException( "Invalid code length: " + codeLength );
+        }
+        input.position( codeOffset + codeLength );
 
-        exceptionTable = new TryCatchFinally[input.readUnsignedShort()];
+        exceptionTable = new TryCatchFinally[input.getShort() & 0xFFFF];
         for( int i = 0; i < exceptionTable.length; i++ ) {
             exceptionTable[i] = new TryCatchFinally( input, constantPool );
         }
-        attributes = new Attributes( input, constantPool );
+        attributes = new Attributes( input, constantPool, options );
+    }
+
+    /**
+     * The code of a method attribute read from a stream, copying it into a buffer of its own.
+     *
+     * @param input the stream positioned at the max_stack of the Code attribute
+     * @param constantPool
+     * @throws IOException
+     * @deprecated use {@link #Code(AttributeInfo, ConstantPool, BootstrapMethods)}, which does not copy the byte code
+     */
+    @Deprecated
+    public Code( DataInputStream input, @NonNull ConstantPool constantPool, BootstrapMethods bootstrapMethods) throws IOException {
+        this( copy( input ), constantPool, bootstrapMethods );
+    }
+
+    private static AttributeInfo copy( DataInputStream input ) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream( bytes );
+        output.writeInt( input.readInt() ); //max_stack, max_locals
+        final int codeLength = input.readInt();
+        if( codeLength < 0 ) {
+            throw new IOException( "Invalid code length: " + codeLength );
+        }
+        output.writeInt( codeLength );
+        Attributes.copy( input, output, codeLength );
+        final int exceptionTableLength = input.readUnsignedShort();
+        output.writeShort( exceptionTableLength );
+        Attributes.copy( input, output, exceptionTableLength * 8 );
+        Attributes.copy( input, output, true );
+        return new AttributeInfo( "Code", ByteBuffer.wrap( bytes.toByteArray() ), 0, bytes.size() );
     }
 
     public Code() {
@@ -65,6 +125,9 @@ public class Code {
         bootstrapMethods = null;
         maxStack = 0;
         maxLocals = 0;
+        buffer = null;
+        codeOffset = 0;
+        codeLength = 0;
         codeData = new byte[0];
         exceptionTable = new TryCatchFinally[0];
         attributes = null;
@@ -90,9 +153,9 @@ public class Code {
         if( lineNumberTable != null ){
             return lineNumberTable;
         }
-        AttributeInfo data = attributes.get( "LineNumberTable" );
+        AttributeInfo data = attributes.get( AttributeName.LINE_NUMBER_TABLE );
         if( data != null ) {
-            lineNumberTable = new LineNumberTable( data.getDataInputStream() );
+            lineNumberTable = new LineNumberTable( data.getDataInputStream(), codeLength );
         }
         return lineNumberTable;
     }
@@ -101,7 +164,7 @@ public class Code {
         if( localVariableTable != null ){
             return localVariableTable;
         }
-        AttributeInfo data = attributes.get( "LocalVariableTable" );
+        AttributeInfo data = attributes.get( AttributeName.LOCAL_VARIABLE_TABLE );
         if( data != null ) {
             localVariableTable = new LocalVariableTable( maxLocals, constantPool );
             localVariableTable.read( data.getDataInputStream() );
@@ -133,16 +196,38 @@ public class Code {
      * @return the stream
      */
     public CodeInputStream getByteCode() {
+        if( buffer != null && buffer.hasArray() ) {
+            return new CodeInputStream( buffer.array(), buffer.arrayOffset() + codeOffset, codeLength, this );
+        }
+        final byte[] codeData = getCodeData();
         return new CodeInputStream( codeData, 0, codeData.length, this );
     }
 
+    /**
+     * Get a cursor over the Java Byte code instructions of this method. The byte code is read in place when the
+     * class was read into an array.
+     *
+     * @return the cursor, positioned before the first instruction
+     */
+    public InstructionCursor getInstructions() {
+        if( buffer != null && buffer.hasArray() ) {
+            return new InstructionCursor( buffer.array(), buffer.arrayOffset() + codeOffset, codeLength, constantPool );
+        }
+        final byte[] codeData = getCodeData();
+        return new InstructionCursor( codeData, 0, codeData.length, constantPool );
+    }
+
     public int getCodeSize(){
-        return codeData.length;
+        return codeLength;
+    }
+
+    private byte getCodeByte( int index ) {
+        return buffer.get( codeOffset + index );
     }
 
     public boolean startWithSuperInit( ConstantClass superClass ){
-        if( codeData.length >= 4 && codeData[0] == 0x2a && codeData[1] == (byte)0xb7) {
-            int idx = ((codeData[2] & 0xFF << 8)) + (codeData[3] & 0xFF);
+        if( codeLength >= 4 && getCodeByte( 0 ) == 0x2a && getCodeByte( 1 ) == (byte)0xb7) {
+            int idx = buffer.getShort( codeOffset + 2 ) & 0xFFFF;
             ConstantMethodRef method = (ConstantMethodRef)constantPool.get( idx );
             return method.getConstantClass() == superClass;
         }
@@ -160,16 +245,45 @@ public class Code {
      * @return
      */
     public boolean isSuperInitReturn( ConstantClass superClass ) {
-        if( codeData.length == 5 && codeData[0] == 0x2a && codeData[1] == (byte)0xb7 && codeData[4] == (byte)0xb1 ) {
-            int idx = ((codeData[2] & 0xFF << 8)) + (codeData[3] & 0xFF);
+        if( codeLength == 5 && getCodeByte( 0 ) == 0x2a && getCodeByte( 1 ) == (byte)0xb7 && getCodeByte( 4 ) == (byte)0xb1 ) {
+            int idx = buffer.getShort( codeOffset + 2 ) & 0xFFFF;
             ConstantMethodRef method = (ConstantMethodRef)constantPool.get( idx );
             return method.getConstantClass() == superClass;
         }
         return false;
     }
 
+    /**
+     * Returns a copy of the byte code. Prefer {@link #getBuffer()} and {@link #getCodeOffset()} to avoid the copy.
+     *
+     * @return the byte code
+     */
     public byte[] getCodeData() {
-        return codeData;
+        byte[] result = codeData;
+        if( result == null ) {
+            result = new byte[codeLength];
+            final ByteBuffer input = buffer.duplicate();
+            input.position( codeOffset );
+            input.get( result );
+            codeData = result;
+        }
+        return result;
+    }
+
+    /**
+     * The buffer shared by the whole class file. Only absolute reads should be performed on it.
+     *
+     * @return the class file buffer or null for an empty code attribute
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the absolute offset of the first instruction in {@link #getBuffer()}
+     */
+    public int getCodeOffset() {
+        return codeOffset;
     }
 
 	public int getMaxStack() {
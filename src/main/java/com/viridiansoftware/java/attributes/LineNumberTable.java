@@ -17,11 +17,22 @@ package com.viridiansoftware.java.attributes;
 
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.util.Arrays;
 
 public class LineNumberTable {
 
+    /**
+     * Methods with at most this many bytes of code get a table with the line of every code index
+     */
+    private static final int DENSE_CODE_LENGTH = 1024;
+
     private final int start_pc[];
     private final int line_number[];
+    private final int codeLength;
+    private final int minLineNr;
+    private final int maxLineNr;
+
+    private Index index;
 
     /**
      * http://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.7.12
@@ -32,13 +43,33 @@ public class LineNumberTable {
      * @throws IOException
      */
     public LineNumberTable( DataInputStream input ) throws IOException {
+        this( input, -1 );
+    }
+
+    /**
+     * http://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.7.12
+     *
+     * @param input
+     *            the stream of the class
+     * @param codeLength
+     *            the length of the code the table belongs to or -1 if unknown, short methods are indexed densely
+     * @throws IOException
+     */
+    public LineNumberTable( DataInputStream input, int codeLength ) throws IOException {
         int count = input.readUnsignedShort();
         start_pc = new int[count];
         line_number = new int[count];
+        int min = 0xFFFF;
+        int max = -1;
         for( int i = 0; i < count; i++ ) {
             start_pc[i] = input.readUnsignedShort();
             line_number[i] = input.readUnsignedShort();
+            min = Math.min( min, line_number[i] );
+            max = Math.max( max, line_number[i] );
         }
+        this.codeLength = codeLength;
+        this.minLineNr = min;
+        this.maxLineNr = max;
     }
 
     /**
@@ -81,19 +112,155 @@ public class LineNumberTable {
     }
 
     public int getMinLineNr(){
-        int min = 0xFFFF;
-        for( int nr : line_number ){
-            min = Math.min( min, nr );
-        }
-        return min;
+        return minLineNr;
     }
 
     public int getMaxLineNr(){
-        int max = -1;
-        for( int nr : line_number ){
-            max = Math.max( max, nr );
+        return maxLineNr;
+    }
+
+    /**
+     * Get the line number of the source code an instruction was compiled from, in O(log n) or O(1) for short
+     * methods. If several entries start at the same code offset the last one wins.
+     *
+     * @param pc
+     *            the code offset of the instruction
+     * @return the line number or -1 if no entry starts at or before the offset
+     */
+    public int getLineNumberAt( int pc ) {
+        final Index index = getIndex();
+        if( index.dense != null && pc >= 0 && pc < index.dense.length ) {
+            return index.dense[pc] - 1;
         }
-        return max;
+        final int entry = index.find( pc );
+        return entry < 0 ? -1 : index.lines[entry];
     }
 
+    /**
+     * Get the line numbers of many instructions at once. Ascending code offsets, e.g. of every instruction of a
+     * method, are resolved in a single pass over the table; other offsets are looked up individually.
+     *
+     * @param pcs
+     *            the code offsets of the instructions
+     * @param lines
+     *            receives the line number of each offset or -1
+     * @param count
+     *            the number of offsets
+     */
+    public void getLineNumbersAt( int[] pcs, int[] lines, int count ) {
+        final Index index = getIndex();
+        int entry = -1;
+        int previous = Integer.MIN_VALUE;
+        for( int i = 0; i < count; i++ ) {
+            final int pc = pcs[i];
+            if( pc < previous ) {
+                entry = index.find( pc );
+            } else {
+                while( entry + 1 < index.pcs.length && index.pcs[entry + 1] <= pc ) {
+                    entry++;
+                }
+            }
+            lines[i] = entry < 0 ? -1 : index.lines[entry];
+            previous = pc;
+        }
+    }
+
+    /**
+     * Get the distinct line numbers of the code between two offsets, for example of a try block
+     *
+     * @param startPc
+     *            the first code offset, inclusive
+     * @param endPc
+     *            the last code offset, exclusive
+     * @return the ascending line numbers
+     */
+    public int[] getLineNumbers( int startPc, int endPc ) {
+        final Index index = getIndex();
+        int first = Math.max( 0, index.find( startPc ) );
+        int end = first;
+        while( end < index.pcs.length && index.pcs[end] < endPc ) {
+            end++;
+        }
+        if( end == first || startPc >= endPc ) {
+            return new int[0];
+        }
+        final int[] result = Arrays.copyOfRange( index.lines, first, end );
+        Arrays.sort( result );
+        int distinct = 0;
+        for( int i = 0; i < result.length; i++ ) {
+            if( distinct == 0 || result[i] != result[distinct - 1] ) {
+                result[distinct++] = result[i];
+            }
+        }
+        return Arrays.copyOf( result, distinct );
+    }
+
+    private Index getIndex() {
+        Index result = index;
+        if( result == null ) {
+            result = new Index( start_pc, line_number, codeLength, maxLineNr );
+            index = result;
+        }
+        return result;
+    }
+
+    /**
+     * The entries sorted by code offset with one entry per offset. Immutable, so it can be published without
+     * synchronization.
+     */
+    private static final class Index {
+        final int[] pcs;
+        final int[] lines;
+        final char[] dense;
+
+        Index( int[] start_pc, int[] line_number, int codeLength, int maxLineNr ) {
+            final long[] entries = new long[start_pc.length];
+            for( int i = 0; i < entries.length; i++ ) {
+                //The table position breaks ties, so the last of several entries of an offset is kept
+                entries[i] = ((long)start_pc[i] << 32) | i;
+            }
+            Arrays.sort( entries );
+            int count = 0;
+            final int[] pcs = new int[entries.length];
+            final int[] lines = new int[entries.length];
+            for( long entry : entries ) {
+                final int pc = (int)(entry >>> 32);
+                if( count > 0 && pcs[count - 1] == pc ) {
+                    count--;
+                }
+                pcs[count] = pc;
+                lines[count++] = line_number[(int)entry];
+            }
+            this.pcs = Arrays.copyOf( pcs, count );
+            this.lines = Arrays.copyOf( lines, count );
+
+            if( codeLength > 0 && codeLength <= DENSE_CODE_LENGTH && count > 0 && maxLineNr < 0xFFFF ) {
+                //Stores the line plus one so that offsets before the first entry are zero
+                dense = new char[codeLength];
+                for( int i = 0; i < count && this.pcs[i] < codeLength; i++ ) {
+                    final int end = i + 1 < count ? Math.min( this.pcs[i + 1], codeLength ) : codeLength;
+                    Arrays.fill( dense, this.pcs[i], end, (char)(this.lines[i] + 1) );
+                }
+            } else {
+                dense = null;
+            }
+        }
+
+        /**
+         * @return the index of the last entry starting at or before the offset or -1
+         */
+        int find( int pc ) {
+            int low = 0;
+            int high = pcs.length - 1;
+            while( low <= high ) {
+                final int middle = (low + high) >>> 1;
+                if( pcs[middle] <= pc ) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low - 1;
+        }
+    }
 }
@@ -45,11 +45,16 @@ public class LocalVariable {
      *             if any I/O error occurs.
      */
     public LocalVariable( DataInputStream input, int position, ConstantPool constantPool ) throws IOException {
-        start_pc = input.readUnsignedShort();
-        length = input.readUnsignedShort();
-        name_index = input.readUnsignedShort();
-        descriptor_index = input.readUnsignedShort();
-        index = input.readUnsignedShort();
+        this( input.readUnsignedShort(), input.readUnsignedShort(), input.readUnsignedShort(), input.readUnsignedShort(),
+                input.readUnsignedShort(), position, constantPool );
+    }
+
+    LocalVariable( int start_pc, int length, int name_index, int descriptor_index, int index, int position, ConstantPool constantPool ) {
+        this.start_pc = start_pc;
+        this.length = length;
+        this.name_index = name_index;
+        this.descriptor_index = descriptor_index;
+        this.index = index;
         this.position = position;
         this.constantPool = constantPool;
     }
@@ -21,13 +21,38 @@ import lombok.NonNull;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * The local variables of a method, indexed by slot when read so that the variable occupying a slot at a code
+ * offset is found by binary search. Entries are kept in primitive arrays and {@link LocalVariable} views are only
+ * created on request. The views and the name index are created lazily and published safely, so a table may be
+ * shared between threads once read.
+ */
 public class LocalVariableTable {
+    private static final int[] NO_ENTRIES = new int[0];
+
     private final int maxLocals;
     private final ConstantPool constantPool;
-    private final List<LocalVariable> table;
     private int count;
+    private int[] startPcs = NO_ENTRIES;
+    private int[] lengths = NO_ENTRIES;
+    private int[] nameIndexes = NO_ENTRIES;
+    private int[] descriptorIndexes = NO_ENTRIES;
+    private int[] slots = NO_ENTRIES;
+    private AtomicReferenceArray<LocalVariable> variables;
+    private volatile Map<String, Integer> names;
+
+    /**
+     * The entries ordered by slot and start offset, the entries of slot s are bySlot[slotOffsets[s]] up to
+     * bySlot[slotOffsets[s + 1]]
+     */
+    private int[] slotOffsets = { 0 };
+    private int[] bySlot = NO_ENTRIES;
 
     /**
      * Create a new instance of the code attribute "LocalVariableTable".
@@ -39,7 +64,6 @@ public class LocalVariableTable {
      */
     public LocalVariableTable( int maxLocals, ConstantPool constantPool ) {
         this.maxLocals = maxLocals;
-        table = new ArrayList(maxLocals + 1);
         this.constantPool = constantPool;
     }
 
@@ -54,10 +78,35 @@ public class LocalVariableTable {
      */
     void read( DataInputStream input) throws IOException {
         count = input.readUnsignedShort();
+        startPcs = new int[count];
+        lengths = new int[count];
+        nameIndexes = new int[count];
+        descriptorIndexes = new int[count];
+        slots = new int[count];
+        variables = new AtomicReferenceArray<LocalVariable>( count );
+        int maxSlot = -1;
         for( int i = 0; i < count; i++ ) {
-            LocalVariable var = new LocalVariable( input, i, constantPool );
-            int idx = var.getIndex();
-            table.add(var);
+            startPcs[i] = input.readUnsignedShort();
+            lengths[i] = input.readUnsignedShort();
+            nameIndexes[i] = input.readUnsignedShort();
+            descriptorIndexes[i] = input.readUnsignedShort();
+            slots[i] = input.readUnsignedShort();
+            maxSlot = Math.max( maxSlot, slots[i] );
+        }
+
+        final long[] keys = new long[count];
+        for( int i = 0; i < count; i++ ) {
+            keys[i] = ((long)slots[i] << 40) | ((long)startPcs[i] << 16) | i;
+        }
+        Arrays.sort( keys );
+        bySlot = new int[count];
+        slotOffsets = new int[maxSlot + 2];
+        for( int i = 0; i < count; i++ ) {
+            bySlot[i] = (int)(keys[i] & 0xFFFF);
+            slotOffsets[slots[bySlot[i]] + 1]++;
+        }
+        for( int slot = 0; slot <= maxSlot; slot++ ) {
+            slotOffsets[slot + 1] += slotOffsets[slot];
         }
     }
 
@@ -70,11 +119,21 @@ public class LocalVariableTable {
      */
     @NonNull
     public LocalVariable getByEntryIndex( int idx ) {
-        return table.get(idx);
+        if( idx < 0 || idx >= count ) {
+            throw new IndexOutOfBoundsException( "Index: " + idx + ", Size: " + count );
+        }
+        final LocalVariable variable = variables.get( idx );
+        if( variable != null ) {
+            return variable;
+        }
+        //LocalVariable is mutable, so every caller must see the same instance
+        final LocalVariable created = new LocalVariable( startPcs[idx], lengths[idx], nameIndexes[idx],
+                descriptorIndexes[idx], slots[idx], idx, constantPool );
+        return variables.compareAndSet( idx, null, created ) ? created : variables.get( idx );
     }
 
     public int getTotalEntires() {
-        return table.size();
+        return count;
     }
 
     public int getMaxLocals() {
@@ -86,17 +145,147 @@ public class LocalVariableTable {
      *
      * @param name
      *            needed for evaluate the name.
-     * @return the LocalVariable or null
+     * @return the first LocalVariable of the name in the table or null
      */
     public LocalVariable get( String name ) {
         if(name == null) {
             return null;
         }
-        for( int i=0; i< table.size(); i++ ){
-            if( name.equals( table.get(i).getName() )) {
-                return table.get(i);
+        Map<String, Integer> result = names;
+        if( result == null ) {
+            result = new HashMap<String, Integer>( count * 2 );
+            for( int i = count - 1; i >= 0; i-- ) {
+                result.put( getName( i ), i );
+            }
+            names = result;
+        }
+        final Integer entry = result.get( name );
+        return entry == null ? null : getByEntryIndex( entry );
+    }
+
+    /**
+     * Find the entry of the variable occupying a slot at a code offset in O(log n).
+     * The scopes of the entries of a slot are expected not to overlap, as emitted by compilers.
+     *
+     * @param slot
+     *            the local variable index
+     * @param pc
+     *            the code offset
+     * @return the entry index or -1 if no variable is in scope
+     */
+    public int findEntry( int slot, int pc ) {
+        if( slot < 0 || slot + 1 >= slotOffsets.length ) {
+            return -1;
+        }
+        int low = slotOffsets[slot];
+        int high = slotOffsets[slot + 1] - 1;
+        while( low <= high ) {
+            final int middle = (low + high) >>> 1;
+            if( startPcs[bySlot[middle]] <= pc ) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
             }
         }
-        return null;
+        if( high < slotOffsets[slot] ) {
+            return -1;
+        }
+        final int entry = bySlot[high];
+        return pc < startPcs[entry] + lengths[entry] ? entry : -1;
+    }
+
+    /**
+     * Find the variable occupying a slot at a code offset in O(log n).
+     *
+     * @param slot
+     *            the local variable index
+     * @param pc
+     *            the code offset
+     * @return the LocalVariable or null if no variable is in scope
+     */
+    public LocalVariable get( int slot, int pc ) {
+        final int entry = findEntry( slot, pc );
+        return entry < 0 ? null : getByEntryIndex( entry );
+    }
+
+    /**
+     * Get the name of the variable occupying a slot at a code offset in O(log n).
+     *
+     * @param slot
+     *            the local variable index
+     * @param pc
+     *            the code offset
+     * @return the name or null if no variable is in scope
+     */
+    public String getName( int slot, int pc ) {
+        final int entry = findEntry( slot, pc );
+        return entry < 0 ? null : getName( entry );
+    }
+
+    /**
+     * Find the entries of all variables in scope at a code offset, in O(s log n) for s used slots.
+     *
+     * @param pc
+     *            the code offset
+     * @param entries
+     *            receives the entry indexes in slot order, at least {@link #getSlotCount()} long
+     * @return the number of entries found
+     */
+    public int findLiveEntries( int pc, int[] entries ) {
+        int found = 0;
+        for( int slot = 0; slot + 1 < slotOffsets.length; slot++ ) {
+            if( slotOffsets[slot] == slotOffsets[slot + 1] ) {
+                continue;
+            }
+            final int entry = findEntry( slot, pc );
+            if( entry >= 0 ) {
+                entries[found++] = entry;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Get all variables in scope at a code offset.
+     *
+     * @param pc
+     *            the code offset
+     * @return the variables in slot order
+     */
+    public List<LocalVariable> getLiveVariables( int pc ) {
+        final int[] entries = new int[Math.max( 0, slotOffsets.length - 1 )];
+        final int found = findLiveEntries( pc, entries );
+        final List<LocalVariable> result = new ArrayList<LocalVariable>( found );
+        for( int i = 0; i < found; i++ ) {
+            result.add( getByEntryIndex( entries[i] ) );
+        }
+        return result;
+    }
+
+    /**
+     * @return one more than the highest slot in the table, an upper bound of the variables live at any offset
+     */
+    public int getSlotCount() {
+        return slotOffsets.length - 1;
+    }
+
+    public String getName( int entry ) {
+        return (String)constantPool.get( nameIndexes[entry] );
+    }
+
+    public int getSlot( int entry ) {
+        return slots[entry];
+    }
+
+    public int getStartPc( int entry ) {
+        return startPcs[entry];
+    }
+
+    public int getLength( int entry ) {
+        return lengths[entry];
+    }
+
+    public int getDescriptorIndex( int entry ) {
+        return descriptorIndexes[entry];
     }
 }
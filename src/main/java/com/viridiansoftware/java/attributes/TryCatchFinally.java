@@ -19,8 +19,8 @@ import com.viridiansoftware.java.constants.ConstantClass;
 import com.viridiansoftware.java.constants.ConstantPool;
 import lombok.NonNull;
 
-import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class TryCatchFinally {
 
@@ -37,11 +37,11 @@ public class TryCatchFinally {
      * @param constantPool
      * @throws IOException
      */
-    public TryCatchFinally( DataInputStream input, @NonNull ConstantPool constantPool ) throws IOException {
-        start = input.readUnsignedShort();
-        end = input.readUnsignedShort();
-        handler = input.readUnsignedShort();
-        type = (ConstantClass)constantPool.get( input.readUnsignedShort() );
+    public TryCatchFinally( ByteBuffer input, @NonNull ConstantPool constantPool ) throws IOException {
+        start = input.getShort() & 0xFFFF;
+        end = input.getShort() & 0xFFFF;
+        handler = input.getShort() & 0xFFFF;
+        type = (ConstantClass)constantPool.get( input.getShort() & 0xFFFF );
     }
 
     public int getStart() {
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.cache;
+
+/**
+ * A snapshot of the counters of a {@link ClassFileCache}
+ */
+public class CacheStatistics {
+	private final long hitCount;
+	private final long softHitCount;
+	private final long missCount;
+	private final long evictionCount;
+	private final long loadSuccessCount;
+	private final long loadFailureCount;
+	private final long totalLoadNanos;
+	private final long coalescedLoadCount;
+	private final int size;
+	private final long weightedSize;
+
+	public CacheStatistics(long hitCount, long softHitCount, long missCount, long evictionCount, long loadSuccessCount,
+	                       long loadFailureCount, long totalLoadNanos, long coalescedLoadCount, int size,
+	                       long weightedSize) {
+		this.hitCount = hitCount;
+		this.softHitCount = softHitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.loadSuccessCount = loadSuccessCount;
+		this.loadFailureCount = loadFailureCount;
+		this.totalLoadNanos = totalLoadNanos;
+		this.coalescedLoadCount = coalescedLoadCount;
+		this.size = size;
+		this.weightedSize = weightedSize;
+	}
+
+	/**
+	 * @return The number of lookups served from memory, including those served from the soft tier
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * @return The number of lookups served from the soft-reference tier after eviction from the main tier
+	 */
+	public long getSoftHitCount() {
+		return softHitCount;
+	}
+
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * @return The number of entries removed from the main tier to stay within the weight limit
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	public long getLoadSuccessCount() {
+		return loadSuccessCount;
+	}
+
+	/**
+	 * @return The number of loads that threw an exception. A loader returning null is not a failure, the lookup
+	 * only counts as a miss
+	 */
+	public long getLoadFailureCount() {
+		return loadFailureCount;
+	}
+
+	public long getTotalLoadNanos() {
+		return totalLoadNanos;
+	}
+
+	/**
+	 * @return The number of misses that waited for another thread's load of the same key instead of loading
+	 */
+	public long getCoalescedLoadCount() {
+		return coalescedLoadCount;
+	}
+
+	/**
+	 * @return The number of entries in the main tier
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return The total weight of the entries in the main tier
+	 */
+	public long getWeightedSize() {
+		return weightedSize;
+	}
+
+	public double getHitRate() {
+		final long requests = hitCount + missCount;
+		return requests == 0 ? 1.0 : (double) hitCount / requests;
+	}
+
+	public double getAverageLoadNanos() {
+		final long loads = loadSuccessCount + loadFailureCount;
+		return loads == 0 ? 0 : (double) totalLoadNanos / loads;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d hits (%d soft), %d misses (%.1f%% hit rate), %d evictions, %d loads, %d failed, " +
+						"%d coalesced, %.3fms average load, %d entries weighing %d bytes", hitCount, softHitCount,
+				missCount, getHitRate() * 100, evictionCount, loadSuccessCount, loadFailureCount, coalescedLoadCount,
+				getAverageLoadNanos() / 1000000.0, size, weightedSize);
+	}
+}
@@ -0,0 +1,358 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.cache;
+
+import com.viridiansoftware.java.ClassFile;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread safe cache of parsed classes keyed by class name or content hash, bounded by the estimated heap
+ * retained by its classes rather than by the number of entries.
+ *
+ * The main tier is a single access ordered map guarded by a lock, which evicts the least recently used entries of
+ * the whole cache once the weight limit is exceeded. Evicted classes can optionally be kept in a soft-reference
+ * tier, which the garbage collector clears under memory pressure; a hit in that tier moves the class back to the
+ * main tier. A class weighing more than the limit is not kept in the main tier.
+ */
+public class ClassFileCache {
+	private final MainTier mainTier;
+	private final ClassFileWeigher weigher;
+	private final ConcurrentHashMap<String, SoftValue> softTier;
+	private final ReferenceQueue<ClassFile> softQueue;
+	private final ConcurrentHashMap<String, CompletableFuture<ClassFile>> loading =
+			new ConcurrentHashMap<String, CompletableFuture<ClassFile>>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder softHits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder loadSuccesses = new LongAdder();
+	private final LongAdder loadFailures = new LongAdder();
+	private final LongAdder loadNanos = new LongAdder();
+	private final LongAdder coalescedLoads = new LongAdder();
+
+	/**
+	 * Creates a cache weighing classes with {@link ClassFileWeigher#ESTIMATED_SIZE} without a soft-reference tier
+	 * @param maxWeight The maximum total weight of the cached classes
+	 */
+	public ClassFileCache(long maxWeight) {
+		this(maxWeight, ClassFileWeigher.ESTIMATED_SIZE, false);
+	}
+
+	/**
+	 * @param maxWeight The maximum total weight of the cached classes
+	 * @param weigher Estimates the weight of each class
+	 * @param softTier True to keep evicted classes softly reachable until the garbage collector clears them
+	 */
+	public ClassFileCache(long maxWeight, ClassFileWeigher weigher, boolean softTier) {
+		if (maxWeight < 0) {
+			throw new IllegalArgumentException("Maximum weight must not be negative");
+		}
+		this.weigher = weigher;
+		this.softTier = softTier ? new ConcurrentHashMap<String, SoftValue>() : null;
+		this.softQueue = softTier ? new ReferenceQueue<ClassFile>() : null;
+		this.mainTier = new MainTier(maxWeight);
+	}
+
+	/**
+	 * @param key The class name or content hash
+	 * @return The cached class or null
+	 */
+	public ClassFile getIfPresent(String key) {
+		ClassFile classFile = mainTier.get(key);
+		if (classFile == null && softTier != null) {
+			classFile = getSoft(key);
+		}
+		if (classFile == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		return classFile;
+	}
+
+	/**
+	 * Returns the cached class of a key, loading and caching it on a miss.
+	 *
+	 * Concurrent misses of the same key are loaded once: the first thread invokes the loader while the others wait
+	 * for its result. A failed load is reported to every waiting thread and is not cached, so the next lookup of
+	 * the key loads it again.
+	 * @param key The class name or content hash
+	 * @param loader Loads the class on a miss
+	 * @return The class or null if the loader returned null
+	 * @throws IOException if the loader failed
+	 * @throws InterruptedIOException if the thread was interrupted while waiting for another thread's load
+	 */
+	public ClassFile get(String key, ClassFileLoader loader) throws IOException {
+		final ClassFile cached = getIfPresent(key);
+		if (cached != null) {
+			return cached;
+		}
+		final CompletableFuture<ClassFile> future = new CompletableFuture<ClassFile>();
+		final CompletableFuture<ClassFile> existing = loading.putIfAbsent(key, future);
+		if (existing != null) {
+			coalescedLoads.increment();
+			return await(key, existing);
+		}
+		try {
+			//A load may have completed between the miss and registering this one
+			ClassFile classFile = mainTier.get(key);
+			if (classFile == null) {
+				classFile = load(key, loader);
+				if (classFile != null) {
+					put(key, classFile);
+				}
+			}
+			future.complete(classFile);
+			return classFile;
+		} catch (IOException | RuntimeException | Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			loading.remove(key, future);
+		}
+	}
+
+	private static ClassFile await(String key, CompletableFuture<ClassFile> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for " + key);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException("Could not load " + key, cause);
+		}
+	}
+
+	/**
+	 * Caches a class, replacing the class previously cached under the key
+	 */
+	public void put(String key, ClassFile classFile) {
+		final long weight = weigher.weigh(key, classFile);
+		if (weight < 0) {
+			throw new IllegalStateException("Negative weight " + weight + " for " + key);
+		}
+		if (softTier != null) {
+			softTier.remove(key);
+			purgeSoftTier();
+		}
+		mainTier.put(key, classFile, weight);
+	}
+
+	/**
+	 * Removes a key from both tiers
+	 */
+	public void invalidate(String key) {
+		mainTier.remove(key);
+		if (softTier != null) {
+			softTier.remove(key);
+		}
+	}
+
+	public void invalidateAll() {
+		mainTier.clear();
+		if (softTier != null) {
+			softTier.clear();
+			purgeSoftTier();
+		}
+	}
+
+	/**
+	 * @return The number of entries in the main tier
+	 */
+	public int size() {
+		return mainTier.size();
+	}
+
+	/**
+	 * @return The number of entries in the soft-reference tier, including entries already cleared but not purged
+	 */
+	public int getSoftSize() {
+		if (softTier == null) {
+			return 0;
+		}
+		purgeSoftTier();
+		return softTier.size();
+	}
+
+	/**
+	 * @return The total weight of the entries in the main tier
+	 */
+	public long getWeightedSize() {
+		return mainTier.getWeight();
+	}
+
+	public CacheStatistics getStatistics() {
+		final int size;
+		final long weight;
+		synchronized (mainTier) {
+			size = mainTier.size();
+			weight = mainTier.getWeight();
+		}
+		return new CacheStatistics(hits.sum(), softHits.sum(), misses.sum(), evictions.sum(), loadSuccesses.sum(),
+				loadFailures.sum(), loadNanos.sum(), coalescedLoads.sum(), size, weight);
+	}
+
+	/**
+	 * Invokes a loader, recording its time and outcome. A loader returning null did not find the key, which leaves
+	 * the lookup counted as a miss only.
+	 */
+	ClassFile load(String key, ClassFileLoader loader) throws IOException {
+		final long startTime = System.nanoTime();
+		final ClassFile classFile;
+		try {
+			classFile = loader.load(key);
+		} catch (IOException | RuntimeException | Error e) {
+			loadNanos.add(System.nanoTime() - startTime);
+			loadFailures.increment();
+			throw e;
+		}
+		if (classFile != null) {
+			loadNanos.add(System.nanoTime() - startTime);
+			loadSuccesses.increment();
+		}
+		return classFile;
+	}
+
+	private ClassFile getSoft(String key) {
+		final SoftValue value = softTier.remove(key);
+		if (value == null) {
+			return null;
+		}
+		final ClassFile classFile = value.get();
+		if (classFile == null) {
+			return null;
+		}
+		softHits.increment();
+		mainTier.put(key, classFile, value.weight);
+		return classFile;
+	}
+
+	private void purgeSoftTier() {
+		Reference<? extends ClassFile> reference;
+		while ((reference = softQueue.poll()) != null) {
+			final SoftValue value = (SoftValue) reference;
+			softTier.remove(value.key, value);
+		}
+	}
+
+	private static class Entry {
+		final ClassFile classFile;
+		final long weight;
+
+		Entry(ClassFile classFile, long weight) {
+			this.classFile = classFile;
+			this.weight = weight;
+		}
+	}
+
+	private static class SoftValue extends SoftReference<ClassFile> {
+		final String key;
+		final long weight;
+
+		SoftValue(String key, ClassFile classFile, long weight, ReferenceQueue<ClassFile> queue) {
+			super(classFile, queue);
+			this.key = key;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * An access ordered map of all strongly held entries, evicting the least recently used ones above the weight limit
+	 */
+	private class MainTier {
+		private final long maxWeight;
+		private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+		private long weight;
+
+		MainTier(long maxWeight) {
+			this.maxWeight = maxWeight;
+		}
+
+		synchronized ClassFile get(String key) {
+			final Entry entry = entries.get(key);
+			return entry == null ? null : entry.classFile;
+		}
+
+		synchronized void put(String key, ClassFile classFile, long weight) {
+			final Entry previous = entries.remove(key);
+			if (previous != null) {
+				this.weight -= previous.weight;
+			}
+			if (weight > maxWeight) {
+				evictions.increment();
+				evicted(key, classFile, weight);
+				return;
+			}
+			entries.put(key, new Entry(classFile, weight));
+			this.weight += weight;
+			final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+			while (this.weight > maxWeight) {
+				final Map.Entry<String, Entry> eldest = iterator.next();
+				iterator.remove();
+				this.weight -= eldest.getValue().weight;
+				evictions.increment();
+				evicted(eldest.getKey(), eldest.getValue().classFile, eldest.getValue().weight);
+			}
+		}
+
+		synchronized void remove(String key) {
+			final Entry entry = entries.remove(key);
+			if (entry != null) {
+				weight -= entry.weight;
+			}
+		}
+
+		synchronized void clear() {
+			entries.clear();
+			weight = 0;
+		}
+
+		synchronized int size() {
+			return entries.size();
+		}
+
+		synchronized long getWeight() {
+			return weight;
+		}
+
+		private void evicted(String key, ClassFile classFile, long weight) {
+			if (softTier != null) {
+				softTier.put(key, new SoftValue(key, classFile, weight, softQueue));
+			}
+		}
+	}
+}
@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.cache;
+
+import com.viridiansoftware.java.ClassFile;
+
+import java.io.IOException;
+
+/**
+ * Loads the class of a cache key on a miss of a {@link ClassFileCache}
+ */
+public interface ClassFileLoader {
+
+	/**
+	 * @param key The key that missed
+	 * @return The class or null if there is no class for the key
+	 * @throws IOException if the class can not be read or parsed
+	 */
+	public ClassFile load(String key) throws IOException;
+}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.cache;
+
+import com.viridiansoftware.java.ClassFile;
+
+/**
+ * Estimates the heap retained by a cached class, which a {@link ClassFileCache} is bounded by
+ */
+public interface ClassFileWeigher {
+	/**
+	 * Estimates the size from the class file length, the number of constant pool entries and the number of members.
+	 * Assumes the class retains a heap copy of its class file, which is not the case for classes parsed from
+	 * memory-mapped or direct buffers.
+	 */
+	public static final ClassFileWeigher ESTIMATED_SIZE = new ClassFileWeigher() {
+		@Override
+		public long weigh(String key, ClassFile classFile) {
+			final int members = classFile.getFieldTable() != null ? 0 :
+					classFile.getFields().length + classFile.getMethods().length;
+			return 256L + classFile.getLength() + classFile.getConstantPool().length() * 48L + members * 160L;
+		}
+	};
+
+	/**
+	 * @param key The key the class is cached under
+	 * @param classFile The class
+	 * @return The estimated number of bytes, not negative
+	 */
+	public long weigh(String key, ClassFile classFile);
+}
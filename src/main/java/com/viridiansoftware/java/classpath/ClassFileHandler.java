@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.classpath;
+
+import com.viridiansoftware.java.ClassFile;
+
+import java.io.IOException;
+
+/**
+ * Receives the classes parsed by {@link JarParser}, {@link DirectoryScanner} and {@link JrtScanner}
+ */
+public interface ClassFileHandler {
+
+	/**
+	 * Called for each parsed class. Unless documented otherwise by the caller, this may be invoked concurrently
+	 * from multiple threads.
+	 * @param source The jar path, directory or module the class was read from
+	 * @param entryName The path of the class file relative to its source, e.g. java/lang/String.class
+	 * @param classFile The parsed class
+	 * @throws IOException Thrown by the handler to abort parsing
+	 */
+	public void onClassFile(String source, String entryName, ClassFile classFile) throws IOException;
+}
@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.classpath;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decides from the unparsed bytes of a class whether {@link JarParser} parses it, so that classes which are of no
+ * interest, e.g. because a {@link com.viridiansoftware.java.constants.ConstantPool#containsUtf8} check fails, do
+ * not cost a full parse
+ */
+public interface ClassFilter {
+
+	/**
+	 * Called for each class before it is parsed. This may be invoked concurrently from multiple threads.
+	 * @param entryName The path of the class file relative to its source, e.g. java/lang/String.class
+	 * @param classBytes The class file, which must not be retained or modified
+	 * @return True to parse the class and pass it to the handler
+	 * @throws IOException Thrown by the filter to abort parsing
+	 */
+	public boolean accept(String entryName, ByteBuffer classBytes) throws IOException;
+}
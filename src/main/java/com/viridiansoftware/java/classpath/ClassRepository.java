@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.classpath;
+
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.ParseOptions;
+import com.viridiansoftware.java.cache.ClassFileCache;
+import com.viridiansoftware.java.cache.ClassFileLoader;
+import com.viridiansoftware.java.cache.ClassFileWeigher;
+import com.viridiansoftware.java.constants.ConstantClass;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves classes by name from an ordered list of {@link ClassSource}s, like a class path, so that the supertypes
+ * of a class can be walked without opening them by hand.
+ *
+ * Classes are parsed on first use and kept in a {@link ClassFileCache}; concurrent requests for the same class
+ * parse it once. Names that no source contains are remembered, so repeated lookups of missing classes do not search
+ * the sources again. The repository is thread safe.
+ */
+public class ClassRepository implements Closeable {
+	/**
+	 * The weight limit of the cache created by {@link #ClassRepository(List)}
+	 */
+	public static final long DEFAULT_CACHE_WEIGHT = 64L * 1024 * 1024;
+
+	private final List<ClassSource> sources;
+	private final ClassFileCache cache;
+	private final ParseOptions options;
+	private final Set<String> missing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final ClassFileLoader loader = new ClassFileLoader() {
+		@Override
+		public ClassFile load(String className) throws IOException {
+			return parse(className);
+		}
+	};
+
+	/**
+	 * Creates a repository with the default parse options and a cache of {@link #DEFAULT_CACHE_WEIGHT} that keeps
+	 * evicted classes softly reachable
+	 * @param sources The sources in lookup order, the first source containing a class wins
+	 */
+	public ClassRepository(List<? extends ClassSource> sources) {
+		this(sources, new ClassFileCache(DEFAULT_CACHE_WEIGHT, ClassFileWeigher.ESTIMATED_SIZE, true),
+				ParseOptions.DEFAULT);
+	}
+
+	/**
+	 * @param sources The sources in lookup order, the first source containing a class wins
+	 * @param cache The cache holding parsed classes, keyed by class name
+	 * @param options The options used for every parsed class
+	 */
+	public ClassRepository(List<? extends ClassSource> sources, ClassFileCache cache, ParseOptions options) {
+		this.sources = new ArrayList<ClassSource>(sources);
+		this.cache = cache;
+		this.options = options;
+	}
+
+	/**
+	 * @param className The internal name of the class, e.g. java/lang/String
+	 * @return The class or null if no source contains it
+	 * @throws IOException if the class can not be read or parsed
+	 */
+	public ClassFile find(String className) throws IOException {
+		if (missing.contains(className)) {
+			return null;
+		}
+		final ClassFile classFile = cache.get(className, loader);
+		if (classFile == null) {
+			missing.add(className);
+		}
+		return classFile;
+	}
+
+	/**
+	 * @param className The internal name of the class, e.g. java/lang/String
+	 * @return The class
+	 * @throws IOException if no source contains the class or it can not be read or parsed
+	 */
+	public ClassFile get(String className) throws IOException {
+		final ClassFile classFile = find(className);
+		if (classFile == null) {
+			throw new IOException("Class not found: " + className);
+		}
+		return classFile;
+	}
+
+	/**
+	 * @param classFile A class
+	 * @return The super class or null for java/lang/Object, interfaces without a super class and module-info
+	 * @throws IOException if the super class can not be found, read or parsed
+	 */
+	public ClassFile getSuperClass(ClassFile classFile) throws IOException {
+		final ConstantClass superClass = classFile.getSuperClass();
+		return superClass == null ? null : get(superClass.getName());
+	}
+
+	/**
+	 * @param classFile A class
+	 * @return The directly implemented or extended interfaces in declaration order
+	 * @throws IOException if an interface can not be found, read or parsed
+	 */
+	public ClassFile[] getInterfaces(ClassFile classFile) throws IOException {
+		final ConstantClass[] interfaces = classFile.getInterfaces();
+		final ClassFile[] result = new ClassFile[interfaces.length];
+		for (int i = 0; i < interfaces.length; i++) {
+			result[i] = get(interfaces[i].getName());
+		}
+		return result;
+	}
+
+	/**
+	 * Iterates the super classes and all interfaces of a class breadth first, the super class of each class before
+	 * its interfaces. Each ancestor is returned and resolved once, even if it is reachable by several paths.
+	 * Ancestors are resolved as the iterator advances and the iterator throws an {@link UncheckedIOException}
+	 * if an ancestor can not be found, read or parsed.
+	 * @param classFile A class, which is not returned itself
+	 * @return The ancestors
+	 */
+	public Iterable<ClassFile> getAncestors(final ClassFile classFile) {
+		return new Iterable<ClassFile>() {
+			@Override
+			public Iterator<ClassFile> iterator() {
+				return new AncestorIterator(classFile);
+			}
+		};
+	}
+
+	/**
+	 * @param classFile A class
+	 * @param className The internal name of a class or interface
+	 * @return True if the class is the named class or extends or implements it directly or indirectly
+	 * @throws IOException if an ancestor can not be found, read or parsed
+	 */
+	public boolean isSubtypeOf(ClassFile classFile, String className) throws IOException {
+		if (classFile.getThisClass().getName().equals(className)) {
+			return true;
+		}
+		try {
+			for (ClassFile ancestor : getAncestors(classFile)) {
+				if (ancestor.getThisClass().getName().equals(className)) {
+					return true;
+				}
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return false;
+	}
+
+	public ClassFileCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Closes all sources
+	 * @throws IOException if a source fails to close, after attempting to close the others
+	 */
+	@Override
+	public void close() throws IOException {
+		IOException failure = null;
+		for (ClassSource source : sources) {
+			try {
+				source.close();
+			} catch (IOException e) {
+				if (failure == null) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private ClassFile parse(String className) throws IOException {
+		for (ClassSource source : sources) {
+			final ByteBuffer classBytes = source.find(className);
+			if (classBytes == null) {
+				continue;
+			}
+			try {
+				return new ClassFile(classBytes, options);
+			} catch (IOException | RuntimeException e) {
+				throw new IOException("Could not parse " + className + " in " + source.getName(), e);
+			}
+		}
+		return null;
+	}
+
+	private class AncestorIterator implements Iterator<ClassFile> {
+		private final ArrayDeque<String> pending = new ArrayDeque<String>();
+		private final Set<String> seen = new HashSet<String>();
+
+		AncestorIterator(ClassFile classFile) {
+			seen.add(classFile.getThisClass().getName());
+			enqueueSupertypes(classFile);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !pending.isEmpty();
+		}
+
+		@Override
+		public ClassFile next() {
+			final String className = pending.poll();
+			if (className == null) {
+				throw new NoSuchElementException();
+			}
+			final ClassFile ancestor;
+			try {
+				ancestor = get(className);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			enqueueSupertypes(ancestor);
+			return ancestor;
+		}
+
+		private void enqueueSupertypes(ClassFile classFile) {
+			if (classFile.getSuperClass() != null) {
+				enqueue(classFile.getSuperClass().getName());
+			}
+			for (ConstantClass constantClass : classFile.getInterfaces()) {
+				enqueue(constantClass.getName());
+			}
+		}
+
+		private void enqueue(String className) {
+			if (seen.add(className)) {
+				pending.add(className);
+			}
+		}
+	}
+}
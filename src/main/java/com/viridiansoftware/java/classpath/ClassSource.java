@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.classpath;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A location that class files can be looked up in by name, such as a jar, a class directory or the JDK module
+ * image. Implementations are thread safe.
+ */
+public interface ClassSource extends Closeable {
+
+	/**
+	 * @param className The internal name of the class, e.g. java/lang/String
+	 * @return The bytes of the class file or null if the source does not contain the class
+	 * @throws IOException if the class exists but can not be read
+	 */
+	public ByteBuffer find(String className) throws IOException;
+
+	/**
+	 * @return The jar path, directory or image the classes are read from
+	 */
+	public String getName();
+}
@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.classpath;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * Looks up classes in a class output directory such as target/classes, or a directory of any other
+ * {@link java.nio.file.FileSystem}
+ */
+public class DirectoryClassSource implements ClassSource {
+	private final Path root;
+
+	public DirectoryClassSource(Path root) {
+		this.root = root;
+	}
+
+	@Override
+	public ByteBuffer find(String className) throws IOException {
+		try {
+			return ByteBuffer.wrap(DirectoryScanner.readFile(root.resolve(className + ".class")));
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public String getName() {
+		return root.toString();
+	}
+
+	@Override
+	public void close() {
+	}
+}
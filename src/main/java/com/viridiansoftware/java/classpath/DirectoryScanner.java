@@ -0,0 +1,306 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.classpath;
+
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.ParseOptions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Parses every .class file below a directory, e.g. an exploded build output such as target/classes.
+ *
+ * Directories are listed in parallel and their class files are grouped into batches that are read with NIO and
+ * parsed on a fixed size pool. The pool's queue is bounded and full queues make the submitting thread run the task
+ * itself, so listing directories never gets far ahead of parsing and the number of class files held in memory
+ * stays bounded. Directories of any {@link java.nio.file.FileSystem}, such as the jrt file system, can be scanned.
+ */
+public class DirectoryScanner implements Closeable {
+	private static final int BATCH_FILES = 32;
+	private static final long BATCH_BYTES = 256 * 1024;
+
+	private final ThreadPoolExecutor executor;
+	private final ParseOptions options;
+
+	/**
+	 * Creates a scanner with one thread per available processor and the default parse options
+	 */
+	public DirectoryScanner() {
+		this(Runtime.getRuntime().availableProcessors(), 4 * Runtime.getRuntime().availableProcessors(), ParseOptions.DEFAULT);
+	}
+
+	/**
+	 * @param threads The number of threads parsing classes
+	 * @param queueCapacity The maximum number of pending directory listings and batches of class files
+	 * @param options The options used for every parsed class
+	 */
+	public DirectoryScanner(int threads, int queueCapacity, ParseOptions options) {
+		this.options = options;
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity), new ScannerThreadFactory(), new CallerRunsUnlessShutdown());
+	}
+
+	/**
+	 * Parses all class files below a directory, invoking the handler concurrently in no particular order.
+	 * Symbolic links are not followed.
+	 * @param root The root directory, entry names are relative to it
+	 * @param handler The thread safe handler receiving each class
+	 * @return The statistics of the scan
+	 * @throws IOException if a directory or file can not be read, a class is invalid or the handler aborts
+	 * @throws IllegalStateException if the scanner was closed
+	 */
+	public ParseStatistics scan(Path root, ClassFileHandler handler) throws IOException {
+		return scan(Collections.singletonMap(root.toString(), root), handler);
+	}
+
+	/**
+	 * Parses all class files below several directories in a single scan, invoking the handler concurrently in no
+	 * particular order. The directories are scanned in parallel. Symbolic links are not followed.
+	 * @param roots The root directories keyed by the source name passed to the handler
+	 * @param handler The thread safe handler receiving each class
+	 * @return The combined statistics of the scan
+	 * @throws IOException if a directory or file can not be read, a class is invalid or the handler aborts
+	 * @throws IllegalStateException if the scanner was closed
+	 */
+	public ParseStatistics scan(Map<String, Path> roots, ClassFileHandler handler) throws IOException {
+		if (executor.isShutdown()) {
+			throw new IllegalStateException("The scanner is closed");
+		}
+		final long startTime = System.nanoTime();
+		final Scan scan = new Scan(handler);
+		for (Map.Entry<String, Path> root : roots.entrySet()) {
+			scan.submitDirectory(root.getKey(), root.getValue(), root.getValue());
+		}
+		scan.await();
+		return new ParseStatistics(scan.classes.get(), scan.classBytes.get(), scan.classBytes.get(),
+				System.nanoTime() - startTime);
+	}
+
+	/**
+	 * Stops the threads of the scanner once running scans have completed
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	/**
+	 * The state of a single scan, tracking outstanding tasks and the first failure
+	 */
+	private class Scan {
+		private final ClassFileHandler handler;
+		private final AtomicInteger pending = new AtomicInteger();
+		private final AtomicInteger classes = new AtomicInteger();
+		private final AtomicLong classBytes = new AtomicLong();
+		private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		Scan(ClassFileHandler handler) {
+			this.handler = handler;
+		}
+
+		void submitDirectory(final String source, final Path root, final Path directory) {
+			submit(new Runnable() {
+				@Override
+				public void run() {
+					listDirectory(source, root, directory);
+				}
+			});
+		}
+
+		private void submitBatch(final String source, final Path root, final List<Path> files) {
+			submit(new Runnable() {
+				@Override
+				public void run() {
+					parseBatch(source, root, files);
+				}
+			});
+		}
+
+		private void submit(final Runnable task) {
+			pending.incrementAndGet();
+			try {
+				execute(task);
+			} catch (RejectedExecutionException e) {
+				//The scanner was closed while scanning
+				failure.compareAndSet(null, new IllegalStateException("The scanner is closed", e));
+				if (pending.decrementAndGet() == 0) {
+					notifyCompleted();
+				}
+			}
+		}
+
+		private void execute(final Runnable task) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if (failure.get() == null) {
+							task.run();
+						}
+					} catch (UncheckedIOException e) {
+						failure.compareAndSet(null, e.getCause());
+					} catch (RuntimeException | Error e) {
+						failure.compareAndSet(null, e);
+					} finally {
+						if (pending.decrementAndGet() == 0) {
+							notifyCompleted();
+						}
+					}
+				}
+			});
+		}
+
+		private synchronized void notifyCompleted() {
+			notifyAll();
+		}
+
+		synchronized void await() throws IOException {
+			boolean interrupted = false;
+			while (pending.get() > 0) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			final Throwable throwable = failure.get();
+			if (throwable instanceof IOException) {
+				throw (IOException) throwable;
+			} else if (throwable instanceof RuntimeException) {
+				throw (RuntimeException) throwable;
+			} else if (throwable instanceof Error) {
+				throw (Error) throwable;
+			}
+		}
+
+		private void listDirectory(String source, Path root, Path directory) {
+			List<Path> batch = new ArrayList<Path>(BATCH_FILES);
+			long batchBytes = 0;
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+				for (Path path : stream) {
+					final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class,
+							LinkOption.NOFOLLOW_LINKS);
+					if (attributes.isDirectory()) {
+						submitDirectory(source, root, path);
+					} else if (attributes.isRegularFile() && path.getFileName().toString().endsWith(".class")) {
+						batch.add(path);
+						batchBytes += attributes.size();
+						if (batch.size() >= BATCH_FILES || batchBytes >= BATCH_BYTES) {
+							submitBatch(source, root, batch);
+							batch = new ArrayList<Path>(BATCH_FILES);
+							batchBytes = 0;
+						}
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			if (!batch.isEmpty()) {
+				submitBatch(source, root, batch);
+			}
+		}
+
+		private void parseBatch(String source, Path root, List<Path> files) {
+			for (Path file : files) {
+				final String entryName = root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+				try {
+					final byte[] data = readFile(file);
+					final ClassFile classFile;
+					try {
+						classFile = new ClassFile(data, options);
+					} catch (IOException | RuntimeException e) {
+						throw new IOException("Could not parse " + entryName + " in " + source, e);
+					}
+					classes.incrementAndGet();
+					classBytes.addAndGet(data.length);
+					handler.onClassFile(source, entryName, classFile);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+	}
+
+	static byte[] readFile(Path file) throws IOException {
+		try (SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Class file too large: " + file);
+			}
+			final byte[] data = new byte[(int) size];
+			final ByteBuffer buffer = ByteBuffer.wrap(data);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					throw new IOException("Unexpected end of file: " + file);
+				}
+			}
+			return data;
+		}
+	}
+
+	/**
+	 * Runs tasks on the submitting thread while the queue is full, like {@link ThreadPoolExecutor.CallerRunsPolicy},
+	 * but rejects them once the scanner is closed instead of silently dropping them
+	 */
+	private static class CallerRunsUnlessShutdown implements RejectedExecutionHandler {
+		@Override
+		public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException("The scanner is closed");
+			}
+			runnable.run();
+		}
+	}
+
+	private static class ScannerThreadFactory implements ThreadFactory {
+		private static final AtomicInteger SCANNERS = new AtomicInteger();
+		private final int scanner = SCANNERS.incrementAndGet();
+		private final AtomicInteger threads = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			final Thread thread = new Thread(runnable, "directory-scanner-" + scanner + "-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.classpath;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.zip.Inflater;
+
+/**
+ * Looks up classes in a memory-mapped jar. Stored entries are returned as slices of the mapped file.
+ */
+public class JarClassSource implements ClassSource {
+	private final String name;
+	private final ZipCentralDirectory directory;
+
+	/**
+	 * @param jar The jar file, mapped and its central directory read immediately
+	 * @throws IOException if the jar can not be read
+	 */
+	public JarClassSource(Path jar) throws IOException {
+		this.name = jar.toString();
+		this.directory = new ZipCentralDirectory(ZipCentralDirectory.map(jar));
+	}
+
+	@Override
+	public ByteBuffer find(String className) throws IOException {
+		final int entry = directory.find(className + ".class");
+		if (entry < 0) {
+			return null;
+		}
+		final Inflater inflater = new Inflater(true);
+		try {
+			return directory.read(entry, inflater, new byte[directory.getCompressedSize(entry) + 1]);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * The mapping is released once the source and the classes read from it are unreachable
+	 */
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.classpath;
+
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.ParseOptions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Inflater;
+
+/**
+ * Parses every class of a jar file in parallel.
+ *
+ * The jar is memory-mapped and its central directory is read directly, without {@link java.util.jar.JarFile}.
+ * Entries are inflated and parsed on a {@link ForkJoinPool} by tasks that split the entries by uncompressed size,
+ * so idle workers steal the remaining work of busy ones and a few large classes do not stall a single worker.
+ * Stored entries are parsed straight from the mapped file without copying.
+ */
+public class JarParser {
+	/**
+	 * Ranges of entries with less uncompressed bytes than this are parsed by a single task
+	 */
+	private static final long SPLIT_THRESHOLD = 64 * 1024;
+
+	private final ForkJoinPool pool;
+	private final ParseOptions options;
+
+	/**
+	 * Creates a parser using the common pool and the default parse options
+	 */
+	public JarParser() {
+		this(ForkJoinPool.commonPool(), ParseOptions.DEFAULT);
+	}
+
+	/**
+	 * @param pool The pool to parse entries on
+	 * @param options The options used for every parsed class
+	 */
+	public JarParser(ForkJoinPool pool, ParseOptions options) {
+		this.pool = pool;
+		this.options = options;
+	}
+
+	/**
+	 * Parses all classes of a jar, invoking the handler concurrently from the pool's threads in no particular order
+	 * @param jar The jar file
+	 * @param handler The thread safe handler receiving each class
+	 * @return The statistics of the parse
+	 * @throws IOException if the jar can not be read, a class is invalid or the handler aborts
+	 */
+	public ParseStatistics parse(Path jar, ClassFileHandler handler) throws IOException {
+		return parse(jar, null, handler, false);
+	}
+
+	/**
+	 * Parses the classes of a jar accepted by a filter, invoking the handler concurrently from the pool's threads
+	 * in no particular order. Rejected classes are inflated but not parsed.
+	 * @param jar The jar file
+	 * @param filter The thread safe filter deciding from the bytes of each class whether it is parsed
+	 * @param handler The thread safe handler receiving each accepted class
+	 * @return The statistics of the parse, counting accepted classes only
+	 * @throws IOException if the jar can not be read, an accepted class is invalid or the filter or handler aborts
+	 */
+	public ParseStatistics parse(Path jar, ClassFilter filter, ClassFileHandler handler) throws IOException {
+		return parse(jar, filter, handler, false);
+	}
+
+	/**
+	 * Parses all classes of a jar in parallel and then invokes the handler on the calling thread in central
+	 * directory order. All classes of the jar are held in memory until the handler has been invoked.
+	 * @param jar The jar file
+	 * @param handler The handler receiving each class
+	 * @return The statistics of the parse
+	 * @throws IOException if the jar can not be read, a class is invalid or the handler aborts
+	 */
+	public ParseStatistics parseOrdered(Path jar, ClassFileHandler handler) throws IOException {
+		return parse(jar, null, handler, true);
+	}
+
+	private ParseStatistics parse(Path jar, ClassFilter filter, ClassFileHandler handler, boolean ordered) throws IOException {
+		final long startTime = System.nanoTime();
+		final ZipCentralDirectory directory = new ZipCentralDirectory(ZipCentralDirectory.map(jar));
+		final String source = jar.toString();
+		final ClassFile[] results = ordered ? new ClassFile[directory.size()] : null;
+		final ParseTask task = new ParseTask(source, directory, filter, handler, results, 0, directory.size());
+		try {
+			pool.invoke(task);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		if (ordered) {
+			for (int i = 0; i < results.length; i++) {
+				if (results[i] == null) {
+					continue;
+				}
+				handler.onClassFile(source, directory.getName(i), results[i]);
+				results[i] = null;
+			}
+		}
+		return new ParseStatistics(task.counters.classes.intValue(), task.counters.inputBytes.sum(),
+				task.counters.classBytes.sum(), System.nanoTime() - startTime);
+	}
+
+	private static class Counters {
+		final LongAdder classes = new LongAdder();
+		final LongAdder inputBytes = new LongAdder();
+		final LongAdder classBytes = new LongAdder();
+	}
+
+	private class ParseTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final String source;
+		private final ZipCentralDirectory directory;
+		private final ClassFilter filter;
+		private final ClassFileHandler handler;
+		private final ClassFile[] results;
+		private final int start, end;
+		private final Counters counters;
+
+		ParseTask(String source, ZipCentralDirectory directory, ClassFilter filter, ClassFileHandler handler,
+		          ClassFile[] results, int start, int end) {
+			this(source, directory, filter, handler, results, start, end, new Counters());
+		}
+
+		private ParseTask(String source, ZipCentralDirectory directory, ClassFilter filter, ClassFileHandler handler,
+		                  ClassFile[] results, int start, int end, Counters counters) {
+			this.source = source;
+			this.directory = directory;
+			this.filter = filter;
+			this.handler = handler;
+			this.results = results;
+			this.start = start;
+			this.end = end;
+			this.counters = counters;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start > 1 && directory.getSize(start, end) > SPLIT_THRESHOLD) {
+				final int middle = directory.split(start, end);
+				invokeAll(new ParseTask(source, directory, filter, handler, results, start, middle, counters),
+						new ParseTask(source, directory, filter, handler, results, middle, end, counters));
+				return;
+			}
+			final Inflater inflater = new Inflater(true);
+			byte[] input = null;
+			long totalInputBytes = 0;
+			try {
+				for (int i = start; i < end; i++) {
+					final int compressedSize = directory.getCompressedSize(i);
+					if (directory.getMethod(i) == ZipCentralDirectory.METHOD_DEFLATED
+							&& (input == null || input.length < compressedSize + 1)) {
+						input = new byte[Math.max(compressedSize + 1, 8192)];
+					}
+					parseEntry(i, inflater, input);
+					totalInputBytes += compressedSize;
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} finally {
+				inflater.end();
+				counters.inputBytes.add(totalInputBytes);
+			}
+		}
+
+		private void parseEntry(int entry, Inflater inflater, byte[] input) throws IOException {
+			final String name = directory.getName(entry);
+			final ByteBuffer classBytes = directory.read(entry, inflater, input);
+			if (filter != null && !filter.accept(name, classBytes.duplicate())) {
+				return;
+			}
+			counters.classes.increment();
+			counters.classBytes.add(classBytes.remaining());
+			final ClassFile classFile;
+			try {
+				classFile = new ClassFile(classBytes, options);
+			} catch (IOException | RuntimeException e) {
+				throw new IOException("Could not parse " + name + " in " + source, e);
+			}
+			if (results != null) {
+				results[entry] = classFile;
+			} else {
+				handler.onClassFile(source, name, classFile);
+			}
+		}
+	}
+}
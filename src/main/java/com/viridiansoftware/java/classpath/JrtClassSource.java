@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.classpath;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.ProviderNotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Looks up classes in the running JDK's module image through the jrt:/ file system, which is available on Java 9
+ * and later. The modules of a package are found through the image's /packages directory and remembered.
+ */
+public class JrtClassSource implements ClassSource {
+	private final FileSystem fileSystem;
+	private final ConcurrentHashMap<String, List<String>> packageModules = new ConcurrentHashMap<String, List<String>>();
+
+	/**
+	 * @throws IOException if the jrt file system is not available
+	 */
+	public JrtClassSource() throws IOException {
+		try {
+			this.fileSystem = FileSystems.getFileSystem(URI.create("jrt:/"));
+		} catch (FileSystemNotFoundException | ProviderNotFoundException e) {
+			throw new IOException("The jrt file system is not available on this JVM", e);
+		}
+	}
+
+	@Override
+	public ByteBuffer find(String className) throws IOException {
+		final int packageEnd = className.lastIndexOf('/');
+		if (packageEnd < 0) {
+			return null;
+		}
+		for (String module : getModules(className.substring(0, packageEnd).replace('/', '.'))) {
+			try {
+				final Path file = fileSystem.getPath("/modules", module, className + ".class");
+				return ByteBuffer.wrap(DirectoryScanner.readFile(file));
+			} catch (NoSuchFileException e) {
+				//A package can be split across modules
+			}
+		}
+		return null;
+	}
+
+	private List<String> getModules(String packageName) throws IOException {
+		List<String> modules = packageModules.get(packageName);
+		if (modules != null) {
+			return modules;
+		}
+		final Path directory = fileSystem.getPath("/packages", packageName);
+		if (!Files.isDirectory(directory)) {
+			modules = Collections.emptyList();
+		} else {
+			modules = new ArrayList<String>(1);
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+				for (Path module : stream) {
+					modules.add(module.getFileName().toString());
+				}
+			}
+		}
+		packageModules.putIfAbsent(packageName, modules);
+		return modules;
+	}
+
+	@Override
+	public String getName() {
+		return "jrt:/";
+	}
+
+	@Override
+	public void close() {
+	}
+}
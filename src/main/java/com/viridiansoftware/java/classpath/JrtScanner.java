@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.classpath;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.ProviderNotFoundException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses the classes of the running JDK's module image through the jrt:/ file system, which is available on Java 9
+ * and later. Modules are scanned in parallel by a {@link DirectoryScanner} and each class is reported with its
+ * module name as the source.
+ */
+public class JrtScanner {
+	private final DirectoryScanner scanner;
+	private final FileSystem fileSystem;
+
+	/**
+	 * @param scanner The scanner used to parse the modules, it is not closed by this class
+	 * @throws IOException if the jrt file system is not available
+	 */
+	public JrtScanner(DirectoryScanner scanner) throws IOException {
+		this.scanner = scanner;
+		try {
+			this.fileSystem = FileSystems.getFileSystem(URI.create("jrt:/"));
+		} catch (FileSystemNotFoundException | ProviderNotFoundException e) {
+			throw new IOException("The jrt file system is not available on this JVM", e);
+		}
+	}
+
+	/**
+	 * @return The names of all modules of the image in sorted order
+	 * @throws IOException if the image can not be read
+	 */
+	public List<String> getModules() throws IOException {
+		final List<String> result = new ArrayList<String>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(fileSystem.getPath("/modules"))) {
+			for (Path module : stream) {
+				result.add(module.getFileName().toString());
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * Parses every class of every module, invoking the handler concurrently in no particular order
+	 * @param handler The thread safe handler receiving each class with its module name as source
+	 * @return The statistics of the scan
+	 * @throws IOException if the image can not be read, a class is invalid or the handler aborts
+	 */
+	public ParseStatistics scan(ClassFileHandler handler) throws IOException {
+		return scan(getModules(), handler);
+	}
+
+	/**
+	 * Parses every class of the given modules, invoking the handler concurrently in no particular order
+	 * @param modules The names of the modules to parse
+	 * @param handler The thread safe handler receiving each class with its module name as source
+	 * @return The statistics of the scan
+	 * @throws IOException if a module does not exist, the image can not be read, a class is invalid or the handler aborts
+	 */
+	public ParseStatistics scan(Collection<String> modules, ClassFileHandler handler) throws IOException {
+		final Map<String, Path> roots = new LinkedHashMap<String, Path>();
+		for (String module : modules) {
+			final Path root = fileSystem.getPath("/modules", module);
+			if (!Files.isDirectory(root)) {
+				throw new IOException("Unknown module: " + module);
+			}
+			roots.put(module, root);
+		}
+		return scanner.scan(roots, handler);
+	}
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.classpath;
+
+/**
+ * Throughput of a single parse of a jar, directory or module image
+ */
+public class ParseStatistics {
+	private final int classes;
+	private final long inputBytes;
+	private final long classBytes;
+	private final long elapsedNanos;
+
+	public ParseStatistics(int classes, long inputBytes, long classBytes, long elapsedNanos) {
+		this.classes = classes;
+		this.inputBytes = inputBytes;
+		this.classBytes = classBytes;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * @return The number of classes parsed
+	 */
+	public int getClasses() {
+		return classes;
+	}
+
+	/**
+	 * @return The number of bytes read from the source, e.g. the compressed size of jar entries
+	 */
+	public long getInputBytes() {
+		return inputBytes;
+	}
+
+	/**
+	 * @return The total size of the parsed class files
+	 */
+	public long getClassBytes() {
+		return classBytes;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public double getClassesPerSecond() {
+		return elapsedNanos == 0 ? 0 : classes * 1000000000.0 / elapsedNanos;
+	}
+
+	/**
+	 * @return The throughput in megabytes of class files per second
+	 */
+	public double getMegabytesPerSecond() {
+		return elapsedNanos == 0 ? 0 : classBytes * 1000000000.0 / elapsedNanos / (1024 * 1024);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d classes, %d bytes in %.1fms (%.0f classes/s, %.1f MB/s)", classes, classBytes,
+				elapsedNanos / 1000000.0, getClassesPerSecond(), getMegabytesPerSecond());
+	}
+}
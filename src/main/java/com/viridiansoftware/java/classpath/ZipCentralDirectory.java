@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.classpath;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * The .class entries of a zip central directory, read directly from a mapped zip file into parallel arrays
+ * https://pkware.cachefly.net/webdocs/casestudies/APPNOTE.TXT
+ */
+class ZipCentralDirectory {
+	static final int METHOD_STORED = 0;
+	static final int METHOD_DEFLATED = 8;
+
+	private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR = 0x07064b50;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+	private static final int CENTRAL_DIRECTORY_HEADER = 0x02014b50;
+	private static final int LOCAL_FILE_HEADER = 0x04034b50;
+
+	private final ByteBuffer buffer;
+	private int count;
+	private String[] names;
+	private int[] methods;
+	private int[] compressedSizes;
+	private int[] sizes;
+	private int[] localHeaderOffsets;
+	private long[] cumulativeSizes;
+	private volatile Map<String, Integer> index;
+
+	/**
+	 * Maps a zip file read-only, the mapping stays valid after the channel is closed
+	 * @param jar The zip file
+	 * @return The whole zip file
+	 * @throws IOException if the file can not be read or is larger than 2GB
+	 */
+	static MappedByteBuffer map(Path jar) throws IOException {
+		try (FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Jar files larger than 2GB are not supported: " + jar);
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+	}
+
+	/**
+	 * @param buffer The whole zip file
+	 * @throws IOException if the buffer is not a zip file
+	 */
+	ZipCentralDirectory(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		read();
+	}
+
+	private void read() throws IOException {
+		final int end = findEndOfCentralDirectory();
+		long totalEntries = buffer.getShort(end + 10) & 0xFFFF;
+		long offset = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+		if ((totalEntries == 0xFFFF || offset == 0xFFFFFFFFL) && end >= 20
+				&& buffer.getInt(end - 20) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR) {
+			final long zip64End = buffer.getLong(end - 12);
+			if (zip64End < 0 || zip64End > buffer.limit() - 56 || buffer.getInt((int) zip64End) != ZIP64_END_OF_CENTRAL_DIRECTORY) {
+				throw new IOException("Invalid ZIP64 end of central directory");
+			}
+			totalEntries = buffer.getLong((int) zip64End + 32);
+			offset = buffer.getLong((int) zip64End + 48);
+		}
+		if (totalEntries < 0 || totalEntries > Integer.MAX_VALUE || offset < 0 || offset > end) {
+			throw new IOException("Invalid central directory");
+		}
+
+		final int capacity = (int) Math.min(totalEntries, (end - offset) / 46);
+		names = new String[capacity];
+		methods = new int[capacity];
+		compressedSizes = new int[capacity];
+		sizes = new int[capacity];
+		localHeaderOffsets = new int[capacity];
+		cumulativeSizes = new long[capacity + 1];
+
+		int position = (int) offset;
+		for (long i = 0; i < totalEntries; i++) {
+			if (position > end - 46 || buffer.getInt(position) != CENTRAL_DIRECTORY_HEADER) {
+				throw new IOException("Invalid central directory header at offset " + position);
+			}
+			final int nameLength = buffer.getShort(position + 28) & 0xFFFF;
+			final int extraLength = buffer.getShort(position + 30) & 0xFFFF;
+			final int commentLength = buffer.getShort(position + 32) & 0xFFFF;
+			final int namePosition = position + 46;
+			if (isClassEntry(namePosition, nameLength)) {
+				final long compressedSize = buffer.getInt(position + 20) & 0xFFFFFFFFL;
+				final long size = buffer.getInt(position + 24) & 0xFFFFFFFFL;
+				final long localHeaderOffset = buffer.getInt(position + 42) & 0xFFFFFFFFL;
+				if (compressedSize >= buffer.limit() || size > Integer.MAX_VALUE || localHeaderOffset >= end) {
+					throw new IOException("Invalid central directory entry " + readName(namePosition, nameLength));
+				}
+				names[count] = readName(namePosition, nameLength);
+				methods[count] = buffer.getShort(position + 10) & 0xFFFF;
+				compressedSizes[count] = (int) compressedSize;
+				sizes[count] = (int) size;
+				localHeaderOffsets[count] = (int) localHeaderOffset;
+				cumulativeSizes[count + 1] = cumulativeSizes[count] + size;
+				count++;
+			}
+			position = namePosition + nameLength + extraLength + commentLength;
+		}
+	}
+
+	private int findEndOfCentralDirectory() throws IOException {
+		final int minimum = Math.max(0, buffer.limit() - 22 - 0xFFFF);
+		for (int position = buffer.limit() - 22; position >= minimum; position--) {
+			if (buffer.getInt(position) == END_OF_CENTRAL_DIRECTORY) {
+				return position;
+			}
+		}
+		throw new IOException("End of central directory not found");
+	}
+
+	private boolean isClassEntry(int namePosition, int nameLength) {
+		if (nameLength < 6) {
+			return false;
+		}
+		final int suffix = namePosition + nameLength - 6;
+		return buffer.get(suffix) == '.' && buffer.get(suffix + 1) == 'c' && buffer.get(suffix + 2) == 'l'
+				&& buffer.get(suffix + 3) == 'a' && buffer.get(suffix + 4) == 's' && buffer.get(suffix + 5) == 's';
+	}
+
+	private String readName(int namePosition, int nameLength) {
+		final byte[] name = new byte[nameLength];
+		for (int i = 0; i < nameLength; i++) {
+			name[i] = buffer.get(namePosition + i);
+		}
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return The number of .class entries
+	 */
+	int size() {
+		return count;
+	}
+
+	String getName(int entry) {
+		return names[entry];
+	}
+
+	int getMethod(int entry) {
+		return methods[entry];
+	}
+
+	int getCompressedSize(int entry) {
+		return compressedSizes[entry];
+	}
+
+	int getSize(int entry) {
+		return sizes[entry];
+	}
+
+	/**
+	 * @return The total uncompressed size of the entries from start inclusive to end exclusive
+	 */
+	long getSize(int start, int end) {
+		return cumulativeSizes[end] - cumulativeSizes[start];
+	}
+
+	/**
+	 * Finds the entry that splits a range into two halves of roughly equal uncompressed size
+	 * @return An index greater than start and less than end
+	 */
+	int split(int start, int end) {
+		final long half = cumulativeSizes[start] + (cumulativeSizes[end] - cumulativeSizes[start]) / 2;
+		int index = Arrays.binarySearch(cumulativeSizes, start + 1, end, half);
+		if (index < 0) {
+			index = -index - 1;
+		}
+		return Math.max(start + 1, Math.min(end - 1, index));
+	}
+
+	/**
+	 * Reads the local file header of an entry to find the offset of its data
+	 * @return The absolute offset of the compressed data
+	 * @throws IOException if the local header is invalid
+	 */
+	int getDataOffset(int entry) throws IOException {
+		final int localHeaderOffset = localHeaderOffsets[entry];
+		if (localHeaderOffset > buffer.limit() - 30 || buffer.getInt(localHeaderOffset) != LOCAL_FILE_HEADER) {
+			throw new IOException("Invalid local file header for " + names[entry]);
+		}
+		final int dataOffset = localHeaderOffset + 30 + (buffer.getShort(localHeaderOffset + 26) & 0xFFFF)
+				+ (buffer.getShort(localHeaderOffset + 28) & 0xFFFF);
+		if (dataOffset > buffer.limit() - compressedSizes[entry]) {
+			throw new IOException("Entry " + names[entry] + " extends past the end of the zip file");
+		}
+		return dataOffset;
+	}
+
+	/**
+	 * Reads the class bytes of an entry
+	 * @param entry The entry
+	 * @param inflater The inflater used for deflated entries, it is reset before use
+	 * @param input A buffer of at least the compressed size plus one byte, used for deflated entries
+	 * @return A slice of the zip file for stored entries or the inflated bytes
+	 * @throws IOException if the entry is invalid, truncated or uses an unsupported compression method
+	 */
+	ByteBuffer read(int entry, Inflater inflater, byte[] input) throws IOException {
+		final int dataOffset = getDataOffset(entry);
+		switch (methods[entry]) {
+		case METHOD_STORED:
+			if (sizes[entry] != compressedSizes[entry] || sizes[entry] < 0 || dataOffset > buffer.limit() - sizes[entry]) {
+				throw new IOException("Stored entry " + names[entry] + " has inconsistent sizes");
+			}
+			final ByteBuffer stored = buffer.duplicate();
+			stored.position(dataOffset);
+			stored.limit(dataOffset + sizes[entry]);
+			return stored.slice();
+		case METHOD_DEFLATED:
+			return ByteBuffer.wrap(inflate(entry, dataOffset, inflater, input));
+		default:
+			throw new IOException("Unsupported compression method " + methods[entry] + " for " + names[entry]);
+		}
+	}
+
+	private byte[] inflate(int entry, int dataOffset, Inflater inflater, byte[] input) throws IOException {
+		final int compressedSize = compressedSizes[entry];
+		final ByteBuffer compressed = buffer.duplicate();
+		compressed.position(dataOffset);
+		compressed.get(input, 0, compressedSize);
+		//Inflater requires an extra dummy byte when no zlib header is present
+		input[compressedSize] = 0;
+
+		final byte[] output = new byte[sizes[entry]];
+		inflater.reset();
+		inflater.setInput(input, 0, compressedSize + 1);
+		try {
+			int total = 0;
+			while (total < output.length) {
+				final int read = inflater.inflate(output, total, output.length - total);
+				if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				total += read;
+			}
+			if (total != output.length) {
+				throw new IOException("Entry " + names[entry] + " is truncated");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Entry " + names[entry] + " is corrupt", e);
+		}
+		return output;
+	}
+
+	/**
+	 * Finds an entry by name, building a name index on first use
+	 * @param name The entry name, e.g. java/lang/String.class
+	 * @return The entry or -1 if there is no .class entry with the name
+	 */
+	int find(String name) {
+		Map<String, Integer> index = this.index;
+		if (index == null) {
+			index = new HashMap<String, Integer>(count * 4 / 3 + 1);
+			for (int i = 0; i < count; i++) {
+				index.put(names[i], i);
+			}
+			this.index = index;
+		}
+		final Integer entry = index.get(name);
+		return entry == null ? -1 : entry;
+	}
+}
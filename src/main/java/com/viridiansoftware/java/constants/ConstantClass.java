@@ -47,4 +47,17 @@ public class ConstantClass {
     public String getReferenceClass() {
         return ClassUtils.getReferenceClass(name);
     }
+
+    @Override
+    public boolean equals( Object obj ) {
+        if( this == obj ) {
+            return true;
+        }
+        return obj instanceof ConstantClass && name.equals( ((ConstantClass)obj).name );
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.constants;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread safe factory of canonical {@link ConstantClass} and {@link ConstantNameAndType} instances shared by
+ * many {@link ConstantPool}s. Every class name and every name and type pair maps to a single instance across all
+ * classes parsed with the same factory, so they can be compared with == and used as keys of identity based maps.
+ *
+ * Instances are retained for the lifetime of the factory.
+ */
+public final class ConstantFactory {
+	private final ConcurrentMap<String, ConstantClass> classes = new ConcurrentHashMap<String, ConstantClass>();
+	private final ConcurrentMap<String, ConcurrentMap<String, ConstantNameAndType>> namesAndTypes =
+			new ConcurrentHashMap<String, ConcurrentMap<String, ConstantNameAndType>>();
+
+	/**
+	 * @param name The class name in internal form, e.g. java/lang/Object
+	 * @return The canonical instance for the name
+	 */
+	public ConstantClass getConstantClass(String name) {
+		final ConstantClass result = classes.get(name);
+		if (result != null) {
+			return result;
+		}
+		final ConstantClass created = new ConstantClass(name);
+		final ConstantClass existing = classes.putIfAbsent(name, created);
+		return existing != null ? existing : created;
+	}
+
+	/**
+	 * @param name The member name
+	 * @param type The member descriptor
+	 * @return The canonical instance for the name and type
+	 */
+	public ConstantNameAndType getConstantNameAndType(String name, String type) {
+		ConcurrentMap<String, ConstantNameAndType> types = namesAndTypes.get(name);
+		if (types == null) {
+			final ConcurrentMap<String, ConstantNameAndType> created = new ConcurrentHashMap<String, ConstantNameAndType>(4);
+			types = namesAndTypes.putIfAbsent(name, created);
+			if (types == null) {
+				types = created;
+			}
+		}
+		final ConstantNameAndType result = types.get(type);
+		if (result != null) {
+			return result;
+		}
+		final ConstantNameAndType created = new ConstantNameAndType(name, type);
+		final ConstantNameAndType existing = types.putIfAbsent(type, created);
+		return existing != null ? existing : created;
+	}
+
+	/**
+	 * @return The number of canonical class constants
+	 */
+	public int getConstantClassCount() {
+		return classes.size();
+	}
+}
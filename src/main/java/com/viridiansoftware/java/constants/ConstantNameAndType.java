@@ -23,8 +23,12 @@ public class ConstantNameAndType{
     private final String name;
     private final String type;
 
-    private FieldDescriptor fieldDescriptor;
-    private MethodDescriptor methodDescriptor;
+    /*
+     * Instances are shared across classes and threads by a ConstantFactory, the lazily parsed descriptors
+     * are published through volatile fields
+     */
+    private volatile FieldDescriptor fieldDescriptor;
+    private volatile MethodDescriptor methodDescriptor;
 
     public ConstantNameAndType(String name, String type){
         this.name = name;
@@ -44,16 +48,37 @@ public class ConstantNameAndType{
     }
 
     public FieldDescriptor asFieldDescriptor() {
-        if(fieldDescriptor == null) {
-            fieldDescriptor = new FieldDescriptor(type);
+        FieldDescriptor result = fieldDescriptor;
+        if(result == null) {
+            result = new FieldDescriptor(type);
+            fieldDescriptor = result;
         }
-        return fieldDescriptor;
+        return result;
     }
 
     public MethodDescriptor asMethodDescriptor() {
-        if(methodDescriptor == null) {
-            methodDescriptor = new MethodDescriptor(type);
+        MethodDescriptor result = methodDescriptor;
+        if(result == null) {
+            result = new MethodDescriptor(type);
+            methodDescriptor = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(this == obj) {
+            return true;
         }
-        return methodDescriptor;
+        if(!(obj instanceof ConstantNameAndType)) {
+            return false;
+        }
+        final ConstantNameAndType other = (ConstantNameAndType) obj;
+        return name.equals(other.name) && type.equals(other.type);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * name.hashCode() + type.hashCode();
     }
 }
@@ -15,215 +15,741 @@
  ******************************************************************************/
 package com.viridiansoftware.java.constants;
 
+import com.viridiansoftware.java.ParseOptions;
+import com.viridiansoftware.java.attributes.AttributeName;
+import com.viridiansoftware.java.utils.Utf8Utils;
+
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class ConstantPool {
 
+	private static final Object RESOLVING = new Object();
+	private static final AttributeName[] ATTRIBUTE_NAMES = AttributeName.values();
+	private static final byte UNKNOWN_ATTRIBUTE = -1;
+
 	private final Object[] constantPool;
+	private final int count;
+	private final int majorVersion;
+	private final ByteBuffer buffer;
+	private final byte[] tags;
+	private final int[] offsets;
+	private char[] chars;
+	private final SymbolTable symbolTable;
+	private final int[] symbolIds;
+	private byte[] attributeNames;
+	private final ConstantFactory constantFactory;
+	private final Scratch scratch;
 
 	/**
 	 * http://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4
 	 * http://docs.oracle.com/javase/specs/jvms/se8/html/ClassFile.doc.html#20080
 	 *
-	 * @param input the stream of the class
+	 * @param input the stream of the class, positioned at the constant_pool_count
 	 * @throws IOException if any IO error occur
+	 * @deprecated use {@link #ConstantPool(int, int, ByteBuffer)}, this constructor copies the pool from the stream into a buffer first
 	 */
+	@Deprecated
 	public ConstantPool(int majorVersion, int minorVersion, DataInputStream input) throws IOException {
-		int count = input.readUnsignedShort();
-		Object[] pool = constantPool = new Object[count];
+		this(majorVersion, minorVersion, copy(input));
+	}
+
+	/**
+	 * http://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4
+	 * http://docs.oracle.com/javase/specs/jvms/se8/html/ClassFile.doc.html#20080
+	 *
+	 * @param input the buffer of the class, positioned at the constant_pool_count
+	 * @throws IOException if any IO error occur
+	 */
+	public ConstantPool(int majorVersion, int minorVersion, ByteBuffer input) throws IOException {
+		this(majorVersion, minorVersion, input, false);
+	}
+
+	/**
+	 * http://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4
+	 * http://docs.oracle.com/javase/specs/jvms/se8/html/ClassFile.doc.html#20080
+	 *
+	 * @param input the buffer of the class, positioned at the constant_pool_count
+	 * @param lazy true to only record the tag and offset of each entry and decode entries on first access via {@link #get(int)}
+	 * @throws IOException if any IO error occur
+	 */
+	public ConstantPool(int majorVersion, int minorVersion, ByteBuffer input, boolean lazy) throws IOException {
+		this(majorVersion, minorVersion, input, lazy, null);
+	}
+
+	/**
+	 * http://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4
+	 * http://docs.oracle.com/javase/specs/jvms/se8/html/ClassFile.doc.html#20080
+	 *
+	 * @param input the buffer of the class, positioned at the constant_pool_count
+	 * @param lazy true to only record the tag and offset of each entry and decode entries on first access via {@link #get(int)}
+	 * @param symbolTable the table to intern CONSTANT_Utf8 entries into or null to not intern them
+	 * @throws IOException if any IO error occur
+	 */
+	public ConstantPool(int majorVersion, int minorVersion, ByteBuffer input, boolean lazy, SymbolTable symbolTable) throws IOException {
+		this(majorVersion, minorVersion, input, ParseOptions.DEFAULT.withLazyConstantPool(lazy).withSymbolTable(symbolTable));
+	}
+
+	/**
+	 * http://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4
+	 * http://docs.oracle.com/javase/specs/jvms/se8/html/ClassFile.doc.html#20080
+	 *
+	 * @param input the buffer of the class, positioned at the constant_pool_count
+	 * @param options the options deciding if the pool is lazy and which symbol table and constant factory it uses
+	 * @throws IOException if any IO error occur
+	 */
+	public ConstantPool(int majorVersion, int minorVersion, ByteBuffer input, ParseOptions options) throws IOException {
+		this(majorVersion, minorVersion, input, options, null);
+	}
+
+	/**
+	 * Reads a constant pool into the arrays of a scratch, which are only allocated when they are too small. The arrays
+	 * are shared with every other pool read with the same scratch, so the pool is only valid until the next pool is
+	 * read with it. Constants returned by the pool stay valid.
+	 * Only intended for readers owned by a single thread such as {@link com.viridiansoftware.java.ClassFileReader}.
+	 *
+	 * @param input the buffer of the class, positioned at the constant_pool_count
+	 * @param options the options deciding if the pool is lazy and which symbol table and constant factory it uses
+	 * @param scratch the arrays to reuse or null to allocate new ones
+	 * @throws IOException if any IO error occur
+	 */
+	public ConstantPool(int majorVersion, int minorVersion, ByteBuffer input, ParseOptions options, Scratch scratch) throws IOException {
+		final int count = input.getShort() & 0xFFFF;
+		final SymbolTable symbolTable = options.getSymbolTable();
+		if (scratch == null) {
+			constantPool = new Object[count];
+			tags = new byte[count];
+			offsets = new int[count];
+			symbolIds = symbolTable == null ? null : new int[count];
+		} else {
+			scratch.prepare(count, symbolTable != null);
+			constantPool = scratch.constantPool;
+			tags = scratch.tags;
+			offsets = scratch.offsets;
+			symbolIds = symbolTable == null ? null : scratch.symbolIds;
+			chars = scratch.chars;
+			attributeNames = scratch.attributeNames;
+		}
+		this.scratch = scratch;
+		this.count = count;
+		this.majorVersion = majorVersion;
+		this.buffer = input;
+		this.symbolTable = symbolTable;
+		this.constantFactory = options.getConstantFactory();
+		index(input, count);
+		if (!options.isLazyConstantPool()) {
+			resolveAll();
+		}
+	}
+
+	/**
+	 * Creates a pool over the tags and offsets of an earlier read of the same class, see {@link #getTag(int)} and
+	 * {@link #getOffset(int)}, without walking the entries again. The arrays are used as they are and must not be
+	 * modified afterwards.
+	 *
+	 * @param input the buffer of the class the offsets refer to, its position is not changed
+	 * @param options the options deciding if the pool is lazy and which symbol table and constant factory it uses
+	 * @param tags the tag of every entry
+	 * @param offsets the absolute offset of every entry after its tag
+	 * @throws IOException if an entry of an eagerly decoded pool is invalid
+	 */
+	public ConstantPool(int majorVersion, int minorVersion, ByteBuffer input, ParseOptions options, byte[] tags, int[] offsets) throws IOException {
+		if (tags.length != offsets.length) {
+			throw new IllegalArgumentException("The tags and offsets differ in length");
+		}
+		this.count = tags.length;
+		this.constantPool = new Object[count];
+		this.tags = tags;
+		this.offsets = offsets;
+		this.majorVersion = majorVersion;
+		this.buffer = input;
+		this.symbolTable = options.getSymbolTable();
+		this.symbolIds = symbolTable == null ? null : new int[count];
+		this.constantFactory = options.getConstantFactory();
+		this.scratch = null;
+		if (!options.isLazyConstantPool()) {
+			resolveAll();
+		}
+	}
+
+	private void resolveAll() throws IOException {
+		try {
+			for (int i = 1; i < count; i++) {
+				get(i);
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	public ConstantPool(int size) {
+		constantPool = new Object[size];
+		count = size;
+		majorVersion = 0;
+		buffer = null;
+		tags = null;
+		offsets = null;
+		symbolTable = null;
+		symbolIds = null;
+		constantFactory = null;
+		scratch = null;
+	}
+
+	/**
+	 * The arrays of the pools read one after another by a single reader, grown when a pool does not fit.
+	 * This includes the char buffer for decoding CONSTANT_Utf8 entries and the cache of attribute names.
+	 */
+	public static final class Scratch {
+		Object[] constantPool;
+		byte[] tags;
+		int[] offsets;
+		int[] symbolIds;
+		byte[] attributeNames;
+		char[] chars;
+		private int used;
+
+		void prepare(int count, boolean symbols) {
+			if (tags == null || tags.length < count) {
+				constantPool = new Object[count];
+				tags = new byte[count];
+				offsets = new int[count];
+				attributeNames = new byte[count];
+				symbolIds = null;
+			} else {
+				Arrays.fill(constantPool, 0, used, null);
+				Arrays.fill(tags, 0, used, (byte) 0);
+				Arrays.fill(attributeNames, 0, used, (byte) 0);
+				if (symbolIds != null) {
+					Arrays.fill(symbolIds, 0, used, 0);
+				}
+			}
+			if (symbols && symbolIds == null) {
+				symbolIds = new int[tags.length];
+			}
+			used = count;
+		}
+	}
+
+	/**
+	 * Copies the constant pool from a stream into a new buffer positioned at the constant_pool_count
+	 */
+	private static ByteBuffer copy(DataInputStream input) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream output = new DataOutputStream(bytes);
+		final int count = input.readUnsignedShort();
+		output.writeShort(count);
 		for (int i = 1; i < count; i++) {
-			byte type = input.readByte();
+			final byte type = input.readByte();
+			output.writeByte(type);
+			final int length;
 			switch (type) {
 			case 1: //CONSTANT_Utf8
-				pool[i] = input.readUTF();
-				break;
-			case 3: //CONSTANT_Integer
-				pool[i] = new Integer(input.readInt());
-				break;
-			case 4: //CONSTANT_Float
-				pool[i] = new Float(input.readFloat());
-				break;
-			case 5: //CONSTANT_Long
-				pool[i] = new Long(input.readLong());
-				i++;
-				break;
-			case 6: //CONSTANT_Double
-				pool[i] = new Double(input.readDouble());
-				i++;
+				length = input.readUnsignedShort();
+				output.writeShort(length);
 				break;
 			case 7: //CONSTANT_Class
 			case 8: //CONSTANT_String
 			case 16: //CONSTANT_MethodType
 			case 19: //CONSTANT_Module_info
 			case 20: //CONSTANT_Package_info
-				pool[i] = new int[]{type, input.readUnsignedShort()};
+				length = 2;
 				break;
+			case 15: //CONSTANT_MethodHandle
+				length = 3;
+				break;
+			case 3: //CONSTANT_Integer
+			case 4: //CONSTANT_Float
 			case 9: //CONSTANT_Fieldref
 			case 10: //CONSTANT_Methodref
 			case 11: //CONSTANT_InterfaceMethodref
 			case 12: //CONSTANT_NameAndType
 			case 17: //CONSTANT_Dynamic
 			case 18: //CONSTANT_InvokeDynamic
-				pool[i] = new int[]{type, input.readUnsignedShort(), input.readUnsignedShort()};
+				length = 4;
 				break;
-			case 15: //CONSTANT_MethodHandle
-				pool[i] = new int[]{type, input.readByte(), input.readUnsignedShort()};
+			case 5: //CONSTANT_Long
+			case 6: //CONSTANT_Double
+				length = 8;
+				i++;
 				break;
 			default:
 				throw new IOException("Unknown constant pool type: " + type);
 			}
+			for (int j = 0; j < length; j++) {
+				output.writeByte(input.readByte());
+			}
 		}
+		return ByteBuffer.wrap(bytes.toByteArray());
+	}
 
-		boolean repeat;
-		do {
-			repeat = false;
-			for (int i = 0; i < count; i++) {
-				if (pool[i] instanceof int[]) {
-					int[] data = (int[]) pool[i];
-					switch (data[0]) {
-					case 7: //CONSTANT_Class
-						pool[i] = new ConstantClass((String) pool[data[1]]);
-						break;
-					case 8: //CONSTANT_String
-						pool[i] = pool[data[1]];
-						break;
-					case 9: //CONSTANT_Fieldref
-						if (pool[data[1]] instanceof int[] || pool[data[2]] instanceof int[]) {
-							repeat = true;
-						} else {
-							pool[i] = new ConstantFieldRef((ConstantClass) pool[data[1]], (ConstantNameAndType) pool[data[2]]);
-						}
-						break;
-					case 10: //CONSTANT_Methodref
-						if (pool[data[1]] instanceof int[] || pool[data[2]] instanceof int[]) {
-							repeat = true;
-						} else {
-							pool[i] = new ConstantMethodRef((ConstantClass) pool[data[1]], (ConstantNameAndType) pool[data[2]]);
-						}
-						break;
-					case 11: //CONSTANT_InterfaceMethodref
-						if (pool[data[1]] instanceof int[] || pool[data[2]] instanceof int[]) {
-							repeat = true;
-						} else {
-							pool[i] = new ConstantInterfaceMethodRef((ConstantClass) pool[data[1]], (ConstantNameAndType) pool[data[2]]);
-						}
-						break;
-					case 12: //CONSTANT_NameAndType
-						pool[i] = new ConstantNameAndType((String) pool[data[1]], (String) pool[data[2]]);
-						break;
-					case 15: //CONSTANT_MethodHandle
-						if (pool[data[2]] instanceof int[]) {
-							repeat = true;
-						} else {
-							switch (data[1]) {
-							case 1: //REF_getField
-							case 2: //REF_getStatic
-							case 3: //REF_putField
-							case 4: //REF_putStatic
-								if (pool[data[2]] instanceof ConstantFieldRef) {
-									pool[i] = new ConstantMethodHandle(data[1], (ConstantFieldRef) pool[data[2]]);
-								} else {
-									throw new IOException("Expected " + ConstantFieldRef.class.getSimpleName() +
-											" in constant pool index " + data[2] + " but found " + pool[data[2]].getClass().getSimpleName());
-								}
-								break;
-							case 5: //REF_invokeVirtual
-							case 8: //REF_newInvokeSpecial
-								if (pool[data[2]] instanceof ConstantMethodRef) {
-									pool[i] = new ConstantMethodHandle(data[1], (ConstantMethodRef) pool[data[2]]);
-								} else {
-									throw new IOException("Expected " + ConstantFieldRef.class.getSimpleName() +
-											" in constant pool index " + data[2] + " but found " + pool[data[2]].getClass().getSimpleName());
-								}
-								break;
-							case 6: //REF_invokeStatic
-							case 7: //REF_invokeSpecial
-								if(majorVersion < 52) {
-									if (pool[data[2]] instanceof ConstantMethodRef) {
-										pool[i] = new ConstantMethodHandle(data[1], (ConstantMethodRef) pool[data[2]]);
-									} else {
-										throw new IOException("Expected " + ConstantMethodRef.class.getSimpleName() +
-												" in constant pool index " + data[2] + " but found " + pool[data[2]].getClass().getSimpleName());
-									}
-								} else {
-									if (pool[data[2]] instanceof ConstantMethodRef) {
-										pool[i] = new ConstantMethodHandle(data[1], (ConstantMethodRef) pool[data[2]]);
-									} else if (pool[data[2]] instanceof ConstantInterfaceMethodRef) {
-										pool[i] = new ConstantMethodHandle(data[1], (ConstantInterfaceMethodRef) pool[data[2]]);
-									} else {
-										throw new IOException("Expected " + ConstantMethodRef.class.getSimpleName() +
-												" or " + ConstantInterfaceMethodRef.class.getSimpleName() +
-												" in constant pool index " + data[2] + " but found " + pool[data[2]].getClass().getSimpleName());
-									}
-								}
-								break;
-							case 9: //REF_invokeInterface
-								if (pool[data[2]] instanceof ConstantInterfaceMethodRef) {
-									pool[i] = new ConstantMethodHandle(data[1], (ConstantInterfaceMethodRef) pool[data[2]]);
-								} else {
-									throw new IOException("Expected " + ConstantInterfaceMethodRef.class.getSimpleName() +
-											" in constant pool index " + data[2] + " but found " + pool[data[2]].getClass().getSimpleName());
-								}
-								break;
-							default:
-								throw new IOException("Unknown method handle reference kind: " + data[1]);
-							}
-						}
-						break;
-					case 16: //CONSTANT_MethodType
-						pool[i] = new ConstantMethodType((String) pool[data[1]]);
-						break;
-					case 17: //CONSTANT_Dynamic
-						if (pool[data[2]] instanceof int[]) {
-							repeat = true;
-						} else {
-							pool[i] = new ConstantDynamic(data[1], (ConstantNameAndType) pool[data[2]]);
-						}
-						break;
-					case 18: //CONSTANT_InvokeDynamic
-						if (pool[data[2]] instanceof int[]) {
-							repeat = true;
-						} else {
-							pool[i] = new ConstantInvokeDynamic(data[1], (ConstantNameAndType) pool[data[2]]);
+	/**
+	 * Records the tag and offset of every entry without decoding any of them
+	 */
+	private void index(ByteBuffer input, int count) throws IOException {
+		try {
+			for (int i = 1; i < count; i++) {
+				final byte type = input.get();
+				tags[i] = type;
+				offsets[i] = input.position();
+				if (skip(input, type, i)) {
+					i++;
+				}
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Constant pool extends past the end of the class", e);
+		}
+	}
+
+	/**
+	 * Scans the constant pool of an unparsed class for a CONSTANT_Utf8 entry equal to any of the given strings,
+	 * without decoding or retaining any entry. This allows classes that can not refer to a name, e.g. the
+	 * descriptor of an annotation type, to be skipped before they are parsed.
+	 *
+	 * @param classBytes the class file starting at its position, which is not changed
+	 * @param values the strings to look for
+	 * @return true if the pool contains at least one of the strings
+	 * @throws IOException if the constant pool is invalid
+	 */
+	public static boolean containsUtf8(ByteBuffer classBytes, String... values) throws IOException {
+		final int[] lengths = new int[values.length];
+		long lengthMask = 0;
+		for (int i = 0; i < values.length; i++) {
+			lengths[i] = Utf8Utils.encodedLength(values[i]);
+			lengthMask |= 1L << lengths[i];
+		}
+		final long mask = lengthMask;
+		return !scanUtf8(classBytes, new Utf8Visitor() {
+			@Override
+			public boolean visit(ByteBuffer buffer, int offset, int length) {
+				//Most entries are rejected by their length alone
+				if ((mask & (1L << length)) != 0) {
+					for (int j = 0; j < values.length; j++) {
+						if (lengths[j] == length && Utf8Utils.matches(values[j], buffer, offset, length)) {
+							return false;
 						}
-						break;
-					case 19: //CONSTANT_Module_info
-						pool[i] = pool[data[1]];
-						break;
-					case 20: //CONSTANT_Package_info
-						pool[i] = pool[data[1]];
-						break;
-					default:
-						throw new IOException("Unknown constant pool type: " + data[0]);
 					}
 				}
+				return true;
 			}
-		} while (repeat);
+		});
 	}
 
-	public ConstantPool(int size) {
-		constantPool = new Object[size];
+	/**
+	 * Passes the encoded bytes of every CONSTANT_Utf8 entry of an unparsed class to a visitor in pool order
+	 * without decoding any of them
+	 *
+	 * @param classBytes the class file starting at its position, which is not changed
+	 * @param visitor the visitor, which may stop the scan
+	 * @return false if the visitor stopped the scan
+	 * @throws IOException if the constant pool is invalid
+	 */
+	public static boolean scanUtf8(ByteBuffer classBytes, Utf8Visitor visitor) throws IOException {
+		final ByteBuffer input = classBytes.duplicate();
+		try {
+			input.position(input.position() + 8);
+			final int count = input.getShort() & 0xFFFF;
+			for (int i = 1; i < count; i++) {
+				final byte type = input.get();
+				final int offset = input.position() + 2;
+				if (skip(input, type, i)) {
+					i++;
+				} else if (type == 1 && !visitor.visit(input, offset, input.position() - offset)) {
+					return false;
+				}
+			}
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new IOException("Constant pool extends past the end of the class", e);
+		}
+		return true;
 	}
 
+	/**
+	 * Receives the CONSTANT_Utf8 entries found by {@link #scanUtf8(ByteBuffer, Utf8Visitor)}
+	 */
+	public interface Utf8Visitor {
+		/**
+		 * @param buffer the class file
+		 * @param offset the absolute offset of the first encoded byte
+		 * @param length the number of encoded bytes
+		 * @return false to stop the scan
+		 * @throws IOException thrown by the visitor to abort the scan
+		 */
+		boolean visit(ByteBuffer buffer, int offset, int length) throws IOException;
+	}
+
+	/**
+	 * Moves the position of the input past the entry following the tag
+	 * @return true if the entry occupies two indices
+	 */
+	private static boolean skip(ByteBuffer input, byte type, int index) throws IOException {
+		switch (type) {
+		case 1: //CONSTANT_Utf8
+			final int length = input.getShort() & 0xFFFF;
+			if (length > input.remaining()) {
+				throw new IOException("Utf8 constant at index " + index + " extends past the end of the class");
+			}
+			input.position(input.position() + length);
+			return false;
+		case 7: //CONSTANT_Class
+		case 8: //CONSTANT_String
+		case 16: //CONSTANT_MethodType
+		case 19: //CONSTANT_Module_info
+		case 20: //CONSTANT_Package_info
+			input.getShort();
+			return false;
+		case 15: //CONSTANT_MethodHandle
+			input.get();
+			input.getShort();
+			return false;
+		case 3: //CONSTANT_Integer
+		case 4: //CONSTANT_Float
+		case 9: //CONSTANT_Fieldref
+		case 10: //CONSTANT_Methodref
+		case 11: //CONSTANT_InterfaceMethodref
+		case 12: //CONSTANT_NameAndType
+		case 17: //CONSTANT_Dynamic
+		case 18: //CONSTANT_InvokeDynamic
+			input.getInt();
+			return false;
+		case 5: //CONSTANT_Long
+		case 6: //CONSTANT_Double
+			input.getLong();
+			return true;
+		default:
+			throw new IOException("Unknown constant pool type: " + type);
+		}
+	}
+
+	/**
+	 * Returns the constant at the given index, decoding it first if the pool was read lazily
+	 * @param index The constant pool index
+	 * @return The constant or null if the index is unused
+	 * @throws UncheckedIOException if the entry could not be decoded
+	 */
 	public Object get(int index) {
-		return constantPool[index];
+		if (index >= count) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+		final Object value = constantPool[index];
+		if (value == RESOLVING || (value == null && tags != null && tags[index] != 0)) {
+			return resolve(index);
+		}
+		return value;
+	}
+
+	/**
+	 * Decodes and memoizes a single entry. Every entry is decoded at most once and referenced entries are
+	 * resolved recursively, so resolving the whole pool is linear in its size regardless of the order of entries.
+	 */
+	private synchronized Object resolve(int index) {
+		Object value = constantPool[index];
+		if (value == RESOLVING) {
+			throw new UncheckedIOException(new IOException("Circular reference at constant pool index " + index));
+		}
+		if (value != null) {
+			return value;
+		}
+		constantPool[index] = RESOLVING;
+		try {
+			value = decode(index);
+		} catch (IOException e) {
+			constantPool[index] = null;
+			throw new UncheckedIOException(e);
+		} catch (RuntimeException e) {
+			constantPool[index] = null;
+			throw e;
+		}
+		constantPool[index] = value;
+		return value;
+	}
+
+	private Object decode(int index) throws IOException {
+		final int offset = offsets[index];
+		switch (tags[index]) {
+		case 1: //CONSTANT_Utf8
+			if (symbolTable != null) {
+				return symbolTable.getSymbol(getSymbolId(index));
+			}
+			final int length = buffer.getShort(offset) & 0xFFFF;
+			if (chars == null || chars.length < length) {
+				chars = new char[Math.max(length, 64)];
+				if (scratch != null) {
+					scratch.chars = chars;
+				}
+			}
+			return Utf8Utils.decode(buffer, offset + 2, length, chars);
+		case 3: //CONSTANT_Integer
+			return Integer.valueOf(buffer.getInt(offset));
+		case 4: //CONSTANT_Float
+			return Float.valueOf(buffer.getFloat(offset));
+		case 5: //CONSTANT_Long
+			return Long.valueOf(buffer.getLong(offset));
+		case 6: //CONSTANT_Double
+			return Double.valueOf(buffer.getDouble(offset));
+		case 7: //CONSTANT_Class
+			final String className = (String) get(readIndex(offset, 1));
+			return constantFactory != null ? constantFactory.getConstantClass(className) : new ConstantClass(className);
+		case 8: //CONSTANT_String
+		case 19: //CONSTANT_Module_info
+		case 20: //CONSTANT_Package_info
+			return get(readIndex(offset, 1));
+		case 9: //CONSTANT_Fieldref
+			return new ConstantFieldRef((ConstantClass) get(readIndex(offset, 7)), (ConstantNameAndType) get(readIndex(offset + 2, 12)));
+		case 10: //CONSTANT_Methodref
+			return new ConstantMethodRef((ConstantClass) get(readIndex(offset, 7)), (ConstantNameAndType) get(readIndex(offset + 2, 12)));
+		case 11: //CONSTANT_InterfaceMethodref
+			return new ConstantInterfaceMethodRef((ConstantClass) get(readIndex(offset, 7)), (ConstantNameAndType) get(readIndex(offset + 2, 12)));
+		case 12: //CONSTANT_NameAndType
+			final String name = (String) get(readIndex(offset, 1));
+			final String type = (String) get(readIndex(offset + 2, 1));
+			return constantFactory != null ? constantFactory.getConstantNameAndType(name, type) : new ConstantNameAndType(name, type);
+		case 15: //CONSTANT_MethodHandle
+			return createMethodHandle(buffer.get(offset), readIndex(offset + 1));
+		case 16: //CONSTANT_MethodType
+			return new ConstantMethodType((String) get(readIndex(offset, 1)));
+		case 17: //CONSTANT_Dynamic
+			return new ConstantDynamic(readIndex(offset), (ConstantNameAndType) get(readIndex(offset + 2, 12)));
+		case 18: //CONSTANT_InvokeDynamic
+			return new ConstantInvokeDynamic(readIndex(offset), (ConstantNameAndType) get(readIndex(offset + 2, 12)));
+		default:
+			throw new IOException("Unknown constant pool type: " + tags[index]);
+		}
+	}
+
+	private int readIndex(int offset) {
+		return buffer.getShort(offset) & 0xFFFF;
+	}
+
+	/**
+	 * Reads a reference to another entry and checks its tag, so malformed pools can not recurse deeper than a
+	 * MethodHandle to Methodref to Class to Utf8 chain
+	 */
+	private int readIndex(int offset, int expectedTag) throws IOException {
+		final int index = readIndex(offset);
+		if (index >= count || tags[index] != expectedTag) {
+			throw new IOException("Expected constant pool tag " + expectedTag + " at index " + index +
+					" but found " + (index < count ? tags[index] : "an index past the end of the pool"));
+		}
+		return index;
+	}
+
+	private ConstantMethodHandle createMethodHandle(int referenceKind, int referenceIndex) throws IOException {
+		final int referenceTag = referenceIndex < count ? tags[referenceIndex] : 0;
+		if (referenceTag < 9 || referenceTag > 11) {
+			throw new IOException("Expected a field or method reference in constant pool index " + referenceIndex +
+					" but found tag " + referenceTag);
+		}
+		final Object reference = get(referenceIndex);
+		switch (referenceKind) {
+		case 1: //REF_getField
+		case 2: //REF_getStatic
+		case 3: //REF_putField
+		case 4: //REF_putStatic
+			if (reference instanceof ConstantFieldRef) {
+				return new ConstantMethodHandle(referenceKind, (ConstantFieldRef) reference);
+			}
+			throw new IOException("Expected " + ConstantFieldRef.class.getSimpleName() +
+					" in constant pool index " + referenceIndex + " but found " + reference.getClass().getSimpleName());
+		case 5: //REF_invokeVirtual
+		case 8: //REF_newInvokeSpecial
+			if (reference instanceof ConstantMethodRef) {
+				return new ConstantMethodHandle(referenceKind, (ConstantMethodRef) reference);
+			}
+			throw new IOException("Expected " + ConstantFieldRef.class.getSimpleName() +
+					" in constant pool index " + referenceIndex + " but found " + reference.getClass().getSimpleName());
+		case 6: //REF_invokeStatic
+		case 7: //REF_invokeSpecial
+			if (majorVersion < 52) {
+				if (reference instanceof ConstantMethodRef) {
+					return new ConstantMethodHandle(referenceKind, (ConstantMethodRef) reference);
+				}
+				throw new IOException("Expected " + ConstantMethodRef.class.getSimpleName() +
+						" in constant pool index " + referenceIndex + " but found " + reference.getClass().getSimpleName());
+			}
+			if (reference instanceof ConstantMethodRef) {
+				return new ConstantMethodHandle(referenceKind, (ConstantMethodRef) reference);
+			} else if (reference instanceof ConstantInterfaceMethodRef) {
+				return new ConstantMethodHandle(referenceKind, (ConstantInterfaceMethodRef) reference);
+			}
+			throw new IOException("Expected " + ConstantMethodRef.class.getSimpleName() +
+					" or " + ConstantInterfaceMethodRef.class.getSimpleName() +
+					" in constant pool index " + referenceIndex + " but found " + reference.getClass().getSimpleName());
+		case 9: //REF_invokeInterface
+			if (reference instanceof ConstantInterfaceMethodRef) {
+				return new ConstantMethodHandle(referenceKind, (ConstantInterfaceMethodRef) reference);
+			}
+			throw new IOException("Expected " + ConstantInterfaceMethodRef.class.getSimpleName() +
+					" in constant pool index " + referenceIndex + " but found " + reference.getClass().getSimpleName());
+		default:
+			throw new IOException("Unknown method handle reference kind: " + referenceKind);
+		}
+	}
+
+	/**
+	 * Returns the id of a CONSTANT_Utf8 entry in the {@link SymbolTable} the pool was read with, interning the
+	 * entry without decoding it if required
+	 * @param index The constant pool index
+	 * @return The symbol id
+	 * @throws IllegalStateException if the pool was read without a symbol table
+	 * @throws IllegalArgumentException if the entry is not a CONSTANT_Utf8
+	 * @throws UncheckedIOException if the entry is not valid modified UTF-8
+	 */
+	public int getSymbolId(int index) {
+		if (symbolTable == null) {
+			throw new IllegalStateException("The constant pool was not read with a symbol table");
+		}
+		if (index >= count || tags[index] != 1) {
+			throw new IllegalArgumentException("Expected a CONSTANT_Utf8 at constant pool index " + index);
+		}
+		final int symbolId = symbolIds[index];
+		if (symbolId != 0) {
+			return symbolId - 1;
+		}
+		final int offset = offsets[index];
+		try {
+			final int result = symbolTable.intern(buffer, offset + 2, buffer.getShort(offset) & 0xFFFF);
+			symbolIds[index] = result + 1;
+			return result;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the predefined attribute named by a CONSTANT_Utf8. Every index is matched against the predefined
+	 * names at most once, later calls for the same index only read an array.
+	 * @param index The constant pool index of an attribute_name_index
+	 * @return The predefined attribute or null if the name is not predefined
+	 */
+	public AttributeName getAttributeName(int index) {
+		if (index >= count) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+		byte[] names = attributeNames;
+		if (names == null) {
+			//A racing thread may replace the array, the lost entries are matched again
+			names = new byte[tags != null ? tags.length : count];
+			attributeNames = names;
+		}
+		final int value = names[index];
+		if (value > 0) {
+			return ATTRIBUTE_NAMES[value - 1];
+		} else if (value == UNKNOWN_ATTRIBUTE) {
+			return null;
+		}
+		final Object name = get(index);
+		final AttributeName result = name instanceof String ? AttributeName.of((String) name) : null;
+		names[index] = result == null ? UNKNOWN_ATTRIBUTE : (byte) (result.ordinal() + 1);
+		return result;
+	}
+
+	/**
+	 * @return The symbol table the pool was read with or null
+	 */
+	public SymbolTable getSymbolTable() {
+		return symbolTable;
+	}
+
+	/**
+	 * Returns the tag of the entry at the given index without decoding it
+	 * @param index The constant pool index
+	 * @return The CONSTANT_* tag or 0 if the index is unused or the tag is unknown
+	 */
+	public int getTag(int index) {
+		if (tags == null) {
+			return 0;
+		}
+		return tags[index];
+	}
+
+	/**
+	 * Returns the offset of the entry at the given index in the class file buffer
+	 * @param index The constant pool index
+	 * @return The absolute offset of the entry after its tag or 0 if the index is unused or the pool was not read
+	 * from a buffer
+	 */
+	public int getOffset(int index) {
+		if (offsets == null) {
+			return 0;
+		}
+		return offsets[index];
+	}
+
+	/**
+	 * Returns the value of a CONSTANT_Integer without boxing it
+	 * @param index The constant pool index
+	 * @return The int value
+	 */
+	public int getInt(int index) {
+		if (tags != null && tags[index] == 3) {
+			return buffer.getInt(offsets[index]);
+		}
+		return (Integer) get(index);
+	}
+
+	/**
+	 * Returns the value of a CONSTANT_Float without boxing it
+	 * @param index The constant pool index
+	 * @return The float value
+	 */
+	public float getFloat(int index) {
+		if (tags != null && tags[index] == 4) {
+			return buffer.getFloat(offsets[index]);
+		}
+		return (Float) get(index);
+	}
+
+	/**
+	 * Returns the value of a CONSTANT_Long without boxing it
+	 * @param index The constant pool index
+	 * @return The long value
+	 */
+	public long getLong(int index) {
+		if (tags != null && tags[index] == 5) {
+			return buffer.getLong(offsets[index]);
+		}
+		return (Long) get(index);
+	}
+
+	/**
+	 * Returns the value of a CONSTANT_Double without boxing it
+	 * @param index The constant pool index
+	 * @return The double value
+	 */
+	public double getDouble(int index) {
+		if (tags != null && tags[index] == 6) {
+			return buffer.getDouble(offsets[index]);
+		}
+		return (Double) get(index);
+	}
+
+	private boolean mayHaveTag(int index, int tag) {
+		return tags == null || tags[index] == tag;
 	}
 
 	public void set(int index, Object obj) {
 		constantPool[index] = obj;
+		if (attributeNames != null && index < attributeNames.length) {
+			attributeNames[index] = 0;
+		}
 	}
 
 	public int length() {
-		return constantPool.length;
+		return count;
 	}
 
 	public List<ConstantClass> getConstantClasses() {
 		final List<ConstantClass> result = new ArrayList<ConstantClass>();
-		for (int i = 0; i < constantPool.length; i++) {
-			if (constantPool[i] instanceof ConstantClass) {
+		for (int i = 0; i < count; i++) {
+			if (mayHaveTag(i, 7) && get(i) instanceof ConstantClass) {
 				result.add((ConstantClass) constantPool[i]);
 			}
 		}
@@ -232,8 +758,8 @@ public class ConstantPool {
 
 	public List<String> getConstantFieldDescriptors() {
 		final List<String> result = new ArrayList<String>();
-		for (int i = 0; i < constantPool.length; i++) {
-			if (constantPool[i] instanceof ConstantFieldRef) {
+		for (int i = 0; i < count; i++) {
+			if (mayHaveTag(i, 9) && get(i) instanceof ConstantFieldRef) {
 				result.add(((ConstantFieldRef) constantPool[i]).getType());
 			}
 		}
@@ -242,8 +768,11 @@ public class ConstantPool {
 
 	public List<String> getConstantMethodDescriptors() {
 		final List<String> result = new ArrayList<String>();
-		for (int i = 0; i < constantPool.length; i++) {
-			if (constantPool[i] instanceof ConstantMethodRef) {
+		for (int i = 0; i < count; i++) {
+			if (!mayHaveTag(i, 10) && !mayHaveTag(i, 11)) {
+				continue;
+			}
+			if (get(i) instanceof ConstantMethodRef) {
 				result.add(((ConstantMethodRef) constantPool[i]).getType());
 			} else if (constantPool[i] instanceof ConstantInterfaceMethodRef) {
 				result.add(((ConstantInterfaceMethodRef) constantPool[i]).getType());
@@ -254,8 +783,11 @@ public class ConstantPool {
 
 	public List<ConstantRef> getConstantMethodRefs() {
 		final List<ConstantRef> result = new ArrayList<ConstantRef>();
-		for (int i = 0; i < constantPool.length; i++) {
-			if (constantPool[i] instanceof ConstantMethodRef) {
+		for (int i = 0; i < count; i++) {
+			if (!mayHaveTag(i, 10) && !mayHaveTag(i, 11)) {
+				continue;
+			}
+			if (get(i) instanceof ConstantMethodRef) {
 				result.add(((ConstantMethodRef) constantPool[i]));
 			} else if (constantPool[i] instanceof ConstantInterfaceMethodRef) {
 				result.add(((ConstantInterfaceMethodRef) constantPool[i]));
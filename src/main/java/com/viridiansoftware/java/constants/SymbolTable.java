@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.constants;
+
+import com.viridiansoftware.java.utils.Utf8Utils;
+
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A thread safe table of interned CONSTANT_Utf8 symbols that can be shared by many {@link ConstantPool}s, so each
+ * distinct name, descriptor or signature is held in memory once no matter how many classes use it.
+ *
+ * Symbols are looked up by hashing and comparing their raw modified UTF-8 bytes, a String is only decoded the first
+ * time a symbol is seen. Every symbol is assigned a stable int id that can be used in place of the String by
+ * indexes. Ids are small non-negative integers that stay dense as the table grows.
+ *
+ * The table is split into stripes with their own lock, selected by the symbol hash, to reduce contention between
+ * parsing threads.
+ */
+public final class SymbolTable {
+	private static final int STRIPE_BITS = 6;
+	private static final int STRIPES = 1 << STRIPE_BITS;
+
+	private final Stripe[] stripes = new Stripe[STRIPES];
+
+	public SymbolTable() {
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Stripe(i);
+		}
+	}
+
+	/**
+	 * Interns a modified UTF-8 encoded symbol without decoding it unless it is new
+	 * @param buffer The buffer containing the symbol, its position is not modified
+	 * @param offset The absolute offset of the first byte
+	 * @param length The number of encoded bytes
+	 * @return The id of the symbol
+	 * @throws UTFDataFormatException if a new symbol is not valid modified UTF-8
+	 */
+	public int intern(ByteBuffer buffer, int offset, int length) throws UTFDataFormatException {
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + buffer.get(offset + i);
+		}
+		return stripeFor(hash).intern(hash, buffer, offset, length);
+	}
+
+	/**
+	 * Interns a symbol
+	 * @param symbol The symbol
+	 * @return The id of the symbol
+	 */
+	public int intern(String symbol) {
+		final int hash = hash(symbol);
+		return stripeFor(hash).intern(hash, symbol);
+	}
+
+	/**
+	 * Returns the id of a symbol without interning it
+	 * @param symbol The symbol
+	 * @return The id of the symbol or -1 if it has not been interned
+	 */
+	public int getId(String symbol) {
+		final int hash = hash(symbol);
+		return stripeFor(hash).find(hash, symbol);
+	}
+
+	/**
+	 * @param id The id of an interned symbol
+	 * @return The interned symbol
+	 * @throws IllegalArgumentException if no symbol has the id
+	 */
+	public String getSymbol(int id) {
+		if (id < 0) {
+			throw new IllegalArgumentException("Invalid symbol id " + id);
+		}
+		return stripes[id & (STRIPES - 1)].get(id >>> STRIPE_BITS, id);
+	}
+
+	/**
+	 * @return The number of interned symbols
+	 */
+	public int size() {
+		int result = 0;
+		for (Stripe stripe : stripes) {
+			result += stripe.size();
+		}
+		return result;
+	}
+
+	/**
+	 * @return An exclusive upper bound of all ids assigned so far, suitable for sizing arrays indexed by id
+	 */
+	public int getIdLimit() {
+		int limit = 0;
+		for (Stripe stripe : stripes) {
+			limit = Math.max(limit, stripe.getIdLimit());
+		}
+		return limit;
+	}
+
+	private Stripe stripeFor(int hash) {
+		return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+	}
+
+	/**
+	 * Hashes the modified UTF-8 encoding of a String without encoding it
+	 */
+	private static int hash(String symbol) {
+		int hash = 0;
+		for (int i = 0; i < symbol.length(); i++) {
+			final char c = symbol.charAt(i);
+			if (c >= 0x01 && c <= 0x7F) {
+				hash = 31 * hash + (byte) c;
+			} else if (c <= 0x7FF) {
+				hash = 31 * hash + (byte) (0xC0 | (c >> 6));
+				hash = 31 * hash + (byte) (0x80 | (c & 0x3F));
+			} else {
+				hash = 31 * hash + (byte) (0xE0 | (c >> 12));
+				hash = 31 * hash + (byte) (0x80 | ((c >> 6) & 0x3F));
+				hash = 31 * hash + (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * An open addressing hash table of symbols. Slots store the local index of a symbol plus one.
+	 */
+	private static class Stripe {
+		private final int stripe;
+		private String[] symbols = new String[16];
+		private int[] hashes = new int[16];
+		private int[] slots = new int[32];
+		private int size;
+
+		Stripe(int stripe) {
+			this.stripe = stripe;
+		}
+
+		synchronized int intern(int hash, ByteBuffer buffer, int offset, int length) throws UTFDataFormatException {
+			int slot = spread(hash) & (slots.length - 1);
+			while (slots[slot] != 0) {
+				final int index = slots[slot] - 1;
+				if (hashes[index] == hash && Utf8Utils.matches(symbols[index], buffer, offset, length)) {
+					return toId(index);
+				}
+				slot = (slot + 1) & (slots.length - 1);
+			}
+			return add(slot, hash, Utf8Utils.decode(buffer, offset, length));
+		}
+
+		synchronized int intern(int hash, String symbol) {
+			int slot = spread(hash) & (slots.length - 1);
+			while (slots[slot] != 0) {
+				final int index = slots[slot] - 1;
+				if (hashes[index] == hash && symbols[index].equals(symbol)) {
+					return toId(index);
+				}
+				slot = (slot + 1) & (slots.length - 1);
+			}
+			return add(slot, hash, symbol);
+		}
+
+		synchronized int find(int hash, String symbol) {
+			int slot = spread(hash) & (slots.length - 1);
+			while (slots[slot] != 0) {
+				final int index = slots[slot] - 1;
+				if (hashes[index] == hash && symbols[index].equals(symbol)) {
+					return toId(index);
+				}
+				slot = (slot + 1) & (slots.length - 1);
+			}
+			return -1;
+		}
+
+		synchronized String get(int index, int id) {
+			if (index >= size) {
+				throw new IllegalArgumentException("Invalid symbol id " + id);
+			}
+			return symbols[index];
+		}
+
+		synchronized int size() {
+			return size;
+		}
+
+		synchronized int getIdLimit() {
+			return size == 0 ? 0 : toId(size - 1) + 1;
+		}
+
+		private int add(int slot, int hash, String symbol) {
+			if (size == symbols.length) {
+				symbols = Arrays.copyOf(symbols, size * 2);
+				hashes = Arrays.copyOf(hashes, size * 2);
+			}
+			final int index = size++;
+			symbols[index] = symbol;
+			hashes[index] = hash;
+			slots[slot] = index + 1;
+			if (size * 2 > slots.length) {
+				rehash();
+			}
+			return toId(index);
+		}
+
+		private void rehash() {
+			final int[] result = new int[slots.length * 2];
+			for (int index = 0; index < size; index++) {
+				int slot = spread(hashes[index]) & (result.length - 1);
+				while (result[slot] != 0) {
+					slot = (slot + 1) & (result.length - 1);
+				}
+				result[slot] = index + 1;
+			}
+			slots = result;
+		}
+
+		/**
+		 * Mixes the hash so slots do not depend on the bits that selected the stripe
+		 */
+		private static int spread(int hash) {
+			final int h = hash * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+
+		private int toId(int index) {
+			return (index << STRIPE_BITS) | stripe;
+		}
+	}
+}
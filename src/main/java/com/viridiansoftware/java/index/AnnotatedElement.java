@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.index;
+
+import com.viridiansoftware.java.attributes.RuntimeVisibleAnnotation;
+
+/**
+ * A class, field or method carrying an annotation, as found by an {@link AnnotationIndex}
+ */
+public final class AnnotatedElement implements Comparable<AnnotatedElement> {
+	public enum Kind {
+		CLASS,
+		FIELD,
+		METHOD
+	}
+
+	private final Kind kind;
+	private final String className;
+	private final String name;
+	private final String descriptor;
+	private final RuntimeVisibleAnnotation annotation;
+
+	AnnotatedElement(Kind kind, String className, String name, String descriptor, RuntimeVisibleAnnotation annotation) {
+		this.kind = kind;
+		this.className = className;
+		this.name = name;
+		this.descriptor = descriptor;
+		this.annotation = annotation;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return The internal name of the annotated class or of the class declaring the annotated member
+	 */
+	public String getClassName() {
+		return className;
+	}
+
+	/**
+	 * @return The name of the annotated member or null for a class
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The descriptor of the annotated member or null for a class
+	 */
+	public String getDescriptor() {
+		return descriptor;
+	}
+
+	/**
+	 * @return The decoded annotation including its element values
+	 */
+	public RuntimeVisibleAnnotation getAnnotation() {
+		return annotation;
+	}
+
+	@Override
+	public int compareTo(AnnotatedElement other) {
+		int result = className.compareTo(other.className);
+		if (result == 0) {
+			result = kind.compareTo(other.kind);
+		}
+		if (result == 0 && name != null) {
+			result = name.compareTo(other.name);
+		}
+		if (result == 0 && descriptor != null) {
+			result = descriptor.compareTo(other.descriptor);
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return name == null ? className : className + "." + name + descriptor;
+	}
+}
@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.index;
+
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.FieldInfo;
+import com.viridiansoftware.java.MethodInfo;
+import com.viridiansoftware.java.ParseOptions;
+import com.viridiansoftware.java.attributes.RuntimeVisibleAnnotation;
+import com.viridiansoftware.java.attributes.RuntimeVisibleAnnotations;
+import com.viridiansoftware.java.classpath.ClassFileHandler;
+import com.viridiansoftware.java.classpath.ClassFilter;
+import com.viridiansoftware.java.classpath.JarParser;
+import com.viridiansoftware.java.classpath.ParseStatistics;
+import com.viridiansoftware.java.constants.ConstantPool;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * An immutable index from annotation types to the classes, fields and methods carrying them, for a set of
+ * annotation types fixed up front.
+ *
+ * A class can only carry an annotation if the annotation's descriptor, e.g. Ljavax/inject/Inject;, is a
+ * CONSTANT_Utf8 of its constant pool. The {@link Builder} checks this on the unparsed bytes of each class with
+ * {@link ConstantPool#containsUtf8} and only parses and decodes the annotations of the few classes that pass, which
+ * makes indexing a class path mostly a matter of inflating it. Only runtime visible annotations are indexed.
+ */
+public final class AnnotationIndex {
+	private final Map<String, List<AnnotatedElement>> elements;
+
+	private AnnotationIndex(Map<String, List<AnnotatedElement>> elements) {
+		this.elements = elements;
+	}
+
+	/**
+	 * @param annotationTypes The annotation types to index as internal names, e.g. javax/inject/Inject, or
+	 *                        descriptors, e.g. Ljavax/inject/Inject;
+	 * @return A builder indexing the annotation types
+	 */
+	public static Builder builder(String... annotationTypes) {
+		return new Builder(annotationTypes);
+	}
+
+	/**
+	 * @return The internal names of the indexed annotation types
+	 */
+	public Set<String> getAnnotationTypes() {
+		return Collections.unmodifiableSet(elements.keySet());
+	}
+
+	/**
+	 * @param annotationType The internal name or descriptor of an indexed annotation type
+	 * @return The annotated elements ordered by class name, kind, member name and descriptor
+	 * @throws IllegalArgumentException if the annotation type was not indexed
+	 */
+	public List<AnnotatedElement> getAnnotated(String annotationType) {
+		final List<AnnotatedElement> result = elements.get(toInternalName(annotationType));
+		if (result == null) {
+			throw new IllegalArgumentException("Annotation type was not indexed: " + annotationType);
+		}
+		return result;
+	}
+
+	/**
+	 * @param annotationType The internal name or descriptor of an indexed annotation type
+	 * @return The sorted internal names of the classes carrying the annotation themselves or on a member
+	 */
+	public List<String> getAnnotatedClasses(String annotationType) {
+		final List<String> result = new ArrayList<String>();
+		for (AnnotatedElement element : getAnnotated(annotationType)) {
+			if (result.isEmpty() || !result.get(result.size() - 1).equals(element.getClassName())) {
+				result.add(element.getClassName());
+			}
+		}
+		return result;
+	}
+
+	private static String toInternalName(String annotationType) {
+		if (annotationType.startsWith("L") && annotationType.endsWith(";")) {
+			return annotationType.substring(1, annotationType.length() - 1);
+		}
+		return annotationType;
+	}
+
+	/**
+	 * Collects annotated elements, either from class bytes via {@link #add(ByteBuffer)} or as the filter and handler
+	 * of a {@link JarParser}, see {@link #addJar(JarParser, Path)}. Classes may be added concurrently.
+	 */
+	public static class Builder implements ClassFilter, ClassFileHandler {
+		private static final ParseOptions PARSE_OPTIONS = ParseOptions.DEFAULT.withLazyConstantPool(true);
+
+		private final String[] descriptors;
+		private final Map<String, ConcurrentLinkedQueue<AnnotatedElement>> elements;
+		private final LongAdder scannedClasses = new LongAdder();
+		private final LongAdder parsedClasses = new LongAdder();
+
+		private Builder(String... annotationTypes) {
+			descriptors = new String[annotationTypes.length];
+			elements = new HashMap<String, ConcurrentLinkedQueue<AnnotatedElement>>(annotationTypes.length * 2);
+			for (int i = 0; i < annotationTypes.length; i++) {
+				descriptors[i] = "L" + toInternalName(annotationTypes[i]) + ";";
+				elements.put(descriptors[i], new ConcurrentLinkedQueue<AnnotatedElement>());
+			}
+		}
+
+		/**
+		 * Indexes a class unless its constant pool rules out all annotation types
+		 * @param classBytes The class file, its position is not changed
+		 * @return This builder
+		 * @throws IOException if the class is invalid
+		 */
+		public Builder add(ByteBuffer classBytes) throws IOException {
+			if (accept(null, classBytes)) {
+				add(new ClassFile(classBytes.duplicate(), PARSE_OPTIONS));
+			}
+			return this;
+		}
+
+		/**
+		 * Indexes a parsed class, decoding the annotations of its members
+		 * @param classFile The class, parsed with annotations retained
+		 * @return This builder
+		 * @throws IOException if an annotation is invalid
+		 */
+		public Builder add(ClassFile classFile) throws IOException {
+			parsedClasses.increment();
+			final String className = classFile.getThisClass().getName();
+			collect(AnnotatedElement.Kind.CLASS, className, null, null, classFile.getRuntimeVisibleAnnotations());
+			for (FieldInfo field : classFile.getFields()) {
+				collect(AnnotatedElement.Kind.FIELD, className, field.getName(), field.getType(),
+						field.getRuntimeVisibleAnnotations());
+			}
+			for (MethodInfo method : classFile.getMethods()) {
+				collect(AnnotatedElement.Kind.METHOD, className, method.getName(), method.getType(),
+						method.getRuntimeVisibleAnnotations());
+			}
+			return this;
+		}
+
+		/**
+		 * Indexes all classes of a jar in parallel on the parser's pool. Several jars can be added concurrently.
+		 * @param parser The parser, which must retain annotations
+		 * @param jar The jar file
+		 * @return The statistics of the classes that passed the constant pool check and were parsed
+		 * @throws IOException if the jar can not be read or a class is invalid
+		 */
+		public ParseStatistics addJar(JarParser parser, Path jar) throws IOException {
+			return parser.parse(jar, this, this);
+		}
+
+		/**
+		 * Indexes several jars, each in parallel on the parser's pool and all of them concurrently
+		 * @param parser The parser, which must retain annotations
+		 * @param jars The jar files
+		 * @return This builder
+		 * @throws IOException if a jar can not be read or a class is invalid
+		 */
+		public Builder addJars(JarParser parser, Collection<Path> jars) throws IOException {
+			try {
+				jars.parallelStream().forEach(new Consumer<Path>() {
+					@Override
+					public void accept(Path jar) {
+						try {
+							addJar(parser, jar);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			return this;
+		}
+
+		@Override
+		public boolean accept(String entryName, ByteBuffer classBytes) throws IOException {
+			scannedClasses.increment();
+			return ConstantPool.containsUtf8(classBytes, descriptors);
+		}
+
+		@Override
+		public void onClassFile(String source, String entryName, ClassFile classFile) throws IOException {
+			add(classFile);
+		}
+
+		/**
+		 * @return The number of classes whose constant pool was checked
+		 */
+		public long getScannedCount() {
+			return scannedClasses.sum();
+		}
+
+		/**
+		 * @return The number of classes whose annotations were decoded
+		 */
+		public long getParsedCount() {
+			return parsedClasses.sum();
+		}
+
+		public AnnotationIndex build() {
+			final Map<String, List<AnnotatedElement>> result = new LinkedHashMap<String, List<AnnotatedElement>>();
+			for (String descriptor : descriptors) {
+				final List<AnnotatedElement> annotated = new ArrayList<AnnotatedElement>(elements.get(descriptor));
+				Collections.sort(annotated);
+				result.put(toInternalName(descriptor), Collections.unmodifiableList(annotated));
+			}
+			return new AnnotationIndex(result);
+		}
+
+		private void collect(AnnotatedElement.Kind kind, String className, String name, String descriptor,
+		                     RuntimeVisibleAnnotations annotations) {
+			if (annotations == null) {
+				return;
+			}
+			for (RuntimeVisibleAnnotation annotation : annotations.getAnnotations()) {
+				final ConcurrentLinkedQueue<AnnotatedElement> queue = elements.get(annotation.getTypeDescriptor());
+				if (queue != null) {
+					queue.add(new AnnotatedElement(kind, className, name, descriptor, annotation));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.index;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed size Bloom filter over strings, keyed by a 64 bit hash of their modified UTF-8 encoding so that
+ * CONSTANT_Utf8 entries can be added straight from a class file and queried with Strings.
+ *
+ * Filters are sized at ten bits per element and use seven probes derived from the hash by double hashing, giving
+ * a false positive rate of about one percent.
+ */
+public final class BloomFilter {
+	static final int BITS_PER_ELEMENT = 10;
+	static final int HASH_FUNCTIONS = 7;
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final long[] words;
+	private final long bits;
+
+	BloomFilter(long[] words) {
+		this.words = words;
+		this.bits = words.length * 64L;
+	}
+
+	/**
+	 * @param expectedElements The number of distinct elements the filter is sized for
+	 */
+	public BloomFilter(int expectedElements) {
+		this(new long[Math.max(1, (int) ((Math.max(1, expectedElements) * (long) BITS_PER_ELEMENT + 63) / 64))]);
+	}
+
+	/**
+	 * @param hash The hash of the element, see {@link #hash(String)}
+	 */
+	public void add(long hash) {
+		int h1 = (int) hash;
+		final int h2 = (int) (hash >>> 32);
+		for (int i = 0; i < HASH_FUNCTIONS; i++) {
+			final long bit = (h1 & 0x7FFFFFFFL) % bits;
+			words[(int) (bit >>> 6)] |= 1L << bit;
+			h1 += h2;
+		}
+	}
+
+	public void add(String value) {
+		add(hash(value));
+	}
+
+	/**
+	 * @param hash The hash of the element, see {@link #hash(String)}
+	 * @return False if the element was definitely not added
+	 */
+	public boolean mightContain(long hash) {
+		int h1 = (int) hash;
+		final int h2 = (int) (hash >>> 32);
+		for (int i = 0; i < HASH_FUNCTIONS; i++) {
+			final long bit = (h1 & 0x7FFFFFFFL) % bits;
+			if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+			h1 += h2;
+		}
+		return true;
+	}
+
+	/**
+	 * @return False if the string was definitely not added
+	 */
+	public boolean mightContain(String value) {
+		return mightContain(hash(value));
+	}
+
+	/**
+	 * @return The size of the filter in bits
+	 */
+	public long getBitCount() {
+		return bits;
+	}
+
+	long[] getWords() {
+		return words;
+	}
+
+	/**
+	 * Hashes the modified UTF-8 encoding of a string without encoding it
+	 * @param value The string
+	 * @return The same hash as {@link #hash(ByteBuffer, int, int)} returns for the encoded string
+	 */
+	public static long hash(String value) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c >= 0x01 && c <= 0x7F) {
+				hash = (hash ^ c) * FNV_PRIME;
+			} else if (c <= 0x7FF) {
+				hash = (hash ^ (0xC0 | (c >> 6))) * FNV_PRIME;
+				hash = (hash ^ (0x80 | (c & 0x3F))) * FNV_PRIME;
+			} else {
+				hash = (hash ^ (0xE0 | (c >> 12))) * FNV_PRIME;
+				hash = (hash ^ (0x80 | ((c >> 6) & 0x3F))) * FNV_PRIME;
+				hash = (hash ^ (0x80 | (c & 0x3F))) * FNV_PRIME;
+			}
+		}
+		return mix(hash);
+	}
+
+	/**
+	 * Hashes modified UTF-8 encoded bytes, e.g. a CONSTANT_Utf8 entry of a class file
+	 * @param buffer The buffer to read from, its position is not changed
+	 * @param offset The absolute offset of the first byte
+	 * @param length The number of encoded bytes
+	 * @return The hash
+	 */
+	public static long hash(ByteBuffer buffer, int offset, int length) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = offset; i < offset + length; i++) {
+			hash = (hash ^ (buffer.get(i) & 0xFF)) * FNV_PRIME;
+		}
+		return mix(hash);
+	}
+
+	/**
+	 * Spreads the bits of FNV-1a, whose low bits are weak, over the whole hash
+	 */
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		return hash ^ (hash >>> 33);
+	}
+}
@@ -0,0 +1,375 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.index;
+
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.classpath.ClassFileHandler;
+import com.viridiansoftware.java.classpath.ClassFilter;
+import com.viridiansoftware.java.classpath.JarClassSource;
+import com.viridiansoftware.java.classpath.JarParser;
+import com.viridiansoftware.java.constants.ConstantPool;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bloom filters over the CONSTANT_Utf8 entries of the classes of a jar, answering whether a class may refer to a
+ * string such as sun/misc/Unsafe without opening the jar.
+ *
+ * A filter over the whole jar rejects most jars with a single check, and a filter per class narrows the remaining
+ * jars down to the candidate classes, which {@link #findReferences(String)} confirms by scanning their constant
+ * pools. The filters are built without parsing any class and can be saved next to the jar, see
+ * {@link #open(JarParser, Path)}.
+ *
+ * Every class, method and field name, descriptor and signature as well as every string literal is a
+ * CONSTANT_Utf8, so the names of referenced classes and members can be queried directly. Note that a type that
+ * only occurs in descriptors, e.g. in the type of an unused field, is found by its descriptor Lsun/misc/Unsafe;
+ * rather than its internal name.
+ */
+public final class ReferenceIndex {
+	/**
+	 * The suffix of the file an index is saved to, next to its jar
+	 */
+	public static final String FILE_SUFFIX = ".refs";
+
+	private static final int MAGIC = 0x56524631;
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+
+	private final Path jar;
+	private final long jarSize;
+	private final long jarModified;
+	private final BloomFilter jarFilter;
+	private final String[] classNames;
+	private final BloomFilter[] classFilters;
+
+	private ReferenceIndex(Path jar, long jarSize, long jarModified, BloomFilter jarFilter, String[] classNames,
+	                       BloomFilter[] classFilters) {
+		this.jar = jar;
+		this.jarSize = jarSize;
+		this.jarModified = jarModified;
+		this.jarFilter = jarFilter;
+		this.classNames = classNames;
+		this.classFilters = classFilters;
+	}
+
+	/**
+	 * Builds the index of a jar, scanning its classes in parallel without parsing them
+	 * @param parser The parser whose pool the jar is scanned on
+	 * @param jar The jar file
+	 * @return The index
+	 * @throws IOException if the jar can not be read or a class is invalid
+	 */
+	public static ReferenceIndex build(JarParser parser, Path jar) throws IOException {
+		final BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+		final ConcurrentLinkedQueue<ClassHashes> scanned = new ConcurrentLinkedQueue<ClassHashes>();
+		parser.parse(jar, new ClassFilter() {
+			@Override
+			public boolean accept(String entryName, ByteBuffer classBytes) throws IOException {
+				scanned.add(new ClassHashes(entryName.substring(0, entryName.length() - ".class".length()), hash(classBytes)));
+				return false;
+			}
+		}, new ClassFileHandler() {
+			@Override
+			public void onClassFile(String source, String entryName, ClassFile classFile) {
+			}
+		});
+
+		final ClassHashes[] classes = scanned.toArray(new ClassHashes[0]);
+		Arrays.sort(classes, new Comparator<ClassHashes>() {
+			@Override
+			public int compare(ClassHashes first, ClassHashes second) {
+				return first.className.compareTo(second.className);
+			}
+		});
+		int total = 0;
+		for (ClassHashes hashes : classes) {
+			total += hashes.hashes.length;
+		}
+		final long[] all = new long[total];
+		int position = 0;
+		for (ClassHashes hashes : classes) {
+			System.arraycopy(hashes.hashes, 0, all, position, hashes.hashes.length);
+			position += hashes.hashes.length;
+		}
+		final int distinct = sortDistinct(all);
+		final BloomFilter jarFilter = new BloomFilter(distinct);
+		for (int i = 0; i < distinct; i++) {
+			jarFilter.add(all[i]);
+		}
+
+		final String[] classNames = new String[classes.length];
+		final BloomFilter[] classFilters = new BloomFilter[classes.length];
+		for (int i = 0; i < classes.length; i++) {
+			classNames[i] = classes[i].className;
+			classFilters[i] = new BloomFilter(classes[i].hashes.length);
+			for (long hash : classes[i].hashes) {
+				classFilters[i].add(hash);
+			}
+		}
+		return new ReferenceIndex(jar, attributes.size(), attributes.lastModifiedTime().toMillis(), jarFilter,
+				classNames, classFilters);
+	}
+
+	/**
+	 * Reads the index saved next to a jar, or builds and saves it if it is missing, damaged or the jar has changed since.
+	 * An index that can not be saved, e.g. because the directory is read only, is still returned.
+	 * @param parser The parser whose pool the jar is scanned on if the index has to be built
+	 * @param jar The jar file
+	 * @return The index
+	 * @throws IOException if the jar can not be read or a class is invalid
+	 */
+	public static ReferenceIndex open(JarParser parser, Path jar) throws IOException {
+		final Path file = getIndexPath(jar);
+		final BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+		final ReferenceIndex saved = read(jar, file);
+		if (saved != null && saved.jarSize == attributes.size()
+				&& saved.jarModified == attributes.lastModifiedTime().toMillis()) {
+			return saved;
+		}
+		final ReferenceIndex index = build(parser, jar);
+		try {
+			index.write(file);
+		} catch (IOException e) {
+			//The index is only a cache of the jar
+		}
+		return index;
+	}
+
+	/**
+	 * @param jar The jar file
+	 * @return The file the index of the jar is saved to
+	 */
+	public static Path getIndexPath(Path jar) {
+		return jar.resolveSibling(jar.getFileName() + FILE_SUFFIX);
+	}
+
+	/**
+	 * Writes the index to a file, atomically replacing an existing file
+	 * @param file The file, usually {@link #getIndexPath(Path)}
+	 * @throws IOException if the file can not be written
+	 */
+	public void write(Path file) throws IOException {
+		final Path temporary = file.resolveSibling(file.getFileName() + "."
+				+ Long.toHexString(ThreadLocalRandom.current().nextLong()) + TEMPORARY_SUFFIX);
+		try {
+			try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+				output.writeInt(MAGIC);
+				output.writeLong(jarSize);
+				output.writeLong(jarModified);
+				writeFilter(output, jarFilter);
+				output.writeInt(classNames.length);
+				for (int i = 0; i < classNames.length; i++) {
+					output.writeUTF(classNames[i]);
+					writeFilter(output, classFilters[i]);
+				}
+			}
+			try {
+				Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Reads an index written by {@link #write(Path)} without checking whether the jar has changed since
+	 * @param jar The jar the index belongs to
+	 * @param file The index file
+	 * @return The index or null if the file does not exist, was written by an incompatible version or is damaged
+	 * @throws IOException if the file can not be read
+	 */
+	public static ReferenceIndex read(Path jar, Path file) throws IOException {
+		final byte[] data;
+		try {
+			data = Files.readAllBytes(file);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+		//Every failure below is caused by the content, the file is already in memory
+		try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(data))) {
+			if (input.readInt() != MAGIC) {
+				return null;
+			}
+			final long jarSize = input.readLong();
+			final long jarModified = input.readLong();
+			final BloomFilter jarFilter = readFilter(input);
+			final int count = input.readInt();
+			//Each class takes at least a name length, a filter length and one word
+			if (count < 0 || count > input.available() / 14) {
+				return null;
+			}
+			final String[] classNames = new String[count];
+			final BloomFilter[] classFilters = new BloomFilter[count];
+			for (int i = 0; i < count; i++) {
+				classNames[i] = input.readUTF();
+				classFilters[i] = readFilter(input);
+			}
+			if (input.available() != 0) {
+				return null;
+			}
+			return new ReferenceIndex(jar, jarSize, jarModified, jarFilter, classNames, classFilters);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param value A CONSTANT_Utf8 string, e.g. sun/misc/Unsafe
+	 * @return False if no class of the jar refers to the string
+	 */
+	public boolean mightReference(String value) {
+		return jarFilter.mightContain(value);
+	}
+
+	/**
+	 * @param value A CONSTANT_Utf8 string, e.g. sun/misc/Unsafe
+	 * @return The internal names of the classes that may refer to the string, in name order
+	 */
+	public List<String> getCandidates(String value) {
+		final List<String> result = new ArrayList<String>();
+		final long hash = BloomFilter.hash(value);
+		if (!jarFilter.mightContain(hash)) {
+			return result;
+		}
+		for (int i = 0; i < classNames.length; i++) {
+			if (classFilters[i].mightContain(hash)) {
+				result.add(classNames[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Confirms the candidates of a string by scanning the constant pools of the candidate classes
+	 * @param value A CONSTANT_Utf8 string, e.g. sun/misc/Unsafe
+	 * @return The internal names of the classes that refer to the string, in name order
+	 * @throws IOException if the jar can not be read
+	 */
+	public List<String> findReferences(String value) throws IOException {
+		final List<String> candidates = getCandidates(value);
+		if (candidates.isEmpty()) {
+			return candidates;
+		}
+		final List<String> result = new ArrayList<String>(candidates.size());
+		try (JarClassSource source = new JarClassSource(jar)) {
+			for (String className : candidates) {
+				final ByteBuffer classBytes = source.find(className);
+				if (classBytes != null && ConstantPool.containsUtf8(classBytes, value)) {
+					result.add(className);
+				}
+			}
+		}
+		return result;
+	}
+
+	public Path getJar() {
+		return jar;
+	}
+
+	/**
+	 * @return The number of indexed classes
+	 */
+	public int size() {
+		return classNames.length;
+	}
+
+	/**
+	 * @return The internal names of the indexed classes in name order
+	 */
+	public List<String> getClassNames() {
+		return Arrays.asList(classNames.clone());
+	}
+
+	private static long[] hash(ByteBuffer classBytes) throws IOException {
+		final long[][] hashes = {new long[64]};
+		final int[] count = {0};
+		ConstantPool.scanUtf8(classBytes, new ConstantPool.Utf8Visitor() {
+			@Override
+			public boolean visit(ByteBuffer buffer, int offset, int length) {
+				if (count[0] == hashes[0].length) {
+					hashes[0] = Arrays.copyOf(hashes[0], count[0] * 2);
+				}
+				hashes[0][count[0]++] = BloomFilter.hash(buffer, offset, length);
+				return true;
+			}
+		});
+		final long[] result = Arrays.copyOf(hashes[0], count[0]);
+		return Arrays.copyOf(result, sortDistinct(result));
+	}
+
+	/**
+	 * Sorts an array and moves its distinct values to the front
+	 * @return The number of distinct values
+	 */
+	private static int sortDistinct(long[] values) {
+		Arrays.sort(values);
+		int count = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (count == 0 || values[i] != values[count - 1]) {
+				values[count++] = values[i];
+			}
+		}
+		return count;
+	}
+
+	private static void writeFilter(DataOutputStream output, BloomFilter filter) throws IOException {
+		final long[] words = filter.getWords();
+		output.writeInt(words.length);
+		for (long word : words) {
+			output.writeLong(word);
+		}
+	}
+
+	private static BloomFilter readFilter(DataInputStream input) throws IOException {
+		final int length = input.readInt();
+		if (length <= 0 || length > input.available() / 8) {
+			throw new IOException("Invalid filter length: " + length);
+		}
+		final long[] words = new long[length];
+		for (int i = 0; i < length; i++) {
+			words[i] = input.readLong();
+		}
+		return new BloomFilter(words);
+	}
+
+	private static class ClassHashes {
+		final String className;
+		final long[] hashes;
+
+		ClassHashes(String className, long[] hashes) {
+			this.className = className;
+			this.hashes = hashes;
+		}
+	}
+}
@@ -0,0 +1,556 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.index;
+
+import com.viridiansoftware.java.ClassAccessFlag;
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.classpath.ClassFileHandler;
+import com.viridiansoftware.java.constants.ConstantClass;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable index of the super class and interface relations of a set of classes, answering subtype questions
+ * without walking {@link ClassFile}s.
+ *
+ * Every class, and every type only referenced as a super class or interface, is assigned a dense int id in name
+ * order. The super class tree is numbered in preorder, so whether a type extends a class is a comparison against
+ * an interval and the subclasses of a class are a contiguous range of that numbering. The interfaces each type
+ * implements directly or indirectly are kept as sorted id arrays and found by binary search, computed in parallel
+ * one inheritance depth at a time. The direct implementors of every type are kept so that the subtypes of an
+ * interface are enumerated in time proportional to the result.
+ *
+ * Types that are only referenced have no known supertypes, so the hierarchy is only complete above the classes
+ * that were added.
+ */
+public final class TypeHierarchy {
+	private static final int[] NO_IDS = new int[0];
+
+	private final String[] names;
+	private final Map<String, Integer> ids;
+	private final boolean[] declared;
+	private final boolean[] interfaces;
+	private final int[] superClasses;
+	private final int[][] directInterfaces;
+	private final int[][] allInterfaces;
+	private final int[] preorder;
+	private final int[] subtreeEnd;
+	private final int[] byPreorder;
+	private final int[] implementorOffsets;
+	private final int[] implementors;
+
+	private TypeHierarchy(Collection<Declaration> declarations) {
+		names = collectNames(declarations);
+		final int size = names.length;
+		ids = new HashMap<String, Integer>(size * 4 / 3 + 1);
+		for (int i = 0; i < size; i++) {
+			ids.put(names[i], i);
+		}
+
+		declared = new boolean[size];
+		interfaces = new boolean[size];
+		superClasses = new int[size];
+		directInterfaces = new int[size][];
+		Arrays.fill(superClasses, -1);
+		Arrays.fill(directInterfaces, NO_IDS);
+		for (Declaration declaration : declarations) {
+			final int id = ids.get(declaration.name);
+			declared[id] = true;
+			interfaces[id] = declaration.isInterface;
+			superClasses[id] = declaration.superClass == null ? -1 : ids.get(declaration.superClass);
+			if (declaration.interfaces.length > 0) {
+				final int[] direct = new int[declaration.interfaces.length];
+				for (int i = 0; i < direct.length; i++) {
+					direct[i] = ids.get(declaration.interfaces[i]);
+				}
+				directInterfaces[id] = direct;
+			}
+		}
+
+		preorder = new int[size];
+		subtreeEnd = new int[size];
+		byPreorder = new int[size];
+		numberClassTree();
+
+		implementorOffsets = new int[size + 1];
+		implementors = new int[countImplementations()];
+		indexImplementors();
+
+		allInterfaces = new int[size][];
+		computeAllInterfaces();
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return The number of types, including types that are only referenced
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * @param className The internal name of a type, e.g. java/lang/String
+	 * @return The id of the type or -1 if it was neither added nor referenced
+	 */
+	public int getId(String className) {
+		final Integer id = ids.get(className);
+		return id == null ? -1 : id;
+	}
+
+	public String getName(int id) {
+		return names[id];
+	}
+
+	/**
+	 * @return True if the type was added to the builder, false if it is only referenced by added classes
+	 */
+	public boolean isDeclared(int id) {
+		return declared[id];
+	}
+
+	/**
+	 * @return True if the type was added as an interface. Types that are only referenced are never interfaces.
+	 */
+	public boolean isInterface(int id) {
+		return interfaces[id];
+	}
+
+	/**
+	 * @return The id of the super class or -1
+	 */
+	public int getSuperClass(int id) {
+		return superClasses[id];
+	}
+
+	/**
+	 * @return The ids of the directly implemented or extended interfaces in declaration order, not to be modified
+	 */
+	public int[] getInterfaces(int id) {
+		return directInterfaces[id];
+	}
+
+	/**
+	 * @return The sorted ids of all interfaces implemented or extended directly or indirectly, not to be modified
+	 */
+	public int[] getAllInterfaces(int id) {
+		return allInterfaces[id];
+	}
+
+	/**
+	 * Checks whether a type is, extends or implements another type in constant time for classes and logarithmic
+	 * time in the number of implemented interfaces for interfaces
+	 * @param subtype The id of the possible subtype
+	 * @param supertype The id of the possible supertype
+	 * @return True if the subtype is assignable to the supertype
+	 */
+	public boolean isSubtypeOf(int subtype, int supertype) {
+		if (preorder[supertype] <= preorder[subtype] && preorder[subtype] < subtreeEnd[supertype]) {
+			return true;
+		}
+		return Arrays.binarySearch(allInterfaces[subtype], supertype) >= 0;
+	}
+
+	/**
+	 * @return True if both types are known and the subtype is assignable to the supertype
+	 */
+	public boolean isSubtypeOf(String subtype, String supertype) {
+		final int subtypeId = getId(subtype);
+		final int supertypeId = getId(supertype);
+		return subtypeId >= 0 && supertypeId >= 0 && isSubtypeOf(subtypeId, supertypeId);
+	}
+
+	/**
+	 * @return The ids of the types directly extending or implementing a type
+	 */
+	public int[] getDirectSubtypes(int id) {
+		return Arrays.copyOfRange(implementors, implementorOffsets[id], implementorOffsets[id + 1]);
+	}
+
+	/**
+	 * Enumerates all types that extend or implement a type directly or indirectly
+	 * @param id The id of the supertype, which is not included in the result
+	 * @return The ids of the subtypes in no particular order
+	 */
+	public int[] getSubtypes(int id) {
+		if (declared[id] && !interfaces[id]) {
+			return Arrays.copyOfRange(byPreorder, preorder[id] + 1, subtreeEnd[id]);
+		}
+		//Interfaces and types that are only referenced may be both extended and implemented
+		return getImplementingSubtypes(id);
+	}
+
+	/**
+	 * @return The names of the subtypes of a type or an empty list if the type is unknown
+	 */
+	public List<String> getSubtypes(String className) {
+		final int id = getId(className);
+		if (id < 0) {
+			return new ArrayList<String>(0);
+		}
+		final int[] subtypes = getSubtypes(id);
+		final List<String> result = new ArrayList<String>(subtypes.length);
+		for (int subtype : subtypes) {
+			result.add(names[subtype]);
+		}
+		return result;
+	}
+
+	private int[] getImplementingSubtypes(int id) {
+		final BitSet seen = new BitSet();
+		int[] result = new int[16];
+		int count = 0;
+		int[] stack = new int[16];
+		int depth = 0;
+		for (int i = implementorOffsets[id]; i < implementorOffsets[id + 1]; i++) {
+			stack = push(stack, depth++, implementors[i]);
+		}
+		while (depth > 0) {
+			final int subtype = stack[--depth];
+			if (seen.get(subtype)) {
+				continue;
+			}
+			seen.set(subtype);
+			result = push(result, count++, subtype);
+			if (interfaces[subtype] || !declared[subtype]) {
+				for (int i = implementorOffsets[subtype]; i < implementorOffsets[subtype + 1]; i++) {
+					if (!seen.get(implementors[i])) {
+						stack = push(stack, depth++, implementors[i]);
+					}
+				}
+			} else {
+				for (int i = preorder[subtype] + 1; i < subtreeEnd[subtype]; i++) {
+					final int subclass = byPreorder[i];
+					if (!seen.get(subclass)) {
+						seen.set(subclass);
+						result = push(result, count++, subclass);
+					}
+				}
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	private static int[] push(int[] array, int index, int value) {
+		if (index == array.length) {
+			array = Arrays.copyOf(array, array.length * 2);
+		}
+		array[index] = value;
+		return array;
+	}
+
+	private static String[] collectNames(Collection<Declaration> declarations) {
+		final List<String> all = new ArrayList<String>(declarations.size() * 2);
+		for (Declaration declaration : declarations) {
+			all.add(declaration.name);
+			if (declaration.superClass != null) {
+				all.add(declaration.superClass);
+			}
+			all.addAll(Arrays.asList(declaration.interfaces));
+		}
+		final String[] sorted = all.toArray(new String[0]);
+		Arrays.parallelSort(sorted);
+		int size = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (size == 0 || !sorted[i].equals(sorted[size - 1])) {
+				sorted[size++] = sorted[i];
+			}
+		}
+		return Arrays.copyOf(sorted, size);
+	}
+
+	/**
+	 * Numbers the forest formed by the super class relation in preorder. A cycle, which only invalid class files
+	 * can form, is broken by treating its first visited member as a root.
+	 */
+	private void numberClassTree() {
+		final int size = names.length;
+		final int[] childOffsets = new int[size + 1];
+		for (int id = 0; id < size; id++) {
+			if (superClasses[id] >= 0) {
+				childOffsets[superClasses[id] + 1]++;
+			}
+		}
+		for (int id = 0; id < size; id++) {
+			childOffsets[id + 1] += childOffsets[id];
+		}
+		final int[] children = new int[childOffsets[size]];
+		final int[] fill = Arrays.copyOf(childOffsets, size);
+		for (int id = 0; id < size; id++) {
+			if (superClasses[id] >= 0) {
+				children[fill[superClasses[id]]++] = id;
+			}
+		}
+
+		Arrays.fill(preorder, -1);
+		final int[] stack = new int[size];
+		final int[] next = new int[size];
+		int counter = 0;
+		for (int pass = 0; pass < 2; pass++) {
+			for (int root = 0; root < size; root++) {
+				//Roots first, then members of super class cycles that were not reached from a root
+				if (preorder[root] >= 0 || (pass == 0 && superClasses[root] >= 0)) {
+					continue;
+				}
+				int depth = 0;
+				stack[depth++] = root;
+				preorder[root] = counter;
+				byPreorder[counter++] = root;
+				next[root] = childOffsets[root];
+				while (depth > 0) {
+					final int id = stack[depth - 1];
+					if (next[id] < childOffsets[id + 1]) {
+						final int child = children[next[id]++];
+						if (preorder[child] < 0) {
+							preorder[child] = counter;
+							byPreorder[counter++] = child;
+							next[child] = childOffsets[child];
+							stack[depth++] = child;
+						}
+					} else {
+						subtreeEnd[id] = counter;
+						depth--;
+					}
+				}
+			}
+		}
+	}
+
+	private int countImplementations() {
+		final int size = names.length;
+		for (int id = 0; id < size; id++) {
+			if (superClasses[id] >= 0) {
+				implementorOffsets[superClasses[id] + 1]++;
+			}
+			for (int direct : directInterfaces[id]) {
+				implementorOffsets[direct + 1]++;
+			}
+		}
+		for (int id = 0; id < size; id++) {
+			implementorOffsets[id + 1] += implementorOffsets[id];
+		}
+		return implementorOffsets[size];
+	}
+
+	private void indexImplementors() {
+		final int[] fill = Arrays.copyOf(implementorOffsets, names.length);
+		for (int id = 0; id < names.length; id++) {
+			if (superClasses[id] >= 0) {
+				implementors[fill[superClasses[id]]++] = id;
+			}
+			for (int direct : directInterfaces[id]) {
+				implementors[fill[direct]++] = id;
+			}
+		}
+	}
+
+	/**
+	 * Computes the transitive interfaces of all types. Types are grouped by the length of their longest path to a
+	 * type without supertypes, and the types of a group only depend on the groups before it, so each group is
+	 * computed in parallel.
+	 */
+	private void computeAllInterfaces() {
+		final int size = names.length;
+		final int[] levels = computeLevels();
+		int maxLevel = 0;
+		for (int level : levels) {
+			maxLevel = Math.max(maxLevel, level);
+		}
+		final int[] levelOffsets = new int[maxLevel + 2];
+		for (int level : levels) {
+			levelOffsets[level + 1]++;
+		}
+		for (int level = 0; level <= maxLevel; level++) {
+			levelOffsets[level + 1] += levelOffsets[level];
+		}
+		final int[] byLevel = new int[size];
+		final int[] fill = Arrays.copyOf(levelOffsets, maxLevel + 1);
+		for (int id = 0; id < size; id++) {
+			byLevel[fill[levels[id]]++] = id;
+		}
+		for (int level = 0; level <= maxLevel; level++) {
+			IntStream.range(levelOffsets[level], levelOffsets[level + 1]).parallel().forEach(new IntConsumer() {
+				@Override
+				public void accept(int i) {
+					final int id = byLevel[i];
+					int[] result = superClasses[id] >= 0 && allInterfaces[superClasses[id]] != null ?
+							allInterfaces[superClasses[id]] : NO_IDS;
+					for (int direct : directInterfaces[id]) {
+						if (direct == id) {
+							continue;
+						}
+						result = merge(result, new int[] {direct});
+						if (allInterfaces[direct] != null) {
+							result = merge(result, allInterfaces[direct]);
+						}
+					}
+					allInterfaces[id] = result;
+				}
+			});
+		}
+	}
+
+	/**
+	 * @return For each type the length of its longest supertype path, ignoring edges that close a cycle
+	 */
+	private int[] computeLevels() {
+		final int size = names.length;
+		final int[] levels = new int[size];
+		Arrays.fill(levels, -1);
+		final byte[] state = new byte[size];
+		final int[] stack = new int[size];
+		final int[] next = new int[size];
+		for (int start = 0; start < size; start++) {
+			if (state[start] != 0) {
+				continue;
+			}
+			int depth = 0;
+			stack[depth++] = start;
+			state[start] = 1;
+			while (depth > 0) {
+				final int id = stack[depth - 1];
+				final int edges = directInterfaces[id].length + (superClasses[id] >= 0 ? 1 : 0);
+				if (next[id] < edges) {
+					final int supertype = next[id] < directInterfaces[id].length ?
+							directInterfaces[id][next[id]] : superClasses[id];
+					next[id]++;
+					if (state[supertype] == 0) {
+						state[supertype] = 1;
+						stack[depth++] = supertype;
+					}
+				} else {
+					int level = 0;
+					for (int direct : directInterfaces[id]) {
+						if (state[direct] == 2) {
+							level = Math.max(level, levels[direct] + 1);
+						}
+					}
+					if (superClasses[id] >= 0 && state[superClasses[id]] == 2) {
+						level = Math.max(level, levels[superClasses[id]] + 1);
+					}
+					levels[id] = level;
+					state[id] = 2;
+					depth--;
+				}
+			}
+		}
+		return levels;
+	}
+
+	/**
+	 * Merges two sorted arrays of distinct ids
+	 */
+	private static int[] merge(int[] first, int[] second) {
+		if (second.length == 0) {
+			return first;
+		}
+		if (first.length == 0) {
+			return second;
+		}
+		final int[] result = new int[first.length + second.length];
+		int i = 0, j = 0, count = 0;
+		while (i < first.length && j < second.length) {
+			if (first[i] < second[j]) {
+				result[count++] = first[i++];
+			} else if (first[i] > second[j]) {
+				result[count++] = second[j++];
+			} else {
+				result[count++] = first[i++];
+				j++;
+			}
+		}
+		while (i < first.length) {
+			result[count++] = first[i++];
+		}
+		while (j < second.length) {
+			result[count++] = second[j++];
+		}
+		return count == result.length ? result : Arrays.copyOf(result, count);
+	}
+
+	private static class Declaration {
+		final String name;
+		final boolean isInterface;
+		final String superClass;
+		final String[] interfaces;
+
+		Declaration(String name, boolean isInterface, String superClass, String[] interfaces) {
+			this.name = name;
+			this.isInterface = isInterface;
+			this.superClass = superClass;
+			this.interfaces = interfaces;
+		}
+	}
+
+	/**
+	 * Collects the declarations of classes, for example as the handler of a {@link
+	 * com.viridiansoftware.java.classpath.JarParser} or {@link com.viridiansoftware.java.classpath.DirectoryScanner}.
+	 * Classes may be added concurrently; when a class name is added twice the first declaration is kept, like on a
+	 * class path.
+	 */
+	public static class Builder implements ClassFileHandler {
+		private final ConcurrentHashMap<String, Declaration> declarations = new ConcurrentHashMap<String, Declaration>();
+
+		private Builder() {
+		}
+
+		@Override
+		public void onClassFile(String source, String entryName, ClassFile classFile) {
+			add(classFile);
+		}
+
+		public Builder add(ClassFile classFile) {
+			final ConstantClass[] interfaces = classFile.getInterfaces();
+			final String[] interfaceNames = new String[interfaces.length];
+			for (int i = 0; i < interfaces.length; i++) {
+				interfaceNames[i] = interfaces[i].getName();
+			}
+			return add(classFile.getThisClass().getName(), classFile.getAccessFlags(),
+					classFile.getSuperClass() == null ? null : classFile.getSuperClass().getName(), interfaceNames);
+		}
+
+		/**
+		 * @param className The internal name of the class
+		 * @param accessFlags The access flags of the class
+		 * @param superClass The internal name of the super class or null
+		 * @param interfaces The internal names of the direct interfaces
+		 * @return This builder
+		 */
+		public Builder add(String className, int accessFlags, String superClass, String... interfaces) {
+			final boolean isInterface = (accessFlags & ClassAccessFlag.INTERFACE.getMask()) != 0;
+			declarations.putIfAbsent(className, new Declaration(className, isInterface, superClass, interfaces.clone()));
+			return this;
+		}
+
+		/**
+		 * Builds the index, computing transitive interfaces on the common fork join pool
+		 */
+		public TypeHierarchy build() {
+			return new TypeHierarchy(declarations.values());
+		}
+	}
+}
@@ -0,0 +1,373 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.store;
+
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.ClassFileLayout;
+import com.viridiansoftware.java.ParseOptions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A persistent cache of parsed classes in a local directory, so that unchanged classes are not parsed again by
+ * later runs.
+ *
+ * Entries are keyed by a 64 bit hash and the length of the raw class bytes, see {@link #key(ByteBuffer)}, or by
+ * the CRC-32 and size of a jar entry, see {@link #key(long, long)}, which allows a hit without inflating the entry.
+ * Each entry is a file holding the record written by {@link OffHeapClassStore}, the class bytes and their
+ * {@link ClassFileLayout}. The record is read back as a {@link StoredClass} view without parsing. Callers that need
+ * code, annotations or other attributes get a {@link ClassFile} over the cached bytes from
+ * {@link #getClassFile(String, ParseOptions)}, which takes the constant pool index from the layout instead of walking
+ * the pool and, with compact members, the member tables as well. Only the header and the class attributes are read
+ * again, and with a lazy constant pool only the constants they use are decoded.
+ *
+ * Files are written to a temporary file and atomically renamed, so several processes can share a cache directory:
+ * readers see either a complete entry or none and concurrent writers of the same key write identical content.
+ * Reads update the modification time of an entry, at most once an hour, and the least recently used entries are
+ * deleted once the cache exceeds its size limit.
+ */
+public class ClassFileDiskCache {
+	/**
+	 * The options used by {@link #get(ByteBuffer)} to parse missing classes, skipping code and annotations
+	 */
+	public static final ParseOptions PARSE_OPTIONS = ParseOptions.DEFAULT.withLevel(ParseOptions.Level.SIGNATURES)
+			.withAnnotations(false);
+
+	private static final int MAGIC = 0x56435233;
+	private static final int HEADER_SIZE = 12;
+	private static final String SUFFIX = ".rec";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+	private static final long TEMPORARY_FILE_AGE_MILLIS = 10 * 60 * 1000;
+	/**
+	 * Entries read again within this time do not have their modification time updated, saving a write per hit
+	 */
+	private static final long ACCESS_TIME_RESOLUTION_MILLIS = 60 * 60 * 1000;
+
+	private final Path directory;
+	private final long maxBytes;
+	private final AtomicLong cachedBytes = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final ThreadLocal<RecordWriter> writers = new ThreadLocal<RecordWriter>() {
+		@Override
+		protected RecordWriter initialValue() {
+			return new RecordWriter();
+		}
+	};
+
+	/**
+	 * Opens or creates a cache directory
+	 * @param directory The cache directory, which may be shared with other processes
+	 * @param maxBytes The size of the entries above which the least recently used entries are deleted
+	 * @throws IOException if the directory can not be created or listed
+	 */
+	public ClassFileDiskCache(Path directory, long maxBytes) throws IOException {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		Files.createDirectories(directory);
+		long size = 0;
+		for (Entry entry : listEntries()) {
+			size += entry.size;
+		}
+		cachedBytes.set(size);
+	}
+
+	/**
+	 * Computes the key of raw class bytes from a 64 bit hash and the length of the bytes
+	 * @param classBytes The class bytes between position and limit, the position is not changed
+	 * @return The key
+	 */
+	public static String key(ByteBuffer classBytes) {
+		final ByteBuffer input = classBytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		final int length = input.remaining();
+		long hash = 0x9E3779B97F4A7C15L ^ length;
+		while (input.remaining() >= 8) {
+			hash = (hash ^ mix(input.getLong())) * 0xC2B2AE3D27D4EB4FL;
+		}
+		long tail = 0;
+		for (int shift = 0; input.hasRemaining(); shift += 8) {
+			tail |= (input.get() & 0xFFL) << shift;
+		}
+		hash = mix(hash ^ mix(tail));
+		return String.format("%016x-%x", hash, length);
+	}
+
+	/**
+	 * Computes the key of a jar entry from the CRC-32 and the uncompressed size recorded in the jar
+	 * @param crc The CRC-32 of the uncompressed entry
+	 * @param size The uncompressed size of the entry
+	 * @return The key
+	 */
+	public static String key(long crc, long size) {
+		return String.format("crc-%08x-%x", crc & 0xFFFFFFFFL, size);
+	}
+
+	private static long mix(long value) {
+		value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+		value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return value ^ (value >>> 33);
+	}
+
+	/**
+	 * Returns the cached metadata of raw class bytes, parsing and caching the class on a miss
+	 * @param classBytes The class bytes between position and limit
+	 * @return A view of the class
+	 * @throws IOException if the class is invalid or the cache can not be written
+	 */
+	public StoredClass get(ByteBuffer classBytes) throws IOException {
+		final String key = key(classBytes);
+		final StoredClass storedClass = get(key);
+		if (storedClass != null) {
+			return storedClass;
+		}
+		return put(key, new ClassFile(classBytes.duplicate(), PARSE_OPTIONS));
+	}
+
+	/**
+	 * @param key The key of the entry
+	 * @return A view of the cached class or null if the key is not cached
+	 * @throws IOException if the entry exists but can not be read
+	 */
+	public StoredClass get(String key) throws IOException {
+		final ByteBuffer data = read(key);
+		if (data == null) {
+			return null;
+		}
+		data.position(HEADER_SIZE);
+		return new StoredClass(data.slice(), 0);
+	}
+
+	/**
+	 * Creates a class from the cached bytes and layout of an entry, see {@link ClassFileLayout}. This is fastest with
+	 * a lazy constant pool and compact members, which skip decoding the constants and members the caller does not use.
+	 * @param key The key of the entry
+	 * @param options The options used to create the class
+	 * @return The class or null if the key is not cached
+	 * @throws IOException if the entry exists but can not be read
+	 */
+	public ClassFile getClassFile(String key, ParseOptions options) throws IOException {
+		final ByteBuffer data = read(key);
+		if (data == null) {
+			return null;
+		}
+		final int classLength = data.getInt(4);
+		final int classOffset = data.limit() - data.getInt(8) - classLength;
+		data.position(classOffset + classLength);
+		final ClassFileLayout layout = ClassFileLayout.read(data);
+		data.position(classOffset).limit(classOffset + classLength);
+		return layout.createClassFile(data.slice(), options);
+	}
+
+	/**
+	 * Reads and checks an entry, counting the hit or miss
+	 * @return The entry or null if the key is not cached
+	 */
+	private ByteBuffer read(String key) throws IOException {
+		final Path file = getPath(key);
+		final BasicFileAttributes attributes;
+		final byte[] data;
+		try {
+			attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			data = Files.readAllBytes(file);
+		} catch (NoSuchFileException e) {
+			misses.incrementAndGet();
+			return null;
+		}
+		final ByteBuffer buffer = ByteBuffer.wrap(data);
+		if (data.length < HEADER_SIZE + OffHeapClassStore.INTERFACES || buffer.getInt(0) != MAGIC
+				|| buffer.getInt(4) < 0 || buffer.getInt(8) < 0
+				|| (long) HEADER_SIZE + buffer.getInt(HEADER_SIZE + OffHeapClassStore.RECORD_LENGTH)
+						+ buffer.getInt(4) + buffer.getInt(8) != data.length) {
+			//Written by an incompatible version or damaged outside of the cache
+			delete(file, data.length);
+			misses.incrementAndGet();
+			return null;
+		}
+		final long now = System.currentTimeMillis();
+		if (now - attributes.lastModifiedTime().toMillis() > ACCESS_TIME_RESOLUTION_MILLIS) {
+			try {
+				Files.setLastModifiedTime(file, FileTime.fromMillis(now));
+			} catch (IOException e) {
+				//The entry was evicted by another process, the data read is still valid
+			}
+		}
+		hits.incrementAndGet();
+		return buffer;
+	}
+
+	/**
+	 * Writes the metadata, the bytes and the layout of a class to the cache, replacing an existing entry of the key
+	 * @param key The key of the entry
+	 * @param classFile The class, which must retain its Signature and SourceFile attributes
+	 * @return A view of the cached class
+	 * @throws IOException if the entry can not be written
+	 */
+	public StoredClass put(String key, ClassFile classFile) throws IOException {
+		final byte[] record = writers.get().write(classFile);
+		final ByteBuffer classBytes = classFile.getClassBytes();
+		final ClassFileLayout layout = ClassFileLayout.of(classBytes);
+		final ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE + record.length + classBytes.remaining() + layout.getSize());
+		data.putInt(MAGIC);
+		data.putInt(classBytes.remaining());
+		data.putInt(layout.getSize());
+		data.put(record);
+		data.put(classBytes);
+		layout.write(data);
+
+		final Path file = getPath(key);
+		Files.createDirectories(file.getParent());
+		long replaced;
+		try {
+			replaced = Files.size(file);
+		} catch (NoSuchFileException e) {
+			replaced = 0;
+		}
+		final Path temporary = file.resolveSibling(file.getFileName() + "."
+				+ Long.toHexString(ThreadLocalRandom.current().nextLong()) + TEMPORARY_SUFFIX);
+		Files.write(temporary, data.array());
+		try {
+			Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+		if (cachedBytes.addAndGet(data.capacity() - replaced) > maxBytes) {
+			evict();
+		}
+		data.position(HEADER_SIZE);
+		return new StoredClass(data.slice(), 0);
+	}
+
+	/**
+	 * Deletes the least recently used entries until the cache uses at most three quarters of its size limit.
+	 * Also removes temporary files left behind by processes that did not finish writing.
+	 * @throws IOException if the directory can not be listed
+	 */
+	public synchronized void evict() throws IOException {
+		final List<Entry> entries = listEntries();
+		long size = 0;
+		for (Entry entry : entries) {
+			size += entry.size;
+		}
+		Collections.sort(entries, new Comparator<Entry>() {
+			@Override
+			public int compare(Entry entry1, Entry entry2) {
+				return Long.compare(entry1.lastModified, entry2.lastModified);
+			}
+		});
+		final long target = maxBytes - maxBytes / 4;
+		for (int i = 0; i < entries.size() && size > target; i++) {
+			if (delete(entries.get(i).path, 0)) {
+				size -= entries.get(i).size;
+			}
+		}
+		cachedBytes.set(size);
+	}
+
+	/**
+	 * @return The approximate number of bytes used by entries, including entries written by other processes
+	 * when the cache was opened or last evicted
+	 */
+	public long getCachedBytes() {
+		return cachedBytes.get();
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	private Path getPath(String key) {
+		if (key.length() < 2 || key.indexOf('/') >= 0 || key.indexOf('\\') >= 0 || key.startsWith(".")) {
+			throw new IllegalArgumentException("Invalid key " + key);
+		}
+		return directory.resolve(key.substring(key.length() - 2)).resolve(key + SUFFIX);
+	}
+
+	private boolean delete(Path file, long size) {
+		try {
+			if (Files.deleteIfExists(file)) {
+				cachedBytes.addAndGet(-size);
+				return true;
+			}
+		} catch (IOException e) {
+			//Deleted or still open in another process, retried by the next eviction
+		}
+		return false;
+	}
+
+	private List<Entry> listEntries() throws IOException {
+		final List<Entry> entries = new ArrayList<Entry>();
+		final long now = System.currentTimeMillis();
+		try (DirectoryStream<Path> subdirectories = Files.newDirectoryStream(directory)) {
+			for (Path subdirectory : subdirectories) {
+				if (!Files.isDirectory(subdirectory)) {
+					continue;
+				}
+				try (DirectoryStream<Path> files = Files.newDirectoryStream(subdirectory)) {
+					for (Path file : files) {
+						final String name = file.getFileName().toString();
+						final BasicFileAttributes attributes;
+						try {
+							attributes = Files.readAttributes(file, BasicFileAttributes.class);
+						} catch (NoSuchFileException e) {
+							continue;
+						}
+						if (name.endsWith(SUFFIX)) {
+							entries.add(new Entry(file, attributes.size(), attributes.lastModifiedTime().toMillis()));
+						} else if (name.endsWith(TEMPORARY_SUFFIX)
+								&& now - attributes.lastModifiedTime().toMillis() > TEMPORARY_FILE_AGE_MILLIS) {
+							delete(file, 0);
+						}
+					}
+				}
+			}
+		}
+		return entries;
+	}
+
+	private static class Entry {
+		final Path path;
+		final long size;
+		final long lastModified;
+
+		Entry(Path path, long size, long lastModified) {
+			this.path = path;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+	}
+}
@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.store;
+
+import com.viridiansoftware.java.ClassFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Stores the metadata of classes outside of the Java heap so that millions of classes can be indexed without
+ * growing the heap.
+ *
+ * Each class is written as one packed record into direct {@link ByteBuffer} slabs. A record holds the version,
+ * access flags, class names, source file and signature of the class followed by fixed size entries for its fields
+ * and methods and finally the strings of the record as modified UTF-8. Classes are found by name through an
+ * open addressing index that also lives in a direct buffer, so the heap only holds one reference per slab.
+ * {@link StoredClass}, {@link StoredField} and {@link StoredMethod} are read-only views of a record that decode
+ * their strings on each access.
+ *
+ * Classes are added once and never removed. Adding is synchronized; views may be read concurrently.
+ */
+public class OffHeapClassStore implements Closeable {
+	public static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+
+	static final int NO_STRING = -1;
+
+	static final int RECORD_LENGTH = 0;
+	static final int MINOR_VERSION = 4;
+	static final int MAJOR_VERSION = 6;
+	static final int ACCESS_FLAGS = 8;
+	static final int THIS_CLASS = 10;
+	static final int SUPER_CLASS = 14;
+	static final int SOURCE_FILE = 18;
+	static final int SIGNATURE = 22;
+	static final int INTERFACES = 26;
+
+	static final int MEMBER_ACCESS_FLAGS = 0;
+	static final int MEMBER_NAME = 2;
+	static final int MEMBER_DESCRIPTOR = 6;
+	static final int MEMBER_SIGNATURE = 10;
+	static final int MEMBER_SIZE = 14;
+
+	private static final int INDEX_SLOT_SIZE = 12;
+	private static final int INITIAL_INDEX_CAPACITY = 1024;
+
+	private final int slabSize;
+	private volatile ByteBuffer[] slabs = new ByteBuffer[8];
+	private int slabCount;
+	private int slabPosition;
+	private ByteBuffer index = ByteBuffer.allocateDirect(INITIAL_INDEX_CAPACITY * INDEX_SLOT_SIZE);
+	private int indexMask = INITIAL_INDEX_CAPACITY - 1;
+	private int size;
+	private long storedBytes;
+
+	private final RecordWriter writer = new RecordWriter();
+
+	/**
+	 * Creates a store allocating slabs of {@link #DEFAULT_SLAB_SIZE}
+	 */
+	public OffHeapClassStore() {
+		this(DEFAULT_SLAB_SIZE);
+	}
+
+	/**
+	 * @param slabSize The size of the direct buffers that records are written to. Records larger than a slab are
+	 *                 written to a slab of their own.
+	 */
+	public OffHeapClassStore(int slabSize) {
+		if (slabSize < 1024) {
+			throw new IllegalArgumentException("Slab size must be at least 1024 bytes");
+		}
+		this.slabSize = slabSize;
+	}
+
+	/**
+	 * Writes the metadata of a class to the store. A class with the same name as a stored class replaces it in
+	 * the name index, the older record remains readable through its address.
+	 * @param classFile The class to store
+	 * @return The address of the stored record
+	 * @throws IOException if an attribute of the class can not be read
+	 */
+	public synchronized long add(ClassFile classFile) throws IOException {
+		final byte[] data = writer.write(classFile);
+		if (slabCount == 0 || slabPosition + data.length > slabSize) {
+			addSlab(Math.max(slabSize, data.length));
+		}
+		final int slab = slabCount - 1;
+		final int offset = slabPosition;
+		final ByteBuffer target = slabs[slab].duplicate();
+		target.position(offset);
+		target.put(data);
+		slabPosition += data.length;
+		storedBytes += data.length;
+
+		final long address = ((long) slab << 32) | offset;
+		index(classFile.getThisClass().getName(), address);
+		return address;
+	}
+
+	/**
+	 * Looks up a class by its internal name, e.g. java/lang/String
+	 * @param className The internal name of the class
+	 * @return A view of the class or null if it was not stored
+	 */
+	public StoredClass get(String className) {
+		final long address = find(className);
+		return address < 0 ? null : get(address);
+	}
+
+	/**
+	 * @param address An address returned by {@link #add(ClassFile)}
+	 * @return A view of the class stored at the address
+	 */
+	public StoredClass get(long address) {
+		final ByteBuffer[] slabs = this.slabs;
+		final int slab = (int) (address >>> 32);
+		if (address < 0 || slab >= slabs.length || slabs[slab] == null) {
+			throw new IllegalArgumentException("Invalid address " + address);
+		}
+		return new StoredClass(slabs[slab], address);
+	}
+
+	public synchronized boolean contains(String className) {
+		return find(className) >= 0;
+	}
+
+	/**
+	 * @return The number of distinct class names in the store
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * @return The number of bytes used by records
+	 */
+	public synchronized long getStoredBytes() {
+		return storedBytes;
+	}
+
+	/**
+	 * @return The number of off-heap bytes allocated for slabs and the name index
+	 */
+	public synchronized long getAllocatedBytes() {
+		long allocated = index.capacity();
+		for (int i = 0; i < slabCount; i++) {
+			allocated += slabs[i].capacity();
+		}
+		return allocated;
+	}
+
+	/**
+	 * Releases the store's buffers. The memory is returned once the buffers and all views of them are unreachable.
+	 */
+	@Override
+	public synchronized void close() {
+		slabs = new ByteBuffer[0];
+		slabCount = 0;
+		slabPosition = 0;
+		index = ByteBuffer.allocateDirect(INITIAL_INDEX_CAPACITY * INDEX_SLOT_SIZE);
+		indexMask = INITIAL_INDEX_CAPACITY - 1;
+		size = 0;
+		storedBytes = 0;
+	}
+
+	private void addSlab(int capacity) {
+		ByteBuffer[] slabs = this.slabs;
+		if (slabCount == slabs.length) {
+			slabs = Arrays.copyOf(slabs, Math.max(8, slabs.length * 2));
+		}
+		slabs[slabCount++] = ByteBuffer.allocateDirect(capacity);
+		slabPosition = 0;
+		this.slabs = slabs;
+	}
+
+	private synchronized long find(String className) {
+		final int hash = hash(className);
+		for (int slot = hash & indexMask; ; slot = (slot + 1) & indexMask) {
+			final long entry = index.getLong(slot * INDEX_SLOT_SIZE + 4);
+			if (entry == 0) {
+				return -1;
+			}
+			if (index.getInt(slot * INDEX_SLOT_SIZE) == hash) {
+				final long address = entry - 1;
+				final StoredClass storedClass = get(address);
+				if (storedClass.isString(storedClass.getInt(THIS_CLASS), className)) {
+					return address;
+				}
+			}
+		}
+	}
+
+	private void index(String className, long address) {
+		final int hash = hash(className);
+		for (int slot = hash & indexMask; ; slot = (slot + 1) & indexMask) {
+			final long entry = index.getLong(slot * INDEX_SLOT_SIZE + 4);
+			if (entry != 0 && index.getInt(slot * INDEX_SLOT_SIZE) == hash) {
+				final StoredClass storedClass = get(entry - 1);
+				if (!storedClass.isString(storedClass.getInt(THIS_CLASS), className)) {
+					continue;
+				}
+			} else if (entry != 0) {
+				continue;
+			} else {
+				size++;
+			}
+			index.putInt(slot * INDEX_SLOT_SIZE, hash);
+			index.putLong(slot * INDEX_SLOT_SIZE + 4, address + 1);
+			break;
+		}
+		if (size * 4 > (indexMask + 1) * 3) {
+			resizeIndex();
+		}
+	}
+
+	private void resizeIndex() {
+		final ByteBuffer previous = index;
+		final int previousCapacity = indexMask + 1;
+		index = ByteBuffer.allocateDirect(previousCapacity * 2 * INDEX_SLOT_SIZE);
+		indexMask = previousCapacity * 2 - 1;
+		for (int i = 0; i < previousCapacity; i++) {
+			final long entry = previous.getLong(i * INDEX_SLOT_SIZE + 4);
+			if (entry == 0) {
+				continue;
+			}
+			final int hash = previous.getInt(i * INDEX_SLOT_SIZE);
+			int slot = hash & indexMask;
+			while (index.getLong(slot * INDEX_SLOT_SIZE + 4) != 0) {
+				slot = (slot + 1) & indexMask;
+			}
+			index.putInt(slot * INDEX_SLOT_SIZE, hash);
+			index.putLong(slot * INDEX_SLOT_SIZE + 4, entry);
+		}
+	}
+
+	private static int hash(String className) {
+		final int hash = className.hashCode() * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.store;
+
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.FieldInfo;
+import com.viridiansoftware.java.MethodInfo;
+import com.viridiansoftware.java.constants.ConstantClass;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes classes into the record layout read by {@link StoredClass}, reusing its buffers between classes.
+ * Not thread safe.
+ */
+class RecordWriter {
+	private final Map<String, Integer> recordStrings = new HashMap<String, Integer>();
+	private ByteBuffer record = ByteBuffer.allocate(4096);
+	private ByteBuffer strings = ByteBuffer.allocate(4096);
+
+	/**
+	 * Encodes the metadata of a class as a record
+	 * @param classFile The class to encode
+	 * @return The record
+	 * @throws IOException if an attribute of the class can not be read or a string is too long
+	 */
+	byte[] write(ClassFile classFile) throws IOException {
+		final ConstantClass[] interfaces = classFile.getInterfaces();
+		final FieldInfo[] fields = classFile.getFields();
+		final MethodInfo[] methods = classFile.getMethods();
+		final int stringsOffset = OffHeapClassStore.INTERFACES + 2 + interfaces.length * 4
+				+ 2 + fields.length * OffHeapClassStore.MEMBER_SIZE + 2 + methods.length * OffHeapClassStore.MEMBER_SIZE;
+		recordStrings.clear();
+		record.clear();
+		strings.clear();
+		ensureRecordCapacity(stringsOffset);
+
+		record.putInt(0);
+		record.putShort((short) classFile.getMinorVersion());
+		record.putShort((short) classFile.getMajorVersion());
+		record.putShort((short) classFile.getAccessFlags());
+		record.putInt(string(classFile.getThisClass().getName(), stringsOffset));
+		record.putInt(classFile.getSuperClass() == null ? OffHeapClassStore.NO_STRING :
+				string(classFile.getSuperClass().getName(), stringsOffset));
+		record.putInt(string(classFile.getSourceFile(), stringsOffset));
+		record.putInt(classFile.getThisSignature() == null ? OffHeapClassStore.NO_STRING :
+				string(classFile.getThisSignature() + classFile.getSuperSignature(), stringsOffset));
+		record.putShort((short) interfaces.length);
+		for (ConstantClass constantClass : interfaces) {
+			record.putInt(string(constantClass.getName(), stringsOffset));
+		}
+		record.putShort((short) fields.length);
+		for (FieldInfo field : fields) {
+			record.putShort((short) field.getAccessFlags());
+			record.putInt(string(field.getName(), stringsOffset));
+			record.putInt(string(field.getType(), stringsOffset));
+			record.putInt(string(field.getSignature(), stringsOffset));
+		}
+		record.putShort((short) methods.length);
+		for (MethodInfo method : methods) {
+			record.putShort((short) method.getAccessFlags());
+			record.putInt(string(method.getName(), stringsOffset));
+			record.putInt(string(method.getType(), stringsOffset));
+			record.putInt(string(method.getSignature(), stringsOffset));
+		}
+
+		final byte[] data = new byte[stringsOffset + strings.position()];
+		record.flip();
+		record.get(data, 0, stringsOffset);
+		strings.flip();
+		strings.get(data, stringsOffset, data.length - stringsOffset);
+		data[OffHeapClassStore.RECORD_LENGTH] = (byte) (data.length >>> 24);
+		data[OffHeapClassStore.RECORD_LENGTH + 1] = (byte) (data.length >>> 16);
+		data[OffHeapClassStore.RECORD_LENGTH + 2] = (byte) (data.length >>> 8);
+		data[OffHeapClassStore.RECORD_LENGTH + 3] = (byte) data.length;
+		return data;
+	}
+
+	/**
+	 * Appends a string to the strings of the record being encoded unless it was already added
+	 * @return The offset of the string relative to the start of the record
+	 */
+	private int string(String value, int stringsOffset) throws IOException {
+		if (value == null) {
+			return OffHeapClassStore.NO_STRING;
+		}
+		final Integer existing = recordStrings.get(value);
+		if (existing != null) {
+			return existing;
+		}
+		int length = 0;
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			length += c != 0 && c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+		}
+		if (length > 0xFFFF) {
+			throw new IOException("String too long to store: " + length + " bytes");
+		}
+		if (strings.remaining() < length + 2) {
+			final ByteBuffer grown = ByteBuffer.allocate(Math.max(strings.capacity() * 2, strings.position() + length + 2));
+			strings.flip();
+			grown.put(strings);
+			strings = grown;
+		}
+		final int offset = stringsOffset + strings.position();
+		strings.putShort((short) length);
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c != 0 && c < 0x80) {
+				strings.put((byte) c);
+			} else if (c < 0x800) {
+				strings.put((byte) (0xC0 | (c >> 6)));
+				strings.put((byte) (0x80 | (c & 0x3F)));
+			} else {
+				strings.put((byte) (0xE0 | (c >> 12)));
+				strings.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				strings.put((byte) (0x80 | (c & 0x3F)));
+			}
+		}
+		recordStrings.put(value, offset);
+		return offset;
+	}
+
+	private void ensureRecordCapacity(int capacity) {
+		if (record.capacity() < capacity) {
+			record = ByteBuffer.allocate(Math.max(capacity, record.capacity() * 2));
+		}
+	}
+}
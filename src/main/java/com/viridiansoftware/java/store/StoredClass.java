@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.store;
+
+import com.viridiansoftware.java.ClassAccessFlag;
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.constants.ConstantClass;
+import com.viridiansoftware.java.signature.ClassSignature;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A read-only view of a class stored in an {@link OffHeapClassStore}, offering the accessors of {@link ClassFile}
+ * that do not require the constant pool or attributes. Strings are decoded on every call and no state is cached,
+ * so views are cheap to create and can be discarded after use.
+ */
+public final class StoredClass extends StoredRecord {
+	private final long address;
+	private final int fields;
+	private final int methods;
+
+	StoredClass(ByteBuffer slab, long address) {
+		super(slab, (int) address);
+		this.address = address;
+		this.fields = OffHeapClassStore.INTERFACES + 2 + getUnsignedShort(OffHeapClassStore.INTERFACES) * 4;
+		this.methods = fields + 2 + getUnsignedShort(fields) * OffHeapClassStore.MEMBER_SIZE;
+	}
+
+	/**
+	 * @return The address of the record in its store
+	 */
+	public long getAddress() {
+		return address;
+	}
+
+	/**
+	 * @return The number of bytes of the record
+	 */
+	public int getRecordLength() {
+		return getInt(OffHeapClassStore.RECORD_LENGTH);
+	}
+
+	public int getMinorVersion() {
+		return getUnsignedShort(OffHeapClassStore.MINOR_VERSION);
+	}
+
+	public int getMajorVersion() {
+		return getUnsignedShort(OffHeapClassStore.MAJOR_VERSION);
+	}
+
+	public int getAccessFlags() {
+		return getUnsignedShort(OffHeapClassStore.ACCESS_FLAGS);
+	}
+
+	public List<ClassAccessFlag> getClassAccessFlags() {
+		final int accessFlags = getAccessFlags();
+		final List<ClassAccessFlag> result = new ArrayList<ClassAccessFlag>(2);
+		for (ClassAccessFlag flag : ClassAccessFlag.values()) {
+			if ((flag.getMask() & accessFlags) == flag.getMask()) {
+				result.add(flag);
+			}
+		}
+		return result;
+	}
+
+	public ConstantClass getThisClass() {
+		return new ConstantClass(getString(getInt(OffHeapClassStore.THIS_CLASS)));
+	}
+
+	/**
+	 * @return The super class or null for java/lang/Object and module-info
+	 */
+	public ConstantClass getSuperClass() {
+		final String name = getString(getInt(OffHeapClassStore.SUPER_CLASS));
+		return name == null ? null : new ConstantClass(name);
+	}
+
+	public ConstantClass[] getInterfaces() {
+		final ConstantClass[] interfaces = new ConstantClass[getUnsignedShort(OffHeapClassStore.INTERFACES)];
+		for (int i = 0; i < interfaces.length; i++) {
+			interfaces[i] = new ConstantClass(getString(getInt(OffHeapClassStore.INTERFACES + 2 + i * 4)));
+		}
+		return interfaces;
+	}
+
+	/**
+	 * @return The value of the SourceFile attribute or null
+	 */
+	public String getSourceFile() {
+		return getString(getInt(OffHeapClassStore.SOURCE_FILE));
+	}
+
+	/**
+	 * @return The value of the Signature attribute or null
+	 */
+	public String getSignature() {
+		return getString(getInt(OffHeapClassStore.SIGNATURE));
+	}
+
+	public ClassSignature getClassSignature() {
+		final String signature = getSignature();
+		return signature == null ? null : new ClassSignature(signature);
+	}
+
+	public int getFieldCount() {
+		return getUnsignedShort(fields);
+	}
+
+	public StoredField getField(int index) {
+		if (index < 0 || index >= getFieldCount()) {
+			throw new IndexOutOfBoundsException("Field " + index + " of " + getFieldCount());
+		}
+		return new StoredField(this, fields + 2 + index * OffHeapClassStore.MEMBER_SIZE);
+	}
+
+	public StoredField[] getFields() {
+		final StoredField[] result = new StoredField[getFieldCount()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = getField(i);
+		}
+		return result;
+	}
+
+	public StoredField getField(String name) {
+		for (int i = 0; i < getFieldCount(); i++) {
+			final StoredField field = getField(i);
+			if (field.isName(name)) {
+				return field;
+			}
+		}
+		return null;
+	}
+
+	public int getMethodCount() {
+		return getUnsignedShort(methods);
+	}
+
+	public StoredMethod getMethod(int index) {
+		if (index < 0 || index >= getMethodCount()) {
+			throw new IndexOutOfBoundsException("Method " + index + " of " + getMethodCount());
+		}
+		return new StoredMethod(this, methods + 2 + index * OffHeapClassStore.MEMBER_SIZE);
+	}
+
+	public StoredMethod[] getMethods() {
+		final StoredMethod[] result = new StoredMethod[getMethodCount()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = getMethod(i);
+		}
+		return result;
+	}
+
+	public List<StoredMethod> getMethod(String name) {
+		final List<StoredMethod> results = new ArrayList<StoredMethod>(2);
+		for (int i = 0; i < getMethodCount(); i++) {
+			final StoredMethod method = getMethod(i);
+			if (method.isName(name)) {
+				results.add(method);
+			}
+		}
+		return results;
+	}
+
+	public int getMethodCount(String name) {
+		int count = 0;
+		for (int i = 0; i < getMethodCount(); i++) {
+			if (getMethod(i).isName(name)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public List<StoredMethod> getConstructorMethods() {
+		return getMethod("<init>");
+	}
+
+	public List<StoredMethod> getClassInitialisationMethods() {
+		return getMethod("<clinit>");
+	}
+
+	public List<StoredMethod> getNonInitMethods() {
+		final List<StoredMethod> results = new ArrayList<StoredMethod>(getMethodCount());
+		for (int i = 0; i < getMethodCount(); i++) {
+			final StoredMethod method = getMethod(i);
+			if (!method.isName("<init>") && !method.isName("<clinit>")) {
+				results.add(method);
+			}
+		}
+		return results;
+	}
+
+	public boolean isDefaultScope() {
+		return !isPrivate() && !isPublic() && !isProtected();
+	}
+
+	public boolean isPublic() {
+		return isFlag(ClassAccessFlag.PUBLIC);
+	}
+
+	public boolean isProtected() {
+		return isFlag(ClassAccessFlag.PROTECTED);
+	}
+
+	public boolean isPrivate() {
+		return isFlag(ClassAccessFlag.PRIVATE);
+	}
+
+	public boolean isInterface() {
+		return isFlag(ClassAccessFlag.INTERFACE);
+	}
+
+	public boolean isAbstract() {
+		return isFlag(ClassAccessFlag.ABSTRACT);
+	}
+
+	public boolean isEnum() {
+		return isFlag(ClassAccessFlag.ENUM);
+	}
+
+	public boolean isAnnotation() {
+		return isFlag(ClassAccessFlag.ANNOTATION);
+	}
+
+	public boolean isStatic() {
+		return isFlag(ClassAccessFlag.STATIC);
+	}
+
+	public boolean isFinal() {
+		return isFlag(ClassAccessFlag.FINAL);
+	}
+
+	/**
+	 * Get the type of class.
+	 */
+	public ClassFile.Type getType() {
+		if (isInterface()) {
+			return ClassFile.Type.Interface;
+		}
+		if (isString(getInt(OffHeapClassStore.SUPER_CLASS), "java/lang/Enum")) {
+			return ClassFile.Type.Enum;
+		}
+		return ClassFile.Type.Class;
+	}
+
+	@Override
+	public String toString() {
+		return getString(getInt(OffHeapClassStore.THIS_CLASS));
+	}
+
+	private boolean isFlag(ClassAccessFlag flag) {
+		return (getAccessFlags() & flag.getMask()) == flag.getMask();
+	}
+}
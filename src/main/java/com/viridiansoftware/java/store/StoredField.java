@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.store;
+
+import com.viridiansoftware.java.FieldAccessFlag;
+import com.viridiansoftware.java.descriptor.FieldDescriptor;
+import com.viridiansoftware.java.signature.FieldSignature;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A read-only view of a field stored in an {@link OffHeapClassStore}
+ */
+public final class StoredField extends StoredMember {
+
+	StoredField(StoredClass declaringClass, int entry) {
+		super(declaringClass, entry);
+	}
+
+	public List<FieldAccessFlag> getFieldAccessFlags() {
+		final int accessFlags = getAccessFlags();
+		final List<FieldAccessFlag> result = new ArrayList<FieldAccessFlag>(2);
+		for (FieldAccessFlag flag : FieldAccessFlag.values()) {
+			if ((flag.getMask() & accessFlags) == flag.getMask()) {
+				result.add(flag);
+			}
+		}
+		return result;
+	}
+
+	public boolean isVolatile() {
+		return (getAccessFlags() & FieldAccessFlag.VOLATILE.getMask()) != 0;
+	}
+
+	public boolean isEnum() {
+		return (getAccessFlags() & FieldAccessFlag.ENUM.getMask()) != 0;
+	}
+
+	public FieldDescriptor getFieldDescriptor() {
+		return new FieldDescriptor(getType());
+	}
+
+	public FieldSignature getFieldSignature() {
+		final String signature = getSignature();
+		return signature == null ? null : new FieldSignature(signature);
+	}
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.store;
+
+import com.viridiansoftware.java.Member;
+
+/**
+ * A read-only view of a field or method entry of a record in an {@link OffHeapClassStore}
+ */
+public abstract class StoredMember extends StoredRecord implements Member {
+	final StoredClass declaringClass;
+	final int entry;
+
+	StoredMember(StoredClass declaringClass, int entry) {
+		super(declaringClass.slab, declaringClass.record);
+		this.declaringClass = declaringClass;
+		this.entry = entry;
+	}
+
+	/**
+	 * @return The class declaring the member
+	 */
+	public StoredClass getDeclaringClass() {
+		return declaringClass;
+	}
+
+	public int getAccessFlags() {
+		return getUnsignedShort(entry + OffHeapClassStore.MEMBER_ACCESS_FLAGS);
+	}
+
+	@Override
+	public String getName() {
+		return getString(getInt(entry + OffHeapClassStore.MEMBER_NAME));
+	}
+
+	/**
+	 * Compares the name of the member without decoding it
+	 */
+	public boolean isName(String name) {
+		return isString(getInt(entry + OffHeapClassStore.MEMBER_NAME), name);
+	}
+
+	@Override
+	public String getClassName() {
+		return declaringClass.getThisClass().getName();
+	}
+
+	/**
+	 * Get the descriptor of the member without generic types.
+	 */
+	@Override
+	public String getType() {
+		return getString(getInt(entry + OffHeapClassStore.MEMBER_DESCRIPTOR));
+	}
+
+	/**
+	 * Get the signature of the member with generic types.
+	 *
+	 * @return the signature or null
+	 */
+	public String getSignature() {
+		return getString(getInt(entry + OffHeapClassStore.MEMBER_SIGNATURE));
+	}
+
+	/**
+	 * Returns if the member is package visibility
+	 * @return True if package visibility
+	 */
+	public boolean isDefaultScope() {
+		return !isPrivate() && !isPublic() && !isProtected();
+	}
+
+	public boolean isPublic() {
+		return (getAccessFlags() & 0x0001) != 0;
+	}
+
+	public boolean isPrivate() {
+		return (getAccessFlags() & 0x0002) != 0;
+	}
+
+	public boolean isProtected() {
+		return (getAccessFlags() & 0x0004) != 0;
+	}
+
+	public boolean isStatic() {
+		return (getAccessFlags() & 0x0008) != 0;
+	}
+
+	public boolean isFinal() {
+		return (getAccessFlags() & 0x0010) != 0;
+	}
+
+	public boolean isSynthetic() {
+		return (getAccessFlags() & 0x1000) != 0;
+	}
+
+	@Override
+	public String toString() {
+		return getClassName() + '.' + getName() + getType();
+	}
+}
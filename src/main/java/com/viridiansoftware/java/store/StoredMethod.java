@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.store;
+
+import com.viridiansoftware.java.MethodAccessFlag;
+import com.viridiansoftware.java.descriptor.MethodDescriptor;
+import com.viridiansoftware.java.signature.MethodSignature;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A read-only view of a method stored in an {@link OffHeapClassStore}
+ */
+public final class StoredMethod extends StoredMember {
+
+	StoredMethod(StoredClass declaringClass, int entry) {
+		super(declaringClass, entry);
+	}
+
+	public List<MethodAccessFlag> getMethodAccessFlags() {
+		final int accessFlags = getAccessFlags();
+		final List<MethodAccessFlag> result = new ArrayList<MethodAccessFlag>(2);
+		for (MethodAccessFlag flag : MethodAccessFlag.values()) {
+			if ((flag.getMask() & accessFlags) == flag.getMask()) {
+				result.add(flag);
+			}
+		}
+		return result;
+	}
+
+	public boolean isSynchronized() {
+		return (getAccessFlags() & MethodAccessFlag.SYNCHRONIZED.getMask()) != 0;
+	}
+
+	public boolean isBridge() {
+		return (getAccessFlags() & MethodAccessFlag.BRIDGE.getMask()) != 0;
+	}
+
+	public boolean isVarArgs() {
+		return (getAccessFlags() & MethodAccessFlag.VARARGS.getMask()) != 0;
+	}
+
+	public boolean isNative() {
+		return (getAccessFlags() & MethodAccessFlag.NATIVE.getMask()) != 0;
+	}
+
+	public boolean isAbstract() {
+		return (getAccessFlags() & MethodAccessFlag.ABSTRACT.getMask()) != 0;
+	}
+
+	public MethodDescriptor getMethodDescriptor() {
+		return new MethodDescriptor(getType());
+	}
+
+	/**
+	 * Parses the generic signature of the method, or its descriptor if it has no signature
+	 */
+	public MethodSignature getMethodSignature() {
+		final String signature = getSignature();
+		return new MethodSignature(signature == null ? getType() : signature);
+	}
+}
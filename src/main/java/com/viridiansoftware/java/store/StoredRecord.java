@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Base of the views of a record in an {@link OffHeapClassStore}, reading the record with absolute gets so that
+ * views can be used from several threads.
+ */
+abstract class StoredRecord {
+	final ByteBuffer slab;
+	final int record;
+
+	StoredRecord(ByteBuffer slab, int record) {
+		this.slab = slab;
+		this.record = record;
+	}
+
+	final int getUnsignedShort(int offset) {
+		return slab.getShort(record + offset) & 0xFFFF;
+	}
+
+	final int getInt(int offset) {
+		return slab.getInt(record + offset);
+	}
+
+	/**
+	 * Decodes a modified UTF-8 string of the record
+	 * @param offset The offset of the string relative to the record or {@link OffHeapClassStore#NO_STRING}
+	 * @return The string or null
+	 */
+	final String getString(int offset) {
+		if (offset == OffHeapClassStore.NO_STRING) {
+			return null;
+		}
+		int position = record + offset;
+		final int end = position + 2 + (slab.getShort(position) & 0xFFFF);
+		position += 2;
+		final char[] chars = new char[end - position];
+		int length = 0;
+		while (position < end) {
+			final int b = slab.get(position++) & 0xFF;
+			if (b < 0x80) {
+				chars[length++] = (char) b;
+			} else if (b < 0xE0) {
+				chars[length++] = (char) (((b & 0x1F) << 6) | (slab.get(position++) & 0x3F));
+			} else {
+				chars[length++] = (char) (((b & 0x0F) << 12) | ((slab.get(position++) & 0x3F) << 6)
+						| (slab.get(position++) & 0x3F));
+			}
+		}
+		return new String(chars, 0, length);
+	}
+
+	/**
+	 * Compares a string of the record without decoding it
+	 */
+	final boolean isString(int offset, String value) {
+		if (offset == OffHeapClassStore.NO_STRING) {
+			return value == null;
+		}
+		if (value == null) {
+			return false;
+		}
+		int position = record + offset;
+		final int end = position + 2 + (slab.getShort(position) & 0xFFFF);
+		position += 2;
+		int index = 0;
+		while (position < end) {
+			if (index == value.length()) {
+				return false;
+			}
+			final int b = slab.get(position++) & 0xFF;
+			final char c;
+			if (b < 0x80) {
+				c = (char) b;
+			} else if (b < 0xE0) {
+				c = (char) (((b & 0x1F) << 6) | (slab.get(position++) & 0x3F));
+			} else {
+				c = (char) (((b & 0x0F) << 12) | ((slab.get(position++) & 0x3F) << 6) | (slab.get(position++) & 0x3F));
+			}
+			if (c != value.charAt(index++)) {
+				return false;
+			}
+		}
+		return index == value.length();
+	}
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.utils;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An unsynchronized {@link InputStream} over a region of a shared {@link ByteBuffer}.
+ * Reads use absolute positions so the buffer's own position is never modified.
+ */
+public class ByteBufferInputStream extends InputStream {
+	private final ByteBuffer buffer;
+	private final int limit;
+	private int position;
+	private int mark;
+
+	public ByteBufferInputStream(ByteBuffer buffer, int offset, int length) {
+		this.buffer = buffer;
+		this.position = offset;
+		this.mark = offset;
+		this.limit = offset + length;
+	}
+
+	@Override
+	public int read() {
+		if(position >= limit) {
+			return -1;
+		}
+		return buffer.get(position++) & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if(len == 0) {
+			return 0;
+		}
+		if(position >= limit) {
+			return -1;
+		}
+		final int total = Math.min(len, limit - position);
+		for(int i = 0; i < total; i++) {
+			b[off + i] = buffer.get(position + i);
+		}
+		position += total;
+		return total;
+	}
+
+	@Override
+	public long skip(long n) {
+		if(n <= 0) {
+			return 0;
+		}
+		final int total = (int) Math.min(n, limit - position);
+		position += total;
+		return total;
+	}
+
+	@Override
+	public int available() {
+		return limit - position;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+
+	@Override
+	public void mark(int readLimit) {
+		mark = position;
+	}
+
+	@Override
+	public void reset() {
+		position = mark;
+	}
+}
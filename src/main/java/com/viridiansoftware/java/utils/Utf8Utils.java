@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.utils;
+
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes the modified UTF-8 encoding used by CONSTANT_Utf8 entries
+ * http://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.7
+ */
+public class Utf8Utils {
+
+	/**
+	 * Decodes a modified UTF-8 string directly from a buffer without moving its position
+	 * @param buffer The buffer to read from
+	 * @param offset The absolute offset of the first byte
+	 * @param length The number of encoded bytes
+	 * @return The decoded string
+	 * @throws UTFDataFormatException if the bytes are not valid modified UTF-8
+	 */
+	public static String decode(ByteBuffer buffer, int offset, int length) throws UTFDataFormatException {
+		return decode(buffer, offset, length, new char[length]);
+	}
+
+	/**
+	 * Decodes a modified UTF-8 string directly from a buffer without moving its position
+	 * @param buffer The buffer to read from
+	 * @param offset The absolute offset of the first byte
+	 * @param length The number of encoded bytes
+	 * @param chars Scratch space of at least length chars
+	 * @return The decoded string
+	 * @throws UTFDataFormatException if the bytes are not valid modified UTF-8
+	 */
+	public static String decode(ByteBuffer buffer, int offset, int length, char[] chars) throws UTFDataFormatException {
+		final int end = offset + length;
+		int position = offset;
+		int totalChars = 0;
+
+		while(position < end) {
+			final int b = buffer.get(position) & 0xFF;
+			if(b > 0x7F) {
+				break;
+			}
+			chars[totalChars++] = (char) b;
+			position++;
+		}
+
+		while(position < end) {
+			final int b = buffer.get(position) & 0xFF;
+			switch(b >> 4) {
+			case 0: case 1: case 2: case 3: case 4: case 5: case 6: case 7:
+				chars[totalChars++] = (char) b;
+				position++;
+				break;
+			case 12: case 13: {
+				if(position + 2 > end) {
+					throw new UTFDataFormatException("Malformed input: partial character at end");
+				}
+				final int b2 = buffer.get(position + 1);
+				if((b2 & 0xC0) != 0x80) {
+					throw new UTFDataFormatException("Malformed input around byte " + (position - offset));
+				}
+				chars[totalChars++] = (char) (((b & 0x1F) << 6) | (b2 & 0x3F));
+				position += 2;
+				break;
+			}
+			case 14: {
+				if(position + 3 > end) {
+					throw new UTFDataFormatException("Malformed input: partial character at end");
+				}
+				final int b2 = buffer.get(position + 1);
+				final int b3 = buffer.get(position + 2);
+				if((b2 & 0xC0) != 0x80 || (b3 & 0xC0) != 0x80) {
+					throw new UTFDataFormatException("Malformed input around byte " + (position - offset));
+				}
+				chars[totalChars++] = (char) (((b & 0x0F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F));
+				position += 3;
+				break;
+			}
+			default:
+				throw new UTFDataFormatException("Malformed input around byte " + (position - offset));
+			}
+		}
+		return new String(chars, 0, totalChars);
+	}
+
+	/**
+	 * Compares the modified UTF-8 encoding of a String to encoded bytes without encoding or decoding either
+	 * @param string The string to compare
+	 * @param buffer The buffer holding the encoded bytes
+	 * @param offset The absolute offset of the first byte
+	 * @param length The number of encoded bytes
+	 * @return True if the bytes are exactly the encoding of the string
+	 */
+	public static boolean matches(String string, ByteBuffer buffer, int offset, int length) {
+		int position = offset;
+		final int end = offset + length;
+		for (int i = 0; i < string.length(); i++) {
+			final char c = string.charAt(i);
+			if (c >= 0x01 && c <= 0x7F) {
+				if (position >= end || buffer.get(position++) != (byte) c) {
+					return false;
+				}
+			} else if (c <= 0x7FF) {
+				if (position + 2 > end
+						|| buffer.get(position++) != (byte) (0xC0 | (c >> 6))
+						|| buffer.get(position++) != (byte) (0x80 | (c & 0x3F))) {
+					return false;
+				}
+			} else {
+				if (position + 3 > end
+						|| buffer.get(position++) != (byte) (0xE0 | (c >> 12))
+						|| buffer.get(position++) != (byte) (0x80 | ((c >> 6) & 0x3F))
+						|| buffer.get(position++) != (byte) (0x80 | (c & 0x3F))) {
+					return false;
+				}
+			}
+		}
+		return position == end;
+	}
+
+	/**
+	 * @param string The string to encode
+	 * @return The number of bytes of the modified UTF-8 encoding of the string
+	 */
+	public static int encodedLength(String string) {
+		int length = 0;
+		for (int i = 0; i < string.length(); i++) {
+			final char c = string.charAt(i);
+			length += c >= 0x01 && c <= 0x7F ? 1 : c <= 0x7FF ? 2 : 3;
+		}
+		return length;
+	}
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class ClassFileLayoutTest {
+
+	@Test
+	public void testCreatedClassMatchesParsedClass() throws IOException {
+		final ParseOptions lazy = ParseOptions.DEFAULT.withLazyConstantPool(true);
+		for (String resource : new String[] {"/String.class", "/Byte.class"}) {
+			final byte[] classBytes = TestResources.readResource(resource);
+			final ClassFile expected = new ClassFile(classBytes);
+			final ClassFileLayout layout = copy(ClassFileLayout.of(ByteBuffer.wrap(classBytes)));
+			for (ParseOptions options : new ParseOptions[] {ParseOptions.DEFAULT, lazy, lazy.withCompactMembers(true)}) {
+				final ClassFile created = layout.createClassFile(ByteBuffer.wrap(classBytes), options);
+				Assert.assertEquals(expected.getThisClass().getName(), created.getThisClass().getName());
+				Assert.assertEquals(expected.getSuperClass().getName(), created.getSuperClass().getName());
+				Assert.assertEquals(expected.getInterfaces().length, created.getInterfaces().length);
+				Assert.assertEquals(expected.getSourceFile(), created.getSourceFile());
+				Assert.assertEquals(expected.getLength(), created.getLength());
+				Assert.assertEquals(expected.getFields().length, created.getFields().length);
+				for (int i = 0; i < expected.getFields().length; i++) {
+					Assert.assertEquals(expected.getFields()[i].getName(), created.getFields()[i].getName());
+					Assert.assertEquals(expected.getFields()[i].getType(), created.getFields()[i].getType());
+				}
+				Assert.assertEquals(expected.getMethods().length, created.getMethods().length);
+				for (int i = 0; i < expected.getMethods().length; i++) {
+					final MethodInfo method = expected.getMethods()[i];
+					Assert.assertEquals(method.getName(), created.getMethods()[i].getName());
+					Assert.assertEquals(method.getType(), created.getMethods()[i].getType());
+					Assert.assertEquals(method.getAccessFlags(), created.getMethods()[i].getAccessFlags());
+					if (method.getCode() != null) {
+						Assert.assertArrayEquals(method.getCode().getCodeData(), created.getMethods()[i].getCode().getCodeData());
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testTruncatedLayoutIsRejected() throws IOException {
+		final ClassFileLayout layout = ClassFileLayout.of(ByteBuffer.wrap(TestResources.readResource("/Byte.class")));
+		final ByteBuffer output = ByteBuffer.allocate(layout.getSize());
+		layout.write(output);
+		output.flip();
+		output.limit(output.limit() - 1);
+		try {
+			ClassFileLayout.read(output);
+			Assert.fail("Expected an IOException");
+		} catch (IOException e) {
+			//expected
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testLayoutOfOtherClassIsRejected() throws IOException {
+		final ClassFileLayout layout = ClassFileLayout.of(ByteBuffer.wrap(TestResources.readResource("/String.class")));
+		layout.createClassFile(ByteBuffer.wrap(TestResources.readResource("/Byte.class")), ParseOptions.DEFAULT);
+	}
+
+	@Test
+	public void testCreatingIsFasterThanParsing() throws IOException {
+		final byte[] classBytes = TestResources.readResource("/String.class");
+		final ByteBuffer stored = ByteBuffer.allocate(ClassFileLayout.of(ByteBuffer.wrap(classBytes)).getSize());
+		ClassFileLayout.of(ByteBuffer.wrap(classBytes)).write(stored);
+		final ParseOptions options = ParseOptions.DEFAULT.withLazyConstantPool(true).withCompactMembers(true);
+		//The best of several rounds, so that warm up and collections do not decide the result
+		long created = Long.MAX_VALUE;
+		long parsed = Long.MAX_VALUE;
+		long streamed = Long.MAX_VALUE;
+		for (int round = 0; round < 10; round++) {
+			final long start = System.nanoTime();
+			for (int i = 0; i < 200; i++) {
+				stored.rewind();
+				ClassFileLayout.read(stored).createClassFile(ByteBuffer.wrap(classBytes), options);
+			}
+			final long layoutEnd = System.nanoTime();
+			for (int i = 0; i < 200; i++) {
+				new ClassFile(classBytes, options);
+			}
+			final long parseEnd = System.nanoTime();
+			for (int i = 0; i < 200; i++) {
+				new ClassFile(new ByteArrayInputStream(classBytes));
+			}
+			created = Math.min(created, layoutEnd - start);
+			parsed = Math.min(parsed, parseEnd - layoutEnd);
+			streamed = Math.min(streamed, System.nanoTime() - parseEnd);
+		}
+		Assert.assertTrue("created " + created + "ns, parsed " + parsed + "ns", created < parsed);
+		Assert.assertTrue("created " + created + "ns, streamed " + streamed + "ns", created < streamed);
+	}
+
+	private static ClassFileLayout copy(ClassFileLayout layout) throws IOException {
+		final ByteBuffer output = ByteBuffer.allocate(layout.getSize());
+		layout.write(output);
+		Assert.assertFalse(output.hasRemaining());
+		output.flip();
+		final ClassFileLayout result = ClassFileLayout.read(output);
+		Assert.assertFalse(output.hasRemaining());
+		return result;
+	}
+}
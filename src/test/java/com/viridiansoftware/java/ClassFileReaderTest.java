@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java;
+
+import com.viridiansoftware.java.constants.ConstantClass;
+import com.viridiansoftware.java.constants.ConstantPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class ClassFileReaderTest {
+
+	@Test
+	public void testReaderIsReusableAcrossClasses() throws IOException {
+		final byte[] stringBytes = TestResources.readResource("/String.class");
+		final byte[] byteBytes = TestResources.readResource("/Byte.class");
+		final ClassFileReader reader = new ClassFileReader();
+		final NameVisitor visitor = new NameVisitor();
+
+		for (int i = 0; i < 3; i++) {
+			reader.accept(new ByteArrayInputStream(stringBytes), visitor);
+			Assert.assertEquals("java/lang/String", visitor.thisClass);
+			Assert.assertEquals(new ClassFile(stringBytes).getMethods().length, visitor.methods);
+
+			reader.accept(ByteBuffer.wrap(byteBytes), visitor);
+			Assert.assertEquals("java/lang/Byte", visitor.thisClass);
+			Assert.assertEquals(new ClassFile(byteBytes).getMethods().length, visitor.methods);
+		}
+	}
+
+	@Test
+	public void testReadReturnsIndependentClassFile() throws IOException {
+		final ClassFileReader reader = new ClassFileReader();
+		final ClassFile stringClass = reader.read(new ByteArrayInputStream(TestResources.readResource("/String.class")));
+		final ClassFile byteClass = reader.read(new ByteArrayInputStream(TestResources.readResource("/Byte.class")));
+		Assert.assertEquals("java/lang/String", stringClass.getThisClass().getName());
+		Assert.assertEquals("String.java", stringClass.getSourceFile());
+		Assert.assertEquals(1, stringClass.getMethodCount("toString"));
+		Assert.assertEquals("java/lang/Byte", byteClass.getThisClass().getName());
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncatedClass() throws IOException {
+		final byte[] classBytes = TestResources.readResource("/Byte.class");
+		new ClassFileReader().accept(ByteBuffer.wrap(classBytes, 0, classBytes.length / 2), new NameVisitor() {
+			@Override
+			public boolean visitMethod(int accessFlags, int nameIndex, int descriptorIndex) {
+				return true;
+			}
+		});
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidConstant() throws IOException {
+		//Replace the first byte of the CONSTANT_Utf8 naming the class with a byte that is never valid modified UTF-8
+		final byte[] classBytes = TestResources.readResource("/Byte.class");
+		final byte[] name = "\u0001\u0000\u000ejava/lang/Byte".getBytes("UTF-8");
+		for (int i = 0; i < classBytes.length - name.length; i++) {
+			int j = 0;
+			while (j < name.length && classBytes[i + j] == name[j]) {
+				j++;
+			}
+			if (j == name.length) {
+				classBytes[i + 3] = (byte) 0xFF;
+			}
+		}
+		new ClassFileReader().accept(ByteBuffer.wrap(classBytes), new NameVisitor());
+	}
+
+	@Test(expected = IOException.class)
+	public void testConstantOfWrongType() throws IOException {
+		//Point this_class at a CONSTANT_Utf8 instead of a CONSTANT_Class
+		final byte[] classBytes = TestResources.readResource("/Byte.class");
+		final ByteBuffer input = ByteBuffer.wrap(classBytes, 8, classBytes.length - 8);
+		final ConstantPool constantPool = new ConstantPool(52, 0, input);
+		int utf8 = 1;
+		while (constantPool.getTag(utf8) != 1) {
+			utf8++;
+		}
+		input.putShort(input.position() + 2, (short) utf8);
+		new ClassFileReader().accept(ByteBuffer.wrap(classBytes), new NameVisitor());
+	}
+
+	private static class NameVisitor extends ClassVisitor {
+		private String thisClass;
+		private int methods;
+
+		@Override
+		public boolean visitHeader(int minorVersion, int majorVersion, ConstantPool constantPool, int accessFlags,
+		                           int thisClassIndex, int superClassIndex) {
+			thisClass = ((ConstantClass) constantPool.get(thisClassIndex)).getName();
+			methods = 0;
+			return true;
+		}
+
+		@Override
+		public boolean visitMethod(int accessFlags, int nameIndex, int descriptorIndex) {
+			methods++;
+			return false;
+		}
+	}
+}
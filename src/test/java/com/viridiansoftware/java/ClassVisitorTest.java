@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java;
+
+import com.viridiansoftware.java.attributes.Code;
+import com.viridiansoftware.java.constants.ConstantClass;
+import com.viridiansoftware.java.constants.ConstantPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ClassVisitorTest {
+
+	@Test
+	public void testVisitorMatchesModel() throws IOException {
+		final byte[] classBytes = TestResources.readResource("/String.class");
+		final ClassFile classFile = new ClassFile(classBytes);
+		final CountingVisitor visitor = new CountingVisitor();
+		ClassFile.accept(ByteBuffer.wrap(classBytes), visitor);
+
+		Assert.assertEquals("java/lang/String", visitor.thisClass);
+		Assert.assertEquals(classFile.getInterfaces().length, visitor.interfaces);
+		Assert.assertEquals(classFile.getFields().length, visitor.fields);
+		Assert.assertEquals(classFile.getMethods().length, visitor.methodNames.size());
+		Assert.assertEquals("String.java", visitor.sourceFile);
+
+		int codeBytes = 0;
+		int tryCatches = 0;
+		for (MethodInfo method : classFile.getMethods()) {
+			final Code code = method.getCode();
+			if (code != null) {
+				codeBytes += code.getCodeSize();
+				tryCatches += code.getExceptionTable().length;
+			}
+		}
+		Assert.assertEquals(codeBytes, visitor.codeBytes);
+		Assert.assertEquals(tryCatches, visitor.tryCatches);
+		Assert.assertTrue(visitor.lineNumberTables > 0);
+		Assert.assertEquals(1, visitor.ends);
+	}
+
+	@Test
+	public void testVisitorRespectsParseLevel() throws IOException {
+		final CountingVisitor visitor = new CountingVisitor();
+		ClassFile.accept(ByteBuffer.wrap(TestResources.readResource("/String.class")), visitor,
+				ParseOptions.DEFAULT.withLazyConstantPool(true).withLevel(ParseOptions.Level.MEMBERS));
+		Assert.assertTrue(visitor.methodNames.size() > 0);
+		Assert.assertEquals(0, visitor.codeBytes);
+		Assert.assertNull(visitor.sourceFile);
+	}
+
+	@Test
+	public void testVisitorStopsAfterHeader() throws IOException {
+		final CountingVisitor visitor = new CountingVisitor() {
+			@Override
+			public boolean visitHeader(int minorVersion, int majorVersion, ConstantPool constantPool, int accessFlags,
+			                           int thisClassIndex, int superClassIndex) {
+				return false;
+			}
+		};
+		ClassFile.accept(ByteBuffer.wrap(TestResources.readResource("/String.class")), visitor);
+		Assert.assertEquals(0, visitor.interfaces);
+		Assert.assertEquals(0, visitor.methodNames.size());
+		Assert.assertEquals(1, visitor.ends);
+	}
+
+	private static class CountingVisitor extends ClassVisitor {
+		private final List<String> methodNames = new ArrayList<String>();
+		private ConstantPool constantPool;
+		private String thisClass;
+		private String sourceFile;
+		private int interfaces, fields, codeBytes, tryCatches, lineNumberTables, ends;
+
+		@Override
+		public boolean visitHeader(int minorVersion, int majorVersion, ConstantPool constantPool, int accessFlags,
+		                           int thisClassIndex, int superClassIndex) {
+			this.constantPool = constantPool;
+			this.thisClass = ((ConstantClass) constantPool.get(thisClassIndex)).getName();
+			return true;
+		}
+
+		@Override
+		public void visitInterface(int classIndex) {
+			interfaces++;
+		}
+
+		@Override
+		public boolean visitField(int accessFlags, int nameIndex, int descriptorIndex) {
+			fields++;
+			return false;
+		}
+
+		@Override
+		public boolean visitMethod(int accessFlags, int nameIndex, int descriptorIndex) {
+			methodNames.add((String) constantPool.get(nameIndex));
+			return true;
+		}
+
+		@Override
+		public boolean visitCode(int maxStack, int maxLocals, ByteBuffer buffer, int codeOffset, int codeLength) {
+			codeBytes += codeLength;
+			return true;
+		}
+
+		@Override
+		public void visitTryCatch(int startPc, int endPc, int handlerPc, int catchTypeIndex) {
+			tryCatches++;
+		}
+
+		@Override
+		public void visitAttribute(String name, ByteBuffer buffer, int offset, int length) {
+			if ("LineNumberTable".equals(name)) {
+				lineNumberTables++;
+			} else if ("SourceFile".equals(name)) {
+				sourceFile = (String) constantPool.get(buffer.getShort(offset) & 0xFFFF);
+			}
+		}
+
+		@Override
+		public void visitEnd() {
+			ends++;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java;
+
+import com.viridiansoftware.java.attributes.Code;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class InstructionCursorTest {
+
+	@Test
+	public void testOperands() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream output = new DataOutputStream(bytes);
+		//Bytes before the code, switch padding is relative to the start of the code
+		output.write(new byte[] {9, 9, 9});
+		output.write(new byte[] {0x03}); //0: iconst_0
+		output.write(new byte[] {0x10, -5}); //1: bipush -5
+		output.write(new byte[] {0x11, 0x03, (byte) 0xe8}); //3: sipush 1000
+		output.write(new byte[] {0x1c}); //6: iload_2
+		output.write(new byte[] {(byte) 0xc4, 0x15, 0x01, 0x2c}); //7: wide iload 300
+		output.write(new byte[] {(byte) 0xc4, (byte) 0x84, 0x01, 0x2c, (byte) 0xfc, 0x18}); //11: wide iinc 300 -1000
+		output.write(new byte[] {(byte) 0x84, 0x01, -3}); //17: iinc 1 -3
+		output.write(new byte[] {(byte) 0xaa, 0, 0, 0}); //20: tableswitch
+		output.writeInt(40);
+		output.writeInt(1);
+		output.writeInt(2);
+		output.writeInt(50);
+		output.writeInt(60);
+		output.write(new byte[] {(byte) 0xab, 0, 0, 0}); //44: lookupswitch
+		output.writeInt(10);
+		output.writeInt(2);
+		output.writeInt(-1);
+		output.writeInt(20);
+		output.writeInt(7);
+		output.writeInt(30);
+		output.write(new byte[] {(byte) 0xc8}); //72: goto_w -72
+		output.writeInt(-72);
+		output.write(new byte[] {(byte) 0xc6, 0x00, 0x05}); //77: ifnull +5
+		output.write(new byte[] {0x4e}); //80: astore_3
+		output.write(new byte[] {(byte) 0xb1}); //81: return
+		final byte[] code = bytes.toByteArray();
+
+		final InstructionCursor cursor = new InstructionCursor(code, 3, code.length - 3, null);
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(0x03, cursor.getOpcode());
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(-5, cursor.getIntOperand());
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(1000, cursor.getIntOperand());
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(2, cursor.getLocalIndex());
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(7, cursor.getPosition());
+		Assert.assertEquals(0x15, cursor.getOpcode());
+		Assert.assertTrue(cursor.isWide());
+		Assert.assertEquals(300, cursor.getLocalIndex());
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(0x84, cursor.getOpcode());
+		Assert.assertEquals(6, cursor.getLength());
+		Assert.assertEquals(300, cursor.getLocalIndex());
+		Assert.assertEquals(-1000, cursor.getIncrement());
+		Assert.assertTrue(cursor.next());
+		Assert.assertFalse(cursor.isWide());
+		Assert.assertEquals(1, cursor.getLocalIndex());
+		Assert.assertEquals(-3, cursor.getIncrement());
+
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(20, cursor.getPosition());
+		Assert.assertEquals(24, cursor.getLength());
+		Assert.assertEquals(60, cursor.getDefaultTarget());
+		Assert.assertEquals(2, cursor.getSwitchCaseCount());
+		Assert.assertEquals(2, cursor.getSwitchKey(1));
+		Assert.assertEquals(70, cursor.getSwitchTarget(0));
+		Assert.assertEquals(80, cursor.getSwitchTarget(1));
+
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(44, cursor.getPosition());
+		Assert.assertEquals(28, cursor.getLength());
+		Assert.assertEquals(54, cursor.getDefaultTarget());
+		Assert.assertEquals(2, cursor.getSwitchCaseCount());
+		Assert.assertEquals(-1, cursor.getSwitchKey(0));
+		Assert.assertEquals(7, cursor.getSwitchKey(1));
+		Assert.assertEquals(74, cursor.getSwitchTarget(1));
+
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(0, cursor.getBranchTarget());
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(82, cursor.getBranchTarget());
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(3, cursor.getLocalIndex());
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(0xb1, cursor.getOpcode());
+		Assert.assertFalse(cursor.next());
+		Assert.assertFalse(cursor.next());
+
+		cursor.seek(77);
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(0xc6, cursor.getOpcode());
+		cursor.reset();
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(0, cursor.getPosition());
+	}
+
+	@Test
+	public void testInvalidCode() {
+		assertInvalid(new byte[] {(byte) 0xcb});
+		assertInvalid(new byte[] {0x11, 0x00});
+		assertInvalid(new byte[] {(byte) 0xc4, 0x60, 0x00, 0x00});
+		assertInvalid(new byte[] {(byte) 0xaa, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 0, 0, 0, 0});
+	}
+
+	@Test
+	public void testWalkClasses() throws IOException {
+		for (String resource : new String[] {"/String.class", "/Byte.class"}) {
+			final ClassFile classFile = new ClassFile(getClass().getResourceAsStream(resource));
+			for (MethodInfo method : classFile.getMethods()) {
+				final Code code = method.getCode();
+				if (code == null) {
+					continue;
+				}
+				final InstructionCursor cursor = code.getInstructions();
+				int size = 0;
+				while (cursor.next()) {
+					Assert.assertEquals(size, cursor.getPosition());
+					size += cursor.getLength();
+					if (cursor.getOpcode() == 0x12) {
+						Assert.assertEquals(classFile.getConstantPool().get(cursor.getConstantIndex()), cursor.getConstant());
+					}
+				}
+				Assert.assertEquals(code.getCodeSize(), size);
+			}
+		}
+		final MethodInfo toString = new ClassFile(getClass().getResourceAsStream("/String.class")).getMethod("toString").get(0);
+		final InstructionCursor cursor = toString.getCode().getInstructions();
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(0x2a, cursor.getOpcode()); //aload_0
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(0xb0, cursor.getOpcode()); //areturn
+		Assert.assertFalse(cursor.next());
+	}
+
+	private void assertInvalid(byte[] code) {
+		final InstructionCursor cursor = new InstructionCursor(code, 0, code.length, null);
+		try {
+			while (cursor.next()) {
+			}
+			Assert.fail("Expected an IOException");
+		} catch (IOException e) {
+		}
+	}
+}
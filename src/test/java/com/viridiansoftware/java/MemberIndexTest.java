@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+public class MemberIndexTest {
+
+	@Test
+	public void testLookupsMatchLinearScan() throws IOException {
+		final ClassFile expected = new ClassFile(getClass().getResourceAsStream("/String.class"));
+		final ClassFile compact = new ClassFile(getClass().getResourceAsStream("/String.class"),
+				ParseOptions.DEFAULT.withCompactMembers(true));
+		for (ClassFile classFile : Arrays.asList(expected, compact)) {
+			for (MethodInfo method : expected.getMethods()) {
+				Assert.assertEquals(names(scan(expected, method.getName(), null)), names(classFile.getMethod(method.getName())));
+				Assert.assertEquals(scan(expected, method.getName(), null).size(), classFile.getMethodCount(method.getName()));
+				final MethodInfo found = classFile.getMethod(method.getName(), method.getType());
+				Assert.assertEquals(method.getName(), found.getName());
+				Assert.assertEquals(method.getType(), found.getType());
+				Assert.assertEquals(method.getAccessFlags(), found.getAccessFlags());
+			}
+			for (FieldInfo field : expected.getFields()) {
+				Assert.assertEquals(field.getType(), classFile.getField(field.getName()).getType());
+				Assert.assertEquals(field.getName(), classFile.getField(field.getName(), field.getType()).getName());
+			}
+			Assert.assertEquals(names(scan(expected, "<init>", null)), names(classFile.getConstructorMethods()));
+			Assert.assertEquals(1, classFile.getClassInitialisationMethods().size());
+			Assert.assertEquals(expected.getMethods().length - classFile.getConstructorMethods().size() - 1,
+					classFile.getNonInitMethods().size());
+
+			//compareTo(Object) is the bridge to compareTo(String)
+			Assert.assertEquals(1, classFile.getBridgeMethods().size());
+			Assert.assertEquals("(Ljava/lang/Object;)I", classFile.getBridgeMethods().get(0).getType());
+			Assert.assertTrue(classFile.getSyntheticMethods().size() >= 1);
+
+			Assert.assertTrue(classFile.getMethod("noSuchMethod").isEmpty());
+			Assert.assertEquals(0, classFile.getMethodCount("noSuchMethod"));
+			Assert.assertNull(classFile.getMethod("hashCode", "()J"));
+			Assert.assertNull(classFile.getField("hash", "J"));
+			Assert.assertNull(classFile.getField("noSuchField"));
+		}
+		Assert.assertSame(expected.getMethod("indexOf"), expected.getMethod("indexOf"));
+		final MethodInfo hashCode = expected.getMethod("hashCode", "()I");
+		Assert.assertSame(expected.getMethod("hashCode").get(0), hashCode);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testViewsAreUnmodifiable() throws IOException {
+		final ClassFile classFile = new ClassFile(getClass().getResourceAsStream("/String.class"));
+		classFile.getConstructorMethods().clear();
+	}
+
+	@Test
+	public void testCollidingNames() {
+		final int count = 200;
+		final String[] names = new String[count];
+		final String[] descriptors = new String[count];
+		final int[] flags = new int[count];
+		for (int i = 0; i < count; i++) {
+			//"Aa" and "BB" have the same hash code
+			names[i] = (i % 2 == 0 ? "Aa" : "BB") + (i % 10);
+			descriptors[i] = "(" + i + ")V";
+			flags[i] = i % 3 == 0 ? 0x1040 : 0;
+		}
+		final MemberIndex<Integer> index = new MemberIndex<Integer>(names, descriptors, flags, true, new IntFunction<Integer>() {
+			@Override
+			public Integer apply(int i) {
+				return i;
+			}
+		});
+		for (int i = 0; i < count; i++) {
+			Assert.assertEquals(i, index.find(names[i], descriptors[i]));
+			Assert.assertEquals(i % 10, index.find(names[i]));
+			Assert.assertEquals(20, index.count(names[i]));
+			Assert.assertEquals(i % 3 == 0, index.is(MemberIndex.BRIDGE, i));
+		}
+		Assert.assertEquals(-1, index.find("Aa1", "(0)V"));
+		Assert.assertEquals(Arrays.asList(3, 13, 23), index.get("BB3").subList(0, 3));
+		Assert.assertEquals(67, index.get(MemberIndex.SYNTHETIC).size());
+		Assert.assertEquals(count, index.get(MemberIndex.NON_INIT).size());
+		Assert.assertTrue(index.get(MemberIndex.INIT).isEmpty());
+	}
+
+	private static List<MethodInfo> scan(ClassFile classFile, String name, String descriptor) {
+		final List<MethodInfo> result = new ArrayList<MethodInfo>();
+		for (MethodInfo method : classFile.getMethods()) {
+			if (method.getName().equals(name) && (descriptor == null || method.getType().equals(descriptor))) {
+				result.add(method);
+			}
+		}
+		return result;
+	}
+
+	private static List<String> names(List<MethodInfo> methods) {
+		final List<String> result = new ArrayList<String>();
+		for (MethodInfo method : methods) {
+			result.add(method.getName() + method.getType());
+		}
+		return result;
+	}
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class MemberTableTest {
+
+	@Test
+	public void testCompactMembersMatchObjectMembers() throws IOException {
+		final ClassFile expected = new ClassFile(getClass().getResourceAsStream("/String.class"));
+		final ClassFile compact = new ClassFile(getClass().getResourceAsStream("/String.class"),
+				ParseOptions.DEFAULT.withCompactMembers(true));
+		Assert.assertNull(expected.getMethodTable());
+
+		final MemberTable methodTable = compact.getMethodTable();
+		Assert.assertEquals(expected.getMethods().length, methodTable.size());
+		for (int i = 0; i < methodTable.size(); i++) {
+			final MethodInfo method = expected.getMethods()[i];
+			Assert.assertEquals(method.getName(), methodTable.getName(i));
+			Assert.assertEquals(method.getType(), methodTable.getDescriptor(i));
+			Assert.assertEquals(method.getAccessFlags(), methodTable.getAccessFlags(i));
+		}
+		Assert.assertEquals(expected.getFields().length, compact.getFieldTable().size());
+		Assert.assertEquals(expected.getFields().length, compact.getFields().length);
+
+		Assert.assertEquals(expected.getMethodCount("indexOf"), compact.getMethodCount("indexOf"));
+		Assert.assertEquals(expected.getConstructorMethods().size(), compact.getConstructorMethods().size());
+		Assert.assertEquals(expected.getNonInitMethods().size(), compact.getNonInitMethods().size());
+		final MethodInfo hashCode = compact.getMethod("hashCode").get(0);
+		Assert.assertEquals(expected.getMethod("hashCode").get(0).getCode().getCodeSize(), hashCode.getCode().getCodeSize());
+		Assert.assertEquals(expected.getField("hash").getType(), compact.getField("hash").getType());
+		Assert.assertNull(compact.getField("noSuchField"));
+	}
+
+	@Test
+	public void testInvalidAttributeNameIsRejectedOnRead() throws IOException {
+		final byte[] classBytes = TestResources.readResource("/String.class");
+		final ClassFile classFile = new ClassFile(classBytes);
+		final MemberTable methodTable = new ClassFile(classBytes, ParseOptions.DEFAULT.withCompactMembers(true)).getMethodTable();
+		//Point the name of the first attribute of the first method with attributes at the CONSTANT_Class of the class
+		int thisClassIndex = 1;
+		while (classFile.getConstantPool().get(thisClassIndex) != classFile.getThisClass()) {
+			thisClassIndex++;
+		}
+		int member = 0;
+		while (ByteBuffer.wrap(classBytes).getShort(methodTable.getOffset(member) + 6) == 0) {
+			member++;
+		}
+		ByteBuffer.wrap(classBytes).putShort(methodTable.getOffset(member) + 8, (short) thisClassIndex);
+		try {
+			new ClassFile(classBytes, ParseOptions.DEFAULT.withCompactMembers(true).withLazyConstantPool(true));
+			Assert.fail("Expected an IOException");
+		} catch (IOException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void testHeaderOnlyHasEmptyTables() throws IOException {
+		final ClassFile compact = new ClassFile(getClass().getResourceAsStream("/String.class"),
+				ParseOptions.DEFAULT.withLevel(ParseOptions.Level.HEADER_ONLY).withCompactMembers(true));
+		Assert.assertEquals(0, compact.getMethodTable().size());
+		Assert.assertEquals(0, compact.getFields().length);
+	}
+}
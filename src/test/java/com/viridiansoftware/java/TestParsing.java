@@ -18,7 +18,11 @@ package com.viridiansoftware.java;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 
 public class TestParsing {
 
@@ -39,4 +43,88 @@ public class TestParsing {
 		Assert.assertEquals(1, classFile.getMethodCount("toString"));
 		Assert.assertTrue(classFile.getMethod("intern").get(0).getMethodAccessFlags().contains(MethodAccessFlag.NATIVE));
 	}
+
+	@Test
+	public void testParsingFromByteArrayWithOffset() throws IOException {
+		final byte[] classBytes = TestResources.readResource("/Byte.class");
+		final byte[] data = new byte[classBytes.length + 16];
+		System.arraycopy(classBytes, 0, data, 7, classBytes.length);
+
+		final ClassFile classFile = new ClassFile(data, 7, classBytes.length);
+		Assert.assertEquals("Byte.java", classFile.getSourceFile());
+		Assert.assertEquals("java/lang/Byte", classFile.getThisClass().getName());
+		Assert.assertEquals(2, classFile.getMethodCount("toString"));
+
+		final MethodInfo toString = classFile.getMethod("toString").get(0);
+		Assert.assertEquals(toString.getCode().getCodeSize(), toString.getCode().getCodeData().length);
+		Assert.assertTrue(toString.getCode().getLineNumberTable().size() > 0);
+	}
+
+	@Test
+	public void testParsingFromDirectByteBuffer() throws IOException {
+		final byte[] classBytes = TestResources.readResource("/String.class");
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(classBytes.length);
+		buffer.put(classBytes);
+		buffer.flip();
+
+		final ClassFile classFile = new ClassFile(buffer);
+		Assert.assertEquals(0, buffer.position());
+		Assert.assertEquals("String.java", classFile.getSourceFile());
+		Assert.assertEquals(1, classFile.getMethodCount("toString"));
+		Assert.assertEquals(new ClassFile(classBytes).getMethods().length, classFile.getMethods().length);
+	}
+
+	@Test
+	public void testParsingFromMappedFile() throws IOException {
+		final byte[] classBytes = TestResources.readResource("/Byte.class");
+		final File file = File.createTempFile("Byte", ".class");
+		file.deleteOnExit();
+		try (FileOutputStream outputStream = new FileOutputStream(file)) {
+			outputStream.write(new byte[3]);
+			outputStream.write(classBytes);
+		}
+
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			final ClassFile classFile = ClassFile.map(randomAccessFile.getChannel(), 3, classBytes.length);
+			Assert.assertEquals("java/lang/Byte", classFile.getThisClass().getName());
+			Assert.assertEquals(2, classFile.getMethodCount("toString"));
+		}
+	}
+
+	@Test
+	public void testParseLevels() throws IOException {
+		final byte[] classBytes = TestResources.readResource("/String.class");
+		final ClassFile full = new ClassFile(classBytes);
+		final MethodInfo fullMethod = full.getMethod("indexOf").get(0);
+		Assert.assertNotNull(fullMethod.getCode());
+		Assert.assertNotNull(fullMethod.getCode().getLineNumberTable());
+
+		final ClassFile header = new ClassFile(classBytes, ParseOptions.DEFAULT.withLevel(ParseOptions.Level.HEADER_ONLY));
+		Assert.assertEquals("java/lang/String", header.getThisClass().getName());
+		Assert.assertEquals(full.getInterfaces().length, header.getInterfaces().length);
+		Assert.assertEquals(0, header.getMethods().length);
+		Assert.assertNull(header.getSourceFile());
+
+		final ClassFile members = new ClassFile(classBytes, ParseOptions.DEFAULT.withLevel(ParseOptions.Level.MEMBERS));
+		Assert.assertEquals(full.getMethods().length, members.getMethods().length);
+		Assert.assertEquals(full.getFields().length, members.getFields().length);
+		Assert.assertNull(members.getMethod("indexOf").get(0).getCode());
+		Assert.assertNull(members.getSourceFile());
+
+		final ClassFile signatures = new ClassFile(classBytes, ParseOptions.DEFAULT.withLevel(ParseOptions.Level.SIGNATURES));
+		Assert.assertEquals("String.java", signatures.getSourceFile());
+		Assert.assertNull(signatures.getMethod("indexOf").get(0).getCode());
+
+		final ClassFile code = new ClassFile(classBytes, ParseOptions.DEFAULT.withLevel(ParseOptions.Level.CODE));
+		final MethodInfo codeMethod = code.getMethod("indexOf").get(0);
+		Assert.assertEquals(fullMethod.getCode().getCodeSize(), codeMethod.getCode().getCodeSize());
+		Assert.assertNull(codeMethod.getCode().getLineNumberTable());
+		Assert.assertNull(codeMethod.getCode().getLocalVariableTable());
+	}
+
+	@Test(expected = IOException.class)
+	public void testParsingTruncatedClass() throws IOException {
+		final byte[] classBytes = TestResources.readResource("/Byte.class");
+		new ClassFile(classBytes, 0, classBytes.length / 2);
+	}
 }
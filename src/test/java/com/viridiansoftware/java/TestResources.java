@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the class files in the test resources
+ */
+public final class TestResources {
+
+	private TestResources() {
+	}
+
+	/**
+	 * @param name The absolute resource name, e.g. /String.class
+	 * @return The bytes of the resource
+	 */
+	public static byte[] readResource(String name) throws IOException {
+		try (InputStream inputStream = TestResources.class.getResourceAsStream(name)) {
+			if (inputStream == null) {
+				throw new IOException("Missing test resource " + name);
+			}
+			final ByteArrayOutputStream result = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			int read;
+			while ((read = inputStream.read(buffer)) >= 0) {
+				result.write(buffer, 0, read);
+			}
+			return result.toByteArray();
+		}
+	}
+}
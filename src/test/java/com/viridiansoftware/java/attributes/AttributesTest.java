@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.attributes;
+
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.MethodInfo;
+import com.viridiansoftware.java.ParseOptions;
+import com.viridiansoftware.java.constants.ConstantPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class AttributesTest {
+
+	@Test
+	public void testPredefinedAndUnknownNames() throws IOException {
+		final ConstantPool constantPool = createConstantPool();
+		//Far more attributes than a position byte holds, the first Code and Signature come after 300 unknown ones
+		final int[] names = new int[305];
+		for (int i = 0; i < 300; i++) {
+			names[i] = 1;
+		}
+		names[300] = 2;
+		names[301] = 3;
+		names[302] = 2;
+		names[303] = 4;
+		names[304] = 1;
+		final Attributes attributes = new Attributes(createAttributes(names), constantPool);
+
+		Assert.assertEquals(300, attributes.get(AttributeName.CODE).getLength());
+		Assert.assertEquals(301, attributes.get(AttributeName.SIGNATURE).getLength());
+		Assert.assertEquals(303, attributes.get(AttributeName.LINE_NUMBER_TABLE).getLength());
+		Assert.assertEquals(0, attributes.get("Foo").getLength());
+		Assert.assertEquals(300, attributes.get("Code").getLength());
+		Assert.assertNull(attributes.get(AttributeName.SOURCE_FILE));
+		Assert.assertNull(attributes.get("Bar"));
+		Assert.assertNull(attributes.get((String) null));
+
+		final Attributes near = new Attributes(createAttributes(new int[] {1, 2, 2, 3}), constantPool);
+		Assert.assertEquals(1, near.get(AttributeName.CODE).getLength());
+		Assert.assertEquals(3, near.get("Signature").getLength());
+		Assert.assertNull(near.get(AttributeName.LINE_NUMBER_TABLE));
+		Assert.assertNull(new Attributes(constantPool).get(AttributeName.CODE));
+	}
+
+	@Test
+	public void testAttributeNamesOfConstantPool() {
+		final ConstantPool constantPool = createConstantPool();
+		for (int i = 0; i < 2; i++) {
+			Assert.assertNull(constantPool.getAttributeName(1));
+			Assert.assertSame(AttributeName.CODE, constantPool.getAttributeName(2));
+			Assert.assertSame(AttributeName.LINE_NUMBER_TABLE, constantPool.getAttributeName(4));
+			Assert.assertNull(constantPool.getAttributeName(5));
+		}
+		constantPool.set(1, "Deprecated");
+		Assert.assertSame(AttributeName.DEPRECATED, constantPool.getAttributeName(1));
+		for (AttributeName name : AttributeName.values()) {
+			Assert.assertSame(name, AttributeName.of(name.getName()));
+		}
+	}
+
+	@Test
+	public void testRetainedAttributesByOptions() throws IOException {
+		for (ParseOptions.Level level : ParseOptions.Level.values()) {
+			for (boolean annotations : new boolean[] {false, true}) {
+				final ParseOptions options = ParseOptions.DEFAULT.withLevel(level).withAnnotations(annotations);
+				for (AttributeName name : AttributeName.values()) {
+					Assert.assertEquals(options.isAttributeRetained(name.getName()), options.isAttributeRetained(name));
+				}
+				Assert.assertEquals(options.isAttributeRetained("Foo"), options.isAttributeRetained((AttributeName) null));
+			}
+		}
+		final Attributes attributes = new Attributes(createAttributes(new int[] {1, 2, 3, 4}), createConstantPool(),
+				ParseOptions.DEFAULT.withLevel(ParseOptions.Level.SIGNATURES));
+		Assert.assertNotNull(attributes.get("Foo"));
+		Assert.assertNotNull(attributes.get(AttributeName.SIGNATURE));
+		Assert.assertNull(attributes.get(AttributeName.CODE));
+		Assert.assertNull(attributes.get(AttributeName.LINE_NUMBER_TABLE));
+	}
+
+	@Test(expected = IOException.class)
+	public void testNonUtf8AttributeNameIsRejected() throws IOException {
+		new Attributes(createAttributes(new int[] {1, 5}), createConstantPool(), ParseOptions.DEFAULT);
+	}
+
+	@Test
+	public void testClassFileLookups() throws IOException {
+		final ClassFile classFile = new ClassFile(getClass().getResourceAsStream("/String.class"));
+		Assert.assertEquals("String.java", classFile.getSourceFile());
+		for (MethodInfo method : classFile.getMethods()) {
+			final boolean hasCode = (method.getAccessFlags() & 0x0500) == 0;
+			Assert.assertEquals(hasCode, method.getAttributes().get(AttributeName.CODE) != null);
+			Assert.assertSame(method.getAttributes().get(AttributeName.CODE), method.getAttributes().get("Code"));
+			if (hasCode) {
+				Assert.assertNotNull(method.getCode().getLineNumberTable());
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testStreamConstructors() throws IOException {
+		final ConstantPool constantPool = createConstantPool();
+		final ByteBuffer table = createAttributes(new int[] {1, 2, 3});
+		final byte[] bytes = new byte[table.remaining() + 1];
+		table.get(bytes, 0, bytes.length - 1);
+		bytes[bytes.length - 1] = 42;
+
+		final DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+		final Attributes attributes = new Attributes(input, constantPool);
+		Assert.assertEquals(1, attributes.get(AttributeName.CODE).getLength());
+		Assert.assertEquals(2, attributes.get("Signature").getData().length);
+		Assert.assertEquals(42, input.read());
+
+		final DataInputStream single = new DataInputStream(new ByteArrayInputStream(bytes, 2, bytes.length - 2));
+		Assert.assertEquals("Foo", new AttributeInfo(single, constantPool).getName());
+		Assert.assertEquals("Code", new AttributeInfo(single, constantPool).getName());
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testCodeStreamConstructor() throws IOException {
+		final ClassFile classFile = new ClassFile(getClass().getResourceAsStream("/String.class"));
+		final MethodInfo hashCode = classFile.getMethod("hashCode", "()I");
+		final AttributeInfo info = hashCode.getAttributes().get(AttributeName.CODE);
+		final Code code = new Code(info.getDataInputStream(), classFile.getConstantPool(), null);
+		Assert.assertArrayEquals(hashCode.getCode().getCodeData(), code.getCodeData());
+		Assert.assertEquals(hashCode.getCode().getMaxStack(), code.getMaxStack());
+		Assert.assertEquals(hashCode.getCode().getExceptionTable().length, code.getExceptionTable().length);
+		Assert.assertEquals(hashCode.getCode().getLineNumberTable().size(), code.getLineNumberTable().size());
+	}
+
+	private static ConstantPool createConstantPool() {
+		final ConstantPool constantPool = new ConstantPool(6);
+		constantPool.set(1, "Foo");
+		constantPool.set(2, "Code");
+		constantPool.set(3, "Signature");
+		constantPool.set(4, "LineNumberTable");
+		constantPool.set(5, Integer.valueOf(42));
+		return constantPool;
+	}
+
+	/**
+	 * Writes an attributes table with the given name indexes, the payload length of each attribute is its position
+	 */
+	private static ByteBuffer createAttributes(int[] names) {
+		int size = 2;
+		for (int i = 0; i < names.length; i++) {
+			size += 6 + i;
+		}
+		final ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putShort((short) names.length);
+		for (int i = 0; i < names.length; i++) {
+			buffer.putShort((short) names[i]);
+			buffer.putInt(i);
+			buffer.position(buffer.position() + i);
+		}
+		buffer.flip();
+		return buffer;
+	}
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.attributes;
+
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.MethodInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class LineNumberTableTest {
+	//start_pc, line_number pairs out of order and with two entries for pc 10
+	private static final int[][] ENTRIES = {{0, 5}, {20, 9}, {10, 7}, {4, 6}, {10, 8}, {30, 6}};
+
+	@Test
+	public void testLookup() throws IOException {
+		for (int codeLength : new int[] {-1, 40}) {
+			final LineNumberTable table = createTable(codeLength);
+			Assert.assertEquals(5, table.getMinLineNr());
+			Assert.assertEquals(9, table.getMaxLineNr());
+			Assert.assertEquals(ENTRIES.length, table.size());
+			Assert.assertEquals(20, table.getStartOffset(1));
+			Assert.assertEquals(-1, table.getLineNumberAt(-1));
+			for (int pc = 0; pc < 50; pc++) {
+				Assert.assertEquals(expectedLine(pc), table.getLineNumberAt(pc));
+			}
+			Assert.assertEquals(8, table.getLineNumberAt(10));
+		}
+	}
+
+	@Test
+	public void testBulkLookup() throws IOException {
+		final LineNumberTable table = createTable(-1);
+		final int[] pcs = {0, 3, 4, 10, 19, 25, 31, 2, 40};
+		final int[] lines = new int[pcs.length];
+		table.getLineNumbersAt(pcs, lines, pcs.length);
+		for (int i = 0; i < pcs.length; i++) {
+			Assert.assertEquals(expectedLine(pcs[i]), lines[i]);
+		}
+
+		Assert.assertArrayEquals(new int[] {5, 6, 8}, table.getLineNumbers(0, 11));
+		Assert.assertArrayEquals(new int[] {6, 8, 9}, table.getLineNumbers(5, 31));
+		Assert.assertArrayEquals(new int[] {6}, table.getLineNumbers(35, 40));
+		Assert.assertArrayEquals(new int[0], table.getLineNumbers(10, 10));
+	}
+
+	@Test
+	public void testClassFile() throws IOException {
+		final ClassFile classFile = new ClassFile(getClass().getResourceAsStream("/String.class"));
+		for (MethodInfo method : classFile.getMethods()) {
+			final Code code = method.getCode();
+			if (code == null || code.getLineNumberTable() == null) {
+				continue;
+			}
+			final LineNumberTable table = code.getLineNumberTable();
+			for (int pc = 0; pc < code.getCodeSize(); pc++) {
+				int expected = -1;
+				for (int i = 0; i < table.size() && table.getStartOffset(i) <= pc; i++) {
+					expected = table.getLineNumber(i);
+				}
+				Assert.assertEquals(expected, table.getLineNumberAt(pc));
+			}
+		}
+	}
+
+	private static int expectedLine(int pc) {
+		int bestPc = -1;
+		int line = -1;
+		for (int[] entry : ENTRIES) {
+			if (entry[0] <= pc && entry[0] >= bestPc) {
+				bestPc = entry[0];
+				line = entry[1];
+			}
+		}
+		return line;
+	}
+
+	private static LineNumberTable createTable(int codeLength) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream output = new DataOutputStream(bytes);
+		output.writeShort(ENTRIES.length);
+		for (int[] entry : ENTRIES) {
+			output.writeShort(entry[0]);
+			output.writeShort(entry[1]);
+		}
+		return new LineNumberTable(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), codeLength);
+	}
+}
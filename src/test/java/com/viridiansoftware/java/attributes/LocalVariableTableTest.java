@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.attributes;
+
+import com.viridiansoftware.java.constants.ConstantPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class LocalVariableTableTest {
+	private static final String[] NAMES = {null, "this", "i", "text", "j", "value"};
+	//start_pc, length, name_index, descriptor_index, index; slot 2 is reused by two scopes
+	private static final int[][] ENTRIES = {
+			{0, 100, 1, 0, 0},
+			{30, 20, 4, 0, 2},
+			{5, 20, 2, 0, 2},
+			{10, 90, 3, 0, 1},
+			{60, 10, 5, 0, 4},
+	};
+
+	@Test
+	public void testSlotLookup() throws IOException {
+		final LocalVariableTable table = createTable();
+		Assert.assertEquals(5, table.getTotalEntires());
+		Assert.assertEquals(5, table.getSlotCount());
+		Assert.assertEquals("i", table.getName(2, 5));
+		Assert.assertEquals("i", table.getName(2, 24));
+		Assert.assertNull(table.getName(2, 25));
+		Assert.assertNull(table.getName(2, 4));
+		Assert.assertEquals("j", table.getName(2, 30));
+		Assert.assertEquals("j", table.getName(2, 49));
+		Assert.assertNull(table.getName(2, 50));
+		Assert.assertNull(table.getName(3, 60));
+		Assert.assertNull(table.getName(7, 60));
+		Assert.assertEquals(-1, table.findEntry(-1, 0));
+		Assert.assertEquals(3, table.findEntry(1, 10));
+
+		final LocalVariable variable = table.get(2, 40);
+		Assert.assertEquals(1, variable.getPosition());
+		Assert.assertEquals(30, variable.getStartPointCode());
+		Assert.assertSame(variable, table.getByEntryIndex(1));
+		Assert.assertSame(table.getByEntryIndex(3), table.get("text"));
+		Assert.assertNull(table.get("missing"));
+		Assert.assertNull(table.get((String) null));
+	}
+
+	@Test
+	public void testLiveVariables() throws IOException {
+		final LocalVariableTable table = createTable();
+		final int[] entries = new int[table.getSlotCount()];
+		Assert.assertEquals(3, table.findLiveEntries(65, entries));
+		Assert.assertArrayEquals(new int[] {0, 3, 4}, Arrays.copyOf(entries, 3));
+		Assert.assertEquals(3, table.findLiveEntries(45, entries));
+		Assert.assertArrayEquals(new int[] {0, 3, 1}, Arrays.copyOf(entries, 3));
+		Assert.assertEquals(1, table.findLiveEntries(0, entries));
+
+		final List<LocalVariable> live = table.getLiveVariables(20);
+		Assert.assertEquals(3, live.size());
+		Assert.assertEquals("this", live.get(0).getName());
+		Assert.assertEquals("text", live.get(1).getName());
+		Assert.assertEquals("i", live.get(2).getName());
+		Assert.assertTrue(table.getLiveVariables(100).isEmpty());
+	}
+
+	@Test(timeout = 10000)
+	public void testSharedBetweenThreads() throws Exception {
+		for (int round = 0; round < 200; round++) {
+			final LocalVariableTable table = createTable();
+			final CountDownLatch start = new CountDownLatch(1);
+			final Thread[] threads = new Thread[4];
+			final AtomicReferenceArray<LocalVariable> seen = new AtomicReferenceArray<LocalVariable>(threads.length * 2);
+			for (int i = 0; i < threads.length; i++) {
+				final int thread = i;
+				threads[i] = new Thread() {
+					@Override
+					public void run() {
+						try {
+							start.await();
+						} catch (InterruptedException e) {
+							return;
+						}
+						seen.set(thread * 2, table.getByEntryIndex(3));
+						seen.set(thread * 2 + 1, table.get("text"));
+					}
+				};
+				threads[i].start();
+			}
+			start.countDown();
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			final LocalVariable variable = table.getByEntryIndex(3);
+			for (int i = 0; i < seen.length(); i++) {
+				Assert.assertSame(variable, seen.get(i));
+			}
+		}
+	}
+
+	private static LocalVariableTable createTable() throws IOException {
+		final ConstantPool constantPool = new ConstantPool(NAMES.length);
+		for (int i = 1; i < NAMES.length; i++) {
+			constantPool.set(i, NAMES[i]);
+		}
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream output = new DataOutputStream(bytes);
+		output.writeShort(ENTRIES.length);
+		for (int[] entry : ENTRIES) {
+			for (int value : entry) {
+				output.writeShort(value);
+			}
+		}
+		final LocalVariableTable table = new LocalVariableTable(6, constantPool);
+		table.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		return table;
+	}
+}
@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.cache;
+
+import com.viridiansoftware.java.ClassFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class ClassFileCacheTest {
+	private static final ClassFileWeigher UNIT = new ClassFileWeigher() {
+		@Override
+		public long weigh(String key, ClassFile classFile) {
+			return 100;
+		}
+	};
+
+	@Test
+	public void testBoundedByWeightWithLeastRecentlyUsedEviction() throws IOException {
+		final ClassFile classFile = new ClassFile(getClass().getResourceAsStream("/Byte.class"));
+		final ClassFileCache cache = new ClassFileCache(16 * 200, UNIT, false);
+		cache.put("k0", classFile);
+		for (int i = 1; i < 100; i++) {
+			Assert.assertSame(classFile, cache.getIfPresent("k0"));
+			cache.put("k" + i, classFile);
+		}
+		Assert.assertSame(classFile, cache.getIfPresent("k0"));
+		Assert.assertEquals(32, cache.size());
+		Assert.assertEquals(cache.size() * 100, cache.getWeightedSize());
+
+		final CacheStatistics statistics = cache.getStatistics();
+		Assert.assertEquals(100 - cache.size(), statistics.getEvictionCount());
+		Assert.assertEquals(100, statistics.getHitCount());
+		Assert.assertEquals(0, statistics.getMissCount());
+		Assert.assertEquals(cache.size(), statistics.getSize());
+
+		cache.invalidate("k0");
+		Assert.assertNull(cache.getIfPresent("k0"));
+		cache.invalidateAll();
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(0, cache.getWeightedSize());
+	}
+
+	@Test
+	public void testClassesAreEvictedAcrossTheWholeCache() throws IOException {
+		final ClassFile classFile = new ClassFile(getClass().getResourceAsStream("/Byte.class"));
+		//A single class may use the whole limit
+		final ClassFileCache single = new ClassFileCache(150, UNIT, true);
+		single.put("k0", classFile);
+		Assert.assertEquals(1, single.size());
+		single.put("k1", classFile);
+		Assert.assertEquals(1, single.size());
+		Assert.assertSame(classFile, single.getIfPresent("k0"));
+		Assert.assertEquals(1, single.size());
+		Assert.assertEquals(100, single.getWeightedSize());
+
+		//The least recently used key is evicted, whatever keys the others are
+		final ClassFileCache cache = new ClassFileCache(300, UNIT, false);
+		cache.put("a", classFile);
+		cache.put("b", classFile);
+		cache.put("c", classFile);
+		Assert.assertSame(classFile, cache.getIfPresent("a"));
+		cache.put("d", classFile);
+		Assert.assertNull(cache.getIfPresent("b"));
+		Assert.assertSame(classFile, cache.getIfPresent("a"));
+		Assert.assertSame(classFile, cache.getIfPresent("c"));
+		Assert.assertSame(classFile, cache.getIfPresent("d"));
+	}
+
+	@Test
+	public void testSoftTierRetainsEvictedClasses() throws IOException {
+		final ClassFile classFile = new ClassFile(getClass().getResourceAsStream("/Byte.class"));
+		final ClassFileCache cache = new ClassFileCache(16 * 100, UNIT, true);
+		for (int i = 0; i < 100; i++) {
+			cache.put("k" + i, classFile);
+		}
+		Assert.assertEquals(100, cache.size() + cache.getSoftSize());
+		for (int i = 0; i < 100; i++) {
+			//Strongly reachable through classFile, so the soft references can not have been cleared
+			Assert.assertSame(classFile, cache.getIfPresent("k" + i));
+		}
+		Assert.assertTrue(cache.getStatistics().getSoftHitCount() > 0);
+		Assert.assertTrue(cache.getWeightedSize() <= 16 * 100);
+	}
+
+	@Test
+	public void testLoaderResultsAndFailures() throws IOException {
+		final ClassFile classFile = new ClassFile(getClass().getResourceAsStream("/String.class"));
+		final ClassFileCache cache = new ClassFileCache(1024 * 1024 * 1024);
+		final int[] loads = new int[1];
+		final ClassFileLoader loader = new ClassFileLoader() {
+			@Override
+			public ClassFile load(String key) throws IOException {
+				loads[0]++;
+				if (key.equals("missing")) {
+					return null;
+				}
+				if (key.equals("broken")) {
+					throw new IOException("broken");
+				}
+				return classFile;
+			}
+		};
+		Assert.assertSame(classFile, cache.get("java/lang/String", loader));
+		Assert.assertSame(classFile, cache.get("java/lang/String", loader));
+		Assert.assertEquals(1, loads[0]);
+		Assert.assertNull(cache.get("missing", loader));
+		try {
+			cache.get("broken", loader);
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertEquals("broken", e.getMessage());
+		}
+		try {
+			cache.get("broken", loader);
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertEquals(4, loads[0]);
+		}
+		final CacheStatistics statistics = cache.getStatistics();
+		Assert.assertEquals(1, statistics.getLoadSuccessCount());
+		Assert.assertEquals(2, statistics.getLoadFailureCount());
+		Assert.assertEquals(1, statistics.getHitCount());
+		Assert.assertEquals(4, statistics.getMissCount());
+		Assert.assertTrue(ClassFileWeigher.ESTIMATED_SIZE.weigh("java/lang/String", classFile) > classFile.getLength());
+	}
+
+	@Test
+	public void testConcurrentMissesLoadOnce() throws Exception {
+		final ClassFile classFile = new ClassFile(getClass().getResourceAsStream("/String.class"));
+		final ClassFileCache cache = new ClassFileCache(1024 * 1024 * 1024);
+		final AtomicReference<CountDownLatch> release = new AtomicReference<CountDownLatch>();
+		final AtomicInteger loads = new AtomicInteger();
+		final ClassFileLoader loader = new ClassFileLoader() {
+			@Override
+			public ClassFile load(String key) throws IOException {
+				loads.incrementAndGet();
+				try {
+					release.get().await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				if (key.equals("broken")) {
+					throw new IOException("broken");
+				}
+				return classFile;
+			}
+		};
+
+		final Object[] results = getConcurrently(cache, "java/lang/String", loader, release);
+		Assert.assertEquals(1, loads.get());
+		for (Object result : results) {
+			Assert.assertSame(classFile, result);
+		}
+		Assert.assertEquals(results.length - 1, cache.getStatistics().getCoalescedLoadCount());
+
+		final Object[] failures = getConcurrently(cache, "broken", loader, release);
+		Assert.assertEquals(2, loads.get());
+		for (Object failure : failures) {
+			Assert.assertEquals("broken", ((IOException) failure).getMessage());
+		}
+		try {
+			cache.get("broken", loader);
+			Assert.fail();
+		} catch (IOException e) {
+			//The latch of the previous lookups is released
+			Assert.assertEquals(3, loads.get());
+		}
+	}
+
+	/**
+	 * Runs lookups of a key on several threads, releasing the loader once all but the loading thread wait for it
+	 */
+	private Object[] getConcurrently(final ClassFileCache cache, final String key, final ClassFileLoader loader,
+	                                 AtomicReference<CountDownLatch> release) throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		release.set(latch);
+		final long coalesced = cache.getStatistics().getCoalescedLoadCount();
+		final AtomicReferenceArray<Object> results = new AtomicReferenceArray<Object>(8);
+		final Thread[] threads = new Thread[results.length()];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						results.set(index, cache.get(key, loader));
+					} catch (IOException e) {
+						results.set(index, e);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		while (cache.getStatistics().getCoalescedLoadCount() < coalesced + threads.length - 1) {
+			Thread.sleep(1);
+		}
+		latch.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		final Object[] values = new Object[results.length()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = results.get(i);
+		}
+		return values;
+	}
+}
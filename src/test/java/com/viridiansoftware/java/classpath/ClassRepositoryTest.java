@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.classpath;
+
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.TestResources;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+public class ClassRepositoryTest {
+
+	@Test
+	public void testResolveAncestorsAcrossSources() throws IOException {
+		Assume.assumeTrue(!System.getProperty("java.specification.version").startsWith("1."));
+		final File jar = createJar();
+		try (ClassRepository repository = new ClassRepository(Arrays.asList(new JarClassSource(jar.toPath()),
+				new JrtClassSource()))) {
+			final ClassFile byteClass = repository.get("java/lang/Byte");
+			Assert.assertSame(byteClass, repository.get("java/lang/Byte"));
+			Assert.assertEquals(TestResources.readResource("/Byte.class").length, byteClass.getLength());
+
+			final ClassFile number = repository.getSuperClass(byteClass);
+			Assert.assertEquals("java/lang/Number", number.getThisClass().getName());
+			Assert.assertSame(number, repository.getSuperClass(byteClass));
+			Assert.assertEquals("java/lang/Comparable", repository.getInterfaces(byteClass)[0].getThisClass().getName());
+			Assert.assertNull(repository.getSuperClass(repository.get("java/lang/Object")));
+
+			final List<String> ancestors = new ArrayList<String>();
+			for (ClassFile ancestor : repository.getAncestors(byteClass)) {
+				ancestors.add(ancestor.getThisClass().getName());
+			}
+			Assert.assertEquals("java/lang/Number", ancestors.get(0));
+			Assert.assertEquals(ancestors.size(), new HashSet<String>(ancestors).size());
+			Assert.assertTrue(ancestors.containsAll(Arrays.asList("java/lang/Object", "java/io/Serializable",
+					"java/lang/Comparable")));
+			Assert.assertTrue(repository.isSubtypeOf(byteClass, "java/io/Serializable"));
+			Assert.assertFalse(repository.isSubtypeOf(byteClass, "java/lang/CharSequence"));
+		} finally {
+			jar.delete();
+		}
+	}
+
+	@Test
+	public void testMissingClasses() throws IOException {
+		final File jar = createJar();
+		try (ClassRepository repository = new ClassRepository(Collections.singletonList(new JarClassSource(jar.toPath())))) {
+			Assert.assertNull(repository.find("java/lang/Object"));
+			Assert.assertNull(repository.find("java/lang/Object"));
+			Assert.assertEquals(1, repository.getCache().getStatistics().getMissCount());
+			Assert.assertEquals(0, repository.getCache().getStatistics().getLoadFailureCount());
+			final ClassFile stringClass = repository.get("java/lang/String");
+			try {
+				repository.getSuperClass(stringClass);
+				Assert.fail();
+			} catch (IOException e) {
+				Assert.assertEquals("Class not found: java/lang/Object", e.getMessage());
+			}
+			try {
+				repository.getAncestors(stringClass).iterator().next();
+				Assert.fail();
+			} catch (UncheckedIOException e) {
+				Assert.assertTrue(e.getCause().getMessage().startsWith("Class not found"));
+			}
+		} finally {
+			jar.delete();
+		}
+	}
+
+	@Test
+	public void testDirectorySource() throws IOException {
+		final Path directory = Files.createTempDirectory("classes");
+		final Path file = directory.resolve("java/lang/String.class");
+		try {
+			Files.createDirectories(file.getParent());
+			Files.write(file, TestResources.readResource("/String.class"));
+			final DirectoryClassSource source = new DirectoryClassSource(directory);
+			Assert.assertNull(source.find("java/lang/Object"));
+			try (ClassRepository repository = new ClassRepository(Collections.singletonList(source))) {
+				Assert.assertEquals("String.java", repository.get("java/lang/String").getSourceFile());
+			}
+		} finally {
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(file.getParent());
+			Files.deleteIfExists(file.getParent().getParent());
+			Files.deleteIfExists(directory);
+		}
+	}
+
+	private File createJar() throws IOException {
+		final File jar = File.createTempFile("classes", ".jar");
+		try (JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(jar))) {
+			outputStream.putNextEntry(new ZipEntry("java/lang/String.class"));
+			outputStream.write(TestResources.readResource("/String.class"));
+			outputStream.closeEntry();
+
+			final byte[] byteClass = TestResources.readResource("/Byte.class");
+			final CRC32 crc = new CRC32();
+			crc.update(byteClass);
+			final ZipEntry stored = new ZipEntry("java/lang/Byte.class");
+			stored.setMethod(ZipEntry.STORED);
+			stored.setSize(byteClass.length);
+			stored.setCompressedSize(byteClass.length);
+			stored.setCrc(crc.getValue());
+			outputStream.putNextEntry(stored);
+			outputStream.write(byteClass);
+			outputStream.closeEntry();
+		}
+		return jar;
+	}
+}
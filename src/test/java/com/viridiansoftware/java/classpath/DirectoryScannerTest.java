@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.classpath;
+
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.ParseOptions;
+import com.viridiansoftware.java.TestResources;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class DirectoryScannerTest {
+
+	@Test
+	public void testScanDirectoryTree() throws IOException {
+		final Path root = Files.createTempDirectory("classes");
+		try {
+			Files.createDirectories(root.resolve("java/lang"));
+			Files.write(root.resolve("java/lang/String.class"), TestResources.readResource("/String.class"));
+			Files.write(root.resolve("java/lang/Byte.class"), TestResources.readResource("/Byte.class"));
+			Files.write(root.resolve("java/lang/README.txt"), "not a class".getBytes("UTF-8"));
+			for (int i = 0; i < 40; i++) {
+				Files.createDirectories(root.resolve("copies/" + i));
+				Files.write(root.resolve("copies/" + i + "/Byte.class"), TestResources.readResource("/Byte.class"));
+			}
+
+			final List<String> names = Collections.synchronizedList(new ArrayList<String>());
+			final ParseStatistics statistics;
+			try (DirectoryScanner scanner = new DirectoryScanner(2, 1, ParseOptions.DEFAULT)) {
+				statistics = scanner.scan(root, new ClassFileHandler() {
+					@Override
+					public void onClassFile(String source, String entryName, ClassFile classFile) {
+						names.add(entryName + "=" + classFile.getThisClass().getName());
+					}
+				});
+			}
+			Assert.assertEquals(42, statistics.getClasses());
+			Assert.assertEquals(42, names.size());
+			Assert.assertTrue(names.contains("java/lang/String.class=java/lang/String"));
+			Assert.assertTrue(names.contains("copies/39/Byte.class=java/lang/Byte"));
+		} finally {
+			delete(root);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidClassFile() throws IOException {
+		final Path root = Files.createTempDirectory("classes");
+		try {
+			Files.write(root.resolve("Invalid.class"), "not a class".getBytes("UTF-8"));
+			try (DirectoryScanner scanner = new DirectoryScanner()) {
+				scanner.scan(root, new ClassFileHandler() {
+					@Override
+					public void onClassFile(String source, String entryName, ClassFile classFile) {
+					}
+				});
+			}
+		} finally {
+			delete(root);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class, timeout = 10000)
+	public void testScanAfterClose() throws IOException {
+		final Path root = Files.createTempDirectory("classes");
+		try {
+			Files.write(root.resolve("Byte.class"), TestResources.readResource("/Byte.class"));
+			final DirectoryScanner scanner = new DirectoryScanner();
+			scanner.close();
+			scanner.scan(root, new ClassFileHandler() {
+				@Override
+				public void onClassFile(String source, String entryName, ClassFile classFile) {
+				}
+			});
+		} finally {
+			delete(root);
+		}
+	}
+
+	private void delete(Path root) throws IOException {
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
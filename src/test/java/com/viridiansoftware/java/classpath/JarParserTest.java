@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.classpath;
+
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.TestResources;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+public class JarParserTest {
+
+	@Test
+	public void testParseDeflatedAndStoredEntries() throws IOException {
+		final File jar = createJar();
+		try {
+			final List<String> names = Collections.synchronizedList(new ArrayList<String>());
+			final ParseStatistics statistics = new JarParser().parse(jar.toPath(), new ClassFileHandler() {
+				@Override
+				public void onClassFile(String source, String entryName, ClassFile classFile) {
+					Assert.assertEquals(jar.toString(), source);
+					Assert.assertEquals(entryName, classFile.getThisClass().getName() + ".class");
+					names.add(entryName);
+				}
+			});
+			Collections.sort(names);
+			Assert.assertEquals("[java/lang/Byte.class, java/lang/String.class]", names.toString());
+			Assert.assertEquals(2, statistics.getClasses());
+			Assert.assertEquals(TestResources.readResource("/Byte.class").length + TestResources.readResource("/String.class").length,
+					statistics.getClassBytes());
+		} finally {
+			jar.delete();
+		}
+	}
+
+	@Test
+	public void testParseOrdered() throws IOException {
+		final File jar = createJar();
+		try {
+			final List<String> names = new ArrayList<String>();
+			new JarParser().parseOrdered(jar.toPath(), new ClassFileHandler() {
+				@Override
+				public void onClassFile(String source, String entryName, ClassFile classFile) {
+					names.add(classFile.getThisClass().getName());
+				}
+			});
+			Assert.assertEquals("[java/lang/String, java/lang/Byte]", names.toString());
+		} finally {
+			jar.delete();
+		}
+	}
+
+	@Test
+	public void testFilter() throws IOException {
+		final File jar = createJar();
+		try {
+			final List<String> filtered = Collections.synchronizedList(new ArrayList<String>());
+			final List<String> names = Collections.synchronizedList(new ArrayList<String>());
+			final ParseStatistics statistics = new JarParser().parse(jar.toPath(), new ClassFilter() {
+				@Override
+				public boolean accept(String entryName, ByteBuffer classBytes) {
+					Assert.assertEquals(0xCAFEBABE, classBytes.getInt(classBytes.position()));
+					filtered.add(entryName);
+					return entryName.startsWith("java/lang/S");
+				}
+			}, new ClassFileHandler() {
+				@Override
+				public void onClassFile(String source, String entryName, ClassFile classFile) {
+					names.add(entryName);
+				}
+			});
+			Assert.assertEquals(2, filtered.size());
+			Assert.assertEquals("[java/lang/String.class]", names.toString());
+			Assert.assertEquals(1, statistics.getClasses());
+			Assert.assertEquals(TestResources.readResource("/String.class").length, statistics.getClassBytes());
+		} finally {
+			jar.delete();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidJar() throws IOException {
+		final File file = File.createTempFile("invalid", ".jar");
+		try {
+			try (FileOutputStream outputStream = new FileOutputStream(file)) {
+				outputStream.write(TestResources.readResource("/Byte.class"));
+			}
+			new JarParser().parse(file.toPath(), new ClassFileHandler() {
+				@Override
+				public void onClassFile(String source, String entryName, ClassFile classFile) {
+				}
+			});
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testStoredEntryWithInconsistentSizes() throws IOException {
+		final File jar = createJar();
+		try {
+			//Make the uncompressed size of the stored entry in the central directory larger than its compressed size
+			final byte[] bytes = Files.readAllBytes(jar.toPath());
+			final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+			for (int i = bytes.length - 46; i >= 0; i--) {
+				if (buffer.getInt(i) == 0x02014b50 && buffer.getShort(i + 10) == ZipEntry.STORED) {
+					buffer.putInt(i + 24, buffer.getInt(i + 20) + 100000);
+				}
+			}
+			Files.write(jar.toPath(), bytes);
+			new JarParser().parse(jar.toPath(), new ClassFileHandler() {
+				@Override
+				public void onClassFile(String source, String entryName, ClassFile classFile) {
+				}
+			});
+		} finally {
+			jar.delete();
+		}
+	}
+
+	private File createJar() throws IOException {
+		final File jar = File.createTempFile("classes", ".jar");
+		try (JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(jar))) {
+			outputStream.putNextEntry(new ZipEntry("java/lang/String.class"));
+			outputStream.write(TestResources.readResource("/String.class"));
+			outputStream.closeEntry();
+
+			outputStream.putNextEntry(new ZipEntry("README.txt"));
+			outputStream.write("not a class".getBytes("UTF-8"));
+			outputStream.closeEntry();
+
+			final byte[] byteClass = TestResources.readResource("/Byte.class");
+			final CRC32 crc = new CRC32();
+			crc.update(byteClass);
+			final ZipEntry stored = new ZipEntry("java/lang/Byte.class");
+			stored.setMethod(ZipEntry.STORED);
+			stored.setSize(byteClass.length);
+			stored.setCompressedSize(byteClass.length);
+			stored.setCrc(crc.getValue());
+			outputStream.putNextEntry(stored);
+			outputStream.write(byteClass);
+			outputStream.closeEntry();
+		}
+		return jar;
+	}
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.classpath;
+
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.ParseOptions;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class JrtScannerTest {
+
+	@Test
+	public void testScanJavaBase() throws IOException {
+		Assume.assumeTrue(!System.getProperty("java.specification.version").startsWith("1."));
+
+		final List<String> classes = Collections.synchronizedList(new ArrayList<String>());
+		try (DirectoryScanner directoryScanner = new DirectoryScanner(2, 8,
+				ParseOptions.DEFAULT.withLevel(ParseOptions.Level.HEADER_ONLY))) {
+			final JrtScanner scanner = new JrtScanner(directoryScanner);
+			Assert.assertTrue(scanner.getModules().contains("java.base"));
+
+			final ParseStatistics statistics = scanner.scan(Collections.singletonList("java.base"), new ClassFileHandler() {
+				@Override
+				public void onClassFile(String source, String entryName, ClassFile classFile) {
+					Assert.assertEquals("java.base", source);
+					classes.add(entryName);
+				}
+			});
+			Assert.assertEquals(classes.size(), statistics.getClasses());
+		}
+		Assert.assertTrue(classes.contains("java/lang/String.class"));
+		Assert.assertTrue(classes.contains("module-info.class"));
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownModule() throws IOException {
+		Assume.assumeTrue(!System.getProperty("java.specification.version").startsWith("1."));
+
+		try (DirectoryScanner directoryScanner = new DirectoryScanner()) {
+			new JrtScanner(directoryScanner).scan(Collections.singletonList("no.such.module"), new ClassFileHandler() {
+				@Override
+				public void onClassFile(String source, String entryName, ClassFile classFile) {
+				}
+			});
+		}
+	}
+}
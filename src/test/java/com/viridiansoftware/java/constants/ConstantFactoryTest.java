@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.constants;
+
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.ParseOptions;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class ConstantFactoryTest {
+
+	@Test
+	public void testCanonicalInstances() {
+		final ConstantFactory constantFactory = new ConstantFactory();
+		Assert.assertSame(constantFactory.getConstantClass("java/lang/Object"),
+				constantFactory.getConstantClass(new String("java/lang/Object")));
+		Assert.assertSame(constantFactory.getConstantNameAndType("<init>", "()V"),
+				constantFactory.getConstantNameAndType(new String("<init>"), new String("()V")));
+		Assert.assertNotSame(constantFactory.getConstantNameAndType("<init>", "()V"),
+				constantFactory.getConstantNameAndType("<init>", "(I)V"));
+	}
+
+	@Test
+	public void testValueEquality() {
+		Assert.assertEquals(new ConstantClass("java/lang/Object"), new ConstantClass("java/lang/Object"));
+		Assert.assertEquals(new ConstantClass("java/lang/Object").hashCode(), new ConstantClass("java/lang/Object").hashCode());
+		Assert.assertFalse(new ConstantClass("java/lang/Object").equals(new ConstantClass("java/lang/String")));
+		Assert.assertEquals(new ConstantNameAndType("<init>", "()V"), new ConstantNameAndType("<init>", "()V"));
+		Assert.assertFalse(new ConstantNameAndType("<init>", "()V").equals(new ConstantNameAndType("<init>", "(I)V")));
+	}
+
+	@Test
+	public void testSharedAcrossClassFiles() throws IOException {
+		final ConstantFactory constantFactory = new ConstantFactory();
+		final ParseOptions options = ParseOptions.DEFAULT.withConstantFactory(constantFactory);
+		final ClassFile stringClass = new ClassFile(getClass().getResourceAsStream("/String.class"), options);
+		final ClassFile byteClass = new ClassFile(getClass().getResourceAsStream("/Byte.class"), options);
+		final ClassFile lazyStringClass = new ClassFile(getClass().getResourceAsStream("/String.class"),
+				options.withLazyConstantPool(true));
+		Assert.assertSame(stringClass.getSuperClass(), constantFactory.getConstantClass("java/lang/Object"));
+		Assert.assertSame(stringClass.getThisClass(), lazyStringClass.getThisClass());
+		for (ConstantClass constantClass : byteClass.getConstantPool().getConstantClasses()) {
+			Assert.assertSame(constantClass, constantFactory.getConstantClass(constantClass.getName()));
+		}
+	}
+}
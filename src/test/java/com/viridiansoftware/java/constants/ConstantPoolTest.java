@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.constants;
+
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.ParseOptions;
+import com.viridiansoftware.java.attributes.AttributeName;
+import com.viridiansoftware.java.TestResources;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class ConstantPoolTest {
+
+	@Test
+	public void testLazyPoolMatchesEagerPool() throws IOException {
+		final byte[] classBytes = TestResources.readResource("/String.class");
+		final ConstantPool eagerPool = new ClassFile(classBytes).getConstantPool();
+		final ConstantPool lazyPool = new ClassFile(classBytes, ParseOptions.DEFAULT.withLazyConstantPool(true)).getConstantPool();
+
+		Assert.assertEquals(eagerPool.length(), lazyPool.length());
+		for (int i = lazyPool.length() - 1; i >= 0; i--) {
+			Assert.assertEquals("Index " + i, describe(eagerPool.get(i)), describe(lazyPool.get(i)));
+			Assert.assertEquals(eagerPool.getTag(i), lazyPool.getTag(i));
+		}
+		Assert.assertEquals(eagerPool.getConstantClasses().size(), lazyPool.getConstantClasses().size());
+		Assert.assertEquals(eagerPool.getConstantMethodRefs().size(), lazyPool.getConstantMethodRefs().size());
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testStreamConstructor() throws IOException {
+		final byte[] classBytes = TestResources.readResource("/String.class");
+		final ClassFile classFile = new ClassFile(classBytes);
+		final DataInputStream input = new DataInputStream(new ByteArrayInputStream(classBytes, 8, classBytes.length - 8));
+		final ConstantPool streamPool = new ConstantPool(classFile.getMajorVersion(), classFile.getMinorVersion(), input);
+
+		Assert.assertEquals(classFile.getConstantPool().length(), streamPool.length());
+		for (int i = 0; i < streamPool.length(); i++) {
+			Assert.assertEquals("Index " + i, describe(classFile.getConstantPool().get(i)), describe(streamPool.get(i)));
+		}
+		//The stream is left at the access flags following the pool
+		Assert.assertEquals(classFile.getAccessFlags(), input.readUnsignedShort());
+	}
+
+	@Test
+	public void testScratchReuse() throws IOException {
+		final ConstantPool.Scratch scratch = new ConstantPool.Scratch();
+		final ParseOptions lazy = ParseOptions.DEFAULT.withLazyConstantPool(true);
+		for (String resource : new String[] {"/String.class", "/Byte.class", "/String.class"}) {
+			final byte[] classBytes = TestResources.readResource(resource);
+			final ClassFile classFile = new ClassFile(classBytes);
+			final ConstantPool expected = classFile.getConstantPool();
+			for (ParseOptions options : new ParseOptions[] {lazy, lazy.withSymbolTable(new SymbolTable())}) {
+				final ByteBuffer input = ByteBuffer.wrap(classBytes, 8, classBytes.length - 8).slice();
+				final ConstantPool pool = new ConstantPool(classFile.getMajorVersion(), classFile.getMinorVersion(), input, options, scratch);
+				Assert.assertEquals(expected.length(), pool.length());
+				for (int i = 0; i < pool.length(); i++) {
+					Assert.assertEquals(resource + " index " + i, describe(expected.get(i)), describe(pool.get(i)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testScratchArraysReusedForSameClass() throws IOException {
+		//The same class read repeatedly, as by a ClassFileReader, must not grow any array of the scratch
+		final byte[] classBytes = TestResources.readResource("/String.class");
+		final ClassFile classFile = new ClassFile(classBytes);
+		final ConstantPool.Scratch scratch = new ConstantPool.Scratch();
+		final ParseOptions options = ParseOptions.DEFAULT.withLazyConstantPool(true);
+		Object[] arrays = null;
+		for (int round = 0; round < 3; round++) {
+			final ByteBuffer input = ByteBuffer.wrap(classBytes, 8, classBytes.length - 8).slice();
+			final ConstantPool pool = new ConstantPool(classFile.getMajorVersion(), classFile.getMinorVersion(), input, options, scratch);
+			for (int i = 1; i < pool.length(); i++) {
+				if (pool.getTag(i) == 1) {
+					final AttributeName name = pool.getAttributeName(i);
+					Assert.assertEquals(name != null, AttributeName.of((String) pool.get(i)) != null);
+				}
+			}
+			final Object[] used = {scratch.constantPool, scratch.tags, scratch.offsets, scratch.attributeNames, scratch.chars};
+			if (arrays != null) {
+				for (int i = 0; i < used.length; i++) {
+					Assert.assertSame(arrays[i], used[i]);
+				}
+			}
+			arrays = used;
+		}
+		Assert.assertNotNull(scratch.chars);
+	}
+
+	@Test
+	public void testLazyPoolPrimitiveAccess() throws IOException {
+		final byte[] classBytes = TestResources.readResource("/Byte.class");
+		final ConstantPool lazyPool = new ClassFile(classBytes, ParseOptions.DEFAULT.withLazyConstantPool(true)).getConstantPool();
+		final ConstantPool eagerPool = new ClassFile(classBytes).getConstantPool();
+
+		boolean foundInteger = false;
+		for (int i = 1; i < lazyPool.length(); i++) {
+			if (lazyPool.getTag(i) == 3) {
+				Assert.assertEquals(((Integer) eagerPool.get(i)).intValue(), lazyPool.getInt(i));
+				foundInteger = true;
+			}
+		}
+		Assert.assertTrue(foundInteger);
+	}
+
+	@Test
+	public void testForwardReferences() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream output = new DataOutputStream(bytes);
+		output.writeShort(8);
+		output.writeByte(15); //#1 MethodHandle REF_invokeVirtual -> #2
+		output.writeByte(5);
+		output.writeShort(2);
+		output.writeByte(10); //#2 Methodref -> #3, #4
+		output.writeShort(3);
+		output.writeShort(4);
+		output.writeByte(7); //#3 Class -> #5
+		output.writeShort(5);
+		output.writeByte(12); //#4 NameAndType -> #6, #7
+		output.writeShort(6);
+		output.writeShort(7);
+		output.writeByte(1); //#5
+		output.writeUTF("com/example/Foo");
+		output.writeByte(1); //#6
+		output.writeUTF("bar");
+		output.writeByte(1); //#7
+		output.writeUTF("()V");
+
+		final ConstantPool constantPool = new ConstantPool(52, 0, ByteBuffer.wrap(bytes.toByteArray()));
+		final ConstantMethodHandle methodHandle = (ConstantMethodHandle) constantPool.get(1);
+		Assert.assertEquals("bar", methodHandle.getName());
+		Assert.assertSame(constantPool.get(3), ((ConstantMethodRef) constantPool.get(2)).getConstantClass());
+		Assert.assertEquals("com/example/Foo", ((ConstantClass) constantPool.get(3)).getName());
+	}
+
+	@Test
+	public void testInvalidMethodHandleKind() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream output = new DataOutputStream(bytes);
+		output.writeShort(6);
+		output.writeByte(15); //#1 MethodHandle with unknown kind -> #2
+		output.writeByte(12);
+		output.writeShort(2);
+		output.writeByte(9); //#2 Fieldref -> #3, #5
+		output.writeShort(3);
+		output.writeShort(5);
+		output.writeByte(7); //#3 Class -> #4
+		output.writeShort(4);
+		output.writeByte(1); //#4
+		output.writeUTF("x");
+		output.writeByte(12); //#5 NameAndType -> #4, #4
+		output.writeShort(4);
+		output.writeShort(4);
+
+		try {
+			new ConstantPool(52, 0, ByteBuffer.wrap(bytes.toByteArray()));
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertEquals("Unknown method handle reference kind: 12", e.getMessage());
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testSelfReferencingEntry() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream output = new DataOutputStream(bytes);
+		output.writeShort(2);
+		output.writeByte(7); //#1 Class -> #1
+		output.writeShort(1);
+
+		new ConstantPool(52, 0, ByteBuffer.wrap(bytes.toByteArray()));
+	}
+
+	@Test
+	public void testContainsUtf8() throws IOException {
+		final ByteBuffer classBytes = ByteBuffer.wrap(TestResources.readResource("/String.class"));
+		classBytes.position(0);
+		Assert.assertTrue(ConstantPool.containsUtf8(classBytes, "Ljava/lang/Deprecated;"));
+		Assert.assertTrue(ConstantPool.containsUtf8(classBytes, "Lmissing/Annotation;", "java/lang/Object"));
+		Assert.assertFalse(ConstantPool.containsUtf8(classBytes, "Lmissing/Annotation;"));
+		Assert.assertFalse(ConstantPool.containsUtf8(classBytes, "java/lang/Objec"));
+		Assert.assertFalse(ConstantPool.containsUtf8(ByteBuffer.wrap(TestResources.readResource("/Byte.class")), "Ljava/lang/Deprecated;"));
+		Assert.assertEquals(0, classBytes.position());
+	}
+
+	private static String describe(Object value) {
+		if (value instanceof ConstantClass) {
+			return "Class " + ((ConstantClass) value).getName();
+		}
+		if (value instanceof ConstantNameAndType) {
+			return "NameAndType " + ((ConstantNameAndType) value).getName() + " " + ((ConstantNameAndType) value).getType();
+		}
+		if (value instanceof ConstantRef) {
+			return value.getClass().getSimpleName() + " " + ((ConstantRef) value).getClassName() + "." +
+					((ConstantRef) value).getName() + ((ConstantRef) value).getType();
+		}
+		if (value instanceof ConstantMethodHandle) {
+			return "MethodHandle " + ((ConstantMethodHandle) value).getKind() + " " + ((ConstantMethodHandle) value).getName();
+		}
+		if (value instanceof ConstantMethodType) {
+			return "MethodType " + ((ConstantMethodType) value).getDescriptor();
+		}
+		if (value instanceof ConstantInvokeDynamic) {
+			return "InvokeDynamic " + ((ConstantInvokeDynamic) value).getBootstrapMethodIndex() + " " +
+					describe(((ConstantInvokeDynamic) value).getNameAndType());
+		}
+		return String.valueOf(value);
+	}
+
+	@Test
+	public void testInvalidLazyConstant() throws IOException {
+		//Replace the first byte of the CONSTANT_Utf8 naming the class with a byte that is never valid modified UTF-8
+		final byte[] classBytes = TestResources.readResource("/Byte.class");
+		final byte[] name = "\u0001\u0000\u000ejava/lang/Byte".getBytes("UTF-8");
+		for (int i = 0; i < classBytes.length - name.length; i++) {
+			int j = 0;
+			while (j < name.length && classBytes[i + j] == name[j]) {
+				j++;
+			}
+			if (j == name.length) {
+				classBytes[i + 3] = (byte) 0xFF;
+			}
+		}
+		assertIOException(classBytes);
+	}
+
+	@Test
+	public void testConstantOfWrongType() throws IOException {
+		//Point this_class at a CONSTANT_Utf8 instead of a CONSTANT_Class
+		final byte[] classBytes = TestResources.readResource("/Byte.class");
+		final ByteBuffer input = ByteBuffer.wrap(classBytes, 8, classBytes.length - 8);
+		final ConstantPool constantPool = new ConstantPool(52, 0, input);
+		int utf8 = 1;
+		while (constantPool.getTag(utf8) != 1) {
+			utf8++;
+		}
+		input.putShort(input.position() + 2, (short) utf8);
+		assertIOException(classBytes);
+	}
+
+	private void assertIOException(byte[] classBytes) {
+		for (ParseOptions options : new ParseOptions[] {ParseOptions.DEFAULT, ParseOptions.DEFAULT.withLazyConstantPool(true)}) {
+			try {
+				new ClassFile(classBytes, options);
+				Assert.fail("Expected an IOException");
+			} catch (IOException e) {
+				//expected
+			}
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.constants;
+
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.ParseOptions;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SymbolTableTest {
+
+	@Test
+	public void testInternBytesAndStrings() throws IOException {
+		final SymbolTable symbolTable = new SymbolTable();
+		final int objectId = symbolTable.intern("java/lang/Object");
+		final ByteBuffer buffer = ByteBuffer.wrap("xxjava/lang/Objectxx".getBytes(StandardCharsets.UTF_8));
+		Assert.assertEquals(objectId, symbolTable.intern(buffer, 2, 16));
+		Assert.assertEquals("java/lang/Object", symbolTable.getSymbol(objectId));
+		Assert.assertEquals(objectId, symbolTable.getId("java/lang/Object"));
+		Assert.assertEquals(-1, symbolTable.getId("java/lang/Objec"));
+		Assert.assertEquals(1, symbolTable.size());
+
+		//Modified UTF-8 encodes NUL as two bytes
+		final String withNul = "a\u0000\u00e9\u4e2d";
+		final byte[] encoded = {'a', (byte) 0xC0, (byte) 0x80, (byte) 0xC3, (byte) 0xA9, (byte) 0xE4, (byte) 0xB8, (byte) 0xAD};
+		final int nulId = symbolTable.intern(ByteBuffer.wrap(encoded), 0, encoded.length);
+		Assert.assertEquals(withNul, symbolTable.getSymbol(nulId));
+		Assert.assertEquals(nulId, symbolTable.intern(withNul));
+	}
+
+	@Test
+	public void testManySymbols() {
+		final SymbolTable symbolTable = new SymbolTable();
+		for (int i = 0; i < 10000; i++) {
+			Assert.assertEquals(i, symbolTable.size());
+			symbolTable.intern("symbol" + i);
+		}
+		for (int i = 0; i < 10000; i++) {
+			final int id = symbolTable.getId("symbol" + i);
+			Assert.assertTrue(id < symbolTable.getIdLimit());
+			Assert.assertEquals("symbol" + i, symbolTable.getSymbol(id));
+		}
+	}
+
+	@Test
+	public void testSharedAcrossClassFiles() throws IOException {
+		final SymbolTable symbolTable = new SymbolTable();
+		final ParseOptions options = ParseOptions.DEFAULT.withSymbolTable(symbolTable);
+		final ClassFile stringClass = new ClassFile(getClass().getResourceAsStream("/String.class"), options);
+		final ClassFile byteClass = new ClassFile(getClass().getResourceAsStream("/Byte.class"), options);
+		Assert.assertSame(stringClass.getMethod("toString").get(0).getName(), byteClass.getMethod("toString").get(0).getName());
+		Assert.assertSame(stringClass.getConstantPool().get(indexOf(stringClass.getConstantPool(), "()Ljava/lang/String;")),
+				byteClass.getConstantPool().get(indexOf(byteClass.getConstantPool(), "()Ljava/lang/String;")));
+
+		final int symbolId = symbolTable.getId("()Ljava/lang/String;");
+		Assert.assertEquals(symbolId, stringClass.getConstantPool().getSymbolId(indexOf(stringClass.getConstantPool(), "()Ljava/lang/String;")));
+		Assert.assertEquals(symbolId, byteClass.getConstantPool().getSymbolId(indexOf(byteClass.getConstantPool(), "()Ljava/lang/String;")));
+	}
+
+	@Test
+	public void testConcurrentInterning() throws InterruptedException {
+		final SymbolTable symbolTable = new SymbolTable();
+		final int[][] ids = new int[4][1000];
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final Thread[] threads = new Thread[ids.length];
+		for (int t = 0; t < threads.length; t++) {
+			final int[] result = ids[t];
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < result.length; i++) {
+							final byte[] bytes = ("symbol" + i).getBytes(StandardCharsets.UTF_8);
+							result[i] = symbolTable.intern(ByteBuffer.wrap(bytes), 0, bytes.length);
+						}
+					} catch (Throwable e) {
+						failure.set(e);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertNull(failure.get());
+		Assert.assertEquals(1000, symbolTable.size());
+		for (int t = 1; t < ids.length; t++) {
+			Assert.assertArrayEquals(ids[0], ids[t]);
+		}
+	}
+
+	private int indexOf(ConstantPool constantPool, String utf8) {
+		for (int i = 1; i < constantPool.length(); i++) {
+			if (constantPool.getTag(i) == 1 && utf8.equals(constantPool.get(i))) {
+				return i;
+			}
+		}
+		throw new AssertionError(utf8 + " not found");
+	}
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.index;
+
+import com.viridiansoftware.java.TestResources;
+import com.viridiansoftware.java.classpath.JarParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+public class AnnotationIndexTest {
+
+	@Test
+	public void testIndexClassBytes() throws IOException {
+		final AnnotationIndex.Builder builder = AnnotationIndex.builder("java/lang/Deprecated", "Ljava/lang/FunctionalInterface;");
+		builder.add(ByteBuffer.wrap(TestResources.readResource("/String.class")));
+		builder.add(ByteBuffer.wrap(TestResources.readResource("/Byte.class")));
+		Assert.assertEquals(2, builder.getScannedCount());
+		//Byte does not refer to either annotation and is never parsed
+		Assert.assertEquals(1, builder.getParsedCount());
+
+		final AnnotationIndex index = builder.build();
+		Assert.assertEquals(Arrays.asList("java/lang/Deprecated", "java/lang/FunctionalInterface"),
+				Arrays.asList(index.getAnnotationTypes().toArray()));
+		final List<AnnotatedElement> deprecated = index.getAnnotated("java/lang/Deprecated");
+		Assert.assertFalse(deprecated.isEmpty());
+		for (AnnotatedElement element : deprecated) {
+			Assert.assertEquals("java/lang/String", element.getClassName());
+			Assert.assertEquals(AnnotatedElement.Kind.METHOD, element.getKind());
+			Assert.assertEquals("Ljava/lang/Deprecated;", element.getAnnotation().getTypeDescriptor());
+		}
+		Assert.assertTrue(deprecated.toString().contains("java/lang/String.getBytes(II[BI)V"));
+		Assert.assertEquals(deprecated, index.getAnnotated("Ljava/lang/Deprecated;"));
+		Assert.assertEquals(Arrays.asList("java/lang/String"), index.getAnnotatedClasses("java/lang/Deprecated"));
+		Assert.assertTrue(index.getAnnotated("java/lang/FunctionalInterface").isEmpty());
+	}
+
+	@Test
+	public void testIndexJars() throws IOException {
+		final File first = createJar("/String.class");
+		final File second = createJar("/Byte.class");
+		try {
+			final AnnotationIndex.Builder builder = AnnotationIndex.builder("java/lang/Deprecated");
+			builder.addJars(new JarParser(), Arrays.asList(first.toPath(), second.toPath()));
+			Assert.assertEquals(2, builder.getScannedCount());
+			Assert.assertEquals(1, builder.getParsedCount());
+			Assert.assertEquals(Arrays.asList("java/lang/String"), builder.build().getAnnotatedClasses("java/lang/Deprecated"));
+		} finally {
+			first.delete();
+			second.delete();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnindexedType() {
+		AnnotationIndex.builder("java/lang/Deprecated").build().getAnnotated("java/lang/Override");
+	}
+
+	private File createJar(String resource) throws IOException {
+		final File jar = File.createTempFile("annotations", ".jar");
+		try (JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(jar))) {
+			outputStream.putNextEntry(new ZipEntry(resource.substring(1)));
+			outputStream.write(TestResources.readResource(resource));
+			outputStream.closeEntry();
+		}
+		return jar;
+	}
+}
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.index;
+
+import com.viridiansoftware.java.TestResources;
+import com.viridiansoftware.java.classpath.JarParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+public class ReferenceIndexTest {
+
+	@Test
+	public void testBloomFilter() {
+		final String value = "a\u0000\u00e9\u4e2d";
+		final byte[] encoded = {'a', (byte) 0xC0, (byte) 0x80, (byte) 0xC3, (byte) 0xA9, (byte) 0xE4, (byte) 0xB8, (byte) 0xAD};
+		Assert.assertEquals(BloomFilter.hash(value), BloomFilter.hash(ByteBuffer.wrap(encoded), 0, encoded.length));
+
+		final BloomFilter filter = new BloomFilter(1000);
+		for (int i = 0; i < 1000; i++) {
+			filter.add("added" + i);
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertTrue(filter.mightContain("added" + i));
+			if (filter.mightContain("missing" + i)) {
+				falsePositives++;
+			}
+		}
+		Assert.assertTrue(falsePositives < 30);
+	}
+
+	@Test
+	public void testBuildAndQuery() throws IOException {
+		final File jar = createJar();
+		try {
+			final ReferenceIndex index = ReferenceIndex.build(new JarParser(), jar.toPath());
+			Assert.assertEquals(Arrays.asList("java/lang/Byte", "java/lang/String"), index.getClassNames());
+			Assert.assertTrue(index.mightReference("java/lang/Object"));
+			Assert.assertEquals(Arrays.asList("java/lang/Byte", "java/lang/String"), index.findReferences("java/lang/Comparable"));
+			Assert.assertTrue(index.getCandidates("Ljava/lang/Deprecated;").contains("java/lang/String"));
+			Assert.assertEquals(Collections.singletonList("java/lang/String"), index.findReferences("Ljava/lang/Deprecated;"));
+			Assert.assertEquals(Collections.emptyList(), index.findReferences("sun/misc/Unsafe"));
+			int candidates = 0;
+			for (int i = 0; i < 100; i++) {
+				candidates += index.getCandidates("missing/Class" + i).size();
+			}
+			Assert.assertTrue(candidates < 10);
+		} finally {
+			jar.delete();
+		}
+	}
+
+	@Test
+	public void testSavedNextToJar() throws IOException {
+		final File jar = createJar();
+		final Path file = ReferenceIndex.getIndexPath(jar.toPath());
+		try {
+			final ReferenceIndex built = ReferenceIndex.open(new JarParser(), jar.toPath());
+			Assert.assertTrue(Files.exists(file));
+			final long written = Files.getLastModifiedTime(file).toMillis();
+
+			final ReferenceIndex saved = ReferenceIndex.read(jar.toPath(), file);
+			Assert.assertEquals(built.getClassNames(), saved.getClassNames());
+			Assert.assertEquals(built.getCandidates("java/lang/Number"), saved.getCandidates("java/lang/Number"));
+			Assert.assertEquals(Collections.singletonList("java/lang/Byte"), saved.findReferences("java/lang/Number"));
+			Assert.assertEquals(built.getClassNames(), ReferenceIndex.open(new JarParser(), jar.toPath()).getClassNames());
+			Assert.assertEquals(written, Files.getLastModifiedTime(file).toMillis());
+
+			//A changed jar is indexed again
+			Files.setLastModifiedTime(file, FileTime.fromMillis(written - 60000));
+			Files.setLastModifiedTime(jar.toPath(), FileTime.fromMillis(System.currentTimeMillis() + 60000));
+			ReferenceIndex.open(new JarParser(), jar.toPath());
+			Assert.assertTrue(Files.getLastModifiedTime(file).toMillis() > written - 60000);
+		} finally {
+			Files.deleteIfExists(file);
+			jar.delete();
+		}
+	}
+
+	@Test
+	public void testDamagedIndexIsRebuilt() throws IOException {
+		final File jar = createJar();
+		final Path file = ReferenceIndex.getIndexPath(jar.toPath());
+		try {
+			final ReferenceIndex built = ReferenceIndex.open(new JarParser(), jar.toPath());
+			final byte[] data = Files.readAllBytes(file);
+
+			//Truncated in the middle of a filter
+			Files.write(file, Arrays.copyOf(data, data.length / 2));
+			Assert.assertNull(ReferenceIndex.read(jar.toPath(), file));
+			Assert.assertEquals(built.getClassNames(), ReferenceIndex.open(new JarParser(), jar.toPath()).getClassNames());
+			Assert.assertArrayEquals(data, Files.readAllBytes(file));
+
+			//A jar filter length far beyond the file, which must not be allocated
+			final byte[] damaged = data.clone();
+			ByteBuffer.wrap(damaged).putInt(20, Integer.MAX_VALUE);
+			Files.write(file, damaged);
+			Assert.assertNull(ReferenceIndex.read(jar.toPath(), file));
+			Assert.assertEquals(built.getClassNames(), ReferenceIndex.open(new JarParser(), jar.toPath()).getClassNames());
+			Assert.assertArrayEquals(data, Files.readAllBytes(file));
+		} finally {
+			Files.deleteIfExists(file);
+			jar.delete();
+		}
+	}
+
+	private File createJar() throws IOException {
+		final File jar = File.createTempFile("references", ".jar");
+		try (JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(jar))) {
+			for (String resource : new String[] {"/String.class", "/Byte.class"}) {
+				outputStream.putNextEntry(new ZipEntry("java/lang" + resource));
+				outputStream.write(TestResources.readResource(resource));
+				outputStream.closeEntry();
+			}
+		}
+		return jar;
+	}
+}
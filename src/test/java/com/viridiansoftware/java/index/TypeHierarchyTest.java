@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.index;
+
+import com.viridiansoftware.java.ClassAccessFlag;
+import com.viridiansoftware.java.ClassFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+public class TypeHierarchyTest {
+	private static final int INTERFACE = ClassAccessFlag.INTERFACE.getMask() | ClassAccessFlag.ABSTRACT.getMask();
+
+	@Test
+	public void testSubtypeQueries() {
+		final TypeHierarchy hierarchy = TypeHierarchy.builder()
+				.add("test/A", 0, "java/lang/Object", "test/I")
+				.add("test/B", 0, "test/A")
+				.add("test/I", INTERFACE, "java/lang/Object")
+				.add("test/J", INTERFACE, "java/lang/Object", "test/I")
+				.add("test/C", 0, "java/lang/Object", "test/J")
+				.add("test/D", 0, "test/C")
+				.add("java/lang/Object", 0, null)
+				.build();
+		Assert.assertEquals(7, hierarchy.size());
+		Assert.assertEquals(-1, hierarchy.getId("test/Missing"));
+		final int a = hierarchy.getId("test/A");
+		Assert.assertEquals("test/A", hierarchy.getName(a));
+		Assert.assertTrue(hierarchy.isInterface(hierarchy.getId("test/J")));
+		Assert.assertFalse(hierarchy.isInterface(a));
+		Assert.assertEquals(hierarchy.getId("java/lang/Object"), hierarchy.getSuperClass(a));
+		Assert.assertEquals(-1, hierarchy.getSuperClass(hierarchy.getId("java/lang/Object")));
+
+		Assert.assertTrue(hierarchy.isSubtypeOf("test/B", "test/B"));
+		Assert.assertTrue(hierarchy.isSubtypeOf("test/B", "test/A"));
+		Assert.assertTrue(hierarchy.isSubtypeOf("test/B", "test/I"));
+		Assert.assertTrue(hierarchy.isSubtypeOf("test/B", "java/lang/Object"));
+		Assert.assertTrue(hierarchy.isSubtypeOf("test/D", "test/I"));
+		Assert.assertTrue(hierarchy.isSubtypeOf("test/J", "test/I"));
+		Assert.assertFalse(hierarchy.isSubtypeOf("test/A", "test/B"));
+		Assert.assertFalse(hierarchy.isSubtypeOf("test/I", "test/J"));
+		Assert.assertFalse(hierarchy.isSubtypeOf("test/B", "test/J"));
+		Assert.assertFalse(hierarchy.isSubtypeOf("test/B", "test/Missing"));
+
+		Assert.assertEquals(new HashSet<String>(Arrays.asList("test/B")), new HashSet<String>(hierarchy.getSubtypes("test/A")));
+		Assert.assertEquals(new HashSet<String>(Arrays.asList("test/A", "test/B", "test/J", "test/C", "test/D")),
+				new HashSet<String>(hierarchy.getSubtypes("test/I")));
+		Assert.assertEquals(6, hierarchy.getSubtypes("java/lang/Object").size());
+		Assert.assertTrue(hierarchy.getSubtypes("test/D").isEmpty());
+		Assert.assertTrue(hierarchy.getSubtypes("test/Missing").isEmpty());
+	}
+
+	@Test
+	public void testReferencedTypes() throws IOException {
+		final TypeHierarchy hierarchy = TypeHierarchy.builder()
+				.add(new ClassFile(getClass().getResourceAsStream("/String.class")))
+				.add(new ClassFile(getClass().getResourceAsStream("/Byte.class")))
+				.build();
+		final int object = hierarchy.getId("java/lang/Object");
+		final int comparable = hierarchy.getId("java/lang/Comparable");
+		Assert.assertTrue(object >= 0);
+		Assert.assertFalse(hierarchy.isDeclared(object));
+		Assert.assertTrue(hierarchy.isDeclared(hierarchy.getId("java/lang/String")));
+		Assert.assertTrue(hierarchy.isSubtypeOf("java/lang/Byte", "java/lang/Number"));
+		Assert.assertTrue(hierarchy.isSubtypeOf("java/lang/Byte", "java/lang/Comparable"));
+		Assert.assertTrue(hierarchy.isSubtypeOf("java/lang/String", "java/lang/CharSequence"));
+		Assert.assertFalse(hierarchy.isSubtypeOf("java/lang/String", "java/lang/Number"));
+
+		final List<String> comparables = hierarchy.getSubtypes("java/lang/Comparable");
+		Assert.assertEquals(new HashSet<String>(Arrays.asList("java/lang/String", "java/lang/Byte")), new HashSet<String>(comparables));
+		//The super class of java/lang/Number was not added, so Byte is not known to extend Object
+		Assert.assertArrayEquals(new int[] {hierarchy.getId("java/lang/String")}, hierarchy.getSubtypes(object));
+		Assert.assertFalse(hierarchy.isSubtypeOf("java/lang/Byte", "java/lang/Object"));
+		Assert.assertTrue(Arrays.binarySearch(hierarchy.getAllInterfaces(hierarchy.getId("java/lang/Byte")), comparable) >= 0);
+	}
+
+	@Test
+	public void testSuperClassCycle() {
+		final TypeHierarchy hierarchy = TypeHierarchy.builder()
+				.add("test/A", 0, "test/B")
+				.add("test/B", 0, "test/A")
+				.build();
+		Assert.assertEquals(2, hierarchy.size());
+		Assert.assertTrue(hierarchy.isSubtypeOf("test/A", "test/A"));
+		Assert.assertEquals(1, hierarchy.getSubtypes("test/A").size() + hierarchy.getSubtypes("test/B").size());
+	}
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.store;
+
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.ParseOptions;
+import com.viridiansoftware.java.TestResources;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.zip.CRC32;
+
+public class ClassFileDiskCacheTest {
+	private Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("class-cache");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		delete(directory);
+	}
+
+	@Test
+	public void testMissParsesAndHitReadsRecord() throws IOException {
+		final byte[] stringBytes = TestResources.readResource("/String.class");
+		final ClassFileDiskCache cache = new ClassFileDiskCache(directory, 1024 * 1024);
+		final StoredClass parsed = cache.get(ByteBuffer.wrap(stringBytes));
+		Assert.assertEquals(0, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+
+		final ClassFileDiskCache reopened = new ClassFileDiskCache(directory, 1024 * 1024);
+		Assert.assertEquals(cache.getCachedBytes(), reopened.getCachedBytes());
+		final StoredClass cached = reopened.get(ByteBuffer.wrap(stringBytes));
+		Assert.assertEquals(1, reopened.getHitCount());
+		Assert.assertEquals("java/lang/String", cached.getThisClass().getName());
+		Assert.assertEquals(parsed.getMethodCount(), cached.getMethodCount());
+		Assert.assertEquals(new ClassFile(stringBytes).getMethods().length, cached.getMethodCount());
+		Assert.assertEquals("String.java", cached.getSourceFile());
+	}
+
+	@Test
+	public void testHitReturnsClassFile() throws IOException {
+		final byte[] byteBytes = TestResources.readResource("/Byte.class");
+		final CRC32 crc = new CRC32();
+		crc.update(byteBytes);
+		final String key = ClassFileDiskCache.key(crc.getValue(), byteBytes.length);
+		final ClassFileDiskCache cache = new ClassFileDiskCache(directory, 1024 * 1024);
+		Assert.assertNull(cache.getClassFile(key, ParseOptions.DEFAULT));
+		cache.put(key, new ClassFile(byteBytes, ClassFileDiskCache.PARSE_OPTIONS));
+
+		final ClassFile cached = new ClassFileDiskCache(directory, 1024 * 1024).getClassFile(key,
+				ParseOptions.DEFAULT.withLazyConstantPool(true));
+		final ClassFile expected = new ClassFile(byteBytes);
+		Assert.assertEquals("java/lang/Byte", cached.getThisClass().getName());
+		Assert.assertEquals(byteBytes.length, cached.getLength());
+		Assert.assertArrayEquals(expected.getMethod("hashCode", "()I").getCode().getCodeData(),
+				cached.getMethod("hashCode", "()I").getCode().getCodeData());
+		Assert.assertEquals("java/lang/Byte", cache.get(key).getThisClass().getName());
+
+		final ClassFile compact = cache.getClassFile(key, ParseOptions.DEFAULT.withLazyConstantPool(true).withCompactMembers(true));
+		Assert.assertEquals(expected.getMethods().length, compact.getMethodTable().size());
+		Assert.assertArrayEquals(expected.getMethod("hashCode", "()I").getCode().getCodeData(),
+				compact.getMethod("hashCode", "()I").getCode().getCodeData());
+	}
+
+	@Test
+	public void testHitIsFasterThanParsingStream() throws IOException {
+		final byte[] stringBytes = TestResources.readResource("/String.class");
+		final ClassFileDiskCache cache = new ClassFileDiskCache(directory, 1024 * 1024);
+		final String key = ClassFileDiskCache.key(ByteBuffer.wrap(stringBytes));
+		cache.put(key, new ClassFile(stringBytes, ClassFileDiskCache.PARSE_OPTIONS));
+		final ParseOptions options = ParseOptions.DEFAULT.withLazyConstantPool(true).withCompactMembers(true);
+		//The best of several rounds, so that warm up and collections do not decide the result
+		long hit = Long.MAX_VALUE;
+		long parsed = Long.MAX_VALUE;
+		for (int round = 0; round < 10; round++) {
+			final long start = System.nanoTime();
+			for (int i = 0; i < 100; i++) {
+				Assert.assertNotNull(cache.getClassFile(key, options));
+			}
+			final long hitEnd = System.nanoTime();
+			for (int i = 0; i < 100; i++) {
+				new ClassFile(new ByteArrayInputStream(stringBytes));
+			}
+			hit = Math.min(hit, hitEnd - start);
+			parsed = Math.min(parsed, System.nanoTime() - hitEnd);
+		}
+		Assert.assertTrue("hit " + hit + "ns, parsed " + parsed + "ns", hit < parsed);
+	}
+
+	@Test
+	public void testReplacingEntryKeepsSize() throws IOException {
+		final ClassFileDiskCache cache = new ClassFileDiskCache(directory, 1024 * 1024);
+		final ClassFile byteClass = new ClassFile(TestResources.readResource("/Byte.class"));
+		cache.put("entry", byteClass);
+		final long entrySize = cache.getCachedBytes();
+		cache.put("entry", byteClass);
+		cache.put("entry", byteClass);
+		Assert.assertEquals(entrySize, cache.getCachedBytes());
+		Assert.assertEquals(entrySize, new ClassFileDiskCache(directory, 1024 * 1024).getCachedBytes());
+	}
+
+	@Test
+	public void testKeys() throws IOException {
+		final byte[] stringBytes = TestResources.readResource("/String.class");
+		final byte[] byteBytes = TestResources.readResource("/Byte.class");
+		Assert.assertEquals(ClassFileDiskCache.key(ByteBuffer.wrap(stringBytes)),
+				ClassFileDiskCache.key(ByteBuffer.wrap(stringBytes.clone())));
+		Assert.assertFalse(ClassFileDiskCache.key(ByteBuffer.wrap(stringBytes))
+				.equals(ClassFileDiskCache.key(ByteBuffer.wrap(byteBytes))));
+		final ByteBuffer positioned = ByteBuffer.wrap(stringBytes);
+		positioned.position(1);
+		Assert.assertFalse(ClassFileDiskCache.key(ByteBuffer.wrap(stringBytes)).equals(ClassFileDiskCache.key(positioned)));
+		Assert.assertEquals(1, positioned.position());
+
+		final CRC32 crc = new CRC32();
+		crc.update(byteBytes);
+		final String key = ClassFileDiskCache.key(crc.getValue(), byteBytes.length);
+		final ClassFileDiskCache cache = new ClassFileDiskCache(directory, 1024 * 1024);
+		Assert.assertNull(cache.get(key));
+		cache.put(key, new ClassFile(byteBytes, ClassFileDiskCache.PARSE_OPTIONS));
+		Assert.assertEquals("java/lang/Byte", cache.get(key).getThisClass().getName());
+	}
+
+	@Test
+	public void testDamagedEntryIsMiss() throws IOException {
+		final ClassFileDiskCache cache = new ClassFileDiskCache(directory, 1024 * 1024);
+		cache.put("damaged", new ClassFile(TestResources.readResource("/Byte.class")));
+		final Path file = directory.resolve("ed").resolve("damaged.rec");
+		Files.write(file, new byte[] {1, 2, 3});
+		Assert.assertNull(cache.get("damaged"));
+		Assert.assertFalse(Files.exists(file));
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() throws IOException {
+		final ClassFileDiskCache cache = new ClassFileDiskCache(directory, 1024 * 1024);
+		final ClassFile byteClass = new ClassFile(TestResources.readResource("/Byte.class"));
+		cache.put("first", byteClass);
+		final long entrySize = cache.getCachedBytes();
+		Files.setLastModifiedTime(directory.resolve("st").resolve("first.rec"),
+				FileTime.fromMillis(System.currentTimeMillis() - 60000));
+
+		final ClassFileDiskCache bounded = new ClassFileDiskCache(directory, entrySize * 3 - 1);
+		bounded.put("second", byteClass);
+		Assert.assertNotNull(bounded.get("first"));
+		Assert.assertNotNull(bounded.get("second"));
+		Files.setLastModifiedTime(directory.resolve("st").resolve("first.rec"),
+				FileTime.fromMillis(System.currentTimeMillis() - 60000));
+		bounded.put("third", byteClass);
+		Assert.assertNull(bounded.get("first"));
+		Assert.assertNotNull(bounded.get("second"));
+		Assert.assertNotNull(bounded.get("third"));
+		Assert.assertEquals(entrySize * 2, bounded.getCachedBytes());
+	}
+
+	private static void delete(Path path) throws IOException {
+		if (Files.isDirectory(path)) {
+			try (DirectoryStream<Path> children = Files.newDirectoryStream(path)) {
+				for (Path child : children) {
+					delete(child);
+				}
+			}
+		}
+		Files.deleteIfExists(path);
+	}
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright 2020 Viridian Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.viridiansoftware.java.store;
+
+import com.viridiansoftware.java.ClassFile;
+import com.viridiansoftware.java.FieldInfo;
+import com.viridiansoftware.java.MethodInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class OffHeapClassStoreTest {
+
+	@Test
+	public void testStoredClassMatchesClassFile() throws IOException {
+		final ClassFile stringClass = new ClassFile(getClass().getResourceAsStream("/String.class"));
+		final ClassFile byteClass = new ClassFile(getClass().getResourceAsStream("/Byte.class"));
+		final OffHeapClassStore store = new OffHeapClassStore(1024);
+		final long stringAddress = store.add(stringClass);
+		store.add(byteClass);
+		Assert.assertEquals(2, store.size());
+		Assert.assertTrue(store.getAllocatedBytes() >= store.getStoredBytes());
+
+		final StoredClass stored = store.get("java/lang/String");
+		Assert.assertEquals(stringAddress, stored.getAddress());
+		Assert.assertEquals(stringClass.getThisClass(), stored.getThisClass());
+		Assert.assertEquals(stringClass.getSuperClass(), stored.getSuperClass());
+		Assert.assertArrayEquals(stringClass.getInterfaces(), stored.getInterfaces());
+		Assert.assertEquals(stringClass.getMajorVersion(), stored.getMajorVersion());
+		Assert.assertEquals(stringClass.getAccessFlags(), stored.getAccessFlags());
+		Assert.assertEquals(stringClass.getSourceFile(), stored.getSourceFile());
+		Assert.assertEquals(stringClass.getType(), stored.getType());
+
+		Assert.assertEquals(stringClass.getMethods().length, stored.getMethodCount());
+		for (int i = 0; i < stored.getMethodCount(); i++) {
+			final MethodInfo method = stringClass.getMethods()[i];
+			final StoredMethod storedMethod = stored.getMethod(i);
+			Assert.assertEquals(method.getName(), storedMethod.getName());
+			Assert.assertEquals(method.getType(), storedMethod.getType());
+			Assert.assertEquals(method.getSignature(), storedMethod.getSignature());
+			Assert.assertEquals(method.getAccessFlags(), storedMethod.getAccessFlags());
+		}
+		Assert.assertEquals(stringClass.getMethodCount("indexOf"), stored.getMethodCount("indexOf"));
+		Assert.assertEquals(stringClass.getConstructorMethods().size(), stored.getConstructorMethods().size());
+
+		for (FieldInfo field : stringClass.getFields()) {
+			final StoredField storedField = stored.getField(field.getName());
+			Assert.assertEquals(field.getType(), storedField.getType());
+			Assert.assertEquals(field.getAccessFlags(), storedField.getAccessFlags());
+			Assert.assertEquals("java/lang/String", storedField.getClassName());
+		}
+		Assert.assertNull(stored.getField("noSuchField"));
+
+		Assert.assertEquals("java/lang/Byte", store.get("java/lang/Byte").getThisClass().getName());
+		Assert.assertEquals(byteClass.getClassSignature() != null, store.get("java/lang/Byte").getSignature() != null);
+		Assert.assertNull(store.get("java/lang/Object"));
+	}
+
+	@Test
+	public void testAddingSameClassReplacesIndexEntry() throws IOException {
+		final ClassFile stringClass = new ClassFile(getClass().getResourceAsStream("/String.class"));
+		final OffHeapClassStore store = new OffHeapClassStore();
+		final long first = store.add(stringClass);
+		final long second = store.add(stringClass);
+		Assert.assertEquals(1, store.size());
+		Assert.assertEquals(second, store.get("java/lang/String").getAddress());
+		Assert.assertEquals("java/lang/String", store.get(first).getThisClass().getName());
+
+		store.close();
+		Assert.assertEquals(0, store.size());
+		Assert.assertFalse(store.contains("java/lang/String"));
+	}
+}